@@ -16,6 +16,18 @@
  */
 package org.jclouds.h2.jdbc;
 
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_CACHE_SIZE;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_LOCK_TIMEOUT;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_MULTI_THREADED;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_POOL_CONNECTION_TIMEOUT;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_POOL_LEAK_DETECTION_THRESHOLD;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_POOL_MAX_SIZE;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_POOL_MIN_IDLE;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_URL;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_WRITE_DELAY;
+
+import java.util.Properties;
+
 import org.jclouds.h2.jdbc.config.H2JdbcBlobStoreContextModule;
 import org.jclouds.jdbc.JdbcApiMetadata;
 import org.jclouds.providers.ProviderMetadata;
@@ -43,6 +55,20 @@ public class H2JdbcProviderMetadata extends BaseProviderMetadata {
       super(builder);
    }
 
+   public static Properties defaultProperties() {
+      Properties properties = JdbcApiMetadata.defaultProperties();
+      properties.setProperty(PROPERTY_H2_URL, "jdbc:h2:./jclouds-db");
+      properties.setProperty(PROPERTY_H2_CACHE_SIZE, "16384");
+      properties.setProperty(PROPERTY_H2_LOCK_TIMEOUT, "10000");
+      properties.setProperty(PROPERTY_H2_MULTI_THREADED, "false");
+      properties.setProperty(PROPERTY_H2_WRITE_DELAY, "500");
+      properties.setProperty(PROPERTY_H2_POOL_MAX_SIZE, "16");
+      properties.setProperty(PROPERTY_H2_POOL_MIN_IDLE, "2");
+      properties.setProperty(PROPERTY_H2_POOL_CONNECTION_TIMEOUT, "30000");
+      properties.setProperty(PROPERTY_H2_POOL_LEAK_DETECTION_THRESHOLD, "60000");
+      return properties;
+   }
+
    public static class Builder extends BaseProviderMetadata.Builder {
       protected Builder() {
          id("h2-jdbc")
@@ -50,7 +76,8 @@ public class H2JdbcProviderMetadata extends BaseProviderMetadata {
                .apiMetadata(new JdbcApiMetadata()
                      .toBuilder()
                      .defaultModule(H2JdbcBlobStoreContextModule.class)
-                     .build());
+                     .build())
+               .defaultProperties(H2JdbcProviderMetadata.defaultProperties());
       }
 
       @Override
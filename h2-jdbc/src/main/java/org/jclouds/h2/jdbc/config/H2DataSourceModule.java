@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.h2.jdbc.config;
+
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_CACHE_SIZE;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_LOCK_TIMEOUT;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_MULTI_THREADED;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_POOL_CONNECTION_TIMEOUT;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_POOL_LEAK_DETECTION_THRESHOLD;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_POOL_MAX_SIZE;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_POOL_MIN_IDLE;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_URL;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_WRITE_DELAY;
+
+import java.io.Closeable;
+
+import javax.inject.Named;
+import javax.sql.DataSource;
+
+import org.jclouds.lifecycle.Closer;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Provides a bounded HikariCP pool of h2 connections. Connections are validated when they are borrowed after being
+ * idle, and the pool statistics are published as the {@value #POOL_NAME} MBean.
+ */
+public class H2DataSourceModule extends AbstractModule {
+
+   public static final String POOL_NAME = "jclouds-h2";
+
+   @Override
+   protected void configure() {
+   }
+
+   @Provides
+   @Singleton
+   protected DataSource provideDataSource(@Named(PROPERTY_H2_URL) String url,
+         @Named(PROPERTY_H2_CACHE_SIZE) int cacheSize, @Named(PROPERTY_H2_LOCK_TIMEOUT) int lockTimeout,
+         @Named(PROPERTY_H2_MULTI_THREADED) boolean multiThreaded, @Named(PROPERTY_H2_WRITE_DELAY) int writeDelay,
+         @Named(PROPERTY_H2_POOL_MAX_SIZE) int maxSize, @Named(PROPERTY_H2_POOL_MIN_IDLE) int minIdle,
+         @Named(PROPERTY_H2_POOL_CONNECTION_TIMEOUT) long connectionTimeout,
+         @Named(PROPERTY_H2_POOL_LEAK_DETECTION_THRESHOLD) long leakDetectionThreshold, Closer closer) {
+      HikariConfig config = new HikariConfig();
+      config.setPoolName(POOL_NAME);
+      config.setDriverClassName("org.h2.Driver");
+      config.setJdbcUrl(jdbcUrl(url, cacheSize, lockTimeout, multiThreaded, writeDelay));
+      config.setUsername("sa");
+      config.setMaximumPoolSize(maxSize);
+      config.setMinimumIdle(minIdle);
+      config.setConnectionTimeout(connectionTimeout);
+      config.setLeakDetectionThreshold(leakDetectionThreshold);
+      config.setRegisterMbeans(true);
+
+      final HikariDataSource dataSource = new HikariDataSource(config);
+      closer.addToClose(new Closeable() {
+         @Override
+         public void close() {
+            dataSource.close();
+         }
+      });
+      return dataSource;
+   }
+
+   static String jdbcUrl(String url, int cacheSize, int lockTimeout, boolean multiThreaded, int writeDelay) {
+      return new StringBuilder(url)
+            .append(";CACHE_SIZE=").append(cacheSize)
+            .append(";LOCK_TIMEOUT=").append(lockTimeout)
+            .append(";MULTI_THREADED=").append(multiThreaded ? 1 : 0)
+            .append(";WRITE_DELAY=").append(writeDelay)
+            .toString();
+   }
+
+}
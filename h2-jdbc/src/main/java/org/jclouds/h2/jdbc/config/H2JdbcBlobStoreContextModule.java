@@ -18,21 +18,47 @@ package org.jclouds.h2.jdbc.config;
 
 import java.util.Properties;
 
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.sql.DataSource;
+
 import org.jclouds.jdbc.config.JdbcBlobStoreContextModule;
+import org.jclouds.jdbc.reference.JdbcConstants;
 
 import com.google.inject.persist.jpa.JpaPersistModule;
 
 public class H2JdbcBlobStoreContextModule extends JdbcBlobStoreContextModule {
 
-   private static final String DEFAULT_FILE = "./jclouds-db";
-
    protected void configure() {
       super.configure();
+      install(new H2DataSourceModule());
 
+      // The persistence properties are read when the persist service starts, after requested injections are done
       Properties properties = new Properties();
-      properties.setProperty("hibernate.connection.url", "jdbc:h2:" + DEFAULT_FILE);
-
+      requestInjection(new PersistenceProperties(properties));
       install(new JpaPersistModule("jclouds-h2").properties(properties));
    }
 
+   private static class PersistenceProperties {
+
+      private final Properties properties;
+
+      PersistenceProperties(Properties properties) {
+         this.properties = properties;
+      }
+
+      @Inject
+      void setDataSource(DataSource dataSource) {
+         properties.put("javax.persistence.nonJtaDataSource", dataSource);
+      }
+
+      /**
+       * The chunks are flushed every write batch, so each flush fills one JDBC batch.
+       */
+      @Inject
+      void setWriteBatchSize(@Named(JdbcConstants.PROPERTY_JDBC_WRITE_BATCH_SIZE) int writeBatchSize) {
+         properties.put("hibernate.jdbc.batch_size", String.valueOf(writeBatchSize));
+      }
+   }
+
 }
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.h2.jdbc.reference;
+
+/**
+ * Constants used to configure the h2 database and its connection pool
+ */
+public final class H2JdbcConstants {
+
+    /**
+     * JDBC url of the database, without settings. The settings below are appended to it.
+     */
+    public static final String PROPERTY_H2_URL = "jclouds.h2.url";
+
+    /**
+     * Size in KB of the MVStore page cache
+     */
+    public static final String PROPERTY_H2_CACHE_SIZE = "jclouds.h2.cache-size";
+
+    /**
+     * Milliseconds a statement waits for a table or row lock before failing
+     */
+    public static final String PROPERTY_H2_LOCK_TIMEOUT = "jclouds.h2.lock-timeout";
+
+    /**
+     * Whether statements of different connections may run concurrently
+     */
+    public static final String PROPERTY_H2_MULTI_THREADED = "jclouds.h2.multi-threaded";
+
+    /**
+     * Milliseconds a committed transaction may wait before it is written to disk
+     */
+    public static final String PROPERTY_H2_WRITE_DELAY = "jclouds.h2.write-delay";
+
+    /**
+     * Maximum number of pooled connections
+     */
+    public static final String PROPERTY_H2_POOL_MAX_SIZE = "jclouds.h2.pool.max-size";
+
+    /**
+     * Number of idle connections the pool keeps open
+     */
+    public static final String PROPERTY_H2_POOL_MIN_IDLE = "jclouds.h2.pool.min-idle";
+
+    /**
+     * Milliseconds a caller waits for a pooled connection before failing
+     */
+    public static final String PROPERTY_H2_POOL_CONNECTION_TIMEOUT = "jclouds.h2.pool.connection-timeout";
+
+    /**
+     * Milliseconds a connection may be held before it is logged as a possible leak. 0 disables leak detection.
+     */
+    public static final String PROPERTY_H2_POOL_LEAK_DETECTION_THRESHOLD = "jclouds.h2.pool.leak-detection-threshold";
+
+    private H2JdbcConstants() {
+        throw new AssertionError("Intentionally Unimplemented");
+    }
+}
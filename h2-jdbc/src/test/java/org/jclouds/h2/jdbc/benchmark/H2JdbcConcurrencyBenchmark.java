@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.h2.jdbc.benchmark;
+
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_MULTI_THREADED;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_POOL_MAX_SIZE;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_URL;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.jdbc.benchmark.BenchmarkReport;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Measures putBlob and getBlob operations per second against the pooled h2 database with 1 to 64 client threads.
+ */
+@Test(groups = "performance", testName = "H2JdbcConcurrencyBenchmark", singleThreaded = true)
+public class H2JdbcConcurrencyBenchmark {
+
+   private static final String CONTAINER_NAME = "jclouds-benchmark-container";
+   private static final int OPERATIONS = Integer.getInteger("jclouds.h2.benchmark.operations", 4096);
+   private static final ByteSource PAYLOAD = ByteSource.wrap(new byte[4 * 1024]);
+
+   private BlobStoreContext context;
+   private BlobStore blobStore;
+   private HikariDataSource dataSource;
+
+   @BeforeClass
+   protected void setUp() {
+      Properties overrides = new Properties();
+      overrides.setProperty(PROPERTY_H2_URL, "jdbc:h2:mem:H2JdbcConcurrencyBenchmark");
+      overrides.setProperty(PROPERTY_H2_MULTI_THREADED, "true");
+      overrides.setProperty(PROPERTY_H2_POOL_MAX_SIZE, "64");
+      context = ContextBuilder.newBuilder("h2-jdbc")
+            .overrides(overrides)
+            .build(BlobStoreContext.class);
+      blobStore = context.getBlobStore();
+      dataSource = (HikariDataSource) context.utils().injector().getInstance(DataSource.class);
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+   }
+
+   @AfterClass(alwaysRun = true)
+   protected void tearDown() throws IOException {
+      context.close();
+   }
+
+   @DataProvider
+   public Object[][] threads() {
+      return new Object[][] { { 1 }, { 2 }, { 4 }, { 8 }, { 16 }, { 32 }, { 64 } };
+   }
+
+   @Test(dataProvider = "threads")
+   public void testPutAndGetBlob(int threads) throws Exception {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+         List<Callable<Void>> tasks = Lists.newArrayList();
+         for (int i = 0; i < threads; i++) {
+            tasks.add(new PutAndGetBlob("threads-" + threads + "/client-" + i + "/", OPERATIONS / threads));
+         }
+         Stopwatch stopwatch = Stopwatch.createStarted();
+         for (Future<Void> future : executor.invokeAll(tasks)) {
+            future.get();
+         }
+         stopwatch.stop();
+         BenchmarkReport.operations(getClass().getSimpleName(), dataSource.getPoolName(), threads + " threads",
+               2 * (OPERATIONS / threads) * threads, stopwatch);
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   private class PutAndGetBlob implements Callable<Void> {
+
+      private final String prefix;
+      private final int count;
+
+      PutAndGetBlob(String prefix, int count) {
+         this.prefix = prefix;
+         this.count = count;
+      }
+
+      @Override
+      public Void call() throws IOException {
+         for (int i = 0; i < count; i++) {
+            String name = prefix + i;
+            blobStore.putBlob(CONTAINER_NAME, blobStore.blobBuilder(name).payload(PAYLOAD).build());
+            InputStream is = blobStore.getBlob(CONTAINER_NAME, name).getPayload().openStream();
+            try {
+               ByteStreams.copy(is, ByteStreams.nullOutputStream());
+            } finally {
+               is.close();
+            }
+         }
+         return null;
+      }
+   }
+
+}
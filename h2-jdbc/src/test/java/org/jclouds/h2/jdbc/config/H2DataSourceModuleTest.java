@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.h2.jdbc.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_POOL_MAX_SIZE;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_H2_URL;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.testng.annotations.Test;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+@Test(groups = "unit", testName = "H2DataSourceModuleTest")
+public class H2DataSourceModuleTest {
+
+   public void testJdbcUrl() {
+      assertThat(H2DataSourceModule.jdbcUrl("jdbc:h2:./jclouds-db", 16384, 10000, true, 500))
+            .isEqualTo("jdbc:h2:./jclouds-db;CACHE_SIZE=16384;LOCK_TIMEOUT=10000;MULTI_THREADED=1;WRITE_DELAY=500");
+   }
+
+   public void testContextUsesPool() throws IOException {
+      Properties overrides = new Properties();
+      overrides.setProperty(PROPERTY_H2_URL, "jdbc:h2:mem:H2DataSourceModuleTest");
+      overrides.setProperty(PROPERTY_H2_POOL_MAX_SIZE, "4");
+      BlobStoreContext context = ContextBuilder.newBuilder("h2-jdbc")
+            .overrides(overrides)
+            .build(BlobStoreContext.class);
+
+      HikariDataSource dataSource;
+      try {
+         dataSource = (HikariDataSource) context.utils().injector().getInstance(DataSource.class);
+         assertThat(dataSource.getMaximumPoolSize()).isEqualTo(4);
+         assertThat(dataSource.getJdbcUrl()).startsWith("jdbc:h2:mem:H2DataSourceModuleTest;");
+
+         context.getBlobStore().createContainerInLocation(null, "pooled");
+         assertThat(context.getBlobStore().containerExists("pooled")).isTrue();
+      } finally {
+         context.close();
+      }
+      assertThat(dataSource.isClosed()).isTrue();
+   }
+
+}
@@ -23,8 +23,10 @@ import org.jclouds.apis.ApiMetadata;
 import org.jclouds.apis.internal.BaseApiMetadata;
 import org.jclouds.blobstore.BlobStoreContext;
 import org.jclouds.jdbc.config.JdbcBlobStoreContextModule;
+import org.jclouds.jdbc.reference.JdbcConstants;
 
 import java.net.URI;
+import java.util.Properties;
 
 /**
  * Implementation of {@link ApiMetadata} for jclouds Jdbc BlobStore
@@ -45,6 +47,23 @@ public class JdbcApiMetadata extends BaseApiMetadata {
       super(builder);
    }
 
+   public static Properties defaultProperties() {
+      Properties properties = BaseApiMetadata.defaultProperties();
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_CHUNK_SIZE, String.valueOf(JdbcConstants.DEFAULT_CHUNK_SIZE));
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_WRITE_BATCH_SIZE, "8");
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_CHUNK_CODEC, "none");
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_PREFETCH_CHUNKS, "2");
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_PREFETCH_THREADS, "4");
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_VERIFY_CHECKSUMS, "true");
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_DELETE_BATCH_SIZE, "500");
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_CONTAINER_CACHE_SIZE, "1000");
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_BLOB_METADATA_CACHE_SIZE, "10000");
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_CACHE_EXPIRY, "300000");
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_GC_PERIOD, "3600000");
+      properties.setProperty(JdbcConstants.PROPERTY_JDBC_GC_BATCH_SIZE, "500");
+      return properties;
+   }
+
    public static class Builder extends BaseApiMetadata.Builder<Builder> {
 
       protected Builder() {
@@ -58,6 +77,7 @@ public class JdbcApiMetadata extends BaseApiMetadata {
          .version("1")
          .documentation(URI.create("http://www.jclouds.org/documentation/userguide/blobstore-guide"))
          .view(BlobStoreContext.class)
+         .defaultProperties(JdbcApiMetadata.defaultProperties())
          .defaultModules(ImmutableSet.<Class<? extends Module>>of(JdbcBlobStoreContextModule.class));
       }
 
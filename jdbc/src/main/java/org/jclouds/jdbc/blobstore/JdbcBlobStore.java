@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.blobstore;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.jclouds.blobstore.LocalStorageStrategy;
+import org.jclouds.blobstore.config.LocalBlobStore;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.MultipartPart;
+import org.jclouds.blobstore.domain.MultipartUpload;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
+import org.jclouds.blobstore.util.ForwardingBlobStore;
+import org.jclouds.io.Payload;
+import org.jclouds.jdbc.service.JdbcServiceCache;
+import org.jclouds.jdbc.strategy.JdbcStorageStrategy;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Lists containers page by page in the database. {@link LocalBlobStore} loads the metadata of every blob in a
+ * container before applying the listing options, so listing is delegated to
+ * {@link JdbcStorageStrategy#list(String, ListContainerOptions)}. Metadata and existence probes are answered from
+ * the {@link JdbcServiceCache} when possible. Multipart uploads stage each part as a chunk list in its own
+ * transaction and complete by concatenating those lists, where {@link LocalBlobStore} would copy every part into a
+ * new blob. Every other operation goes to {@link LocalBlobStore}.
+ */
+public class JdbcBlobStore extends ForwardingBlobStore {
+
+   private final JdbcStorageStrategy storageStrategy;
+   private final JdbcServiceCache cache;
+
+   @Inject
+   JdbcBlobStore(LocalBlobStore localBlobStore, LocalStorageStrategy storageStrategy, JdbcServiceCache cache) {
+      super(localBlobStore);
+      this.storageStrategy = (JdbcStorageStrategy) storageStrategy;
+      this.cache = cache;
+   }
+
+   @Override
+   public BlobMetadata blobMetadata(String container, String name) {
+      BlobMetadata metadata = cache.getBlobMetadata(container, name);
+      if (metadata == null) {
+         long stamp = cache.stamp();
+         metadata = delegate().blobMetadata(container, name);
+         if (metadata != null) {
+            cache.putBlobMetadata(container, metadata, stamp);
+         }
+      }
+      return metadata;
+   }
+
+   @Override
+   public boolean blobExists(String container, String name) {
+      return cache.getBlobMetadata(container, name) != null || delegate().blobExists(container, name);
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(String container) {
+      return list(container, ListContainerOptions.NONE);
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(String container, ListContainerOptions options) {
+      return storageStrategy.list(container, options);
+   }
+
+   @Override
+   public MultipartUpload initiateMultipartUpload(String container, BlobMetadata blobMetadata, PutOptions options) {
+      return storageStrategy.initiateMultipartUpload(container, blobMetadata, options);
+   }
+
+   @Override
+   public MultipartPart uploadMultipartPart(MultipartUpload mpu, int partNumber, Payload payload) {
+      try {
+         return storageStrategy.uploadMultipartPart(mpu, partNumber, payload);
+      } catch (IOException e) {
+         throw Throwables.propagate(e);
+      }
+   }
+
+   @Override
+   public String completeMultipartUpload(MultipartUpload mpu, List<MultipartPart> parts) {
+      return storageStrategy.completeMultipartUpload(mpu, parts);
+   }
+
+   @Override
+   public void abortMultipartUpload(MultipartUpload mpu) {
+      storageStrategy.abortMultipartUpload(mpu);
+   }
+
+   @Override
+   public List<MultipartPart> listMultipartUpload(MultipartUpload mpu) {
+      return storageStrategy.listMultipartUpload(mpu);
+   }
+
+   @Override
+   public List<MultipartUpload> listMultipartUploads(String container) {
+      return storageStrategy.listMultipartUploads(container);
+   }
+
+}
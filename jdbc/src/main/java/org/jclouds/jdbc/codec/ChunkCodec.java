@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Encodings of the data stored in a chunk. The codec a chunk was written with is stored next to it, so chunks written
+ * with different codecs can be read back whatever codec is configured for new writes.
+ */
+public enum ChunkCodec {
+
+   /**
+    * Stores the data as is
+    */
+   NONE {
+      @Override
+      public byte[] encode(byte[] data, int length) {
+         return null;
+      }
+
+      @Override
+      public byte[] decode(byte[] data, int size) {
+         return data;
+      }
+   },
+
+   /**
+    * Compresses with {@link Deflater}, slower than {@link #LZ4} but with a better ratio
+    */
+   DEFLATE {
+      @Override
+      public byte[] encode(byte[] data, int length) {
+         Deflater deflater = new Deflater();
+         try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            // any output that does not fit in length - 1 bytes is not worth keeping
+            byte[] encoded = new byte[Math.max(length - 1, 0)];
+            int encodedLength = 0;
+            while (!deflater.finished() && encodedLength < encoded.length) {
+               encodedLength += deflater.deflate(encoded, encodedLength, encoded.length - encodedLength);
+            }
+            return deflater.finished() ? Arrays.copyOf(encoded, encodedLength) : null;
+         } finally {
+            deflater.end();
+         }
+      }
+
+      @Override
+      public byte[] decode(byte[] data, int size) throws IOException {
+         Inflater inflater = new Inflater();
+         try {
+            inflater.setInput(data);
+            byte[] decoded = new byte[size];
+            int decodedLength = 0;
+            while (decodedLength < size && !inflater.finished()) {
+               int bytes = inflater.inflate(decoded, decodedLength, size - decodedLength);
+               if (bytes == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                  break;
+               }
+               decodedLength += bytes;
+            }
+            if (decodedLength != size) {
+               throw new IOException("Chunk decodes to " + decodedLength + " bytes instead of " + size);
+            }
+            return decoded;
+         } catch (DataFormatException e) {
+            throw new IOException("Could not inflate chunk.", e);
+         } finally {
+            inflater.end();
+         }
+      }
+   },
+
+   /**
+    * Compresses with the pure Java LZ4 block codec, which trades some ratio for much faster compression
+    */
+   LZ4 {
+      private final LZ4Compressor compressor = LZ4Factory.safeInstance().fastCompressor();
+      private final LZ4FastDecompressor decompressor = LZ4Factory.safeInstance().fastDecompressor();
+
+      @Override
+      public byte[] encode(byte[] data, int length) {
+         byte[] encoded = new byte[compressor.maxCompressedLength(length)];
+         int encodedLength = compressor.compress(data, 0, length, encoded, 0, encoded.length);
+         return encodedLength < length ? Arrays.copyOf(encoded, encodedLength) : null;
+      }
+
+      @Override
+      public byte[] decode(byte[] data, int size) throws IOException {
+         byte[] decoded = new byte[size];
+         try {
+            int read = decompressor.decompress(data, 0, decoded, 0, size);
+            if (read != data.length) {
+               throw new IOException("Chunk decodes from " + read + " bytes instead of " + data.length);
+            }
+         } catch (LZ4Exception e) {
+            throw new IOException("Could not decompress chunk.", e);
+         }
+         return decoded;
+      }
+   };
+
+   /**
+    * Encodes the first length bytes of data.
+    *
+    * @return the encoded data, or null if encoding would not make it any smaller
+    */
+   public abstract byte[] encode(byte[] data, int length);
+
+   /**
+    * Decodes data encoded by this codec.
+    *
+    * @param size the size of the data before it was encoded
+    */
+   public abstract byte[] decode(byte[] data, int size) throws IOException;
+
+   /**
+    * Parses a codec name, ignoring case.
+    */
+   public static ChunkCodec fromValue(String codec) {
+      return valueOf(codec.trim().toUpperCase());
+   }
+
+}
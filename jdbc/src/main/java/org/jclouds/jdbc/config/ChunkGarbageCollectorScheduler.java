@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.config;
+
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_JDBC_GC_PERIOD;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+
+import org.jclouds.jdbc.gc.ChunkGarbageCollector;
+import org.jclouds.lifecycle.Closer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+
+/**
+ * Runs the {@link ChunkGarbageCollector} every {@code jclouds.jdbc.gc-period} milliseconds on a daemon thread, unless
+ * the period is 0.
+ */
+public class ChunkGarbageCollectorScheduler {
+
+   @Inject
+   private ChunkGarbageCollectorScheduler(ChunkGarbageCollector collector, @Named(PROPERTY_JDBC_GC_PERIOD) long period,
+         Closer closer) {
+      if (period <= 0) {
+         return;
+      }
+      final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("jdbc-gc-%d").setDaemon(true).build());
+      executor.scheduleWithFixedDelay(collector, period, period, TimeUnit.MILLISECONDS);
+      closer.addToClose(new Closeable() {
+         @Override
+         public void close() {
+            executor.shutdownNow();
+         }
+      });
+   }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.config;
+
+import org.jclouds.jdbc.service.JdbcService;
+
+import com.google.inject.Inject;
+
+/**
+ * Fills the parent path and depth of blobs stored before the directory index existed, in batches of
+ * {@value #BATCH_SIZE} blobs per transaction. Runs once when the blobstore starts, after the persistence service.
+ */
+public class DirectoryIndexMigration {
+
+   static final int BATCH_SIZE = 500;
+
+   @Inject
+   DirectoryIndexMigration(JPAInitializer jpaInitializer, JdbcService jdbcService) {
+      while (jdbcService.migrateParentPaths(BATCH_SIZE) == BATCH_SIZE) {
+         // keep migrating until a batch comes back short
+      }
+   }
+
+}
@@ -16,24 +16,37 @@
  */
 package org.jclouds.jdbc.config;
 
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
 import org.jclouds.blobstore.BlobRequestSigner;
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.LocalBlobRequestSigner;
 import org.jclouds.blobstore.LocalStorageStrategy;
 import org.jclouds.blobstore.attr.ConsistencyModel;
 import org.jclouds.blobstore.config.BlobStoreObjectModule;
-import org.jclouds.blobstore.config.LocalBlobStore;
 import org.jclouds.blobstore.util.BlobUtils;
+import org.jclouds.jdbc.blobstore.JdbcBlobStore;
+import org.jclouds.jdbc.reference.JdbcConstants;
 import org.jclouds.jdbc.strategy.JdbcStorageStrategy;
 import org.jclouds.jdbc.util.JdbcBlobUtils;
+import org.jclouds.lifecycle.Closer;
+
+import javax.inject.Named;
+import java.io.Closeable;
+import java.util.concurrent.Executors;
 
 public class JdbcBlobStoreContextModule extends AbstractModule {
 
    @Override
    protected void configure() {
       bind(JPAInitializer.class).asEagerSingleton();
-      bind(BlobStore.class).to(LocalBlobStore.class);
+      bind(DirectoryIndexMigration.class).asEagerSingleton();
+      bind(ChunkGarbageCollectorScheduler.class).asEagerSingleton();
+      bind(BlobStore.class).to(JdbcBlobStore.class);
       install(new BlobStoreObjectModule());
       bind(ConsistencyModel.class).toInstance(ConsistencyModel.STRICT);
       bind(LocalStorageStrategy.class).to(JdbcStorageStrategy.class);
@@ -41,4 +54,20 @@ public class JdbcBlobStoreContextModule extends AbstractModule {
       bind(BlobRequestSigner.class).to(LocalBlobRequestSigner.class);
    }
 
+   @Provides
+   @Singleton
+   @Named(JdbcConstants.PREFETCH_EXECUTOR)
+   protected ListeningExecutorService providePrefetchExecutor(
+         @Named(JdbcConstants.PROPERTY_JDBC_PREFETCH_THREADS) int threads, Closer closer) {
+      final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(threads,
+            new ThreadFactoryBuilder().setNameFormat("jdbc-prefetch-%d").setDaemon(true).build()));
+      closer.addToClose(new Closeable() {
+         @Override
+         public void close() {
+            executor.shutdownNow();
+         }
+      });
+      return executor;
+   }
+
 }
@@ -18,6 +18,7 @@ package org.jclouds.jdbc.conversion;
 
 import com.google.common.base.Function;
 import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import org.jclouds.blobstore.domain.Blob;
@@ -25,18 +26,30 @@ import org.jclouds.blobstore.domain.BlobBuilder;
 import org.jclouds.blobstore.domain.StorageType;
 import org.jclouds.jdbc.entity.BlobEntity;
 import org.jclouds.jdbc.entity.PayloadEntity;
+import org.jclouds.jdbc.reference.JdbcConstants;
 import org.jclouds.jdbc.service.JdbcService;
-import org.jclouds.jdbc.util.JdbcInputStream;
+import org.jclouds.jdbc.util.JdbcByteSource;
+
+import javax.inject.Named;
 
 public class BlobEntityToBlob implements Function<BlobEntity, Blob> {
 
    private final Provider<BlobBuilder> blobBuilders;
    private final JdbcService jdbcService;
+   private final ListeningExecutorService prefetchExecutor;
+   private final int prefetchChunks;
+   private final boolean verifyChecksums;
 
    @Inject
-   BlobEntityToBlob(Provider<BlobBuilder> blobBuilders, JdbcService jdbcService) {
+   BlobEntityToBlob(Provider<BlobBuilder> blobBuilders, JdbcService jdbcService,
+         @Named(JdbcConstants.PREFETCH_EXECUTOR) ListeningExecutorService prefetchExecutor,
+         @Named(JdbcConstants.PROPERTY_JDBC_PREFETCH_CHUNKS) int prefetchChunks,
+         @Named(JdbcConstants.PROPERTY_JDBC_VERIFY_CHECKSUMS) boolean verifyChecksums) {
       this.blobBuilders = blobBuilders;
       this.jdbcService = jdbcService;
+      this.prefetchExecutor = prefetchExecutor;
+      this.prefetchChunks = prefetchChunks;
+      this.verifyChecksums = verifyChecksums;
    }
 
    @Override
@@ -54,7 +67,8 @@ public class BlobEntityToBlob implements Function<BlobEntity, Blob> {
          builder.type(StorageType.FOLDER);
       }
       else {
-         builder.payload(new JdbcInputStream(jdbcService, blobEntity.getPayload().getChunks()));
+         builder.payload(new JdbcByteSource(jdbcService, payload.getChunks(), prefetchExecutor, prefetchChunks,
+               verifyChecksums));
       }
 
       Blob blob = builder.build();
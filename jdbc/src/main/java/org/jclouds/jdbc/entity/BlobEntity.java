@@ -18,6 +18,7 @@ package org.jclouds.jdbc.entity;
 
 import org.jclouds.blobstore.domain.BlobAccess;
 import org.jclouds.blobstore.domain.Tier;
+import org.jclouds.jdbc.util.DirectoryPaths;
 
 import javax.persistence.CascadeType;
 import javax.persistence.ElementCollection;
@@ -25,6 +26,7 @@ import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
@@ -34,7 +36,7 @@ import java.util.Date;
 import java.util.Map;
 
 @Entity
-@Table
+@Table(indexes = @Index(name = "BlobEntity_parentPath", columnList = "id, parentPath"))
 @IdClass(value = BlobEntityPK.class)
 public class BlobEntity {
 
@@ -60,8 +62,16 @@ public class BlobEntity {
    private String etag;
    private boolean directory;
 
+   /**
+    * Materialized directory of the key, see {@link DirectoryPaths#parentPath(String)}. Null for rows written before
+    * the column existed, until they are migrated.
+    */
+   private String parentPath;
+   private Integer depth;
+
    @PrePersist
    private void defaults() {
+      updateParentPath();
       this.lastModified = new Date();
       if (this.creationDate == null) {
          this.creationDate = new Date();
@@ -77,7 +87,6 @@ public class BlobEntity {
    public BlobEntity(ContainerEntity containerEntity, String key, PayloadEntity payload, Date creationDate, Date lastModified,
          BlobAccess blobAccess, Tier tier, Map<String, String> userMetadata, Long size, String etag, boolean directory) {
       this.containerEntity = containerEntity;
-      this.key = key;
       this.creationDate = creationDate;
       this.lastModified = lastModified;
       this.payload = payload;
@@ -87,6 +96,7 @@ public class BlobEntity {
       this.size = size;
       this.etag = etag;
       this.directory = directory;
+      setKey(key);
    }
 
    public ContainerEntity getContainerEntity() {
@@ -111,6 +121,28 @@ public class BlobEntity {
 
    public void setKey(String key) {
       this.key = key;
+      updateParentPath();
+   }
+
+   public String getParentPath() {
+      return parentPath;
+   }
+
+   public Integer getDepth() {
+      return depth;
+   }
+
+   /**
+    * Derives the parent path and depth from the key.
+    */
+   public void updateParentPath() {
+      if (key == null) {
+         parentPath = null;
+         depth = null;
+      } else {
+         parentPath = DirectoryPaths.parentPath(key);
+         depth = DirectoryPaths.depth(parentPath);
+      }
    }
 
    public PayloadEntity getPayload() {
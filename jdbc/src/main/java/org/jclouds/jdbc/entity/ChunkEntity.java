@@ -16,32 +16,89 @@
  */
 package org.jclouds.jdbc.entity;
 
+import com.google.common.hash.Hashing;
+import org.jclouds.jdbc.codec.ChunkCodec;
 import org.jclouds.jdbc.reference.JdbcConstants;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
+import java.io.IOException;
+import java.util.Arrays;
 
+/**
+ * A slice of a blob payload. Chunks are never cached by the persistence provider: they are large, and the buffers
+ * backing them are reused once written.
+ * <p>
+ * Chunks are content addressed: payloads with the same content share a chunk, which counts how many chunk lists
+ * reference it and is deleted once that count drops to zero.
+ * <p>
+ * The data is stored encoded with the chunk codec, while the size and the checksum always describe the decoded data.
+ */
 @Entity
-@Table
+@Table(indexes = @Index(name = "ChunkEntity_hash", columnList = "hash"))
+@Cacheable(false)
 public class ChunkEntity {
 
+   /**
+    * Ids come from a table generator rather than an identity column so inserts can be batched.
+    */
    @Id
-   @GeneratedValue
+   @TableGenerator(name = "ChunkEntityIds", allocationSize = 64)
+   @GeneratedValue(strategy = GenerationType.TABLE, generator = "ChunkEntityIds")
    private Long id;
 
    @Lob
-   @Column(length = JdbcConstants.DEFAULT_CHUNK_SIZE)
+   @Column(length = JdbcConstants.MAX_CHUNK_SIZE)
    private byte[] data;
 
    private int size;
 
+   @Column(length = 64)
+   private String hash;
+
+   private int referenceCount;
+
+   /**
+    * Null for chunks written before codecs were introduced, which are stored as is
+    */
+   @Enumerated(EnumType.STRING)
+   @Column(length = 16)
+   private ChunkCodec codec;
+
+   /**
+    * CRC32C of the decoded data. Null for chunks written before checksums were introduced, which are never verified.
+    */
+   private Integer checksum;
+
    public ChunkEntity(byte[] data, int size) {
+      this(data, size, null);
+   }
+
+   public ChunkEntity(byte[] data, int size, String hash) {
+      this(data, size, hash, ChunkCodec.NONE);
+   }
+
+   public ChunkEntity(byte[] data, int size, String hash, ChunkCodec codec) {
+      this(data, size, hash, codec, null);
+   }
+
+   public ChunkEntity(byte[] data, int size, String hash, ChunkCodec codec, Integer checksum) {
       this.data = data;
       this.size = size;
+      this.hash = hash;
+      this.codec = codec;
+      this.checksum = checksum;
+      this.referenceCount = 1;
    }
 
    public ChunkEntity() {
@@ -70,4 +127,60 @@ public class ChunkEntity {
    public void setSize(int size) {
       this.size = size;
    }
+
+   public String getHash() {
+      return hash;
+   }
+
+   public void setHash(String hash) {
+      this.hash = hash;
+   }
+
+   public int getReferenceCount() {
+      return referenceCount;
+   }
+
+   public void setReferenceCount(int referenceCount) {
+      this.referenceCount = referenceCount;
+   }
+
+   public ChunkCodec getCodec() {
+      return codec;
+   }
+
+   public void setCodec(ChunkCodec codec) {
+      this.codec = codec;
+   }
+
+   public Integer getChecksum() {
+      return checksum;
+   }
+
+   public void setChecksum(Integer checksum) {
+      this.checksum = checksum;
+   }
+
+   /**
+    * @return the data of this chunk, decoded, in an array of exactly {@link #getSize()} bytes
+    */
+   public byte[] decodeData() throws IOException {
+      if (codec == null || codec == ChunkCodec.NONE) {
+         return data.length == size ? data : Arrays.copyOf(data, size);
+      }
+      return codec.decode(data, size);
+   }
+
+   /**
+    * @return whether the decoded data matches the checksum of this chunk, always true for chunks without checksum
+    */
+   public boolean verify(byte[] decoded) {
+      return checksum == null || checksum == checksum(decoded, 0, decoded.length);
+   }
+
+   /**
+    * @return the CRC32C of the given bytes
+    */
+   public static int checksum(byte[] data, int offset, int length) {
+      return Hashing.crc32c().hashBytes(data, offset, length).asInt();
+   }
 }
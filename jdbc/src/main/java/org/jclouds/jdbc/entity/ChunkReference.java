@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.entity;
+
+import javax.persistence.Embeddable;
+
+/**
+ * Entry of the ordered chunk list of a {@link PayloadEntity}. Keeping the chunk size next to its id lets readers
+ * locate the chunk that holds a given offset without loading any chunk data.
+ */
+@Embeddable
+public class ChunkReference {
+
+   private Long chunkId;
+   private int size;
+
+   public ChunkReference(Long chunkId, int size) {
+      this.chunkId = chunkId;
+      this.size = size;
+   }
+
+   public ChunkReference() {
+   }
+
+   public Long getChunkId() {
+      return chunkId;
+   }
+
+   public void setChunkId(Long chunkId) {
+      this.chunkId = chunkId;
+   }
+
+   public int getSize() {
+      return size;
+   }
+
+   public void setSize(int size) {
+      this.size = size;
+   }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.entity;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.OrderColumn;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A staged part of a multipart upload. The part owns one reference to each chunk of its list until the upload is
+ * completed, when the lists of the parts are concatenated into the blob payload as they are, or aborted. An upload
+ * has at most one part with a given number.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "MultipartPartEntity_upload",
+      columnNames = { "uploadId", "partNumber" }))
+public class MultipartPartEntity {
+
+   @Id
+   @GeneratedValue
+   private Long id;
+
+   private String uploadId;
+   private int partNumber;
+   private long size;
+   private String etag;
+   private Date lastModified;
+
+   @ElementCollection(fetch = FetchType.EAGER)
+   @CollectionTable(indexes = @Index(name = "MultipartPartEntity_chunks_chunkId", columnList = "chunkId"))
+   @OrderColumn
+   private List<ChunkReference> chunks;
+
+   public MultipartPartEntity(String uploadId, int partNumber, long size, String etag, Date lastModified,
+         List<ChunkReference> chunks) {
+      this.uploadId = uploadId;
+      this.partNumber = partNumber;
+      this.size = size;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.chunks = chunks;
+   }
+
+   public MultipartPartEntity() {
+   }
+
+   public Long getId() {
+      return id;
+   }
+
+   public void setId(Long id) {
+      this.id = id;
+   }
+
+   public String getUploadId() {
+      return uploadId;
+   }
+
+   public void setUploadId(String uploadId) {
+      this.uploadId = uploadId;
+   }
+
+   public int getPartNumber() {
+      return partNumber;
+   }
+
+   public void setPartNumber(int partNumber) {
+      this.partNumber = partNumber;
+   }
+
+   public long getSize() {
+      return size;
+   }
+
+   public void setSize(long size) {
+      this.size = size;
+   }
+
+   public String getEtag() {
+      return etag;
+   }
+
+   public void setEtag(String etag) {
+      this.etag = etag;
+   }
+
+   public Date getLastModified() {
+      return lastModified;
+   }
+
+   public void setLastModified(Date lastModified) {
+      this.lastModified = lastModified;
+   }
+
+   public List<ChunkReference> getChunks() {
+      return chunks;
+   }
+
+   public void setChunks(List<ChunkReference> chunks) {
+      this.chunks = chunks;
+   }
+}
@@ -18,11 +18,14 @@ package org.jclouds.jdbc.entity;
 
 import com.google.common.collect.ImmutableList;
 
+import javax.persistence.CollectionTable;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.OrderColumn;
 import java.util.Date;
 import java.util.List;
 
@@ -34,7 +37,9 @@ public class PayloadEntity {
    private Long id;
 
    @ElementCollection(fetch = FetchType.EAGER)
-   private List<Long> chunks;
+   @CollectionTable(indexes = @Index(name = "PayloadEntity_chunks_chunkId", columnList = "chunkId"))
+   @OrderColumn
+   private List<ChunkReference> chunks;
 
    private String cacheControl;
    private String contentType;
@@ -45,7 +50,7 @@ public class PayloadEntity {
    private String contentEncoding;
    private Date expires;
 
-   public PayloadEntity(List<Long> chunks, String cacheControl, String contentType, Long contentLength, byte[] contentMD5,
+   public PayloadEntity(List<ChunkReference> chunks, String cacheControl, String contentType, Long contentLength, byte[] contentMD5,
          String contentDisposition, String contentLanguage, String contentEncoding, Date expires) {
       this.chunks = chunks;
       this.cacheControl = cacheControl;
@@ -69,11 +74,11 @@ public class PayloadEntity {
       this.id = id;
    }
 
-   public List<Long> getChunks() {
+   public List<ChunkReference> getChunks() {
       return chunks;
    }
 
-   public void setChunks(List<Long> chunks) {
+   public void setChunks(List<ChunkReference> chunks) {
       this.chunks = chunks;
    }
 
@@ -146,7 +151,7 @@ public class PayloadEntity {
    }
 
    public static class Builder {
-      private List<Long> chunks;
+      private List<ChunkReference> chunks;
       private String cacheControl;
       private String contentType;
       private Long contentLength;
@@ -160,7 +165,7 @@ public class PayloadEntity {
          this.chunks = ImmutableList.of();
       }
 
-      public Builder chunks(List<Long> chunks) {
+      public Builder chunks(List<ChunkReference> chunks) {
          this.chunks = chunks;
          return this;
       }
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.gc;
+
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_JDBC_GC_BATCH_SIZE;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Resource;
+import javax.inject.Named;
+
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.jdbc.service.JdbcService;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Stopwatch;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Deletes the chunks no payload references, such as those left behind by a process that died while the reference
+ * counts were out of sync with the chunk lists. Each batch of {@code jclouds.jdbc.gc-batch-size} chunks is found
+ * and deleted in its own short transaction, walking the chunk table in id order, so uploads and deletes are only
+ * held up for the duration of one batch.
+ * <p>
+ * Runs are scheduled every {@code jclouds.jdbc.gc-period} milliseconds and can be triggered by calling
+ * {@link #collect()}. The totals since startup are kept as metrics.
+ */
+@Singleton
+public class ChunkGarbageCollector implements Runnable {
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final JdbcService jdbcService;
+   private final int batchSize;
+
+   private final AtomicLong runs = new AtomicLong();
+   private final AtomicLong reclaimedChunks = new AtomicLong();
+   private final AtomicLong reclaimedBytes = new AtomicLong();
+   private final AtomicReference<GarbageCollection> lastRun = new AtomicReference<GarbageCollection>();
+
+   @Inject
+   ChunkGarbageCollector(JdbcService jdbcService, @Named(PROPERTY_JDBC_GC_BATCH_SIZE) int batchSize) {
+      this.jdbcService = jdbcService;
+      this.batchSize = batchSize;
+   }
+
+   /**
+    * Deletes every unreferenced chunk. Concurrent calls run one after the other.
+    */
+   public synchronized GarbageCollection collect() {
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      long chunks = 0;
+      long bytes = 0;
+      long afterId = Long.MIN_VALUE;
+      ChunkSweep sweep;
+      do {
+         sweep = jdbcService.sweepUnreferencedChunks(afterId, batchSize);
+         chunks += sweep.getDeletedChunks();
+         bytes += sweep.getDeletedBytes();
+         afterId = sweep.getLastChunkId();
+      } while (sweep.getUnreferencedChunks() == batchSize);
+      stopwatch.stop();
+
+      GarbageCollection result = new GarbageCollection(chunks, bytes, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+      runs.incrementAndGet();
+      reclaimedChunks.addAndGet(chunks);
+      reclaimedBytes.addAndGet(bytes);
+      lastRun.set(result);
+      logger.debug(">> collected unreferenced chunks: %s", result);
+      return result;
+   }
+
+   @Override
+   public void run() {
+      try {
+         collect();
+      } catch (RuntimeException e) {
+         // keep the scheduled runs going, the next one retries
+         logger.warn(e, "could not collect unreferenced chunks");
+      }
+   }
+
+   public long getRuns() {
+      return runs.get();
+   }
+
+   public long getReclaimedChunks() {
+      return reclaimedChunks.get();
+   }
+
+   public long getReclaimedBytes() {
+      return reclaimedBytes.get();
+   }
+
+   /**
+    * @return the outcome of the last run, or null if the collector has not run yet
+    */
+   public GarbageCollection getLastRun() {
+      return lastRun.get();
+   }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.gc;
+
+/**
+ * Outcome of one garbage collector batch: the unreferenced chunks found after a given chunk id and how many of them
+ * were deleted.
+ */
+public final class ChunkSweep {
+
+   private final long lastChunkId;
+   private final int unreferencedChunks;
+   private final int deletedChunks;
+   private final long deletedBytes;
+
+   public ChunkSweep(long lastChunkId, int unreferencedChunks, int deletedChunks, long deletedBytes) {
+      this.lastChunkId = lastChunkId;
+      this.unreferencedChunks = unreferencedChunks;
+      this.deletedChunks = deletedChunks;
+      this.deletedBytes = deletedBytes;
+   }
+
+   /**
+    * Id of the last unreferenced chunk found, where the next batch starts
+    */
+   public long getLastChunkId() {
+      return lastChunkId;
+   }
+
+   public int getUnreferencedChunks() {
+      return unreferencedChunks;
+   }
+
+   public int getDeletedChunks() {
+      return deletedChunks;
+   }
+
+   public long getDeletedBytes() {
+      return deletedBytes;
+   }
+}
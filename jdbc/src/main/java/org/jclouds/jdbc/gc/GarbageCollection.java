@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.gc;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Outcome of a full garbage collector run.
+ */
+public final class GarbageCollection {
+
+   private final long reclaimedChunks;
+   private final long reclaimedBytes;
+   private final long durationMillis;
+
+   public GarbageCollection(long reclaimedChunks, long reclaimedBytes, long durationMillis) {
+      this.reclaimedChunks = reclaimedChunks;
+      this.reclaimedBytes = reclaimedBytes;
+      this.durationMillis = durationMillis;
+   }
+
+   public long getReclaimedChunks() {
+      return reclaimedChunks;
+   }
+
+   public long getReclaimedBytes() {
+      return reclaimedBytes;
+   }
+
+   public long getDurationMillis() {
+      return durationMillis;
+   }
+
+   @Override
+   public String toString() {
+      return MoreObjects.toStringHelper(this)
+            .add("reclaimedChunks", reclaimedChunks)
+            .add("reclaimedBytes", reclaimedBytes)
+            .add("durationMillis", durationMillis)
+            .toString();
+   }
+}
@@ -23,6 +23,79 @@ public final class JdbcConstants {
 
     public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
 
+    /**
+     * Largest chunk the chunk table can hold, and so the upper bound of {@link #PROPERTY_JDBC_CHUNK_SIZE}
+     */
+    public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Size in bytes of the chunks blob payloads are split into
+     */
+    public static final String PROPERTY_JDBC_CHUNK_SIZE = "jclouds.jdbc.chunk-size";
+
+    /**
+     * Number of chunks inserted before the persistence context is flushed and their buffers are reused. The h2-jdbc
+     * provider uses it as the JDBC batch size of its persistence unit; other persistence units should set the same
+     * JDBC batch size.
+     */
+    public static final String PROPERTY_JDBC_WRITE_BATCH_SIZE = "jclouds.jdbc.write-batch-size";
+
+    /**
+     * Codec new chunks are written with: none, deflate or lz4. Chunks that would not shrink are stored as is.
+     */
+    public static final String PROPERTY_JDBC_CHUNK_CODEC = "jclouds.jdbc.chunk-codec";
+
+    /**
+     * Number of chunks fetched ahead of the one being read by a blob payload stream
+     */
+    public static final String PROPERTY_JDBC_PREFETCH_CHUNKS = "jclouds.jdbc.prefetch-chunks";
+
+    /**
+     * Number of threads used to prefetch chunks
+     */
+    public static final String PROPERTY_JDBC_PREFETCH_THREADS = "jclouds.jdbc.prefetch-threads";
+
+    /**
+     * Names the executor that prefetches chunks, sized by {@link #PROPERTY_JDBC_PREFETCH_THREADS}. Not a property.
+     */
+    public static final String PREFETCH_EXECUTOR = "jclouds.jdbc.prefetch-executor";
+
+    /**
+     * Whether chunks are checked against their CRC32C when read. Chunks written without a checksum are never checked.
+     */
+    public static final String PROPERTY_JDBC_VERIFY_CHECKSUMS = "jclouds.jdbc.verify-checksums";
+
+    /**
+     * Number of blobs deleted per transaction when clearing or deleting a container or directory
+     */
+    public static final String PROPERTY_JDBC_DELETE_BATCH_SIZE = "jclouds.jdbc.delete-batch-size";
+
+    /**
+     * Maximum number of container name to id mappings cached by the jdbc service. 0 disables the cache.
+     */
+    public static final String PROPERTY_JDBC_CONTAINER_CACHE_SIZE = "jclouds.jdbc.container-cache-size";
+
+    /**
+     * Maximum number of blob metadata entries cached for blobMetadata and blobExists calls. 0 disables the cache.
+     */
+    public static final String PROPERTY_JDBC_BLOB_METADATA_CACHE_SIZE = "jclouds.jdbc.blob-metadata-cache-size";
+
+    /**
+     * Milliseconds after which container ids and blob metadata are dropped from the caches even if they were not
+     * invalidated. 0 keeps them until they are evicted.
+     */
+    public static final String PROPERTY_JDBC_CACHE_EXPIRY = "jclouds.jdbc.cache-expiry";
+
+    /**
+     * Milliseconds between two runs of the orphan chunk garbage collector. 0 disables the scheduled runs.
+     */
+    public static final String PROPERTY_JDBC_GC_PERIOD = "jclouds.jdbc.gc-period";
+
+    /**
+     * Number of unreferenced chunks deleted per transaction by the garbage collector
+     */
+    public static final String PROPERTY_JDBC_GC_BATCH_SIZE = "jclouds.jdbc.gc-batch-size";
+
     private JdbcConstants() {
         throw new AssertionError("Intentionally Unimplemented");
     }
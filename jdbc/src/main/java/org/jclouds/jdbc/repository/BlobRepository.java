@@ -22,8 +22,12 @@ import com.google.inject.Singleton;
 import org.jclouds.jdbc.entity.BlobEntity;
 import org.jclouds.jdbc.entity.BlobEntityPK;
 import org.jclouds.jdbc.entity.ContainerEntity;
+import org.jclouds.jdbc.util.DirectoryPaths;
 
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
 import java.util.List;
 
 @Singleton
@@ -42,13 +46,204 @@ public class BlobRepository extends GenericRepository<BlobEntity, BlobEntityPK>
                 .getResultList();
     }
 
+   /**
+    * Returns the blobs directly inside a directory, looked up on the (container, parentPath) index.
+    */
+   public List<BlobEntity> findBlobsByParentPath(ContainerEntity containerEntity, String parentPath, String marker,
+         int maxResults) {
+      return entityManager.get().createQuery("SELECT b FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity AND b.parentPath = :parentPath AND b.key > :marker "
+            + "ORDER BY b.key", entityClass)
+            .setParameter("containerEntity", containerEntity)
+            .setParameter("parentPath", parentPath)
+            .setParameter("marker", marker == null ? "" : marker)
+            .setMaxResults(maxResults)
+            .getResultList();
+   }
+
+   /**
+    * Returns, in name order, the immediate subdirectories of a directory that hold at least one blob and sort after
+    * the marker, each with a trailing separator. Each subdirectory is cut from the smallest parent path past the
+    * previous one, found with a seek on the (container, parentPath) index, so the cost depends on the number of
+    * subdirectories returned and not on the number of blobs below the directory.
+    */
+   public List<String> findChildDirectories(ContainerEntity containerEntity, String parentPath, String marker,
+         int maxResults) {
+      List<String> children = new ArrayList<String>();
+      // The parent paths after the directory's own all belong to its subdirectories
+      String from = marker != null && marker.compareTo(parentPath) > 0 ? marker : parentPath;
+      boolean inclusive = false;
+      while (from != null && children.size() < maxResults) {
+         String next = setRange(entityManager.get().createQuery("SELECT MIN(b.parentPath) "
+               + "FROM " + entityClass.getName() + " b "
+               + "WHERE b.containerEntity = :containerEntity AND b.parentPath " + (inclusive ? ">=" : ">") + " :from"
+               + range("b.parentPath", parentPath), String.class), parentPath)
+               .setParameter("containerEntity", containerEntity)
+               .setParameter("from", from)
+               .setFlushMode(FlushModeType.COMMIT)
+               .getSingleResult();
+         if (next == null) {
+            break;
+         }
+         String child = next.substring(0, next.indexOf(DirectoryPaths.SEPARATOR, parentPath.length()) + 1);
+         // The first parent path after the marker may still be below the subdirectory the marker names
+         if (marker == null || child.compareTo(marker) > 0) {
+            children.add(child);
+         }
+         from = DirectoryPaths.upperBound(child);
+         inclusive = true;
+      }
+      return children;
+   }
+
    public List<BlobEntity> findBlobsByDirectory(ContainerEntity containerEntity, String directory) {
+      String prefix = DirectoryPaths.directoryPrefix(directory);
+      return setRange(entityManager.get().createQuery("SELECT b FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity" + directoryRange(prefix), entityClass), prefix)
+            .setParameter("containerEntity", containerEntity)
+            .getResultList();
+   }
+
+   public List<BlobEntity> findBlobsByContainer(ContainerEntity containerEntity, int maxResults) {
+      return entityManager.get().createQuery("SELECT b FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity", entityClass)
+            .setParameter("containerEntity", containerEntity)
+            .setMaxResults(maxResults)
+            .getResultList();
+   }
+
+   public List<BlobEntity> findBlobsByDirectory(ContainerEntity containerEntity, String directory,
+         boolean includeDirectories, int maxResults) {
+      String prefix = DirectoryPaths.directoryPrefix(directory);
+      return setRange(entityManager.get().createQuery("SELECT b FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity" + directoryRange(prefix)
+            + (includeDirectories ? "" : " AND b.directory = false"), entityClass), prefix)
+            .setParameter("containerEntity", containerEntity)
+            .setMaxResults(maxResults)
+            .getResultList();
+   }
+
+   /**
+    * Returns, in key order, the blobs whose key starts with the prefix and sorts after the marker. Both bounds are
+    * resolved on the (container, key) primary key index, so the cost of a page does not depend on the container size.
+    */
+   public List<BlobEntity> findBlobsByPrefix(ContainerEntity containerEntity, String prefix, String marker,
+         int maxResults) {
+      return setRange(entityManager.get().createQuery("SELECT b FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity AND b.key > :marker" + range("b.key", prefix)
+            + " ORDER BY b.key", entityClass), prefix)
+            .setParameter("containerEntity", containerEntity)
+            .setParameter("marker", marker == null ? "" : marker)
+            .setMaxResults(maxResults)
+            .getResultList();
+   }
+
+   /**
+    * Returns the blobs with the given keys, in key order.
+    */
+   public List<BlobEntity> findBlobsByKeys(ContainerEntity containerEntity, List<String> keys) {
+      return entityManager.get().createQuery("SELECT b FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity AND b.key IN :keys ORDER BY b.key", entityClass)
+            .setParameter("containerEntity", containerEntity)
+            .setParameter("keys", keys)
+            .getResultList();
+   }
+
+   /**
+    * Returns blobs written before the parent path column existed.
+    */
+   public List<BlobEntity> findBlobsWithoutParentPath(int maxResults) {
       return entityManager.get().createQuery("SELECT b FROM " + entityClass.getName() + " b "
-            + "WHERE b.containerEntity = :containerEntity AND b.key != :directoryName AND b.key LIKE :directoryLike ", entityClass)
+            + "WHERE b.parentPath IS NULL", entityClass)
+            .setMaxResults(maxResults)
+            .getResultList();
+   }
+
+   /*
+    * The projection queries below never load entities and run with FlushModeType.COMMIT, so reading does not flush
+    * the persistence context either.
+    */
+
+   public long countBlobsByContainer(ContainerEntity containerEntity) {
+      return entityManager.get().createQuery("SELECT COUNT(b) FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity", Long.class)
+            .setParameter("containerEntity", containerEntity)
+            .setFlushMode(FlushModeType.COMMIT)
+            .getSingleResult();
+   }
+
+   public long countBlobsByDirectory(ContainerEntity containerEntity, String directory) {
+      String prefix = DirectoryPaths.directoryPrefix(directory);
+      return setRange(entityManager.get().createQuery("SELECT COUNT(b) FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity" + directoryRange(prefix), Long.class), prefix)
+            .setParameter("containerEntity", containerEntity)
+            .setFlushMode(FlushModeType.COMMIT)
+            .getSingleResult();
+   }
+
+   public List<String> findBlobKeysByContainer(ContainerEntity containerEntity) {
+      return entityManager.get().createQuery("SELECT b.key FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity ORDER BY b.key", String.class)
             .setParameter("containerEntity", containerEntity)
-            .setParameter("directoryName", directory)
-            .setParameter("directoryLike", directory + "%")
+            .setFlushMode(FlushModeType.COMMIT)
             .getResultList();
    }
 
+   /**
+    * Returns, in key order, the keys starting with the prefix that sort after the marker, read from the (container,
+    * key) primary key index without loading the blobs.
+    */
+   public List<String> findBlobKeysByPrefix(ContainerEntity containerEntity, String prefix, String marker,
+         int maxResults) {
+      return setRange(entityManager.get().createQuery("SELECT b.key FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity AND b.key > :marker" + range("b.key", prefix)
+            + " ORDER BY b.key", String.class), prefix)
+            .setParameter("containerEntity", containerEntity)
+            .setParameter("marker", marker == null ? "" : marker)
+            .setMaxResults(maxResults)
+            .setFlushMode(FlushModeType.COMMIT)
+            .getResultList();
+   }
+
+   public boolean directoryExists(ContainerEntity containerEntity, String directory) {
+      return entityManager.get().createQuery("SELECT COUNT(b) FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity AND b.key = :key AND b.payload.contentType = :contentType",
+            Long.class)
+            .setParameter("containerEntity", containerEntity)
+            .setParameter("key", directory)
+            .setParameter("contentType", "application/directory")
+            .setFlushMode(FlushModeType.COMMIT)
+            .getSingleResult() > 0;
+   }
+
+   /**
+    * Restricts a column to the values starting with the prefix, as {@code >= :prefix AND < :prefixUpperBound} so the
+    * database can use an index range scan. Parameters are bound by {@link #setRange}.
+    */
+   private static String range(String column, String prefix) {
+      if (prefix.isEmpty()) {
+         return "";
+      }
+      return " AND " + column + " >= :prefix"
+            + (DirectoryPaths.upperBound(prefix) == null ? "" : " AND " + column + " < :prefixUpperBound");
+   }
+
+   /**
+    * The keys below a directory, excluding a blob named after the directory prefix itself.
+    */
+   private static String directoryRange(String prefix) {
+      return prefix.isEmpty() ? "" : range("b.key", prefix) + " AND b.key != :prefix";
+   }
+
+   private static <T> TypedQuery<T> setRange(TypedQuery<T> query, String prefix) {
+      if (!prefix.isEmpty()) {
+         query.setParameter("prefix", prefix);
+         String upperBound = DirectoryPaths.upperBound(prefix);
+         if (upperBound != null) {
+            query.setParameter("prefixUpperBound", upperBound);
+         }
+      }
+      return query;
+   }
+
 }
@@ -20,8 +20,13 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import org.jclouds.jdbc.entity.ChunkEntity;
+import org.jclouds.jdbc.entity.MultipartPartEntity;
+import org.jclouds.jdbc.entity.PayloadEntity;
 
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import java.util.Collection;
+import java.util.List;
 
 @Singleton
 public class ChunkRepository extends GenericRepository<ChunkEntity, Long> {
@@ -31,4 +36,80 @@ public class ChunkRepository extends GenericRepository<ChunkEntity, Long> {
       super(entityManager);
    }
 
+   /**
+    * Looks up a chunk by the hash of its content. Chunks pending in the persistence context are not flushed first,
+    * so callers must track the chunks they have not flushed yet.
+    *
+    * @return the id of a chunk with the given hash, or null if there is none
+    */
+   public Long findChunkIdByHash(String hash) {
+      List<Long> ids = entityManager.get().createQuery("SELECT c.id FROM " + entityClass.getName() + " c "
+            + "WHERE c.hash = :hash", Long.class)
+            .setParameter("hash", hash)
+            .setFlushMode(FlushModeType.COMMIT)
+            .setMaxResults(1)
+            .getResultList();
+      return ids.isEmpty() ? null : ids.get(0);
+   }
+
+   /**
+    * Adds to the reference count of a chunk, or subtracts from it if delta is negative.
+    *
+    * @return the number of updated chunks, 0 if the chunk no longer exists
+    */
+   public int addReferences(Long id, int delta) {
+      return entityManager.get().createQuery("UPDATE " + entityClass.getName() + " c "
+            + "SET c.referenceCount = c.referenceCount + :delta WHERE c.id = :id")
+            .setParameter("delta", delta)
+            .setParameter("id", id)
+            .setFlushMode(FlushModeType.COMMIT)
+            .executeUpdate();
+   }
+
+   /**
+    * Subtracts count from the reference count of every given chunk.
+    */
+   public int releaseReferences(Collection<Long> ids, int count) {
+      return entityManager.get().createQuery("UPDATE " + entityClass.getName() + " c "
+            + "SET c.referenceCount = c.referenceCount - :count WHERE c.id IN :ids")
+            .setParameter("count", count)
+            .setParameter("ids", ids)
+            .executeUpdate();
+   }
+
+   public int deleteUnreferencedChunks(Collection<Long> ids) {
+      return entityManager.get().createQuery("DELETE FROM " + entityClass.getName() + " c "
+            + "WHERE c.id IN :ids AND c.referenceCount <= 0")
+            .setParameter("ids", ids)
+            .executeUpdate();
+   }
+
+   /**
+    * Finds the chunks, after the given id and in id order, that neither a payload nor a staged multipart part
+    * references. Each row holds the chunk id, size and reference count.
+    */
+   public List<Object[]> findUnreferencedChunks(long afterId, int maxResults) {
+      return entityManager.get().createQuery("SELECT c.id, c.size, c.referenceCount "
+            + "FROM " + entityClass.getName() + " c WHERE c.id > :afterId AND NOT EXISTS ("
+            + "SELECT r.chunkId FROM " + PayloadEntity.class.getName() + " p JOIN p.chunks r WHERE r.chunkId = c.id) "
+            + "AND NOT EXISTS (SELECT s.chunkId FROM " + MultipartPartEntity.class.getName() + " m "
+            + "JOIN m.chunks s WHERE s.chunkId = c.id) ORDER BY c.id", Object[].class)
+            .setParameter("afterId", afterId)
+            .setFlushMode(FlushModeType.COMMIT)
+            .setMaxResults(maxResults)
+            .getResultList();
+   }
+
+   /**
+    * Deletes the given chunks if their reference count is still the given one. A chunk whose count changed since it
+    * was read has been reused by an upload and is kept.
+    */
+   public int deleteChunks(Collection<Long> ids, int referenceCount) {
+      return entityManager.get().createQuery("DELETE FROM " + entityClass.getName() + " c "
+            + "WHERE c.id IN :ids AND c.referenceCount = :referenceCount")
+            .setParameter("ids", ids)
+            .setParameter("referenceCount", referenceCount)
+            .executeUpdate();
+   }
+
 }
@@ -52,4 +52,12 @@ public abstract class GenericRepository<T, PK extends Serializable> {
       entityManager.get().remove(entity);
    }
 
+   public void flush() {
+      entityManager.get().flush();
+   }
+
+   public void detach(T entity) {
+      entityManager.get().detach(entity);
+   }
+
 }
@@ -16,54 +16,95 @@
  */
 package org.jclouds.jdbc.service;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
 import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
-import com.google.common.hash.HashingInputStream;
 import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
 import org.jclouds.blobstore.domain.Blob;
 import org.jclouds.blobstore.domain.BlobAccess;
+import org.jclouds.blobstore.domain.BlobMetadata;
 import org.jclouds.blobstore.domain.ContainerAccess;
+import org.jclouds.jdbc.codec.ChunkCodec;
 import org.jclouds.jdbc.conversion.BlobToBlobEntity;
 import org.jclouds.jdbc.entity.BlobEntity;
 import org.jclouds.jdbc.entity.BlobEntityPK;
 import org.jclouds.jdbc.entity.ChunkEntity;
+import org.jclouds.jdbc.entity.ChunkReference;
 import org.jclouds.jdbc.entity.ContainerEntity;
+import org.jclouds.jdbc.entity.MultipartPartEntity;
+import org.jclouds.jdbc.entity.MultipartUploadEntity;
 import org.jclouds.jdbc.entity.PayloadEntity;
+import org.jclouds.jdbc.gc.ChunkSweep;
 import org.jclouds.jdbc.reference.JdbcConstants;
 import org.jclouds.jdbc.repository.BlobRepository;
 import org.jclouds.jdbc.repository.ChunkRepository;
 import org.jclouds.jdbc.repository.ContainerRepository;
+import org.jclouds.jdbc.repository.MultipartPartRepository;
+import org.jclouds.jdbc.repository.MultipartUploadRepository;
+import org.jclouds.jdbc.util.ChunkBufferPool;
+import org.jclouds.jdbc.util.DirectoryPaths;
 import org.jclouds.util.Closeables2;
 
+import javax.inject.Named;
+import javax.persistence.PersistenceException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.io.BaseEncoding.base16;
 
 @Singleton
 public class JdbcService {
 
    private static final String DIRECTORY_MD5 = Hashing.md5().hashBytes(new byte[0]).toString();
+   private static final int MAX_CHUNK_IDS_PER_STATEMENT = 500;
+   private static final int MAX_PART_REPLACE_ATTEMPTS = 10;
 
    private final ContainerRepository containerRepository;
    private final BlobRepository blobRepository;
    private final ChunkRepository chunkRepository;
+   private final MultipartUploadRepository multipartUploadRepository;
+   private final MultipartPartRepository multipartPartRepository;
    private final BlobToBlobEntity blobToBlobEntity;
+   private final ChunkBufferPool bufferPool;
+   private final int writeBatchSize;
+   private final JdbcServiceCache cache;
+   private final ChunkCodec codec;
 
    @Inject
    JdbcService(ContainerRepository containerRepository, BlobRepository blobRepository, ChunkRepository chunkRepository,
-         BlobToBlobEntity blobToBlobEntity) {
+         MultipartUploadRepository multipartUploadRepository, MultipartPartRepository multipartPartRepository,
+         BlobToBlobEntity blobToBlobEntity, ChunkBufferPool bufferPool,
+         @Named(JdbcConstants.PROPERTY_JDBC_WRITE_BATCH_SIZE) int writeBatchSize, JdbcServiceCache cache,
+         @Named(JdbcConstants.PROPERTY_JDBC_CHUNK_CODEC) String codec) {
       this.containerRepository = containerRepository;
       this.blobRepository = blobRepository;
       this.chunkRepository = chunkRepository;
+      this.multipartUploadRepository = multipartUploadRepository;
+      this.multipartPartRepository = multipartPartRepository;
       this.blobToBlobEntity = blobToBlobEntity;
+      this.bufferPool = bufferPool;
+      this.writeBatchSize = writeBatchSize;
+      this.cache = cache;
+      this.codec = ChunkCodec.fromValue(codec);
    }
 
    @Transactional
@@ -88,6 +129,13 @@ public class JdbcService {
 
    @Transactional
    public void deleteContainerByName(String containerName) {
+      Long containerId = findContainerId(containerName);
+      if (containerId != null) {
+         for (MultipartUploadEntity upload : multipartUploadRepository.findUploadsByContainerId(containerId)) {
+            deleteMultipartUpload(upload.getId());
+         }
+      }
+      cache.invalidateContainer(containerName);
       containerRepository.deleteContainerByName(containerName);
    }
 
@@ -105,41 +153,237 @@ public class JdbcService {
 
    @Transactional(rollbackOn = IOException.class)
    public BlobEntity createOrModifyBlob(String containerName, Blob blob, BlobAccess blobAccess) throws IOException {
-      List<Long> chunks;
-      HashingInputStream his = new HashingInputStream(Hashing.md5(), blob.getPayload().openStream());
+      List<ChunkReference> chunks;
+      Hasher md5 = Hashing.md5().newHasher();
+      InputStream data = blob.getPayload().openStream();
       try {
-         chunks = storeData(his);
+         chunks = storeData(data, md5);
       } finally {
-         Closeables2.closeQuietly(his);
+         Closeables2.closeQuietly(data);
       }
-      HashCode actualHashCode = his.hash();
+      HashCode actualHashCode = md5.hash();
       HashCode expectedHashCode = blob.getPayload().getContentMetadata().getContentMD5AsHashCode();
       if (expectedHashCode != null && !actualHashCode.equals(expectedHashCode)) {
          throw new IOException("MD5 hash code mismatch, actual: " + actualHashCode +
                " expected: " + expectedHashCode);
       }
 
-      String key = blob.getMetadata().getName();
+      BlobEntity blobEntity = blobToBlobEntity.apply(blob);
+      blobEntity.getPayload().setChunks(chunks);
+      blobEntity.setTier(blob.getMetadata().getTier());
+      blobEntity.setEtag(base16().lowerCase().encode(actualHashCode.asBytes()));
+      blobEntity.getPayload().setContentMD5(actualHashCode.asBytes());
+      return replaceBlob(containerName, blob.getMetadata().getName(), blobEntity, blobAccess);
+   }
+
+   /**
+    * Stores a blob whose chunks are already stored in place of the existing blob with the same key, if any, whose
+    * chunks are released.
+    */
+   private BlobEntity replaceBlob(String containerName, String key, BlobEntity blobEntity, BlobAccess blobAccess) {
       Date creationDate = null;
       BlobEntity oldBlobEntity = findBlobById(containerName, key);
       if (oldBlobEntity != null) {
          creationDate = oldBlobEntity.getCreationDate();
+         deleteChunks(oldBlobEntity.getPayload().getChunks());
       }
-      BlobEntity blobEntity = blobToBlobEntity.apply(blob);
-      blobEntity.getPayload().setChunks(chunks);
       blobEntity.setContainerEntity(containerRepository.findContainerByName(containerName));
       blobEntity.setKey(key);
       blobEntity.setBlobAccess(blobAccess);
-      blobEntity.setTier(blob.getMetadata().getTier());
       blobEntity.setCreationDate(creationDate);
       blobEntity.setLastModified(new Date());
-      blobEntity.setEtag(base16().lowerCase().encode(actualHashCode.asBytes()));
-      blobEntity.getPayload().setContentMD5(actualHashCode.asBytes());
 
       BlobEntity result = blobRepository.save(blobEntity);
+      cache.invalidateBlob(new BlobEntityPK(result.getContainerEntity().getId(), key));
       return result;
    }
 
+   /**
+    * Starts a multipart upload to the given key.
+    *
+    * @return the upload id, or null if the container does not exist
+    */
+   @Transactional
+   public String createMultipartUpload(String containerName, String key) {
+      Long containerId = findContainerId(containerName);
+      if (containerId == null) {
+         return null;
+      }
+      MultipartUploadEntity upload = new MultipartUploadEntity(UUID.randomUUID().toString(), containerId, key,
+            new Date());
+      return multipartUploadRepository.create(upload).getId();
+   }
+
+   /**
+    * Stores a part of a multipart upload, replacing the part with the same number if there is one. Parts of the same
+    * upload can be stored concurrently.
+    * <p>
+    * The data is stored in its own transaction, and the part replaced in another one. An upload has at most one part
+    * with a given number, so when concurrent uploads of the same part insert it at the same time all but one fail;
+    * the replacement is then retried, up to {@value #MAX_PART_REPLACE_ATTEMPTS} times, and the last upload wins.
+    *
+    * @return the stored part, or null if the upload does not exist
+    */
+   public MultipartPartEntity createOrModifyMultipartPart(String uploadId, int partNumber, InputStream data)
+         throws IOException {
+      MultipartPartEntity part = storeMultipartPartData(uploadId, partNumber, data);
+      if (part == null) {
+         return null;
+      }
+      for (int attempt = 1; ; attempt++) {
+         try {
+            return replaceMultipartPart(part);
+         } catch (PersistenceException e) {
+            if (attempt >= MAX_PART_REPLACE_ATTEMPTS) {
+               releaseChunks(part.getChunks());
+               throw e;
+            }
+         }
+      }
+   }
+
+   /**
+    * Stores the data of a part.
+    *
+    * @return the part to store, not persisted yet, or null if the upload does not exist
+    */
+   @Transactional(rollbackOn = IOException.class)
+   protected MultipartPartEntity storeMultipartPartData(String uploadId, int partNumber, InputStream data)
+         throws IOException {
+      if (multipartUploadRepository.find(uploadId) == null) {
+         return null;
+      }
+      List<ChunkReference> chunks;
+      Hasher md5 = Hashing.md5().newHasher();
+      try {
+         chunks = storeData(data, md5);
+      } finally {
+         Closeables2.closeQuietly(data);
+      }
+      long size = 0;
+      for (ChunkReference chunk : chunks) {
+         size += chunk.getSize();
+      }
+      return new MultipartPartEntity(uploadId, partNumber, size, base16().lowerCase().encode(md5.hash().asBytes()),
+            new Date(), chunks);
+   }
+
+   /**
+    * Replaces the part with the same upload and number by a copy of the given one. The chunks of the given part are
+    * released if the upload was deleted meanwhile.
+    *
+    * @return the stored part, or null if the upload does not exist
+    */
+   @Transactional
+   protected MultipartPartEntity replaceMultipartPart(MultipartPartEntity part) {
+      if (multipartUploadRepository.find(part.getUploadId()) == null) {
+         deleteChunks(part.getChunks());
+         return null;
+      }
+      MultipartPartEntity oldPart = multipartPartRepository.findPartForUpdate(part.getUploadId(),
+            part.getPartNumber());
+      if (oldPart != null) {
+         deleteChunks(oldPart.getChunks());
+         multipartPartRepository.delete(oldPart);
+         // providers may insert before they delete, which the unique constraint does not allow
+         multipartPartRepository.flush();
+      }
+      // a failed attempt may have left an id on the entity it persisted, so each attempt persists its own
+      MultipartPartEntity newPart = multipartPartRepository.create(new MultipartPartEntity(part.getUploadId(),
+            part.getPartNumber(), part.getSize(), part.getEtag(), part.getLastModified(), part.getChunks()));
+      multipartPartRepository.flush();
+      return newPart;
+   }
+
+   /**
+    * Releases the chunks of a part that could not be stored.
+    */
+   @Transactional
+   protected void releaseChunks(List<ChunkReference> chunks) {
+      deleteChunks(chunks);
+   }
+
+   @Transactional
+   public List<MultipartUploadEntity> findMultipartUploads(String containerName) {
+      Long containerId = findContainerId(containerName);
+      if (containerId == null) {
+         return ImmutableList.of();
+      }
+      return multipartUploadRepository.findUploadsByContainerId(containerId);
+   }
+
+   @Transactional
+   public List<MultipartPartEntity> findMultipartParts(String uploadId) {
+      return multipartPartRepository.findPartsByUploadId(uploadId);
+   }
+
+   /**
+    * Completes a multipart upload: the chunk lists of the given parts are concatenated, in the given order, into the
+    * payload of the blob, without copying any chunk. Parts that are not listed are dropped. The etag is the MD5 of
+    * the part MD5s followed by the number of parts, as S3 computes it.
+    *
+    * @return the stored blob, or null if the upload does not exist
+    */
+   @Transactional
+   public BlobEntity completeMultipartUpload(String containerName, String uploadId, BlobMetadata metadata,
+         List<Integer> partNumbers, BlobAccess blobAccess) {
+      MultipartUploadEntity upload = multipartUploadRepository.find(uploadId);
+      if (upload == null) {
+         return null;
+      }
+      Map<Integer, MultipartPartEntity> parts = new LinkedHashMap<Integer, MultipartPartEntity>();
+      for (MultipartPartEntity part : multipartPartRepository.findPartsByUploadId(uploadId)) {
+         parts.put(part.getPartNumber(), part);
+      }
+      ImmutableList.Builder<ChunkReference> chunks = ImmutableList.builder();
+      Hasher etag = Hashing.md5().newHasher();
+      long size = 0;
+      for (Integer partNumber : partNumbers) {
+         MultipartPartEntity part = parts.remove(partNumber);
+         checkArgument(part != null, "part %s is not part of upload %s or is listed twice", partNumber, uploadId);
+         chunks.addAll(part.getChunks());
+         etag.putBytes(base16().lowerCase().decode(part.getEtag()));
+         size += part.getSize();
+         multipartPartRepository.delete(part);
+      }
+      List<ChunkReference> droppedChunks = new ArrayList<ChunkReference>();
+      for (MultipartPartEntity part : parts.values()) {
+         droppedChunks.addAll(part.getChunks());
+         multipartPartRepository.delete(part);
+      }
+      multipartUploadRepository.delete(upload);
+      multipartPartRepository.flush();
+      deleteChunks(droppedChunks);
+
+      BlobEntity blobEntity = blobToBlobEntity.fromMetadata(metadata);
+      blobEntity.getPayload().setChunks(chunks.build());
+      blobEntity.getPayload().setContentLength(size);
+      blobEntity.getPayload().setContentMD5(null);
+      blobEntity.setSize(size);
+      blobEntity.setTier(metadata.getTier());
+      blobEntity.setEtag(etag.hash() + "-" + partNumbers.size());
+      return replaceBlob(containerName, upload.getKey(), blobEntity, blobAccess);
+   }
+
+   /**
+    * Deletes a multipart upload and its parts, releasing their chunks.
+    */
+   @Transactional
+   public void deleteMultipartUpload(String uploadId) {
+      MultipartUploadEntity upload = multipartUploadRepository.find(uploadId);
+      if (upload == null) {
+         return;
+      }
+      List<ChunkReference> chunks = new ArrayList<ChunkReference>();
+      for (MultipartPartEntity part : multipartPartRepository.findPartsByUploadId(uploadId)) {
+         chunks.addAll(part.getChunks());
+         multipartPartRepository.delete(part);
+      }
+      multipartUploadRepository.delete(upload);
+      multipartPartRepository.flush();
+      deleteChunks(chunks);
+   }
+
    @Transactional
    public BlobEntity createDirectoryBlob(String containerName, Blob blob, BlobAccess blobAccess) {
       BlobEntity blobEntity = BlobEntity.builder(null, null)
@@ -151,7 +395,9 @@ public class JdbcService {
       blobEntity.setKey(blob.getMetadata().getName());
       blobEntity.setBlobAccess(blobAccess);
       blobEntity.setEtag(DIRECTORY_MD5);
-      return blobRepository.save(blobEntity);
+      BlobEntity result = blobRepository.save(blobEntity);
+      cache.invalidateBlob(new BlobEntityPK(result.getContainerEntity().getId(), result.getKey()));
+      return result;
    }
 
    @Transactional
@@ -166,8 +412,26 @@ public class JdbcService {
 
    @Transactional
    public BlobEntity findBlobById(String containerName, String key) {
-      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
-      return containerEntity == null ? null : blobRepository.find(new BlobEntityPK(containerEntity.getId(), key));
+      Long containerId = findContainerId(containerName);
+      return containerId == null ? null : blobRepository.find(new BlobEntityPK(containerId, key));
+   }
+
+   /**
+    * Resolves a container name to its id, through the cache when possible.
+    */
+   @Transactional
+   public Long findContainerId(String containerName) {
+      Long containerId = cache.getContainerId(containerName);
+      if (containerId == null) {
+         long stamp = cache.stamp();
+         ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+         if (containerEntity == null) {
+            return null;
+         }
+         containerId = containerEntity.getId();
+         cache.putContainerId(containerName, containerId, stamp);
+      }
+      return containerId;
    }
 
    @Transactional
@@ -182,53 +446,145 @@ public class JdbcService {
 
    @Transactional
    public List<BlobEntity> findBlobsByDirectory(String containerName, String directoryName, boolean recursive) {
-      ImmutableList.Builder<BlobEntity> result = ImmutableList.builder();
-      List<BlobEntity> blobEntities = blobRepository
-            .findBlobsByDirectory(containerRepository.findContainerByName(containerName), directoryName);
-      result.addAll(blobEntities);
-      if (recursive) {
-         for (BlobEntity blobEntity : blobEntities) {
-            if (blobEntity.isDirectory()) {
-               result.addAll(findBlobsByDirectory(containerName, blobEntity.getKey(), true));
-            }
-         }
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      if (containerEntity == null) {
+         return ImmutableList.of();
       }
-      return result.build();
+      return recursive ? blobRepository.findBlobsByDirectory(containerEntity, directoryName)
+            : blobRepository.findBlobsByParentPath(containerEntity, DirectoryPaths.directoryPrefix(directoryName),
+                  null, Integer.MAX_VALUE);
+   }
+
+   @Transactional
+   public List<BlobEntity> findBlobsByParentPath(String containerName, String parentPath, String marker,
+         int maxResults) {
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      return containerEntity == null ? ImmutableList.<BlobEntity> of()
+            : blobRepository.findBlobsByParentPath(containerEntity, parentPath, marker, maxResults);
+   }
+
+   @Transactional
+   public List<String> findChildDirectories(String containerName, String parentPath, String marker,
+         int maxResults) {
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      return containerEntity == null ? ImmutableList.<String> of()
+            : blobRepository.findChildDirectories(containerEntity, parentPath, marker, maxResults);
    }
 
+   /**
+    * Fills the parent path and depth of at most {@code maxBlobs} blobs stored before those columns existed.
+    *
+    * @return the number of migrated blobs
+    */
    @Transactional
-   public void deleteBlobsByContainer(String containerName) {
-      List<BlobEntity> blobs = findBlobsByContainer(containerName);
+   public int migrateParentPaths(int maxBlobs) {
+      List<BlobEntity> blobs = blobRepository.findBlobsWithoutParentPath(maxBlobs);
       for (BlobEntity blob : blobs) {
-         deleteBlob(containerName, blob.getKey());
+         blob.updateParentPath();
       }
+      return blobs.size();
    }
 
    @Transactional
-   public void deleteBlobsByDirectory(String containerName, String directoryName, boolean recursive) {
-      List<BlobEntity> blobs = findBlobsByDirectory(containerName, directoryName, false);
-      for (BlobEntity blob : blobs) {
-         if (!blob.isDirectory()) {
-            deleteBlob(containerName, blob.getKey());
-         }
-         else {
-            if (recursive) {
-               deleteBlobsByDirectory(containerName, blob.getKey(), true);
-               deleteBlob(containerName, blob.getKey());
-            }
-         }
+   public List<BlobEntity> findBlobsByPrefix(String containerName, String prefix, String marker, int maxResults) {
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      return containerEntity == null ? ImmutableList.<BlobEntity> of()
+            : blobRepository.findBlobsByPrefix(containerEntity, prefix, marker, maxResults);
+   }
+
+   @Transactional
+   public List<String> findBlobKeysByPrefix(String containerName, String prefix, String marker, int maxResults) {
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      return containerEntity == null ? ImmutableList.<String> of()
+            : blobRepository.findBlobKeysByPrefix(containerEntity, prefix, marker, maxResults);
+   }
+
+   @Transactional
+   public List<BlobEntity> findBlobsByKeys(String containerName, List<String> keys) {
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      return containerEntity == null || keys.isEmpty() ? ImmutableList.<BlobEntity> of()
+            : blobRepository.findBlobsByKeys(containerEntity, keys);
+   }
+
+   @Transactional
+   public long countBlobsByContainer(String containerName) {
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      return containerEntity == null ? 0 : blobRepository.countBlobsByContainer(containerEntity);
+   }
+
+   @Transactional
+   public long countBlobsByDirectory(String containerName, String directoryName) {
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      return containerEntity == null ? 0 : blobRepository.countBlobsByDirectory(containerEntity, directoryName);
+   }
+
+   @Transactional
+   public List<String> findBlobKeysByContainer(String containerName) {
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      return containerEntity == null ? ImmutableList.<String> of()
+            : blobRepository.findBlobKeysByContainer(containerEntity);
+   }
+
+   @Transactional
+   public boolean directoryExists(String containerName, String directoryName) {
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      return containerEntity != null && blobRepository.directoryExists(containerEntity, directoryName);
+   }
+
+   /**
+    * Deletes at most {@code maxBlobs} blobs of a container together with their chunks. Callers clear a container by
+    * calling this repeatedly, each call in its own transaction, until fewer than {@code maxBlobs} blobs are deleted.
+    *
+    * @return the number of deleted blobs
+    */
+   @Transactional
+   public int deleteBlobsByContainer(String containerName, int maxBlobs) {
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      if (containerEntity == null) {
+         return 0;
       }
+      return deleteBlobs(blobRepository.findBlobsByContainer(containerEntity, maxBlobs));
+   }
+
+   /**
+    * Deletes at most {@code maxBlobs} blobs under a directory, in the same way as
+    * {@link #deleteBlobsByContainer(String, int)}. Unless recursive, directory blobs are kept.
+    *
+    * @return the number of deleted blobs
+    */
+   @Transactional
+   public int deleteBlobsByDirectory(String containerName, String directoryName, boolean recursive, int maxBlobs) {
+      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+      if (containerEntity == null) {
+         return 0;
+      }
+      return deleteBlobs(blobRepository.findBlobsByDirectory(containerEntity, directoryName, recursive, maxBlobs));
    }
 
    @Transactional
    public void deleteBlob(String containerName, String key) {
       BlobEntity blobEntity = findBlobById(containerName, key);
       if (blobEntity != null) {
+         cache.invalidateBlob(new BlobEntityPK(blobEntity.getContainerEntity().getId(), key));
          deleteChunks(blobEntity.getPayload().getChunks());
          blobRepository.delete(blobEntity);
       }
    }
 
+   private int deleteBlobs(List<BlobEntity> blobs) {
+      List<ChunkReference> chunks = new ArrayList<ChunkReference>();
+      for (BlobEntity blob : blobs) {
+         if (blob.getPayload() != null && blob.getPayload().getChunks() != null) {
+            chunks.addAll(blob.getPayload().getChunks());
+         }
+         cache.invalidateBlob(new BlobEntityPK(blob.getContainerEntity().getId(), blob.getKey()));
+         blobRepository.delete(blob);
+      }
+      blobRepository.flush();
+      deleteChunks(chunks);
+      return blobs.size();
+   }
+
    @Transactional
    public void setBlobAccessById(String containerName, String key, BlobAccess access) {
       BlobEntity blobEntity = findBlobById(containerName, key);
@@ -236,26 +592,153 @@ public class JdbcService {
       blobRepository.save(blobEntity);
    }
 
+   /**
+    * Releases one reference per entry in the chunk list and deletes the chunks no payload references anymore. Chunks
+    * are updated with one statement per distinct reference multiplicity, in groups of at most
+    * {@value #MAX_CHUNK_IDS_PER_STATEMENT} ids.
+    */
+   @Transactional
+   private void deleteChunks(List<ChunkReference> chunks) {
+      if (chunks == null || chunks.isEmpty()) {
+         return;
+      }
+      Multiset<Long> references = HashMultiset.create();
+      for (ChunkReference chunk : chunks) {
+         references.add(chunk.getChunkId());
+      }
+      Multimap<Integer, Long> idsByCount = ArrayListMultimap.create();
+      for (Multiset.Entry<Long> entry : references.entrySet()) {
+         idsByCount.put(entry.getCount(), entry.getElement());
+      }
+      for (Map.Entry<Integer, Collection<Long>> entry : idsByCount.asMap().entrySet()) {
+         for (List<Long> ids : Iterables.partition(entry.getValue(), MAX_CHUNK_IDS_PER_STATEMENT)) {
+            chunkRepository.releaseReferences(ids, entry.getKey());
+         }
+      }
+      for (List<Long> ids : Iterables.partition(references.elementSet(), MAX_CHUNK_IDS_PER_STATEMENT)) {
+         chunkRepository.deleteUnreferencedChunks(ids);
+      }
+   }
+
+   /**
+    * Deletes up to maxChunks chunks that no payload references, looking only at chunks with an id greater than
+    * afterId. A chunk is only deleted if its reference count is still the one read with it, so a chunk an upload
+    * picked for deduplication in the meantime survives.
+    */
    @Transactional
-   private void deleteChunks(List<Long> chunkIds) {
-      for (Long chunkId : chunkIds) {
-         chunkRepository.delete(chunkRepository.find(chunkId));
+   public ChunkSweep sweepUnreferencedChunks(long afterId, int maxChunks) {
+      List<Object[]> unreferenced = chunkRepository.findUnreferencedChunks(afterId, maxChunks);
+      long lastChunkId = afterId;
+      Map<Long, Integer> sizes = new HashMap<Long, Integer>();
+      Multimap<Integer, Long> idsByCount = ArrayListMultimap.create();
+      for (Object[] chunk : unreferenced) {
+         Long id = ((Number) chunk[0]).longValue();
+         sizes.put(id, ((Number) chunk[1]).intValue());
+         idsByCount.put(((Number) chunk[2]).intValue(), id);
+         lastChunkId = id;
       }
+      int deletedChunks = 0;
+      long deletedBytes = 0;
+      for (Map.Entry<Integer, Collection<Long>> entry : idsByCount.asMap().entrySet()) {
+         for (List<Long> ids : Iterables.partition(entry.getValue(), MAX_CHUNK_IDS_PER_STATEMENT)) {
+            int deleted = chunkRepository.deleteChunks(ids, entry.getKey());
+            deletedChunks += deleted;
+            // when some chunks of the group were kept there is no telling which, so their bytes are not counted
+            if (deleted == ids.size()) {
+               for (Long id : ids) {
+                  deletedBytes += sizes.get(id);
+               }
+            }
+         }
+      }
+      return new ChunkSweep(lastChunkId, unreferenced.size(), deletedChunks, deletedBytes);
    }
 
+   /**
+    * Splits the data into chunks read into pooled buffers, feeding every buffer to the given payload hasher on the way,
+    * so the payload digest is computed in the same pass as the chunks. Chunks are flushed to the database every
+    * {@code writeBatchSize} inserts, so the provider can send them as a single JDBC batch, and then detached so
+    * their buffers can be reused. A trailing partial chunk is copied into a buffer of its exact size.
+    * <p>
+    * Chunks are encoded with the configured codec, and stored as is when encoding does not make them smaller. The
+    * CRC32C of the decoded data is stored along with each new chunk so reads can detect corrupted chunks.
+    * <p>
+    * A chunk whose SHA-256 matches a stored chunk is not written again; the stored chunk gains a reference instead.
+    * Deduplication is best effort: two uploads racing with the same new content may each store their own copy.
+    */
    @Transactional(rollbackOn = IOException.class)
-   private List<Long> storeData(InputStream data) throws IOException {
-      ImmutableList.Builder<Long> chunks = ImmutableList.builder();
+   private List<ChunkReference> storeData(InputStream data, Hasher payloadHasher) throws IOException {
+      ImmutableList.Builder<ChunkReference> chunks = ImmutableList.builder();
+      Map<String, ChunkEntity> batch = new LinkedHashMap<String, ChunkEntity>();
       while (true) {
-         byte[] buffer = new byte[JdbcConstants.DEFAULT_CHUNK_SIZE];
-         int bytes = ByteStreams.read(data, buffer, 0, JdbcConstants.DEFAULT_CHUNK_SIZE);
+         byte[] buffer = bufferPool.acquire();
+         int bytes = ByteStreams.read(data, buffer, 0, buffer.length);
          if (bytes == 0) {
+            bufferPool.release(buffer);
             break;
-         } else if (bytes != buffer.length) {
-            buffer = Arrays.copyOf(buffer, bytes);
          }
-         chunks.add(chunkRepository.create(new ChunkEntity(buffer, bytes)).getId());
+         payloadHasher.putBytes(buffer, 0, bytes);
+         String hash = Hashing.sha256().hashBytes(buffer, 0, bytes).toString();
+         Long chunkId = findChunkIdForReuse(hash, batch);
+         if (chunkId != null) {
+            bufferPool.release(buffer);
+            chunks.add(new ChunkReference(chunkId, bytes));
+            continue;
+         }
+         int checksum = ChunkEntity.checksum(buffer, 0, bytes);
+         ChunkCodec chunkCodec = codec;
+         byte[] encoded = codec.encode(buffer, bytes);
+         if (encoded != null) {
+            bufferPool.release(buffer);
+            buffer = encoded;
+         } else {
+            chunkCodec = ChunkCodec.NONE;
+            if (bytes != buffer.length) {
+               byte[] partial = Arrays.copyOf(buffer, bytes);
+               bufferPool.release(buffer);
+               buffer = partial;
+            }
+         }
+         ChunkEntity chunk = chunkRepository.create(new ChunkEntity(buffer, bytes, hash, chunkCodec, checksum));
+         chunks.add(new ChunkReference(chunk.getId(), bytes));
+         batch.put(hash, chunk);
+         if (batch.size() >= writeBatchSize) {
+            flushChunks(batch);
+         }
       }
+      flushChunks(batch);
       return chunks.build();
    }
+
+   /**
+    * Adds a reference to an existing chunk with the given hash, either one still pending in the current batch or one
+    * already in the database.
+    *
+    * @return the id of the referenced chunk, or null if a new chunk has to be stored
+    */
+   private Long findChunkIdForReuse(String hash, Map<String, ChunkEntity> batch) {
+      ChunkEntity pending = batch.get(hash);
+      if (pending != null) {
+         pending.setReferenceCount(pending.getReferenceCount() + 1);
+         return pending.getId();
+      }
+      Long chunkId = chunkRepository.findChunkIdByHash(hash);
+      // the chunk may have been deleted since it was looked up
+      if (chunkId != null && chunkRepository.addReferences(chunkId, 1) == 1) {
+         return chunkId;
+      }
+      return null;
+   }
+
+   private void flushChunks(Map<String, ChunkEntity> batch) {
+      if (batch.isEmpty()) {
+         return;
+      }
+      chunkRepository.flush();
+      for (ChunkEntity chunk : batch.values()) {
+         chunkRepository.detach(chunk);
+         bufferPool.release(chunk.getData());
+      }
+      batch.clear();
+   }
 }
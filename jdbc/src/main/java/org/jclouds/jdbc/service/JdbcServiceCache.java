@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.MutableBlobMetadata;
+import org.jclouds.blobstore.domain.internal.MutableBlobMetadataImpl;
+import org.jclouds.jdbc.entity.BlobEntityPK;
+import org.jclouds.jdbc.reference.JdbcConstants;
+
+import javax.inject.Named;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded caches of container ids by name and of blob metadata by primary key. {@link JdbcService} invalidates the
+ * entries of the blobs and containers it modifies or deletes. Cached metadata is copied in and out, so callers
+ * never share an instance with the cache.
+ * <p>
+ * The invalidations run inside the modifying transaction, so a read may still see the previous state until it
+ * commits. The transaction is bracketed by {@link #beginUpdate()} and {@link #endUpdate()}, and values read from the
+ * database are only cached when no update was running or ended since the {@link #stamp()} taken before reading
+ * them. Entries also expire after {@code jclouds.jdbc.cache-expiry} milliseconds, as a backstop.
+ */
+@Singleton
+public class JdbcServiceCache {
+
+   private final Cache<String, Long> containerIds;
+   private final Cache<BlobEntityPK, MutableBlobMetadata> blobMetadata;
+   private final AtomicLong generation = new AtomicLong();
+   private final AtomicInteger updates = new AtomicInteger();
+
+   @Inject
+   JdbcServiceCache(@Named(JdbcConstants.PROPERTY_JDBC_CONTAINER_CACHE_SIZE) int containerCacheSize,
+         @Named(JdbcConstants.PROPERTY_JDBC_BLOB_METADATA_CACHE_SIZE) int blobMetadataCacheSize,
+         @Named(JdbcConstants.PROPERTY_JDBC_CACHE_EXPIRY) long expiryMillis) {
+      this.containerIds = newCache(containerCacheSize, expiryMillis).build();
+      this.blobMetadata = newCache(blobMetadataCacheSize, expiryMillis).build();
+   }
+
+   private static CacheBuilder<Object, Object> newCache(int maximumSize, long expiryMillis) {
+      CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats();
+      return expiryMillis > 0 ? builder.expireAfterWrite(expiryMillis, TimeUnit.MILLISECONDS) : builder;
+   }
+
+   /**
+    * @return the stamp to pass to the put methods, taken before reading the value to cache from the database
+    */
+   public long stamp() {
+      return generation.get();
+   }
+
+   /**
+    * Called before a transaction modifying blobs or containers. No value is cached until it ended.
+    */
+   public void beginUpdate() {
+      updates.incrementAndGet();
+      generation.incrementAndGet();
+   }
+
+   /**
+    * Called once a transaction modifying blobs or containers committed or rolled back. Values read before are not
+    * cached, as they may predate the commit.
+    */
+   public void endUpdate() {
+      generation.incrementAndGet();
+      updates.decrementAndGet();
+   }
+
+   private boolean isCurrent(long stamp) {
+      return updates.get() == 0 && generation.get() == stamp;
+   }
+
+   public Long getContainerId(String containerName) {
+      return containerIds.getIfPresent(containerName);
+   }
+
+   /**
+    * Caches the id of a container read from the database, unless an update ran since the stamp was taken.
+    */
+   public void putContainerId(String containerName, Long containerId, long stamp) {
+      if (isCurrent(stamp)) {
+         containerIds.put(containerName, containerId);
+         if (!isCurrent(stamp)) {
+            // an update started meanwhile, and may have invalidated the container before the put
+            containerIds.invalidate(containerName);
+         }
+      }
+   }
+
+   /**
+    * Forgets a container together with the metadata of all its blobs.
+    */
+   public void invalidateContainer(String containerName) {
+      Long containerId = containerIds.getIfPresent(containerName);
+      containerIds.invalidate(containerName);
+      if (containerId == null) {
+         // without the id the blobs cannot be told apart from those of other containers
+         blobMetadata.invalidateAll();
+         return;
+      }
+      for (Iterator<BlobEntityPK> it = blobMetadata.asMap().keySet().iterator(); it.hasNext();) {
+         if (containerId.equals(it.next().getContainerEntity())) {
+            it.remove();
+         }
+      }
+   }
+
+   public BlobMetadata getBlobMetadata(String containerName, String key) {
+      Long containerId = containerIds.getIfPresent(containerName);
+      if (containerId == null) {
+         return null;
+      }
+      MutableBlobMetadata metadata = blobMetadata.getIfPresent(new BlobEntityPK(containerId, key));
+      return metadata == null ? null : new MutableBlobMetadataImpl(metadata);
+   }
+
+   /**
+    * Caches the metadata of a blob read from the database, provided the id of its container is cached and no update
+    * ran since the stamp was taken.
+    */
+   public void putBlobMetadata(String containerName, BlobMetadata metadata, long stamp) {
+      Long containerId = containerIds.getIfPresent(containerName);
+      if (containerId != null && isCurrent(stamp)) {
+         BlobEntityPK id = new BlobEntityPK(containerId, metadata.getName());
+         blobMetadata.put(id, new MutableBlobMetadataImpl(metadata));
+         if (!isCurrent(stamp)) {
+            // an update started meanwhile, and may have invalidated the blob before the put
+            blobMetadata.invalidate(id);
+         }
+      }
+   }
+
+   public void invalidateBlob(BlobEntityPK id) {
+      blobMetadata.invalidate(id);
+   }
+
+   public CacheStats containerIdStats() {
+      return containerIds.stats();
+   }
+
+   public CacheStats blobMetadataStats() {
+      return blobMetadata.stats();
+   }
+
+}
@@ -16,59 +16,90 @@
  */
 package org.jclouds.jdbc.strategy;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Provider;
 import javax.persistence.PersistenceException;
 
+import org.jclouds.blobstore.ContainerNotFoundException;
+import org.jclouds.blobstore.KeyNotFoundException;
 import org.jclouds.blobstore.LocalStorageStrategy;
 import org.jclouds.blobstore.domain.Blob;
 import org.jclouds.blobstore.domain.BlobAccess;
 import org.jclouds.blobstore.domain.BlobBuilder;
+import org.jclouds.blobstore.domain.BlobMetadata;
 import org.jclouds.blobstore.domain.ContainerAccess;
+import org.jclouds.blobstore.domain.MultipartPart;
+import org.jclouds.blobstore.domain.MultipartUpload;
+import org.jclouds.blobstore.domain.MutableBlobMetadata;
 import org.jclouds.blobstore.domain.MutableStorageMetadata;
+import org.jclouds.blobstore.domain.PageSet;
 import org.jclouds.blobstore.domain.StorageMetadata;
 import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.domain.internal.MutableBlobMetadataImpl;
 import org.jclouds.blobstore.domain.internal.MutableStorageMetadataImpl;
+import org.jclouds.blobstore.domain.internal.PageSetImpl;
 import org.jclouds.blobstore.options.CreateContainerOptions;
 import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
 import org.jclouds.domain.Location;
 import org.jclouds.domain.LocationBuilder;
 import org.jclouds.domain.LocationScope;
 import org.jclouds.io.ContentMetadata;
+import org.jclouds.io.Payload;
 import org.jclouds.jdbc.conversion.BlobEntityToBlob;
 import org.jclouds.jdbc.entity.BlobEntity;
 import org.jclouds.jdbc.entity.ContainerEntity;
+import org.jclouds.jdbc.entity.MultipartPartEntity;
+import org.jclouds.jdbc.entity.MultipartUploadEntity;
 import org.jclouds.jdbc.predicates.validators.JdbcBlobKeyValidator;
 import org.jclouds.jdbc.predicates.validators.JdbcContainerNameValidator;
+import org.jclouds.jdbc.reference.JdbcConstants;
 import org.jclouds.jdbc.service.JdbcService;
+import org.jclouds.jdbc.service.JdbcServiceCache;
+import org.jclouds.jdbc.util.DirectoryPaths;
+import org.jclouds.util.Closeables2;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 
 /**
  * JdbcStorageStrategy implements a blob store that stores objects
  * on a jdbc supported database. Content metadata and user attributes are stored in
- * the database as well.
+ * the database as well. The calls modifying blobs or containers are bracketed by
+ * {@link JdbcServiceCache#beginUpdate()} and {@link JdbcServiceCache#endUpdate()}, the latter once their
+ * transaction committed.
  */
 public class JdbcStorageStrategy implements LocalStorageStrategy {
 
    private final Provider<BlobBuilder> blobBuilders;
    private final JdbcService jdbcService;
+   private final JdbcServiceCache cache;
    private final JdbcContainerNameValidator jdbcContainerNameValidator;
    private final JdbcBlobKeyValidator jdbcBlobKeyValidator;
    private final BlobEntityToBlob blobEntityToBlob;
    private final Location mockLocation;
+   private final int deleteBatchSize;
 
    @Inject
    JdbcStorageStrategy(Provider<BlobBuilder> blobBuilders,
          JdbcContainerNameValidator jdbcContainerNameValidator, JdbcBlobKeyValidator jdbcBlobKeyValidator,
-         JdbcService jdbcService, BlobEntityToBlob blobEntityToBlob)
+         JdbcService jdbcService, JdbcServiceCache cache, BlobEntityToBlob blobEntityToBlob,
+         @Named(JdbcConstants.PROPERTY_JDBC_DELETE_BATCH_SIZE) int deleteBatchSize)
          throws ClassNotFoundException, IllegalAccessException, InstantiationException, SQLException {
       this.jdbcService = jdbcService;
+      this.cache = cache;
+      this.deleteBatchSize = deleteBatchSize;
       this.blobBuilders = blobBuilders;
       this.jdbcContainerNameValidator = jdbcContainerNameValidator;
       this.jdbcBlobKeyValidator = jdbcBlobKeyValidator;
@@ -163,18 +194,31 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
    @Override
    public void deleteContainer(String container) {
       jdbcContainerNameValidator.validate(container);
-      jdbcService.deleteBlobsByContainer(container);
-      jdbcService.deleteContainerByName(container);
+      clearContainer(container);
+      cache.beginUpdate();
+      try {
+         jdbcService.deleteContainerByName(container);
+      } finally {
+         cache.endUpdate();
+      }
    }
 
    /**
-    * Deletes all the blobs in a container
+    * Deletes all the blobs in a container. Blobs are deleted in batches of {@code jclouds.jdbc.delete-batch-size},
+    * each in its own transaction.
     *
     * @param container the name of the container to clear
     */
    @Override
    public void clearContainer(String container) {
-      jdbcService.deleteBlobsByContainer(container);
+      cache.beginUpdate();
+      try {
+         while (jdbcService.deleteBlobsByContainer(container, deleteBatchSize) == deleteBatchSize) {
+            // keep deleting until a batch comes back short
+         }
+      } finally {
+         cache.endUpdate();
+      }
    }
 
    /**
@@ -186,7 +230,15 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
    @Override
    public void clearContainer(String container, ListContainerOptions options) {
       if (options.getDir() != null) {
-         jdbcService.deleteBlobsByDirectory(container, options.getDir(), true);
+         cache.beginUpdate();
+         try {
+            while (jdbcService.deleteBlobsByDirectory(container, options.getDir(), true, deleteBatchSize)
+                  == deleteBatchSize) {
+               // keep deleting until a batch comes back short
+            }
+         } finally {
+            cache.endUpdate();
+         }
       }
       else {
          clearContainer(container);
@@ -235,12 +287,146 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
     */
    @Override
    public Iterable<String> getBlobKeysInsideContainer(String container) throws IOException {
-      List<BlobEntity> blobEntities = jdbcService.findBlobsByContainer(container);
-      ImmutableList.Builder<String> result = ImmutableList.builder();
-      for (BlobEntity blobEntity : blobEntities) {
-         result.add(blobEntity.getKey());
+      return jdbcService.findBlobKeysByContainer(container);
+   }
+
+   /**
+    * Lists a page of a container. Marker, maxResults and prefix are applied by the database, which returns one entry
+    * more than the page size to tell whether the listing is truncated. Listings of a directory with the default
+    * separator are answered from the materialized parent paths, any other listing from a key range. The options have
+    * the same meaning as for {@link org.jclouds.blobstore.config.LocalBlobStore}.
+    *
+    * @param container the name of the container
+    * @param options listing options
+    * @return the blobs and common prefixes of the page, and the marker of the next page if there is one
+    */
+   public PageSet<? extends StorageMetadata> list(String container, ListContainerOptions options) {
+      if (options.getDir() != null && options.getPrefix() != null) {
+         throw new IllegalArgumentException("Cannot set both prefix and directory");
       }
-      return result.build();
+      if ((options.getDir() != null || options.isRecursive()) && options.getDelimiter() != null) {
+         throw new IllegalArgumentException("Cannot set the delimiter if directory or recursive is set");
+      }
+      if (!containerExists(container)) {
+         throw new ContainerNotFoundException(container, "");
+      }
+
+      String prefix = "";
+      String delimiter = null;
+      if (options.getDir() != null && !options.getDir().isEmpty()) {
+         prefix = options.getDir().endsWith(getSeparator()) ? options.getDir() : options.getDir() + getSeparator();
+         delimiter = options.isRecursive() ? null : getSeparator();
+      } else if (options.getPrefix() != null) {
+         prefix = options.getPrefix();
+         delimiter = options.getDelimiter();
+      } else if (!options.isRecursive()) {
+         delimiter = options.getDelimiter() == null ? getSeparator() : options.getDelimiter();
+      }
+      int maxResults = options.getMaxResults() != null ? options.getMaxResults() : 1000;
+      String marker = options.getMarker();
+
+      List<StorageMetadata> contents;
+      if (getSeparator().equals(delimiter) && DirectoryPaths.directoryPrefix(prefix).equals(prefix)) {
+         contents = listDirectory(container, prefix, marker, maxResults + 1, options.isDetailed());
+      } else {
+         contents = listRange(container, prefix, delimiter, marker, maxResults + 1, options.isDetailed());
+      }
+
+      String nextMarker = null;
+      if (contents.size() > maxResults) {
+         contents = contents.subList(0, maxResults);
+         nextMarker = contents.isEmpty() ? marker : contents.get(maxResults - 1).getName();
+      }
+      return new PageSetImpl<StorageMetadata>(contents, nextMarker);
+   }
+
+   /**
+    * Lists a directory from the materialized parent paths: at most a page of the blobs directly inside it and of its
+    * subdirectories are each read with one indexed query, and merged in name order.
+    */
+   private List<StorageMetadata> listDirectory(String container, String directory, String marker, int limit,
+         boolean detailed) {
+      Iterator<BlobEntity> blobs = jdbcService.findBlobsByParentPath(container, directory, marker, limit).iterator();
+      Iterator<String> names = jdbcService.findChildDirectories(container, directory, marker, limit).iterator();
+
+      List<StorageMetadata> contents = Lists.newArrayList();
+      BlobEntity blob = blobs.hasNext() ? blobs.next() : null;
+      String subdirectory = names.hasNext() ? names.next() : null;
+      while (contents.size() < limit && (blob != null || subdirectory != null)) {
+         if (subdirectory == null || (blob != null && blob.getKey().compareTo(subdirectory) < 0)) {
+            contents.add(toStorageMetadata(blob, detailed));
+            blob = blobs.hasNext() ? blobs.next() : null;
+         } else {
+            contents.add(relativePath(subdirectory));
+            subdirectory = names.hasNext() ? names.next() : null;
+         }
+      }
+      return contents;
+   }
+
+   /**
+    * Lists the keys starting with a prefix in key order. When a delimiter applies, only the keys are read at first:
+    * the blobs before the first common prefix are then loaded by key, and the keys under the common prefix are
+    * skipped with a new query starting after it.
+    */
+   private List<StorageMetadata> listRange(String container, String prefix, String delimiter, String marker,
+         int limit, boolean detailed) {
+      List<StorageMetadata> contents = Lists.newArrayList();
+      if (delimiter == null) {
+         for (BlobEntity blobEntity : jdbcService.findBlobsByPrefix(container, prefix, marker, limit)) {
+            contents.add(toStorageMetadata(blobEntity, detailed));
+         }
+         return contents;
+      }
+      String after = marker;
+      boolean exhausted = false;
+      while (!exhausted && contents.size() < limit) {
+         int pageSize = limit - contents.size();
+         List<String> keys = jdbcService.findBlobKeysByPrefix(container, prefix, after, pageSize);
+         exhausted = keys.size() < pageSize;
+         List<String> blobKeys = Lists.newArrayList();
+         String commonPrefix = null;
+         for (String key : keys) {
+            int index = key.indexOf(delimiter, prefix.length());
+            if (index < 0) {
+               blobKeys.add(key);
+               after = key;
+               continue;
+            }
+            commonPrefix = key.substring(0, index + delimiter.length());
+            // seek past every key under the common prefix
+            after = commonPrefix + Character.MAX_VALUE;
+            exhausted = false;
+            break;
+         }
+         for (BlobEntity blobEntity : jdbcService.findBlobsByKeys(container, blobKeys)) {
+            contents.add(toStorageMetadata(blobEntity, detailed));
+         }
+         if (commonPrefix != null && (marker == null || commonPrefix.compareTo(marker) > 0)) {
+            contents.add(relativePath(commonPrefix));
+         }
+      }
+      return contents;
+   }
+
+   private StorageMetadata relativePath(String name) {
+      MutableStorageMetadata metadata = new MutableStorageMetadataImpl();
+      metadata.setName(name);
+      metadata.setType(StorageType.RELATIVE_PATH);
+      metadata.setLocation(mockLocation);
+      return metadata;
+   }
+
+   private StorageMetadata toStorageMetadata(BlobEntity blobEntity, boolean detailed) {
+      MutableBlobMetadata metadata = blobEntityToBlob.apply(blobEntity).getMetadata();
+      if (blobEntity.isDirectory()
+            || "application/directory".equals(metadata.getContentMetadata().getContentType())) {
+         metadata.setType(StorageType.RELATIVE_PATH);
+      }
+      if (!detailed) {
+         metadata.setUserMetadata(new HashMap<String, String>());
+      }
+      return metadata;
    }
 
    /**
@@ -267,7 +453,12 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
       String key = blob.getMetadata().getName();
       jdbcContainerNameValidator.validate(container);
       jdbcBlobKeyValidator.validate(key);
-      return jdbcService.createOrModifyBlob(container, blob).getEtag();
+      cache.beginUpdate();
+      try {
+         return jdbcService.createOrModifyBlob(container, blob).getEtag();
+      } finally {
+         cache.endUpdate();
+      }
    }
 
    /**
@@ -278,7 +469,12 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
     */
    @Override
    public void removeBlob(String container, String key) {
-      jdbcService.deleteBlob(container, key);
+      cache.beginUpdate();
+      try {
+         jdbcService.deleteBlob(container, key);
+      } finally {
+         cache.endUpdate();
+      }
    }
 
    /**
@@ -333,8 +529,8 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
     * @return the number of blobs in the container
     */
    public long countBlobs(String container, ListContainerOptions options) {
-      return options.getDir() == null ? jdbcService.findBlobsByContainer(container).size()
-             : jdbcService.findBlobsByDirectory(container, options.getDir(), options.isRecursive()).size();
+      return options.getDir() == null ? jdbcService.countBlobsByContainer(container)
+             : jdbcService.countBlobsByDirectory(container, options.getDir());
    }
 
    /**
@@ -345,9 +541,7 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
     * @return true if the directory exists, false otherwise
     */
    public boolean directoryExists(String container, String directory) {
-      Blob blob = getBlob(container, directory);
-      return blob != null && "application/directory".equals(
-            blob.getMetadata().getContentMetadata().getContentType());
+      return jdbcService.directoryExists(container, directory);
    }
 
    /**
@@ -365,7 +559,12 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
          throw new IllegalArgumentException(
                "Directory blob cannot have content: " + blobKey);
       }
-      return jdbcService.createDirectoryBlob(container, blob).getEtag();
+      cache.beginUpdate();
+      try {
+         return jdbcService.createDirectoryBlob(container, blob).getEtag();
+      } finally {
+         cache.endUpdate();
+      }
    }
 
    /**
@@ -389,8 +588,123 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
    public void deleteDirectory(String container, String directory) {
       BlobEntity entity = jdbcService.findBlobById(container, directory);
       if (entity != null && entity.isDirectory()) {
-         jdbcService.deleteBlob(container, directory);
+         removeBlob(container, directory);
       }
    }
 
+   /**
+    * Starts a multipart upload
+    *
+    * @param container the name of the container
+    * @param blobMetadata the metadata of the blob the upload completes to
+    * @param options the options of the upload
+    * @return the upload
+    */
+   public MultipartUpload initiateMultipartUpload(String container, BlobMetadata blobMetadata, PutOptions options) {
+      jdbcContainerNameValidator.validate(container);
+      jdbcBlobKeyValidator.validate(blobMetadata.getName());
+      String uploadId = jdbcService.createMultipartUpload(container, blobMetadata.getName());
+      if (uploadId == null) {
+         throw new ContainerNotFoundException(container, "");
+      }
+      return MultipartUpload.create(container, blobMetadata.getName(), uploadId, blobMetadata, options);
+   }
+
+   /**
+    * Stores a part of a multipart upload, replacing the part with the same number if there is one
+    *
+    * @param mpu the upload
+    * @param partNumber the number of the part, from 1
+    * @param payload the data of the part
+    * @return the stored part
+    */
+   public MultipartPart uploadMultipartPart(MultipartUpload mpu, int partNumber, Payload payload) throws IOException {
+      checkArgument(partNumber >= 1, "part number must be positive");
+      MultipartPartEntity part;
+      InputStream is = payload.openStream();
+      try {
+         part = jdbcService.createOrModifyMultipartPart(mpu.id(), partNumber, is);
+      } finally {
+         Closeables2.closeQuietly(is);
+      }
+      if (part == null) {
+         throw new KeyNotFoundException(mpu.containerName(), mpu.blobName(), "multipart upload " + mpu.id());
+      }
+      return toMultipartPart(part);
+   }
+
+   /**
+    * Completes a multipart upload into a blob made of the given parts, in the given order
+    *
+    * @param mpu the upload
+    * @param parts the parts of the blob
+    * @return the blob's etag
+    */
+   public String completeMultipartUpload(MultipartUpload mpu, List<MultipartPart> parts) {
+      BlobMetadata blobMetadata = mpu.blobMetadata();
+      if (blobMetadata == null) {
+         MutableBlobMetadata metadata = new MutableBlobMetadataImpl();
+         metadata.setName(mpu.blobName());
+         blobMetadata = metadata;
+      }
+      List<Integer> partNumbers = Lists.newArrayListWithCapacity(parts.size());
+      for (MultipartPart part : parts) {
+         partNumbers.add(part.partNumber());
+      }
+      BlobAccess blobAccess = mpu.putOptions() == null ? null : mpu.putOptions().getBlobAccess();
+      BlobEntity blobEntity;
+      cache.beginUpdate();
+      try {
+         blobEntity = jdbcService.completeMultipartUpload(mpu.containerName(), mpu.id(), blobMetadata, partNumbers,
+               blobAccess);
+      } finally {
+         cache.endUpdate();
+      }
+      if (blobEntity == null) {
+         throw new KeyNotFoundException(mpu.containerName(), mpu.blobName(), "multipart upload " + mpu.id());
+      }
+      return blobEntity.getEtag();
+   }
+
+   /**
+    * Aborts a multipart upload and deletes its parts
+    *
+    * @param mpu the upload
+    */
+   public void abortMultipartUpload(MultipartUpload mpu) {
+      jdbcService.deleteMultipartUpload(mpu.id());
+   }
+
+   /**
+    * Lists the parts stored for a multipart upload
+    *
+    * @param mpu the upload
+    * @return the parts, by part number
+    */
+   public List<MultipartPart> listMultipartUpload(MultipartUpload mpu) {
+      ImmutableList.Builder<MultipartPart> parts = ImmutableList.builder();
+      for (MultipartPartEntity part : jdbcService.findMultipartParts(mpu.id())) {
+         parts.add(toMultipartPart(part));
+      }
+      return parts.build();
+   }
+
+   /**
+    * Lists the multipart uploads in progress in a container
+    *
+    * @param container the name of the container
+    * @return the uploads, without their blob metadata and options
+    */
+   public List<MultipartUpload> listMultipartUploads(String container) {
+      ImmutableList.Builder<MultipartUpload> uploads = ImmutableList.builder();
+      for (MultipartUploadEntity upload : jdbcService.findMultipartUploads(container)) {
+         uploads.add(MultipartUpload.create(container, upload.getKey(), upload.getId(), null, null));
+      }
+      return uploads.build();
+   }
+
+   private static MultipartPart toMultipartPart(MultipartPartEntity part) {
+      return MultipartPart.create(part.getPartNumber(), part.getSize(), part.getEtag(), part.getLastModified());
+   }
+
 }
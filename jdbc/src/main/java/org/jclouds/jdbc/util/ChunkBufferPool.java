@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.util;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.jclouds.jdbc.reference.JdbcConstants;
+
+import javax.inject.Named;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Pool of chunk-sized buffers shared by all uploads. Keeps up to two write batches worth of idle buffers and
+ * allocates new ones when it runs dry, so it never blocks.
+ */
+@Singleton
+public class ChunkBufferPool {
+
+   private final int chunkSize;
+   private final BlockingQueue<byte[]> buffers;
+
+   @Inject
+   ChunkBufferPool(@Named(JdbcConstants.PROPERTY_JDBC_CHUNK_SIZE) int chunkSize,
+         @Named(JdbcConstants.PROPERTY_JDBC_WRITE_BATCH_SIZE) int writeBatchSize) {
+      checkArgument(chunkSize > 0 && chunkSize <= JdbcConstants.MAX_CHUNK_SIZE,
+            "chunk size must be between 1 and %s bytes", JdbcConstants.MAX_CHUNK_SIZE);
+      checkArgument(writeBatchSize > 0, "write batch size must be positive");
+      this.chunkSize = chunkSize;
+      this.buffers = new ArrayBlockingQueue<byte[]>(2 * writeBatchSize);
+   }
+
+   public int getChunkSize() {
+      return chunkSize;
+   }
+
+   public byte[] acquire() {
+      byte[] buffer = buffers.poll();
+      return buffer == null ? new byte[chunkSize] : buffer;
+   }
+
+   /**
+    * Returns a buffer to the pool. Buffers of any other size than the chunk size are ignored.
+    */
+   public void release(byte[] buffer) {
+      if (buffer.length == chunkSize) {
+         buffers.offer(buffer);
+      }
+   }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.util;
+
+/**
+ * Helpers for the materialized directory path stored with every blob. The parent path of a key is everything up to
+ * and including its last separator, so "a/b/c" and "a/b/" both have the parent path "a/b/" and root keys have "".
+ * Keys sharing a prefix form a contiguous range, which lets prefix queries run as index range scans.
+ */
+public final class DirectoryPaths {
+
+   public static final char SEPARATOR = '/';
+
+   private DirectoryPaths() {
+      throw new AssertionError("Intentionally Unimplemented");
+   }
+
+   public static String parentPath(String key) {
+      return key.substring(0, key.lastIndexOf(SEPARATOR) + 1);
+   }
+
+   /**
+    * @return the number of separators in the parent path, 0 for root keys
+    */
+   public static int depth(String parentPath) {
+      int depth = 0;
+      for (int i = 0; i < parentPath.length(); i++) {
+         if (parentPath.charAt(i) == SEPARATOR) {
+            depth++;
+         }
+      }
+      return depth;
+   }
+
+   /**
+    * @return the directory name with exactly one trailing separator
+    */
+   public static String directoryPrefix(String directory) {
+      return directory.isEmpty() || directory.charAt(directory.length() - 1) == SEPARATOR ? directory
+            : directory + SEPARATOR;
+   }
+
+   /**
+    * Returns the smallest string greater than every string starting with the prefix, so that
+    * {@code key >= prefix AND key < upperBound} selects exactly the keys starting with the prefix.
+    *
+    * @return the upper bound, or null if the prefix has none
+    */
+   public static String upperBound(String prefix) {
+      for (int i = prefix.length() - 1; i >= 0; i--) {
+         char c = prefix.charAt(i);
+         if (c != Character.MAX_VALUE) {
+            return prefix.substring(0, i) + (char) (c + 1);
+         }
+      }
+      return null;
+   }
+
+}
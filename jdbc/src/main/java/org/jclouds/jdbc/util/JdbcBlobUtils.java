@@ -22,6 +22,8 @@ import org.jclouds.blobstore.LocalStorageStrategy;
 import org.jclouds.blobstore.domain.BlobBuilder;
 import org.jclouds.blobstore.options.ListContainerOptions;
 import org.jclouds.blobstore.util.BlobUtils;
+import org.jclouds.jdbc.gc.ChunkGarbageCollector;
+import org.jclouds.jdbc.gc.GarbageCollection;
 import org.jclouds.jdbc.strategy.JdbcStorageStrategy;
 
 import com.google.inject.Inject;
@@ -34,11 +36,14 @@ public class JdbcBlobUtils implements BlobUtils {
 
    protected final JdbcStorageStrategy storageStrategy;
    protected final Provider<BlobBuilder> blobBuilders;
+   protected final ChunkGarbageCollector garbageCollector;
 
    @Inject
-   JdbcBlobUtils(LocalStorageStrategy storageStrategy, Provider<BlobBuilder> blobBuilders) {
+   JdbcBlobUtils(LocalStorageStrategy storageStrategy, Provider<BlobBuilder> blobBuilders,
+         ChunkGarbageCollector garbageCollector) {
       this.storageStrategy = (JdbcStorageStrategy) storageStrategy;
       this.blobBuilders = blobBuilders;
+      this.garbageCollector = garbageCollector;
    }
 
    @Override
@@ -71,4 +76,11 @@ public class JdbcBlobUtils implements BlobUtils {
       storageStrategy.deleteDirectory(container, directory);
    }
 
+   /**
+    * Deletes the chunks no blob references right away, without waiting for the next scheduled run.
+    */
+   public GarbageCollection collectGarbage() {
+      return garbageCollector.collect();
+   }
+
 }
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.util;
+
+import org.jclouds.jdbc.entity.ChunkReference;
+import org.jclouds.jdbc.service.JdbcService;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteSource;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Repeatable source of a blob payload. Slices open a {@link JdbcInputStream} positioned at the slice offset, so
+ * range reads only fetch the chunks overlapping the range.
+ */
+public class JdbcByteSource extends ByteSource {
+
+   private final JdbcService jdbcService;
+   private final List<ChunkReference> chunks;
+   private final ExecutorService executor;
+   private final int prefetch;
+   private final boolean verifyChecksums;
+   private final long offset;
+   private final long length;
+
+   public JdbcByteSource(JdbcService jdbcService, List<ChunkReference> chunks, ExecutorService executor, int prefetch) {
+      this(jdbcService, chunks, executor, prefetch, true);
+   }
+
+   public JdbcByteSource(JdbcService jdbcService, List<ChunkReference> chunks, ExecutorService executor, int prefetch,
+         boolean verifyChecksums) {
+      this(jdbcService, ImmutableList.copyOf(checkNotNull(chunks, "chunks")), executor, prefetch, verifyChecksums, 0,
+            totalSize(chunks));
+   }
+
+   private JdbcByteSource(JdbcService jdbcService, List<ChunkReference> chunks, ExecutorService executor, int prefetch,
+         boolean verifyChecksums, long offset, long length) {
+      this.jdbcService = checkNotNull(jdbcService, "jdbcService");
+      this.chunks = chunks;
+      this.executor = checkNotNull(executor, "executor");
+      this.prefetch = prefetch;
+      this.verifyChecksums = verifyChecksums;
+      this.offset = offset;
+      this.length = length;
+   }
+
+   @Override
+   public InputStream openStream() {
+      return new JdbcInputStream(jdbcService, chunks, executor, prefetch, offset, length, verifyChecksums);
+   }
+
+   @Override
+   public long size() {
+      return length;
+   }
+
+   @Override
+   public ByteSource slice(long offset, long length) {
+      checkArgument(offset >= 0, "offset (%s) may not be negative", offset);
+      checkArgument(length >= 0, "length (%s) may not be negative", length);
+      long sliceOffset = Math.min(offset, this.length);
+      long sliceLength = Math.min(length, this.length - sliceOffset);
+      return new JdbcByteSource(jdbcService, chunks, executor, prefetch, verifyChecksums, this.offset + sliceOffset,
+            sliceLength);
+   }
+
+   @Override
+   public boolean isEmpty() {
+      return length == 0;
+   }
+
+   private static long totalSize(List<ChunkReference> chunks) {
+      long size = 0;
+      for (ChunkReference chunk : chunks) {
+         size += chunk.getSize();
+      }
+      return size;
+   }
+
+}
@@ -17,28 +17,91 @@
 package org.jclouds.jdbc.util;
 
 import org.jclouds.jdbc.entity.ChunkEntity;
+import org.jclouds.jdbc.entity.ChunkReference;
 import org.jclouds.jdbc.service.JdbcService;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
 
+/**
+ * Streams the chunks of a blob payload. Up to {@code prefetch} chunks beyond the one being read are
+ * loaded ahead of time on the given executor, so reading a chunk overlaps with fetching and decoding the next
+ * ones.
+ * <p>
+ * The stream can be limited to a byte range of the payload. Only the chunks that overlap the range are
+ * fetched, and {@link #skip(long)} jumps over whole chunks without loading them.
+ * <p>
+ * Unless verification is turned off, each decoded chunk is checked against its CRC32C on the prefetch thread. A chunk
+ * that does not match is fetched once more, in case the first copy was damaged on the way, before the read fails.
+ */
 public class JdbcInputStream extends InputStream {
 
-   private JdbcService jdbcService;
+   private final JdbcService jdbcService;
+   private final ExecutorService executor;
+   private final int prefetch;
+   private final boolean verifyChecksums;
 
-   private final List<Long> chunks;
-   private ChunkEntity currentChunk;
-   private int bytesRead;
+   private final Deque<ChunkReference> chunks;
+   private final Deque<PendingChunk> pending;
+   private byte[] currentChunk;
+   private int position;
+   private int nextChunkOffset;
+   private long remaining;
+
+   public JdbcInputStream(JdbcService jdbcService, List<ChunkReference> chunks) {
+      this(jdbcService, chunks, MoreExecutors.newDirectExecutorService(), 0);
+   }
 
-   public JdbcInputStream(JdbcService jdbcService, List<Long> chunks) {
+   public JdbcInputStream(JdbcService jdbcService, List<ChunkReference> chunks, ExecutorService executor,
+         int prefetch) {
+      this(jdbcService, chunks, executor, prefetch, 0, Long.MAX_VALUE);
+   }
+
+   public JdbcInputStream(JdbcService jdbcService, List<ChunkReference> chunks, ExecutorService executor,
+         int prefetch, long offset, long length) {
+      this(jdbcService, chunks, executor, prefetch, offset, length, true);
+   }
+
+   public JdbcInputStream(JdbcService jdbcService, List<ChunkReference> chunks, ExecutorService executor,
+         int prefetch, long offset, long length, boolean verifyChecksums) {
+      checkArgument(prefetch >= 0, "prefetch must be positive or zero");
+      checkArgument(offset >= 0, "offset must be positive or zero");
+      checkArgument(length >= 0, "length must be positive or zero");
       this.jdbcService = checkNotNull(jdbcService, "jdbcService");
-      // Need to remove duplicates due to https://hibernate.atlassian.net/browse/HHH-6783
-      this.chunks = new ArrayList<Long>(new LinkedHashSet<Long>(checkNotNull(chunks, "chunks")));
+      this.executor = checkNotNull(executor, "executor");
+      this.prefetch = prefetch;
+      this.verifyChecksums = verifyChecksums;
+      this.chunks = new ArrayDeque<ChunkReference>();
+      this.pending = new ArrayDeque<PendingChunk>(prefetch + 1);
+
+      long end = offset + length < 0 ? Long.MAX_VALUE : offset + length;
+      long chunkStart = 0;
+      for (ChunkReference chunk : checkNotNull(chunks, "chunks")) {
+         long chunkEnd = chunkStart + chunk.getSize();
+         if (chunkEnd > offset && chunkStart < end) {
+            if (this.chunks.isEmpty()) {
+               this.nextChunkOffset = (int) Math.max(offset - chunkStart, 0);
+            }
+            this.chunks.add(chunk);
+         }
+         chunkStart = chunkEnd;
+      }
+      this.remaining = Math.max(Math.min(end, chunkStart) - offset, 0);
+
       try {
          readNextChunk();
       } catch (IOException e) {
@@ -47,30 +110,156 @@ public class JdbcInputStream extends InputStream {
    }
 
    @Override
-   public synchronized int read() throws IOException {
-      if (hasFinished()) {
+   public int read() throws IOException {
+      if (!ensureChunk()) {
          return -1;
       }
-      int b = currentChunk.getData()[bytesRead] & 0xff;
-      bytesRead = bytesRead + 1;
-      if (bytesRead >= currentChunk.getSize()) {
-         readNextChunk();
+      remaining--;
+      return currentChunk[position++] & 0xff;
+   }
+
+   @Override
+   public int read(byte[] b, int off, int len) throws IOException {
+      checkPositionIndexes(off, off + len, b.length);
+      if (len == 0) {
+         return 0;
       }
-      return b;
+      if (!ensureChunk()) {
+         return -1;
+      }
+      int bytes = (int) Math.min(Math.min(len, currentChunk.length - position), remaining);
+      System.arraycopy(currentChunk, position, b, off, bytes);
+      position += bytes;
+      remaining -= bytes;
+      return bytes;
    }
 
-   private boolean hasFinished() {
-      return currentChunk == null || (chunks.size() == 0 && bytesRead >= currentChunk.getSize());
+   /**
+    * Skips within the current chunk and then over whole chunks, which are never fetched.
+    */
+   @Override
+   public long skip(long n) throws IOException {
+      long toSkip = Math.min(n, remaining);
+      if (toSkip <= 0) {
+         return 0;
+      }
+      long skipped = 0;
+      if (currentChunk != null) {
+         int bytes = (int) Math.min(toSkip, currentChunk.length - position);
+         position += bytes;
+         skipped += bytes;
+      }
+      while (skipped < toSkip) {
+         ChunkReference next = pending.isEmpty() ? chunks.peek() : pending.peek().reference;
+         if (next == null) {
+            break;
+         }
+         long available = next.getSize() - nextChunkOffset;
+         if (available > toSkip - skipped) {
+            nextChunkOffset += (int) (toSkip - skipped);
+            skipped = toSkip;
+         } else {
+            if (pending.isEmpty()) {
+               chunks.poll();
+            } else {
+               pending.poll().future.cancel(false);
+            }
+            nextChunkOffset = 0;
+            skipped += available;
+         }
+      }
+      remaining -= skipped;
+      return skipped;
    }
 
-   private void readNextChunk() throws IOException {
-      if (chunks.size() > 0) {
-         this.currentChunk = jdbcService.findChunkById(chunks.get(0));
-         if (currentChunk == null) {
-            throw new IOException("Could not find chunk.");
+   @Override
+   public int available() {
+      return currentChunk == null ? 0 : (int) Math.min(currentChunk.length - position, remaining);
+   }
+
+   @Override
+   public void close() throws IOException {
+      for (PendingChunk chunk : pending) {
+         chunk.future.cancel(false);
+      }
+      pending.clear();
+      chunks.clear();
+      currentChunk = null;
+      remaining = 0;
+   }
+
+   private boolean ensureChunk() throws IOException {
+      if (remaining <= 0) {
+         return false;
+      }
+      while (currentChunk == null || position >= currentChunk.length) {
+         if (!readNextChunk()) {
+            return false;
          }
-         chunks.remove(0);
-         this.bytesRead = 0;
+      }
+      return true;
+   }
+
+   private boolean readNextChunk() throws IOException {
+      fetchAhead(prefetch + 1);
+      PendingChunk next = pending.poll();
+      if (next == null) {
+         currentChunk = null;
+         return false;
+      }
+      byte[] chunk;
+      try {
+         chunk = Uninterruptibles.getUninterruptibly(next.future);
+      } catch (ExecutionException e) {
+         throw new IOException("Could not read chunk.", e.getCause());
+      }
+      if (chunk == null) {
+         throw new IOException("Could not find chunk.");
+      }
+      this.currentChunk = chunk;
+      this.position = nextChunkOffset;
+      this.nextChunkOffset = 0;
+      return true;
+   }
+
+   private void fetchAhead(int depth) {
+      while (pending.size() < depth && !chunks.isEmpty()) {
+         final ChunkReference chunk = chunks.poll();
+         pending.add(new PendingChunk(chunk, executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+               return fetchChunk(chunk.getChunkId());
+            }
+         })));
+      }
+   }
+
+   private byte[] fetchChunk(Long chunkId) throws IOException {
+      ChunkEntity entity = jdbcService.findChunkById(chunkId);
+      if (entity == null) {
+         return null;
+      }
+      byte[] data = entity.decodeData();
+      if (!verifyChecksums || entity.verify(data)) {
+         return data;
+      }
+      entity = jdbcService.findChunkById(chunkId);
+      if (entity != null) {
+         data = entity.decodeData();
+         if (entity.verify(data)) {
+            return data;
+         }
+      }
+      throw new IOException("Chunk " + chunkId + " does not match its checksum.");
+   }
+
+   private static final class PendingChunk {
+      private final ChunkReference reference;
+      private final Future<byte[]> future;
+
+      private PendingChunk(ChunkReference reference, Future<byte[]> future) {
+         this.reference = reference;
+         this.future = future;
       }
    }
 
@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteSource;
 import com.google.inject.Module;
 import com.google.inject.persist.jpa.JpaPersistModule;
@@ -30,15 +31,21 @@ import org.jclouds.blobstore.BlobStoreContext;
 import org.jclouds.blobstore.ContainerNotFoundException;
 import org.jclouds.blobstore.domain.Blob;
 import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.MultipartPart;
+import org.jclouds.blobstore.domain.MultipartUpload;
 import org.jclouds.blobstore.domain.PageSet;
 import org.jclouds.blobstore.domain.StorageMetadata;
 import org.jclouds.blobstore.domain.StorageType;
 import org.jclouds.blobstore.options.GetOptions;
 import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
 import org.jclouds.http.HttpRequest;
 import org.jclouds.io.Payload;
+import org.jclouds.io.payloads.ByteSourcePayload;
 import org.jclouds.io.payloads.PhantomPayload;
 import org.jclouds.io.payloads.StringPayload;
+import org.jclouds.jdbc.service.JdbcServiceCache;
+import org.jclouds.util.ByteStreams2;
 import org.jclouds.util.Closeables2;
 import org.jclouds.util.Strings2;
 import org.testng.annotations.AfterMethod;
@@ -51,6 +58,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.io.BaseEncoding.base16;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -208,6 +221,110 @@ public abstract class BaseJdbcBlobStoreTest {
       checkForContainerContent(CONTAINER_NAME, "rrr/", blobsExpected);
    }
 
+   @Test
+   public void testListPages() {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      for (int i = 0; i < 10; i++) {
+         createBlobInContainer(CONTAINER_NAME, "key-0" + i);
+      }
+      ListContainerOptions options = ListContainerOptions.Builder.recursive().maxResults(4);
+      PageSet<? extends StorageMetadata> page = blobStore.list(CONTAINER_NAME, options);
+      assertThat(names(page)).containsExactly("key-00", "key-01", "key-02", "key-03");
+      assertThat(page.getNextMarker()).isEqualTo("key-03");
+
+      page = blobStore.list(CONTAINER_NAME, options.afterMarker(page.getNextMarker()));
+      assertThat(names(page)).containsExactly("key-04", "key-05", "key-06", "key-07");
+      assertThat(page.getNextMarker()).isEqualTo("key-07");
+
+      page = blobStore.list(CONTAINER_NAME, options.afterMarker(page.getNextMarker()));
+      assertThat(names(page)).containsExactly("key-08", "key-09");
+      assertThat(page.getNextMarker()).isNull();
+   }
+
+   @Test
+   public void testListSubdirectoryPages() {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      createBlobInContainer(CONTAINER_NAME, "d/a/1");
+      createBlobInContainer(CONTAINER_NAME, "d/a/x/y/2");
+      createBlobInContainer(CONTAINER_NAME, "d/b");
+      createBlobInContainer(CONTAINER_NAME, "d/c/3");
+      createBlobInContainer(CONTAINER_NAME, "d/c/z/4");
+      createBlobInContainer(CONTAINER_NAME, "d/e/5");
+      createBlobInContainer(CONTAINER_NAME, "f/6");
+
+      ListContainerOptions options = ListContainerOptions.Builder.inDirectory("d").maxResults(2);
+      PageSet<? extends StorageMetadata> page = blobStore.list(CONTAINER_NAME, options);
+      assertThat(names(page)).containsExactly("d/a/", "d/b");
+      assertThat(page.getNextMarker()).isEqualTo("d/b");
+
+      page = blobStore.list(CONTAINER_NAME, options.afterMarker(page.getNextMarker()));
+      assertThat(names(page)).containsExactly("d/c/", "d/e/");
+
+      page = blobStore.list(CONTAINER_NAME, ListContainerOptions.Builder.inDirectory("d").afterMarker("d/a/x/"));
+      assertThat(names(page)).containsExactly("d/b", "d/c/", "d/e/");
+   }
+
+   @Test
+   public void testListPrefixAndDelimiter() {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      createBlobInContainer(CONTAINER_NAME, "a/1");
+      createBlobInContainer(CONTAINER_NAME, "a/2");
+      createBlobInContainer(CONTAINER_NAME, "a/b/3");
+      createBlobInContainer(CONTAINER_NAME, "a_c");
+      createBlobInContainer(CONTAINER_NAME, "b/1");
+      createBlobInContainer(CONTAINER_NAME, "c");
+
+      PageSet<? extends StorageMetadata> page = blobStore.list(CONTAINER_NAME,
+            ListContainerOptions.Builder.prefix("a/").delimiter("/"));
+      assertThat(names(page)).containsExactly("a/1", "a/2", "a/b/");
+      assertThat(page.getNextMarker()).isNull();
+
+      page = blobStore.list(CONTAINER_NAME, ListContainerOptions.Builder.maxResults(2));
+      assertThat(names(page)).containsExactly("a/", "a_c");
+      assertThat(page.getNextMarker()).isEqualTo("a_c");
+
+      page = blobStore.list(CONTAINER_NAME, ListContainerOptions.Builder.afterMarker("a/"));
+      assertThat(names(page)).containsExactly("a_c", "b/", "c");
+      for (StorageMetadata metadata : page) {
+         assertThat(metadata.getType()).isEqualTo(metadata.getName().endsWith("/") ? StorageType.RELATIVE_PATH
+               : StorageType.BLOB);
+      }
+
+      page = blobStore.list(CONTAINER_NAME, ListContainerOptions.Builder.prefix("a").delimiter("/"));
+      assertThat(names(page)).containsExactly("a/", "a_c");
+
+      page = blobStore.list(CONTAINER_NAME, ListContainerOptions.Builder.prefix("").delimiter("_").maxResults(4));
+      assertThat(names(page)).containsExactly("a/1", "a/2", "a/b/3", "a_");
+      assertThat(page.getNextMarker()).isEqualTo("a_");
+
+      page = blobStore.list(CONTAINER_NAME, ListContainerOptions.Builder.prefix("").delimiter("_").afterMarker("a_"));
+      assertThat(names(page)).containsExactly("b/1", "c");
+   }
+
+   @Test
+   public void testBlobMetadataCache() {
+      JdbcServiceCache cache = context.utils().injector().getInstance(JdbcServiceCache.class);
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      blobStore.putBlob(CONTAINER_NAME, blobStore.blobBuilder(BLOB_NAME).payload("first").build());
+      String etag = blobStore.blobMetadata(CONTAINER_NAME, BLOB_NAME).getETag();
+      assertThat(blobStore.blobMetadata(CONTAINER_NAME, BLOB_NAME).getETag()).isEqualTo(etag);
+      assertThat(blobStore.blobExists(CONTAINER_NAME, BLOB_NAME)).isTrue();
+      assertThat(cache.blobMetadataStats().hitCount()).isGreaterThanOrEqualTo(2);
+
+      blobStore.putBlob(CONTAINER_NAME, blobStore.blobBuilder(BLOB_NAME).payload("second").build());
+      assertThat(blobStore.blobMetadata(CONTAINER_NAME, BLOB_NAME).getETag()).isNotEqualTo(etag);
+
+      blobStore.removeBlob(CONTAINER_NAME, BLOB_NAME);
+      assertThat(blobStore.blobMetadata(CONTAINER_NAME, BLOB_NAME)).isNull();
+      assertThat(blobStore.blobExists(CONTAINER_NAME, BLOB_NAME)).isFalse();
+
+      blobStore.putBlob(CONTAINER_NAME, blobStore.blobBuilder(BLOB_NAME).payload("third").build());
+      assertThat(blobStore.blobExists(CONTAINER_NAME, BLOB_NAME)).isTrue();
+      blobStore.deleteContainer(CONTAINER_NAME);
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      assertThat(blobStore.blobExists(CONTAINER_NAME, BLOB_NAME)).isFalse();
+   }
+
    @Test
    public void testClearContainerNotExistingContainer() {
       blobStore.clearContainer(CONTAINER_NAME);
@@ -620,6 +737,125 @@ public abstract class BaseJdbcBlobStoreTest {
       }
    }
 
+   @Test
+   public void testRangesAcrossChunks() throws IOException {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      ByteSource input = randomByteSource().slice(0, 3 * 1024 * 1024 + 5);
+      blobStore.putBlob(CONTAINER_NAME, blobStore.blobBuilder(BLOB_NAME).payload(input).build());
+
+      GetOptions getOptionsFragment = new GetOptions();
+      getOptionsFragment.range(1024 * 1024 - 2, 2 * 1024 * 1024 + 1);
+      Payload payload = blobStore.getBlob(CONTAINER_NAME, BLOB_NAME, getOptionsFragment).getPayload();
+      try {
+         assertThat(ByteStreams2.toByteArrayAndClose(payload.openStream()))
+               .isEqualTo(input.slice(1024 * 1024 - 2, 1024 * 1024 + 4).read());
+      } finally {
+         Closeables2.closeQuietly(payload);
+      }
+
+      GetOptions getOptionsRangeTail = new GetOptions();
+      getOptionsRangeTail.tail(7);
+      payload = blobStore.getBlob(CONTAINER_NAME, BLOB_NAME, getOptionsRangeTail).getPayload();
+      try {
+         assertThat(ByteStreams2.toByteArrayAndClose(payload.openStream()))
+               .isEqualTo(input.slice(3 * 1024 * 1024 - 2, 7).read());
+      } finally {
+         Closeables2.closeQuietly(payload);
+      }
+   }
+
+   @Test
+   public void testMultipartUpload() throws IOException {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      ByteSource part1 = randomByteSource().slice(0, 1024 * 1024 + 3);
+      ByteSource part2 = randomByteSource().slice(7, 2048);
+      BlobMetadata metadata = blobStore.blobBuilder(BLOB_NAME).payload(new byte[0]).contentType("text/csv").build()
+            .getMetadata();
+      MultipartUpload mpu = blobStore.initiateMultipartUpload(CONTAINER_NAME, metadata, PutOptions.NONE);
+      assertThat(blobStore.listMultipartUploads(CONTAINER_NAME)).hasSize(1);
+
+      blobStore.uploadMultipartPart(mpu, 2, new ByteSourcePayload(randomByteSource().slice(0, 100)));
+      MultipartPart second = blobStore.uploadMultipartPart(mpu, 2, new ByteSourcePayload(part2));
+      MultipartPart first = blobStore.uploadMultipartPart(mpu, 1, new ByteSourcePayload(part1));
+      blobStore.uploadMultipartPart(mpu, 3, new ByteSourcePayload(randomByteSource().slice(0, 10)));
+      List<MultipartPart> parts = blobStore.listMultipartUpload(mpu);
+      assertThat(parts).hasSize(3);
+      assertThat(parts.get(1).partSize()).isEqualTo(2048);
+      assertThat(parts.get(1).partETag()).isEqualTo(part2.hash(Hashing.md5()).toString());
+
+      String etag = blobStore.completeMultipartUpload(mpu, ImmutableList.of(first, second));
+      assertThat(etag).endsWith("-2");
+      assertThat(blobStore.listMultipartUploads(CONTAINER_NAME)).isEmpty();
+
+      Blob blob = blobStore.getBlob(CONTAINER_NAME, BLOB_NAME);
+      assertThat(blob.getMetadata().getETag()).isEqualTo(etag);
+      assertThat(blob.getMetadata().getContentMetadata().getContentType()).isEqualTo("text/csv");
+      assertThat(blob.getMetadata().getContentMetadata().getContentLength()).isEqualTo(1024 * 1024 + 3 + 2048);
+      assertThat(ByteStreams2.toByteArrayAndClose(blob.getPayload().openStream()))
+            .isEqualTo(ByteSource.concat(part1, part2).read());
+   }
+
+   @Test
+   public void testConcurrentUploadsOfTheSamePart() throws Exception {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      BlobMetadata metadata = blobStore.blobBuilder(BLOB_NAME).payload(new byte[0]).build().getMetadata();
+      final MultipartUpload mpu = blobStore.initiateMultipartUpload(CONTAINER_NAME, metadata, PutOptions.NONE);
+      final CountDownLatch start = new CountDownLatch(1);
+      List<ByteSource> sources = Lists.newArrayList();
+      List<Future<MultipartPart>> uploads = Lists.newArrayList();
+      ExecutorService executor = Executors.newFixedThreadPool(6);
+      try {
+         for (int i = 0; i < 6; i++) {
+            final ByteSource source = randomByteSource().slice(i, 1024);
+            sources.add(source);
+            uploads.add(executor.submit(new Callable<MultipartPart>() {
+               @Override
+               public MultipartPart call() throws Exception {
+                  start.await();
+                  return blobStore.uploadMultipartPart(mpu, 1, new ByteSourcePayload(source));
+               }
+            }));
+         }
+         start.countDown();
+         for (Future<MultipartPart> upload : uploads) {
+            upload.get(30, TimeUnit.SECONDS);
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+
+      List<MultipartPart> parts = blobStore.listMultipartUpload(mpu);
+      assertThat(parts).hasSize(1);
+      ByteSource winner = null;
+      for (ByteSource source : sources) {
+         if (source.hash(Hashing.md5()).toString().equals(parts.get(0).partETag())) {
+            winner = source;
+         }
+      }
+      assertNotNull(winner);
+      blobStore.completeMultipartUpload(mpu, parts);
+      Blob blob = blobStore.getBlob(CONTAINER_NAME, BLOB_NAME);
+      assertThat(ByteStreams2.toByteArrayAndClose(blob.getPayload().openStream())).isEqualTo(winner.read());
+   }
+
+   @Test
+   public void testAbortMultipartUpload() {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      BlobMetadata metadata = blobStore.blobBuilder(BLOB_NAME).payload(new byte[0]).build().getMetadata();
+      MultipartUpload mpu = blobStore.initiateMultipartUpload(CONTAINER_NAME, metadata, PutOptions.NONE);
+      blobStore.uploadMultipartPart(mpu, 1, new ByteSourcePayload(randomByteSource().slice(0, 1024)));
+
+      blobStore.abortMultipartUpload(mpu);
+      assertThat(blobStore.listMultipartUploads(CONTAINER_NAME)).isEmpty();
+      assertThat(blobStore.blobExists(CONTAINER_NAME, BLOB_NAME)).isFalse();
+   }
+
+   @Test(expectedExceptions = ContainerNotFoundException.class)
+   public void testInitiateMultipartUploadNotExistingContainer() {
+      BlobMetadata metadata = blobStore.blobBuilder(BLOB_NAME).payload(new byte[0]).build().getMetadata();
+      blobStore.initiateMultipartUpload(CONTAINER_NAME, metadata, PutOptions.NONE);
+   }
+
    @Test
    public void testBlobRequestSigner() throws Exception {
       String containerName = "container";
@@ -668,6 +904,14 @@ public abstract class BaseJdbcBlobStoreTest {
       return blobNames;
    }
 
+   private static List<String> names(PageSet<? extends StorageMetadata> page) {
+      List<String> names = Lists.newArrayList();
+      for (StorageMetadata metadata : page) {
+         names.add(metadata.getName());
+      }
+      return names;
+   }
+
    private void checkForContainerContent(final String containerName, List<String> expectedBlobKeys) {
       checkForContainerContent(containerName, null, expectedBlobKeys);
    }
@@ -17,16 +17,26 @@
 package org.jclouds.jdbc;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.jclouds.jdbc.codec.ChunkCodec;
+import org.jclouds.jdbc.entity.ChunkEntity;
+import org.jclouds.jdbc.entity.ChunkReference;
 import org.jclouds.jdbc.service.JdbcService;
 import org.jclouds.jdbc.util.JdbcInputStream;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 
 @Test(groups = "unit", testName = "JdbcInputStreamTest")
 public class JdbcInputStreamTest {
@@ -41,7 +51,7 @@ public class JdbcInputStreamTest {
    @Test(expectedExceptions = IllegalArgumentException.class)
    public void testInvalidIdList() throws IOException {
       expect(mockJdbcService.findChunkById(0L)).andReturn(null);
-      new JdbcInputStream(mockJdbcService, ImmutableList.<Long>builder().add(0L).build());
+      new JdbcInputStream(mockJdbcService, ImmutableList.<ChunkReference>builder().add(new ChunkReference(0L, 1)).build());
    }
 
    @Test(expectedExceptions = NullPointerException.class)
@@ -52,8 +62,169 @@ public class JdbcInputStreamTest {
    @Test
    public void testEmptyIdList() throws IOException {
       JdbcInputStream jdbcInputStream = new JdbcInputStream(mockJdbcService,
-            ImmutableList.<Long>builder().build());
+            ImmutableList.<ChunkReference>builder().build());
       assertThat(jdbcInputStream.read()).isEqualTo(-1);
    }
 
+   @Test
+   public void testSingleByteRead() throws IOException {
+      expect(mockJdbcService.findChunkById(1L)).andReturn(new ChunkEntity(new byte[] { 1, 2 }, 2));
+      expect(mockJdbcService.findChunkById(2L)).andReturn(new ChunkEntity(new byte[] { (byte) 0xff }, 1));
+      replay(mockJdbcService);
+
+      JdbcInputStream jdbcInputStream = new JdbcInputStream(mockJdbcService, ImmutableList.of(new ChunkReference(1L, 2),
+            new ChunkReference(2L, 1)));
+      assertThat(jdbcInputStream.read()).isEqualTo(1);
+      assertThat(jdbcInputStream.read()).isEqualTo(2);
+      assertThat(jdbcInputStream.read()).isEqualTo(0xff);
+      assertThat(jdbcInputStream.read()).isEqualTo(-1);
+      verify(mockJdbcService);
+   }
+
+   @Test
+   public void testBulkReadStopsAtChunkBoundary() throws IOException {
+      expect(mockJdbcService.findChunkById(1L)).andReturn(new ChunkEntity(new byte[] { 1, 2, 3 }, 3));
+      expect(mockJdbcService.findChunkById(2L)).andReturn(new ChunkEntity(new byte[] { 4, 5 }, 2));
+      replay(mockJdbcService);
+
+      JdbcInputStream jdbcInputStream = new JdbcInputStream(mockJdbcService, ImmutableList.of(new ChunkReference(1L, 3),
+            new ChunkReference(2L, 2)));
+      byte[] buffer = new byte[8];
+      assertThat(jdbcInputStream.read(buffer, 1, 7)).isEqualTo(3);
+      assertThat(jdbcInputStream.read(buffer, 4, 4)).isEqualTo(2);
+      assertThat(jdbcInputStream.read(buffer, 0, 8)).isEqualTo(-1);
+      assertThat(buffer).isEqualTo(new byte[] { 0, 1, 2, 3, 4, 5, 0, 0 });
+      verify(mockJdbcService);
+   }
+
+   @Test
+   public void testDecodesChunks() throws IOException {
+      byte[] data = new byte[1024];
+      byte[] deflated = ChunkCodec.DEFLATE.encode(data, data.length);
+      byte[] lz4 = ChunkCodec.LZ4.encode(data, data.length);
+      expect(mockJdbcService.findChunkById(1L)).andReturn(new ChunkEntity(deflated, 1024, null, ChunkCodec.DEFLATE));
+      expect(mockJdbcService.findChunkById(2L)).andReturn(new ChunkEntity(lz4, 1024, null, ChunkCodec.LZ4));
+      replay(mockJdbcService);
+
+      JdbcInputStream jdbcInputStream = new JdbcInputStream(mockJdbcService, ImmutableList.of(
+            new ChunkReference(1L, 1024), new ChunkReference(2L, 1024)));
+      assertThat(ByteStreams.toByteArray(jdbcInputStream)).hasSize(2048);
+      verify(mockJdbcService);
+   }
+
+   @Test
+   public void testPrefetchReadsChunksInOrder() throws IOException {
+      ImmutableList.Builder<ChunkReference> chunks = ImmutableList.builder();
+      for (long i = 0; i < 10; i++) {
+         chunks.add(new ChunkReference(i, 2));
+         expect(mockJdbcService.findChunkById(i)).andReturn(new ChunkEntity(new byte[] { (byte) i, (byte) i }, 2));
+      }
+      replay(mockJdbcService);
+
+      ExecutorService executor = Executors.newFixedThreadPool(3);
+      try {
+         JdbcInputStream jdbcInputStream = new JdbcInputStream(mockJdbcService, chunks.build(), executor, 3);
+         byte[] data = ByteStreams.toByteArray(jdbcInputStream);
+         assertThat(data).hasSize(20);
+         for (int i = 0; i < data.length; i++) {
+            assertThat(data[i]).isEqualTo((byte) (i / 2));
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+      verify(mockJdbcService);
+   }
+
+   @Test
+   public void testRangeFetchesOnlyOverlappingChunks() throws IOException {
+      JdbcService strictJdbcService = createMock(JdbcService.class);
+      expect(strictJdbcService.findChunkById(2L)).andReturn(new ChunkEntity(new byte[] { 4, 5, 6 }, 3));
+      expect(strictJdbcService.findChunkById(3L)).andReturn(new ChunkEntity(new byte[] { 7, 8, 9 }, 3));
+      replay(strictJdbcService);
+
+      JdbcInputStream jdbcInputStream = new JdbcInputStream(strictJdbcService, threeChunksOfThree(),
+            MoreExecutors.newDirectExecutorService(), 2, 4, 3);
+      try {
+         assertThat(ByteStreams.toByteArray(jdbcInputStream)).isEqualTo(new byte[] { 5, 6, 7 });
+      } finally {
+         jdbcInputStream.close();
+      }
+      verify(strictJdbcService);
+   }
+
+   @Test
+   public void testRangePastEndIsEmpty() throws IOException {
+      JdbcService strictJdbcService = createMock(JdbcService.class);
+      replay(strictJdbcService);
+
+      JdbcInputStream jdbcInputStream = new JdbcInputStream(strictJdbcService, threeChunksOfThree(),
+            MoreExecutors.newDirectExecutorService(), 0, 9, 10);
+      assertThat(jdbcInputStream.read()).isEqualTo(-1);
+      verify(strictJdbcService);
+   }
+
+   @Test
+   public void testSkipJumpsOverWholeChunks() throws IOException {
+      JdbcService strictJdbcService = createMock(JdbcService.class);
+      expect(strictJdbcService.findChunkById(1L)).andReturn(new ChunkEntity(new byte[] { 1, 2, 3 }, 3));
+      expect(strictJdbcService.findChunkById(3L)).andReturn(new ChunkEntity(new byte[] { 7, 8, 9 }, 3));
+      replay(strictJdbcService);
+
+      JdbcInputStream jdbcInputStream = new JdbcInputStream(strictJdbcService, threeChunksOfThree());
+      assertThat(jdbcInputStream.read()).isEqualTo(1);
+      assertThat(jdbcInputStream.skip(6)).isEqualTo(6);
+      assertThat(jdbcInputStream.read()).isEqualTo(8);
+      assertThat(jdbcInputStream.skip(5)).isEqualTo(1);
+      assertThat(jdbcInputStream.read()).isEqualTo(-1);
+      verify(strictJdbcService);
+   }
+
+   @Test
+   public void testRefetchesChunkNotMatchingItsChecksum() throws IOException {
+      byte[] data = { 4, 5, 6 };
+      int checksum = ChunkEntity.checksum(data, 0, data.length);
+      JdbcService strictJdbcService = createMock(JdbcService.class);
+      expect(strictJdbcService.findChunkById(1L)).andReturn(new ChunkEntity(new byte[] { 4, 5, 7 }, 3, null,
+            ChunkCodec.NONE, checksum));
+      expect(strictJdbcService.findChunkById(1L)).andReturn(new ChunkEntity(data, 3, null, ChunkCodec.NONE, checksum));
+      replay(strictJdbcService);
+
+      JdbcInputStream jdbcInputStream = new JdbcInputStream(strictJdbcService, ImmutableList.of(
+            new ChunkReference(1L, 3)));
+      assertThat(ByteStreams.toByteArray(jdbcInputStream)).isEqualTo(data);
+      verify(strictJdbcService);
+   }
+
+   @Test(expectedExceptions = IOException.class)
+   public void testFailsOnChunkNotMatchingItsChecksum() throws IOException {
+      byte[] data = { 4, 5, 6 };
+      int checksum = ChunkEntity.checksum(new byte[] { 4, 5, 7 }, 0, 3);
+      expect(mockJdbcService.findChunkById(1L)).andReturn(new ChunkEntity(new byte[] { 1, 2, 3 }, 3));
+      expect(mockJdbcService.findChunkById(2L)).andReturn(new ChunkEntity(data, 3, null, ChunkCodec.NONE, checksum))
+            .times(2);
+      replay(mockJdbcService);
+
+      JdbcInputStream jdbcInputStream = new JdbcInputStream(mockJdbcService, ImmutableList.of(
+            new ChunkReference(1L, 3), new ChunkReference(2L, 3)));
+      ByteStreams.toByteArray(jdbcInputStream);
+   }
+
+   @Test
+   public void testSkipsChecksumVerification() throws IOException {
+      byte[] data = { 4, 5, 6 };
+      int checksum = ChunkEntity.checksum(new byte[] { 4, 5, 7 }, 0, 3);
+      JdbcService strictJdbcService = createMock(JdbcService.class);
+      expect(strictJdbcService.findChunkById(1L)).andReturn(new ChunkEntity(data, 3, null, ChunkCodec.NONE, checksum));
+      replay(strictJdbcService);
+
+      JdbcInputStream jdbcInputStream = new JdbcInputStream(strictJdbcService, ImmutableList.of(
+            new ChunkReference(1L, 3)), MoreExecutors.newDirectExecutorService(), 0, 0, Long.MAX_VALUE, false);
+      assertThat(ByteStreams.toByteArray(jdbcInputStream)).isEqualTo(data);
+      verify(strictJdbcService);
+   }
+
+   private static ImmutableList<ChunkReference> threeChunksOfThree() {
+      return ImmutableList.of(new ChunkReference(1L, 3), new ChunkReference(2L, 3), new ChunkReference(3L, 3));
+   }
+
 }
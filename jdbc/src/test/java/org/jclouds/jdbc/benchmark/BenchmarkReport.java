@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.benchmark;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Prints benchmark results in a fixed layout so runs against different JPA providers can be compared.
+ */
+public final class BenchmarkReport {
+
+   private static final double MB = 1024 * 1024;
+
+   private BenchmarkReport() {
+      throw new AssertionError("Intentionally Unimplemented");
+   }
+
+   public static void throughput(String benchmark, String unit, String label, long bytes, Stopwatch stopwatch) {
+      double seconds = stopwatch.elapsed(TimeUnit.NANOSECONDS) / 1e9;
+      System.out.println(String.format(Locale.ENGLISH, "%-40s %-20s %-32s %10.1f MB/s %10d ms", benchmark, unit, label,
+            bytes / MB / seconds, stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+   }
+
+   public static void operations(String benchmark, String unit, String label, long operations, Stopwatch stopwatch) {
+      double seconds = stopwatch.elapsed(TimeUnit.NANOSECONDS) / 1e9;
+      System.out.println(String.format(Locale.ENGLISH, "%-40s %-20s %-32s %10.1f op/s %10d ms", benchmark, unit, label,
+            operations / seconds, stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+   }
+
+   public static void allocation(String benchmark, String unit, String label, long allocatedBytes, long bytes,
+         Stopwatch stopwatch) {
+      double seconds = stopwatch.elapsed(TimeUnit.NANOSECONDS) / 1e9;
+      System.out.println(String.format(Locale.ENGLISH, "%-40s %-20s %-32s %10.1f MB/s allocated %6.2f B/B", benchmark,
+            unit, label, allocatedBytes / MB / seconds, (double) allocatedBytes / bytes));
+   }
+
+   public static void ratio(String benchmark, String unit, String label, long storedBytes, long bytes) {
+      System.out.println(String.format(Locale.ENGLISH, "%-40s %-20s %-32s %10.3f stored/original", benchmark, unit,
+            label, (double) storedBytes / bytes));
+   }
+
+}
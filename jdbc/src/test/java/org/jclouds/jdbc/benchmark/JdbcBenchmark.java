@@ -0,0 +1,557 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jclouds.utils.TestUtils.randomByteSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.jdbc.codec.ChunkCodec;
+import org.jclouds.jdbc.entity.ChunkReference;
+import org.jclouds.jdbc.reference.JdbcConstants;
+import org.jclouds.jdbc.service.JdbcService;
+import org.jclouds.jdbc.util.JdbcInputStream;
+import org.jclouds.util.Closeables2;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Factory;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import com.google.inject.Module;
+import com.google.inject.persist.jpa.JpaPersistModule;
+
+/**
+ * Times the blobstore workloads against every persistence unit and prints one comparable line per measurement. The
+ * factory creates one instance per persistence unit; each workload fills its own container the first time it runs.
+ * <ul>
+ * <li>putBlob and getBlob of blobs from 1 KiB to {@code jclouds.jdbc.benchmark.max-blob-size} (256 MiB by default)
+ * with 1 to {@value #MAX_THREADS} threads; every run moves about {@value #BYTES_PER_RUN} bytes, and at least one
+ * blob</li>
+ * <li>paging through a container of {@code jclouds.jdbc.benchmark.list-size} blobs (100000 by default), and a storm
+ * of {@code jclouds.jdbc.benchmark.head-count} blobMetadata calls (100000 by default) on random keys of it</li>
+ * <li>clearContainer and deleteContainer of {@code jclouds.jdbc.benchmark.blob-count} blobs (50000 by default)</li>
+ * <li>delimited listings, recursive counts and a recursive delete in a binary tree {@value #LEVELS} levels deep
+ * holding {@code jclouds.jdbc.benchmark.tree-size} blobs (100000 by default)</li>
+ * <li>writing and reading a text and a random payload of {@code jclouds.jdbc.benchmark.codec-size} bytes (64 MiB by
+ * default) with every chunk codec, with the compression ratio</li>
+ * <li>reading a blob of {@code jclouds.jdbc.benchmark.blob-size} bytes (64 MiB by default) one byte at a time, and
+ * in bulk with and without chunk prefetching</li>
+ * <li>uploading a blob of {@code jclouds.jdbc.benchmark.upload-size} bytes (1 GiB by default), with the bytes the
+ * uploading thread allocates per byte stored</li>
+ * </ul>
+ */
+@Test(groups = "performance", singleThreaded = true)
+public class JdbcBenchmark {
+
+   private static final String BLOB_CONTAINER_NAME = "jclouds-benchmark-blobs";
+   private static final String LIST_CONTAINER_NAME = "jclouds-benchmark-list";
+   private static final String TREE_CONTAINER_NAME = "jclouds-benchmark-tree";
+   private static final String STREAM_CONTAINER_NAME = "jclouds-benchmark-stream";
+   private static final String CONTAINER_NAME = "jclouds-benchmark-container";
+
+   private static final long MAX_BLOB_SIZE = Long.getLong("jclouds.jdbc.benchmark.max-blob-size", 256 * 1024 * 1024);
+   private static final int LIST_SIZE = Integer.getInteger("jclouds.jdbc.benchmark.list-size", 100000);
+   private static final int HEAD_COUNT = Integer.getInteger("jclouds.jdbc.benchmark.head-count", 100000);
+   private static final int BLOB_COUNT = Integer.getInteger("jclouds.jdbc.benchmark.blob-count", 50000);
+   private static final int TREE_SIZE = Integer.getInteger("jclouds.jdbc.benchmark.tree-size", 100000);
+   private static final int CODEC_SIZE = Integer.getInteger("jclouds.jdbc.benchmark.codec-size", 64 * 1024 * 1024);
+   private static final long STREAM_SIZE = Long.getLong("jclouds.jdbc.benchmark.blob-size", 64 * 1024 * 1024);
+   private static final long UPLOAD_SIZE = Long.getLong("jclouds.jdbc.benchmark.upload-size", 1024 * 1024 * 1024);
+
+   private static final long BYTES_PER_RUN = 64 * 1024 * 1024;
+   private static final int MAX_OPERATIONS_PER_RUN = 1000;
+   private static final int MAX_THREADS = 16;
+   private static final int LEVELS = 10;
+   private static final int REPETITIONS = 100;
+
+   private final String jpaModuleName;
+
+   private BlobStoreContext context;
+   private BlobStore blobStore;
+   private boolean listContainerFilled;
+   private boolean treeContainerFilled;
+   private List<ChunkReference> streamChunks;
+
+   @Factory(dataProvider = "jpaModules")
+   public JdbcBenchmark(String jpaModuleName) {
+      this.jpaModuleName = jpaModuleName;
+   }
+
+   @DataProvider
+   public static Object[][] jpaModules() {
+      return new Object[][] { { "jclouds-test-hsqldb" }, { "jclouds-test-h2" } };
+   }
+
+   @BeforeClass
+   protected void setUp() {
+      context = newContext(new Properties());
+      blobStore = context.getBlobStore();
+   }
+
+   @AfterClass(alwaysRun = true)
+   protected void tearDown() throws IOException {
+      context.close();
+   }
+
+   @DataProvider
+   public Object[][] blobSizesAndThreads() {
+      List<Object[]> parameters = Lists.newArrayList();
+      for (long size = 1024; size <= MAX_BLOB_SIZE; size *= 4) {
+         for (int threads : new int[] { 1, 4, MAX_THREADS }) {
+            if (threads == 1 || operations(size) >= threads) {
+               parameters.add(new Object[] { size, threads });
+            }
+         }
+      }
+      return parameters.toArray(new Object[parameters.size()][]);
+   }
+
+   @DataProvider
+   public Object[][] threads() {
+      return new Object[][] { { 1 }, { 4 }, { MAX_THREADS } };
+   }
+
+   @DataProvider
+   public Object[][] codecs() {
+      ByteSource text = ByteSource.wrap(text(CODEC_SIZE));
+      byte[] random = new byte[CODEC_SIZE];
+      new Random(0).nextBytes(random);
+      ByteSource randomBytes = ByteSource.wrap(random);
+
+      Object[][] codecs = new Object[ChunkCodec.values().length * 2][];
+      int i = 0;
+      for (ChunkCodec codec : ChunkCodec.values()) {
+         codecs[i++] = new Object[] { codec, "text", text };
+         codecs[i++] = new Object[] { codec, "random", randomBytes };
+      }
+      return codecs;
+   }
+
+   @Test(dataProvider = "blobSizesAndThreads")
+   public void testPutAndGetBlob(final long size, int threads) throws Exception {
+      blobStore.createContainerInLocation(null, BLOB_CONTAINER_NAME);
+      int operations = operations(size);
+      String label = String.format("%s x%d", humanReadable(size), threads);
+
+      Stopwatch put = run(threads, operations, new Operation() {
+         @Override
+         public void run(int index) {
+            blobStore.putBlob(BLOB_CONTAINER_NAME, blobStore.blobBuilder(blobKey(size, index))
+                  .payload(randomByteSource(index).slice(0, size))
+                  .build());
+         }
+      });
+      BenchmarkReport.throughput(getClass().getSimpleName(), jpaModuleName, "putBlob " + label, size * operations,
+            put);
+
+      Stopwatch get = run(threads, operations, new Operation() {
+         @Override
+         public void run(int index) throws IOException {
+            InputStream in = blobStore.getBlob(BLOB_CONTAINER_NAME, blobKey(size, index)).getPayload().openStream();
+            try {
+               ByteStreams.copy(in, ByteStreams.nullOutputStream());
+            } finally {
+               Closeables2.closeQuietly(in);
+            }
+         }
+      });
+      BenchmarkReport.throughput(getClass().getSimpleName(), jpaModuleName, "getBlob " + label, size * operations,
+            get);
+
+      blobStore.clearContainer(BLOB_CONTAINER_NAME);
+   }
+
+   @Test(dataProvider = "threads")
+   public void testList(int threads) throws Exception {
+      fillListContainer();
+      Stopwatch stopwatch = run(threads, threads, new Operation() {
+         @Override
+         public void run(int index) {
+            String marker = null;
+            do {
+               ListContainerOptions options = ListContainerOptions.Builder.recursive();
+               if (marker != null) {
+                  options.afterMarker(marker);
+               }
+               PageSet<? extends StorageMetadata> page = blobStore.list(LIST_CONTAINER_NAME, options);
+               marker = page.getNextMarker();
+            } while (marker != null);
+         }
+      });
+      BenchmarkReport.operations(getClass().getSimpleName(), jpaModuleName,
+            String.format("list %d keys x%d", LIST_SIZE, threads), (long) LIST_SIZE * threads, stopwatch);
+   }
+
+   @Test(dataProvider = "threads")
+   public void testBlobMetadata(int threads) throws Exception {
+      fillListContainer();
+      Stopwatch stopwatch = run(threads, HEAD_COUNT, new Operation() {
+         @Override
+         public void run(int index) {
+            blobStore.blobMetadata(LIST_CONTAINER_NAME, listKey(ThreadLocalRandom.current().nextInt(LIST_SIZE)));
+         }
+      });
+      BenchmarkReport.operations(getClass().getSimpleName(), jpaModuleName, "blobMetadata x" + threads, HEAD_COUNT,
+            stopwatch);
+   }
+
+   public void testClearContainer() {
+      fillSmallBlobs(CONTAINER_NAME + "-clear");
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      blobStore.clearContainer(CONTAINER_NAME + "-clear");
+      stopwatch.stop();
+      BenchmarkReport.operations(getClass().getSimpleName(), jpaModuleName, "clearContainer", BLOB_COUNT, stopwatch);
+   }
+
+   public void testDeleteContainer() {
+      fillSmallBlobs(CONTAINER_NAME + "-delete");
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      blobStore.deleteContainer(CONTAINER_NAME + "-delete");
+      stopwatch.stop();
+      BenchmarkReport.operations(getClass().getSimpleName(), jpaModuleName, "deleteContainer", BLOB_COUNT, stopwatch);
+   }
+
+   public void testListRoot() {
+      fillTreeContainer();
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      for (int i = 0; i < REPETITIONS; i++) {
+         blobStore.list(TREE_CONTAINER_NAME, ListContainerOptions.NONE);
+      }
+      stopwatch.stop();
+      BenchmarkReport.operations(getClass().getSimpleName(), jpaModuleName, "list /", REPETITIONS, stopwatch);
+   }
+
+   public void testListDeepDirectory() {
+      fillTreeContainer();
+      String directory = directory(0, LEVELS / 2);
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      for (int i = 0; i < REPETITIONS; i++) {
+         blobStore.list(TREE_CONTAINER_NAME, ListContainerOptions.Builder.inDirectory(directory));
+      }
+      stopwatch.stop();
+      BenchmarkReport.operations(getClass().getSimpleName(), jpaModuleName, "list " + directory, REPETITIONS,
+            stopwatch);
+   }
+
+   public void testCountDirectory() {
+      fillTreeContainer();
+      String directory = directory(0, 2);
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      for (int i = 0; i < REPETITIONS; i++) {
+         blobStore.countBlobs(TREE_CONTAINER_NAME, ListContainerOptions.Builder.inDirectory(directory).recursive());
+      }
+      stopwatch.stop();
+      BenchmarkReport.operations(getClass().getSimpleName(), jpaModuleName, "countBlobs " + directory, REPETITIONS,
+            stopwatch);
+   }
+
+   @Test(dependsOnMethods = { "testListRoot", "testListDeepDirectory", "testCountDirectory" })
+   public void testDeleteDirectory() {
+      fillTreeContainer();
+      String directory = directory(1, 1);
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      blobStore.clearContainer(TREE_CONTAINER_NAME, ListContainerOptions.Builder.inDirectory(directory).recursive());
+      stopwatch.stop();
+      BenchmarkReport.operations(getClass().getSimpleName(), jpaModuleName, "clear " + directory, TREE_SIZE / 2,
+            stopwatch);
+   }
+
+   @Test(dataProvider = "codecs")
+   public void testCodec(ChunkCodec codec, String payloadName, ByteSource payload) throws IOException {
+      Properties overrides = new Properties();
+      overrides.setProperty(JdbcConstants.PROPERTY_JDBC_CHUNK_CODEC, codec.name());
+      BlobStoreContext codecContext = newContext(overrides);
+      try {
+         BlobStore codecBlobStore = codecContext.getBlobStore();
+         codecBlobStore.createContainerInLocation(null, CONTAINER_NAME);
+         String label = codec.name().toLowerCase() + " " + payloadName;
+
+         Stopwatch stopwatch = Stopwatch.createStarted();
+         codecBlobStore.putBlob(CONTAINER_NAME, codecBlobStore.blobBuilder(payloadName).payload(payload).build());
+         stopwatch.stop();
+         BenchmarkReport.throughput(getClass().getSimpleName(), jpaModuleName, label + " write", CODEC_SIZE,
+               stopwatch);
+
+         stopwatch = Stopwatch.createStarted();
+         InputStream is = codecBlobStore.getBlob(CONTAINER_NAME, payloadName).getPayload().openStream();
+         try {
+            ByteStreams.copy(is, ByteStreams.nullOutputStream());
+         } finally {
+            is.close();
+         }
+         stopwatch.stop();
+         BenchmarkReport.throughput(getClass().getSimpleName(), jpaModuleName, label + " read", CODEC_SIZE,
+               stopwatch);
+
+         BenchmarkReport.ratio(getClass().getSimpleName(), jpaModuleName, label, storedBytes(codec, payload.read()),
+               CODEC_SIZE);
+
+         codecBlobStore.deleteContainer(CONTAINER_NAME);
+      } finally {
+         codecContext.close();
+      }
+   }
+
+   public void testSingleByteReads() throws IOException {
+      InputStream in = new JdbcInputStream(jdbcService(), streamChunks());
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      long bytes = 0;
+      try {
+         while (in.read() != -1) {
+            bytes++;
+         }
+      } finally {
+         in.close();
+      }
+      stopwatch.stop();
+      assertThat(bytes).isEqualTo(STREAM_SIZE);
+      BenchmarkReport.throughput(getClass().getSimpleName(), jpaModuleName, "read()", bytes, stopwatch);
+   }
+
+   public void testBulkReads() throws IOException {
+      measureBulkReads(0);
+   }
+
+   public void testBulkReadsWithPrefetch() throws IOException {
+      measureBulkReads(1);
+      measureBulkReads(2);
+      measureBulkReads(4);
+   }
+
+   public void testPutLargeBlob() {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      long threadId = Thread.currentThread().getId();
+      long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      blobStore.putBlob(CONTAINER_NAME, blobStore.blobBuilder("large-blob")
+            .payload(randomByteSource().slice(0, UPLOAD_SIZE))
+            .build());
+      stopwatch.stop();
+      long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+      BenchmarkReport.throughput(getClass().getSimpleName(), jpaModuleName, "putBlob", UPLOAD_SIZE, stopwatch);
+      BenchmarkReport.allocation(getClass().getSimpleName(), jpaModuleName, "putBlob", allocated, UPLOAD_SIZE,
+            stopwatch);
+      blobStore.deleteContainer(CONTAINER_NAME);
+   }
+
+   private BlobStoreContext newContext(Properties overrides) {
+      return ContextBuilder.newBuilder("jdbc")
+            .overrides(overrides)
+            .modules(ImmutableSet.<Module> of(new JpaPersistModule(jpaModuleName)))
+            .build(BlobStoreContext.class);
+   }
+
+   private void measureBulkReads(int prefetch) throws IOException {
+      JdbcService jdbcService = jdbcService();
+      List<ChunkReference> chunks = streamChunks();
+      ExecutorService executor = Executors.newFixedThreadPool(Math.max(prefetch, 1));
+      try {
+         InputStream in = new JdbcInputStream(jdbcService, chunks, executor, prefetch);
+         Stopwatch stopwatch = Stopwatch.createStarted();
+         long bytes;
+         try {
+            bytes = ByteStreams.copy(in, ByteStreams.nullOutputStream());
+         } finally {
+            in.close();
+         }
+         stopwatch.stop();
+         assertThat(bytes).isEqualTo(STREAM_SIZE);
+         BenchmarkReport.throughput(getClass().getSimpleName(), jpaModuleName, "read(byte[]) prefetch=" + prefetch,
+               bytes, stopwatch);
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   private JdbcService jdbcService() {
+      return context.utils().injector().getInstance(JdbcService.class);
+   }
+
+   private List<ChunkReference> streamChunks() throws IOException {
+      if (streamChunks == null) {
+         JdbcService jdbcService = jdbcService();
+         jdbcService.createContainer(STREAM_CONTAINER_NAME);
+         streamChunks = jdbcService.createOrModifyBlob(STREAM_CONTAINER_NAME,
+               blobStore.blobBuilder("jclouds-benchmark-blob").payload(randomByteSource().slice(0, STREAM_SIZE))
+                     .build())
+               .getPayload().getChunks();
+      }
+      return streamChunks;
+   }
+
+   private void fillListContainer() throws Exception {
+      if (listContainerFilled) {
+         return;
+      }
+      blobStore.createContainerInLocation(null, LIST_CONTAINER_NAME);
+      run(4, LIST_SIZE, new Operation() {
+         @Override
+         public void run(int index) {
+            blobStore.putBlob(LIST_CONTAINER_NAME, blobStore.blobBuilder(listKey(index))
+                  .payload(Integer.toString(index))
+                  .build());
+         }
+      });
+      listContainerFilled = true;
+   }
+
+   private void fillTreeContainer() {
+      if (treeContainerFilled) {
+         return;
+      }
+      blobStore.createContainerInLocation(null, TREE_CONTAINER_NAME);
+      for (int i = 0; i < TREE_SIZE; i++) {
+         blobStore.putBlob(TREE_CONTAINER_NAME, blobStore.blobBuilder(treeKey(i))
+               .payload(ByteSource.wrap(Ints.toByteArray(i)))
+               .build());
+      }
+      treeContainerFilled = true;
+   }
+
+   private void fillSmallBlobs(String container) {
+      blobStore.createContainerInLocation(null, container);
+      for (int i = 0; i < BLOB_COUNT; i++) {
+         blobStore.putBlob(container, blobStore.blobBuilder("blob-" + i)
+               .payload(ByteSource.wrap(Ints.toByteArray(i)))
+               .build());
+      }
+   }
+
+   /**
+    * Runs the operation {@code operations} times, spread over the given number of threads, and times the whole run.
+    */
+   private static Stopwatch run(int threads, final int operations, final Operation operation) throws Exception {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+         final AtomicInteger next = new AtomicInteger();
+         List<Callable<Void>> workers = Lists.newArrayListWithCapacity(threads);
+         for (int i = 0; i < threads; i++) {
+            workers.add(new Callable<Void>() {
+               @Override
+               public Void call() throws Exception {
+                  for (int index = next.getAndIncrement(); index < operations; index = next.getAndIncrement()) {
+                     operation.run(index);
+                  }
+                  return null;
+               }
+            });
+         }
+         Stopwatch stopwatch = Stopwatch.createStarted();
+         for (Future<Void> worker : executor.invokeAll(workers)) {
+            worker.get();
+         }
+         return stopwatch.stop();
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   private static int operations(long size) {
+      return (int) Math.max(1, Math.min(MAX_OPERATIONS_PER_RUN, BYTES_PER_RUN / size));
+   }
+
+   private static String blobKey(long size, int index) {
+      return "blob-" + size + "-" + index;
+   }
+
+   private static String listKey(int index) {
+      return String.format("key-%08d", index);
+   }
+
+   /**
+    * Spreads the blobs over the leaves of the tree: bit k of the blob index picks the branch taken at level k.
+    */
+   private static String treeKey(int index) {
+      return directory(index, LEVELS) + "blob-" + index;
+   }
+
+   private static String directory(int index, int levels) {
+      StringBuilder directory = new StringBuilder();
+      for (int level = 0; level < levels; level++) {
+         directory.append("level").append(level).append('-').append((index >> level) & 1).append('/');
+      }
+      return directory.toString();
+   }
+
+   private static String humanReadable(long size) {
+      if (size >= 1024 * 1024) {
+         return size / (1024 * 1024) + " MiB";
+      }
+      return size / 1024 + " KiB";
+   }
+
+   /**
+    * Size of the payload once split into chunks and encoded the way the blobstore does.
+    */
+   private static long storedBytes(ChunkCodec codec, byte[] payload) {
+      int chunkSize = JdbcConstants.DEFAULT_CHUNK_SIZE;
+      long stored = 0;
+      for (int offset = 0; offset < payload.length; offset += chunkSize) {
+         int length = Math.min(chunkSize, payload.length - offset);
+         byte[] chunk = new byte[length];
+         System.arraycopy(payload, offset, chunk, 0, length);
+         byte[] encoded = codec.encode(chunk, length);
+         stored += encoded == null ? length : encoded.length;
+      }
+      return stored;
+   }
+
+   private static byte[] text(int size) {
+      Random random = new Random(0);
+      StringBuilder text = new StringBuilder(size);
+      while (text.length() < size) {
+         text.append("{\"timestamp\":").append(1433160000000L + random.nextInt(1000000))
+               .append(",\"level\":\"INFO\",\"request\":").append(random.nextInt(100000))
+               .append(",\"status\":").append(200 + random.nextInt(5))
+               .append(",\"message\":\"request served\"}\n");
+      }
+      return text.substring(0, size).getBytes(Charsets.UTF_8);
+   }
+
+   private interface Operation {
+      void run(int index) throws Exception;
+   }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.codec;
+
+import com.google.common.base.Charsets;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test(groups = "unit", testName = "ChunkCodecTest")
+public class ChunkCodecTest {
+
+   @DataProvider
+   public Object[][] codecs() {
+      return new Object[][] { { ChunkCodec.DEFLATE }, { ChunkCodec.LZ4 } };
+   }
+
+   @Test(dataProvider = "codecs")
+   public void testRoundTrip(ChunkCodec codec) throws IOException {
+      byte[] text = text(64 * 1024);
+      byte[] buffer = Arrays.copyOf(text, text.length + 100);
+
+      byte[] encoded = codec.encode(buffer, text.length);
+      assertThat(encoded).isNotNull();
+      assertThat(encoded.length).isLessThan(text.length);
+      assertThat(Arrays.equals(codec.decode(encoded, text.length), text)).isTrue();
+   }
+
+   @Test(dataProvider = "codecs")
+   public void testSkipsIncompressibleData(ChunkCodec codec) {
+      byte[] random = new byte[64 * 1024];
+      new Random(0).nextBytes(random);
+      assertThat(codec.encode(random, random.length)).isNull();
+      assertThat(codec.encode(new byte[1], 1)).isNull();
+   }
+
+   @Test(dataProvider = "codecs", expectedExceptions = IOException.class)
+   public void testDecodeWrongSize(ChunkCodec codec) throws IOException {
+      byte[] text = text(1024);
+      codec.decode(codec.encode(text, text.length), text.length + 1);
+   }
+
+   @Test
+   public void testNone() throws IOException {
+      byte[] text = text(1024);
+      assertThat(ChunkCodec.NONE.encode(text, text.length)).isNull();
+      assertThat(ChunkCodec.NONE.decode(text, text.length)).isSameAs(text);
+   }
+
+   @Test
+   public void testFromValue() {
+      assertThat(ChunkCodec.fromValue("lz4")).isEqualTo(ChunkCodec.LZ4);
+      assertThat(ChunkCodec.fromValue(" Deflate ")).isEqualTo(ChunkCodec.DEFLATE);
+      assertThat(ChunkCodec.fromValue("none")).isEqualTo(ChunkCodec.NONE);
+   }
+
+   private static byte[] text(int size) {
+      StringBuilder text = new StringBuilder(size);
+      for (int i = 0; text.length() < size; i++) {
+         text.append("2015-06-01 12:00:").append(i % 60).append(" INFO request ").append(i).append(" served\n");
+      }
+      return text.substring(0, size).getBytes(Charsets.UTF_8);
+   }
+
+}
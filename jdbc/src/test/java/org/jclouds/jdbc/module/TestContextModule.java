@@ -16,14 +16,22 @@
  */
 package org.jclouds.jdbc.module;
 
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+import org.jclouds.jdbc.JdbcApiMetadata;
 import org.jclouds.jdbc.config.JPAInitializer;
+import org.jclouds.jdbc.reference.JdbcConstants;
 
 public class TestContextModule extends AbstractModule {
 
    @Override
    protected void configure() {
       bind(JPAInitializer.class).asEagerSingleton();
+      Names.bindProperties(binder(), JdbcApiMetadata.defaultProperties());
+      bind(ListeningExecutorService.class).annotatedWith(Names.named(JdbcConstants.PREFETCH_EXECUTOR))
+            .toInstance(MoreExecutors.newDirectExecutorService());
    }
 
 }
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.service;
+
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.MutableBlobMetadata;
+import org.jclouds.blobstore.domain.internal.MutableBlobMetadataImpl;
+import org.jclouds.jdbc.entity.BlobEntityPK;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test(groups = "unit", testName = "JdbcServiceCacheTest")
+public class JdbcServiceCacheTest {
+
+   @Test
+   public void testBlobMetadataIsCopied() {
+      JdbcServiceCache cache = new JdbcServiceCache(10, 10, 0);
+      cache.putContainerId("container", 1L, cache.stamp());
+      MutableBlobMetadata metadata = metadata("blob");
+      cache.putBlobMetadata("container", metadata, cache.stamp());
+      metadata.setETag("changed");
+
+      BlobMetadata cached = cache.getBlobMetadata("container", "blob");
+      assertThat(cached.getETag()).isEqualTo("etag");
+      assertThat(cached).isNotSameAs(cache.getBlobMetadata("container", "blob"));
+      assertThat(cache.blobMetadataStats().hitCount()).isEqualTo(2);
+   }
+
+   @Test
+   public void testBlobMetadataNeedsContainerId() {
+      JdbcServiceCache cache = new JdbcServiceCache(10, 10, 0);
+      cache.putBlobMetadata("container", metadata("blob"), cache.stamp());
+      assertThat(cache.getBlobMetadata("container", "blob")).isNull();
+   }
+
+   @Test
+   public void testInvalidateBlob() {
+      JdbcServiceCache cache = new JdbcServiceCache(10, 10, 0);
+      cache.putContainerId("container", 1L, cache.stamp());
+      cache.putBlobMetadata("container", metadata("blob"), cache.stamp());
+      cache.invalidateBlob(new BlobEntityPK(1L, "blob"));
+      assertThat(cache.getBlobMetadata("container", "blob")).isNull();
+      assertThat(cache.blobMetadataStats().missCount()).isEqualTo(1);
+   }
+
+   @Test
+   public void testInvalidateContainerKeepsOtherContainers() {
+      JdbcServiceCache cache = new JdbcServiceCache(10, 10, 0);
+      cache.putContainerId("first", 1L, cache.stamp());
+      cache.putContainerId("second", 2L, cache.stamp());
+      cache.putBlobMetadata("first", metadata("blob"), cache.stamp());
+      cache.putBlobMetadata("second", metadata("blob"), cache.stamp());
+
+      cache.invalidateContainer("first");
+      assertThat(cache.getContainerId("first")).isNull();
+      assertThat(cache.getBlobMetadata("second", "blob")).isNotNull();
+      cache.putContainerId("first", 1L, cache.stamp());
+      assertThat(cache.getBlobMetadata("first", "blob")).isNull();
+   }
+
+   @Test
+   public void testDisabledCaches() {
+      JdbcServiceCache cache = new JdbcServiceCache(0, 0, 0);
+      cache.putContainerId("container", 1L, cache.stamp());
+      assertThat(cache.getContainerId("container")).isNull();
+   }
+
+   @Test
+   public void testReadInterleavedWithOverwriteIsNotCached() {
+      JdbcServiceCache cache = new JdbcServiceCache(10, 10, 0);
+      cache.putContainerId("container", 1L, cache.stamp());
+
+      // a metadata read misses the cache and loads the blob from the database
+      long stamp = cache.stamp();
+      MutableBlobMetadata stale = metadata("blob");
+      // an overwrite invalidates the blob in its transaction, then commits
+      cache.beginUpdate();
+      cache.invalidateBlob(new BlobEntityPK(1L, "blob"));
+      cache.endUpdate();
+      // the read completes and caches what it loaded before the commit
+      cache.putBlobMetadata("container", stale, stamp);
+
+      assertThat(cache.getBlobMetadata("container", "blob")).isNull();
+   }
+
+   @Test
+   public void testReadDuringUncommittedOverwriteIsNotCached() {
+      JdbcServiceCache cache = new JdbcServiceCache(10, 10, 0);
+      cache.putContainerId("container", 1L, cache.stamp());
+
+      cache.beginUpdate();
+      cache.invalidateBlob(new BlobEntityPK(1L, "blob"));
+      // a read between the invalidation and the commit still sees the previous metadata
+      long stamp = cache.stamp();
+      cache.putBlobMetadata("container", metadata("blob"), stamp);
+      assertThat(cache.getBlobMetadata("container", "blob")).isNull();
+      cache.endUpdate();
+
+      cache.putBlobMetadata("container", metadata("blob"), stamp);
+      assertThat(cache.getBlobMetadata("container", "blob")).isNull();
+      cache.putBlobMetadata("container", metadata("blob"), cache.stamp());
+      assertThat(cache.getBlobMetadata("container", "blob")).isNotNull();
+   }
+
+   @Test
+   public void testContainerIdReadDuringDeleteIsNotCached() {
+      JdbcServiceCache cache = new JdbcServiceCache(10, 10, 0);
+      long stamp = cache.stamp();
+      cache.beginUpdate();
+      cache.invalidateContainer("container");
+      cache.endUpdate();
+      cache.putContainerId("container", 1L, stamp);
+      assertThat(cache.getContainerId("container")).isNull();
+   }
+
+   @Test
+   public void testEntriesExpire() throws InterruptedException {
+      JdbcServiceCache cache = new JdbcServiceCache(10, 10, 50);
+      cache.putContainerId("container", 1L, cache.stamp());
+      Thread.sleep(100);
+      assertThat(cache.getContainerId("container")).isNull();
+   }
+
+   private static MutableBlobMetadata metadata(String name) {
+      MutableBlobMetadata metadata = new MutableBlobMetadataImpl();
+      metadata.setName(name);
+      metadata.setETag("etag");
+      return metadata;
+   }
+
+}
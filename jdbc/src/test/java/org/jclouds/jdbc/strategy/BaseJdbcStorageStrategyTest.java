@@ -17,10 +17,13 @@
 package org.jclouds.jdbc.strategy;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Module;
 import com.google.inject.persist.PersistService;
+import com.google.inject.persist.UnitOfWork;
 import com.google.inject.persist.jpa.JpaPersistModule;
 import org.jclouds.blobstore.domain.Blob;
 import org.jclouds.blobstore.domain.BlobAccess;
@@ -29,11 +32,18 @@ import org.jclouds.blobstore.domain.StorageMetadata;
 import org.jclouds.blobstore.domain.StorageType;
 import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
 import org.jclouds.blobstore.options.CreateContainerOptions;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.jdbc.entity.BlobEntity;
+import org.jclouds.jdbc.entity.ChunkEntity;
+import org.jclouds.jdbc.gc.ChunkGarbageCollector;
+import org.jclouds.jdbc.gc.GarbageCollection;
 import org.jclouds.jdbc.module.TestContextModule;
+import org.jclouds.jdbc.service.JdbcService;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import javax.persistence.EntityManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
@@ -167,6 +177,50 @@ public abstract class BaseJdbcStorageStrategyTest {
         }
     }
 
+   @Test
+   public void testGetBlobSpanningSeveralWriteBatches() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      ByteSource payload = randomByteSource().slice(0, 9 * 1024 * 1024 + 3);
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload(payload).build());
+      InputStream data = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload().openStream();
+      try {
+         assertThat(ByteStreams.toByteArray(data)).isEqualTo(payload.read());
+      } finally {
+         data.close();
+      }
+   }
+
+   @Test
+   public void testPutBlobDeduplicatesChunks() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      ByteSource payload = randomByteSource().slice(0, 2 * 1024 * 1024 + 1);
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME + "1").payload(payload).build());
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME + "2").payload(payload).build());
+      assertThat(countChunks()).isEqualTo(3);
+
+      storageStrategy.removeBlob(CONTAINER_NAME, BLOB_NAME + "1");
+      assertThat(countChunks()).isEqualTo(3);
+      InputStream data = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME + "2").getPayload().openStream();
+      try {
+         assertThat(ByteStreams.toByteArray(data)).isEqualTo(payload.read());
+      } finally {
+         data.close();
+      }
+
+      storageStrategy.removeBlob(CONTAINER_NAME, BLOB_NAME + "2");
+      assertThat(countChunks()).isEqualTo(0);
+   }
+
+   @Test
+   public void testOverwriteBlobReleasesChunks() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name(BLOB_NAME).payload(randomByteSource().slice(0, 2 * 1024 * 1024)).build());
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name(BLOB_NAME).payload(getByteArray('a', 1024)).build());
+      assertThat(countChunks()).isEqualTo(1);
+   }
+
    @Test
    public void testRemoveBlob() throws IOException {
       assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
@@ -203,6 +257,152 @@ public abstract class BaseJdbcStorageStrategyTest {
       assertThat(storageStrategy.containerExists(CONTAINER_NAME)).isFalse();
    }
 
+   @Test
+   public void testCountBlobs() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.createDirectory(CONTAINER_NAME, "dir");
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("dir/a").payload(getByteArray('a', 1024)).build());
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("dir/b").payload(getByteArray('b', 1024)).build());
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("other").payload(getByteArray('c', 1024)).build());
+      assertThat(storageStrategy.countBlobs(CONTAINER_NAME, ListContainerOptions.NONE)).isEqualTo(4);
+      assertThat(storageStrategy.countBlobs(CONTAINER_NAME, ListContainerOptions.Builder.inDirectory("dir")))
+            .isEqualTo(2);
+      assertThat(storageStrategy.countBlobs(CONTAINER_NAME + "-missing", ListContainerOptions.NONE)).isEqualTo(0);
+   }
+
+   @Test
+   public void testDirectoryExists() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.createDirectory(CONTAINER_NAME, "dir");
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("file").payload(getByteArray('a', 1024)).build());
+      assertThat(storageStrategy.directoryExists(CONTAINER_NAME, "dir")).isTrue();
+      assertThat(storageStrategy.directoryExists(CONTAINER_NAME, "file")).isFalse();
+      assertThat(storageStrategy.directoryExists(CONTAINER_NAME, "missing")).isFalse();
+   }
+
+   @Test
+   public void testFindChildDirectoriesAfterMarker() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      for (String name : new String[] { "a/x", "b/x", "b/y/z", "c/x", "d" }) {
+         storageStrategy.putBlob(CONTAINER_NAME,
+               new BlobBuilderImpl().name(name).payload(getByteArray('a', 16)).build());
+      }
+
+      JdbcService jdbcService = injector.getInstance(JdbcService.class);
+      assertThat(jdbcService.findChildDirectories(CONTAINER_NAME, "", null, 2)).containsExactly("a/", "b/");
+      assertThat(jdbcService.findChildDirectories(CONTAINER_NAME, "", "a/", 1)).containsExactly("b/");
+      assertThat(jdbcService.findChildDirectories(CONTAINER_NAME, "", "b/x", 10)).containsExactly("c/");
+      assertThat(jdbcService.findChildDirectories(CONTAINER_NAME, "b/", null, 10)).containsExactly("b/y/");
+   }
+
+   @Test
+   public void testMigrateParentPaths() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("dir/sub/a").payload(getByteArray('a', 1024)).build());
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("b").payload(getByteArray('b', 1024)).build());
+
+      UnitOfWork unitOfWork = injector.getInstance(UnitOfWork.class);
+      unitOfWork.begin();
+      try {
+         EntityManager entityManager = injector.getInstance(EntityManager.class);
+         entityManager.getTransaction().begin();
+         entityManager.createQuery("UPDATE " + BlobEntity.class.getName() + " b SET b.parentPath = NULL, b.depth = NULL")
+               .executeUpdate();
+         entityManager.getTransaction().commit();
+      } finally {
+         unitOfWork.end();
+      }
+
+      JdbcService jdbcService = injector.getInstance(JdbcService.class);
+      assertThat(jdbcService.migrateParentPaths(1)).isEqualTo(1);
+      assertThat(jdbcService.migrateParentPaths(10)).isEqualTo(1);
+      assertThat(jdbcService.migrateParentPaths(10)).isEqualTo(0);
+      assertThat(jdbcService.findChildDirectories(CONTAINER_NAME, "", null, 10)).containsExactly("dir/");
+      assertThat(jdbcService.findChildDirectories(CONTAINER_NAME, "dir/", null, 10)).containsExactly("dir/sub/");
+      assertThat(jdbcService.findBlobsByParentPath(CONTAINER_NAME, "dir/sub/", null, 10)).hasSize(1);
+   }
+
+   @Test
+   public void testCollectUnreferencedChunks() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name(BLOB_NAME).payload(getByteArray('a', 1024)).build());
+
+      UnitOfWork unitOfWork = injector.getInstance(UnitOfWork.class);
+      unitOfWork.begin();
+      try {
+         EntityManager entityManager = injector.getInstance(EntityManager.class);
+         entityManager.getTransaction().begin();
+         entityManager.persist(new ChunkEntity(getByteArray('b', 100), 100));
+         entityManager.persist(new ChunkEntity(getByteArray('c', 200), 200));
+         entityManager.getTransaction().commit();
+      } finally {
+         unitOfWork.end();
+      }
+      assertThat(countChunks()).isEqualTo(3);
+
+      ChunkGarbageCollector collector = injector.getInstance(ChunkGarbageCollector.class);
+      GarbageCollection collection = collector.collect();
+      assertThat(collection.getReclaimedChunks()).isEqualTo(2);
+      assertThat(collection.getReclaimedBytes()).isEqualTo(300);
+      assertThat(countChunks()).isEqualTo(1);
+      assertThat(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload().getContentMetadata()
+            .getContentLength()).isEqualTo(1024);
+
+      assertThat(collector.collect().getReclaimedChunks()).isEqualTo(0);
+      assertThat(collector.getRuns()).isEqualTo(2);
+      assertThat(collector.getReclaimedBytes()).isEqualTo(300);
+   }
+
+   private long countChunks() {
+      UnitOfWork unitOfWork = injector.getInstance(UnitOfWork.class);
+      unitOfWork.begin();
+      try {
+         return injector.getInstance(EntityManager.class)
+               .createQuery("SELECT COUNT(c) FROM " + ChunkEntity.class.getName() + " c", Long.class)
+               .getSingleResult();
+      } finally {
+         unitOfWork.end();
+      }
+   }
+
+   @Test
+   public void testDeleteBlobsByContainerInBatches() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      for (int i = 0; i < 3; i++) {
+         storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME + i)
+               .payload(randomByteSource().slice(i * 1024, 1024 * 1024 + 1)).build());
+      }
+      JdbcService jdbcService = injector.getInstance(JdbcService.class);
+      assertThat(jdbcService.deleteBlobsByContainer(CONTAINER_NAME, 2)).isEqualTo(2);
+      assertThat(storageStrategy.getBlobKeysInsideContainer(CONTAINER_NAME)).hasSize(1);
+      assertThat(jdbcService.deleteBlobsByContainer(CONTAINER_NAME, 2)).isEqualTo(1);
+      assertThat(storageStrategy.getBlobKeysInsideContainer(CONTAINER_NAME)).isEmpty();
+      assertThat(countChunks()).isEqualTo(0);
+   }
+
+   @Test
+   public void testClearDirectory() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.createDirectory(CONTAINER_NAME, "dir");
+      storageStrategy.createDirectory(CONTAINER_NAME, "dir/sub");
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("dir/a").payload(getByteArray('a', 1024)).build());
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("dir/sub/b").payload(getByteArray('b', 1024)).build());
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("other").payload(getByteArray('c', 1024)).build());
+      storageStrategy.clearContainer(CONTAINER_NAME, ListContainerOptions.Builder.inDirectory("dir"));
+      assertThat(storageStrategy.getBlobKeysInsideContainer(CONTAINER_NAME)).containsOnly("dir", "other");
+      assertThat(countChunks()).isEqualTo(1);
+   }
+
     private byte[] getByteArray(char c, int len) {
         byte[] array = new byte[len];
         Arrays.fill(array, (byte) c);
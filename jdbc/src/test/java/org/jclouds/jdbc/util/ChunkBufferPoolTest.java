@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.util;
+
+import org.jclouds.jdbc.reference.JdbcConstants;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test(groups = "unit", testName = "ChunkBufferPoolTest")
+public class ChunkBufferPoolTest {
+
+   @Test
+   public void testReleasedBufferIsReused() {
+      ChunkBufferPool pool = new ChunkBufferPool(16, 1);
+      byte[] buffer = pool.acquire();
+      assertThat(buffer).hasSize(16);
+      pool.release(buffer);
+      assertThat(pool.acquire()).isSameAs(buffer);
+   }
+
+   @Test
+   public void testBuffersOfOtherSizesAreNotPooled() {
+      ChunkBufferPool pool = new ChunkBufferPool(16, 1);
+      byte[] partial = new byte[5];
+      pool.release(partial);
+      assertThat(pool.acquire()).isNotSameAs(partial).hasSize(16);
+   }
+
+   @Test
+   public void testIdleBuffersAreBounded() {
+      ChunkBufferPool pool = new ChunkBufferPool(16, 1);
+      byte[] first = pool.acquire();
+      byte[] second = pool.acquire();
+      byte[] third = pool.acquire();
+      pool.release(first);
+      pool.release(second);
+      pool.release(third);
+      assertThat(pool.acquire()).isSameAs(first);
+      assertThat(pool.acquire()).isSameAs(second);
+      assertThat(pool.acquire()).isNotSameAs(third);
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testChunkSizeAboveColumnLength() {
+      new ChunkBufferPool(JdbcConstants.MAX_CHUNK_SIZE + 1, 1);
+   }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.util;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test(groups = "unit", testName = "DirectoryPathsTest")
+public class DirectoryPathsTest {
+
+   @Test
+   public void testParentPath() {
+      assertThat(DirectoryPaths.parentPath("blob")).isEmpty();
+      assertThat(DirectoryPaths.parentPath("a/b/blob")).isEqualTo("a/b/");
+      assertThat(DirectoryPaths.parentPath("a/b/")).isEqualTo("a/b/");
+   }
+
+   @Test
+   public void testDepth() {
+      assertThat(DirectoryPaths.depth("")).isEqualTo(0);
+      assertThat(DirectoryPaths.depth("a/b/")).isEqualTo(2);
+   }
+
+   @Test
+   public void testDirectoryPrefix() {
+      assertThat(DirectoryPaths.directoryPrefix("")).isEmpty();
+      assertThat(DirectoryPaths.directoryPrefix("dir")).isEqualTo("dir/");
+      assertThat(DirectoryPaths.directoryPrefix("dir/")).isEqualTo("dir/");
+   }
+
+   @Test
+   public void testUpperBound() {
+      assertThat(DirectoryPaths.upperBound("dir/")).isEqualTo("dir0");
+      assertThat(DirectoryPaths.upperBound("a" + Character.MAX_VALUE)).isEqualTo("b");
+      assertThat(DirectoryPaths.upperBound(String.valueOf(Character.MAX_VALUE))).isNull();
+      assertThat("dir/sub/blob".compareTo(DirectoryPaths.upperBound("dir/"))).isNegative();
+      assertThat("dir-sibling".compareTo("dir/")).isNegative();
+      assertThat("dir0/blob".compareTo(DirectoryPaths.upperBound("dir/"))).isPositive();
+   }
+
+}
@@ -22,6 +22,7 @@ import static com.google.common.collect.Iterables.contains;
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.util.concurrent.Futures.getUnchecked;
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.apache.jclouds.profitbricks.rest.config.ProfitBricksComputeProperties.POLL_PREDICATE_DATACENTER;
 import static org.apache.jclouds.profitbricks.rest.config.ProfitBricksComputeProperties.POLL_PREDICATE_NIC;
 import static org.apache.jclouds.profitbricks.rest.config.ProfitBricksComputeProperties.POLL_PREDICATE_SERVER;
@@ -43,6 +44,8 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.apache.jclouds.profitbricks.rest.ProfitBricksApi;
+import org.apache.jclouds.profitbricks.rest.compute.concurrent.ProvisioningGraph;
+import org.apache.jclouds.profitbricks.rest.compute.concurrent.ProvisioningGraph.Step;
 import org.apache.jclouds.profitbricks.rest.compute.concurrent.ProvisioningJob;
 import org.apache.jclouds.profitbricks.rest.compute.concurrent.ProvisioningManager;
 import org.apache.jclouds.profitbricks.rest.compute.function.ProvisionableToImage;
@@ -114,6 +117,13 @@ public class ProfitBricksComputeServiceAdapter implements ComputeServiceAdapter<
    private List<DataCenter> datacetners;
 
    private static final Integer DEFAULT_LAN_ID = 1;
+   private static final String VOLUME_STEP = "volume-";
+   private static final String ATTACH_STEP = "attach-";
+   private static final String SERVER_STEP = "server";
+   private static final String LAN_STEP = "lan";
+   private static final String NIC_STEP = "nic";
+   private static final String READY_STEP = "-ready";
+   private static final String FIREWALL_STEP = "firewall-";
 
    @Inject
    ProfitBricksComputeServiceAdapter(ProfitBricksApi api,
@@ -152,223 +162,319 @@ public class ProfitBricksComputeServiceAdapter implements ComputeServiceAdapter<
    protected NodeAndInitialCredentials<ServerInDataCenter> createNodeWithGroupEncodedIntoName(String group, String name, TemplateWithDataCenter template) {
       checkArgument(template.getLocation().getScope() == LocationScope.ZONE, "Template must use a ZONE-scoped location");
       final String dataCenterId = template.getDataCenter().id();
-      Hardware hardware = template.getHardware();
       TemplateOptions options = template.getOptions();
       final String loginUser = isNullOrEmpty(options.getLoginUser()) ? "root" : options.getLoginUser();
       final String pubKey = options.getPublicKey();
       final String password = options.hasLoginPassword() ? options.getLoginPassword() : passwordGenerator.generate();
-      final org.jclouds.compute.domain.Image image = template.getImage();
-      final int[] inboundPorts = template.getOptions().getInboundPorts();
 
-      // provision all volumes based on hardware
-      List<? extends Volume> volumes = hardware.getVolumes();
-      List<String> volumeIds = Lists.newArrayListWithExpectedSize(volumes.size());
+      Server server = provisionServer(new ProvisioningGraph(executorService), name, dataCenterId,
+              template.getHardware(), template.getImage(), options, password);
 
-      int i = 1;
-      for (final Volume volume : volumes) {
-         try {
-            logger.trace("<< provisioning volume '%s'", volume);
-            final org.apache.jclouds.profitbricks.rest.domain.Volume.Request.CreatePayload.Builder request = org.apache.jclouds.profitbricks.rest.domain.Volume.Request.creatingBuilder();
-            if (i == 1) {
-               request.image(image.getId());
-               // we don't need to pass password to the API if we're using a snapshot
-               Provisionable.Type provisionableType = Provisionable.Type.fromValue(
-                       image.getUserMetadata().get(ProvisionableToImage.KEY_PROVISIONABLE_TYPE));
-               if (provisionableType == Provisionable.Type.IMAGE) {
-                  if (pubKey != null) {
-                     request.sshKeys(new HashSet<String>(Arrays.asList(pubKey)));
-                  } else {
-                     request.imagePassword(password);
-                  }
-               }
-
-            }
-            request.dataCenterId(dataCenterId).
-                    name(format("%s-disk-%d", name, i++)).
-                    size(volume.getSize().intValue()).
-                    type(VolumeType.HDD);
-
-            org.apache.jclouds.profitbricks.rest.domain.Volume vol = (org.apache.jclouds.profitbricks.rest.domain.Volume) provisioningManager
-                    .provision(jobFactory.create(dataCenterId, new Supplier<Object>() {
-                       @Override
-                       public Object get() {
-                          return api.volumeApi().createVolume(request.build());
-                       }
-                    }));
-
-            volumeIds.add(vol.id());
-            logger.trace(">> provisioning complete for volume. returned id='%s'", vol.id());
-         } catch (Exception ex) {
-            if (i - 1 == 1) // if first volume (one with image) provisioning fails; stop method
-            {
-               throw Throwables.propagate(ex);
-            }
-            logger.warn(ex, ">> failed to provision volume. skipping..");
-         }
-      }
-
-      String volumeBootDeviceId = Iterables.get(volumeIds, 0); // must have atleast 1
-      waitVolumeUntilAvailable.apply(VolumeRef.create(dataCenterId, volumeBootDeviceId));
+      waitDcUntilAvailable.apply(dataCenterId);
+      waitServerUntilAvailable.apply(ServerRef.create(dataCenterId, server.id()));
 
-      // provision server
-      final Server server;
-      Double cores = ComputeServiceUtils.getCores(hardware);
+      LoginCredentials serverCredentials = LoginCredentials.builder()
+              .user(loginUser)
+              .privateKey(pubKey)
+              .password(password)
+              .build();
 
-      Server.BootVolume bootVolume = Server.BootVolume.create(volumeBootDeviceId);
+      String serverInDataCenterId = DataCenterAndId.fromDataCenterAndId(dataCenterId, server.id()).slashEncode();
+      ServerInDataCenter serverInDatacenter = getNode(serverInDataCenterId);
 
-      try {
-         final Server.Request.CreatePayload serverRequest = Server.Request.creatingBuilder()
-                 .dataCenterId(dataCenterId)
-                 .name(name)
-                 .bootVolume(bootVolume)
-                 .cores(cores.intValue())
-                 .ram(hardware.getRam())
-                 .build();
+      return new NodeAndInitialCredentials<ServerInDataCenter>(serverInDatacenter, serverInDataCenterId, serverCredentials);
+   }
 
-         logger.trace("<< provisioning server '%s'", serverRequest);
+   /**
+    * Runs the steps provisioning a server, rolling back what was created if one of them fails.
+    */
+   Server provisionServer(ProvisioningGraph graph, String name, String dataCenterId, Hardware hardware,
+           org.jclouds.compute.domain.Image image, TemplateOptions options, String password) {
+      Step<Server> server = addProvisioningSteps(graph, name, dataCenterId, hardware, image, options, password);
+
+      // let the steps still running complete, so everything they created is rolled back
+      graph.await();
+      Throwable failure = graph.failure();
+      if (failure != null) {
+         logger.error(failure, ">> failed to provision server '%s'. rollbacking..", name);
+         rollback(graph, server, dataCenterId);
+         throw Throwables.propagate(failure);
+      }
+      logger.debug(">> server '%s' provisioned in %d ms. critical path: %s, step durations (ms): %s", name,
+              graph.elapsed(MILLISECONDS), graph.criticalPath(), graph.durations(MILLISECONDS));
+      return server.get();
+   }
 
-         server = (Server) provisioningManager.provision(jobFactory.create(dataCenterId, new Supplier<Object>() {
+   /**
+    * Adds the steps provisioning a server to the graph. The requests changing the data center still go one at a time
+    * through the provisioning manager, which waits for the data center to be available before and after each of them;
+    * what overlaps with them is the work which doesn't change the data center: the LAN lookup and the polling for the
+    * volume, the server and the NIC to become available.
+    *
+    * @return the step creating the server
+    */
+   private Step<Server> addProvisioningSteps(ProvisioningGraph graph, final String name, final String dataCenterId,
+           Hardware hardware, final org.jclouds.compute.domain.Image image, TemplateOptions options,
+           final String password) {
+      final String pubKey = options.getPublicKey();
+      final List<? extends Volume> volumes = hardware.getVolumes();
+      checkArgument(!volumes.isEmpty(), "Hardware %s must have at least one volume", hardware.getId());
+      final Double cores = ComputeServiceUtils.getCores(hardware);
+      final int ram = hardware.getRam();
+      final int[] inboundPorts = options.getInboundPorts();
+
+      // provision all volumes based on hardware, the first one from the image
+      final Step<org.apache.jclouds.profitbricks.rest.domain.Volume> bootVolume = graph.add(VOLUME_STEP + 1,
+              new Callable<org.apache.jclouds.profitbricks.rest.domain.Volume>() {
+         @Override
+         public org.apache.jclouds.profitbricks.rest.domain.Volume call() {
+            org.apache.jclouds.profitbricks.rest.domain.Volume.Request.CreatePayload.Builder request = volumeRequest(dataCenterId, name, 1, volumes.get(0));
+            request.image(image.getId());
+            // we don't need to pass password to the API if we're using a snapshot
+            Provisionable.Type provisionableType = Provisionable.Type.fromValue(
+                    image.getUserMetadata().get(ProvisionableToImage.KEY_PROVISIONABLE_TYPE));
+            if (provisionableType == Provisionable.Type.IMAGE) {
+               if (pubKey != null) {
+                  request.sshKeys(new HashSet<String>(Arrays.asList(pubKey)));
+               } else {
+                  request.imagePassword(password);
+               }
+            }
+            org.apache.jclouds.profitbricks.rest.domain.Volume volume = createVolume(dataCenterId, request.build());
+            waitVolumeUntilAvailable.apply(VolumeRef.create(dataCenterId, volume.id()));
+            return volume;
+         }
+      });
 
+      List<Step<org.apache.jclouds.profitbricks.rest.domain.Volume>> extraVolumes = Lists.newArrayList();
+      for (int i = 2; i <= volumes.size(); i++) {
+         final int index = i;
+         extraVolumes.add(graph.add(VOLUME_STEP + i, new Callable<org.apache.jclouds.profitbricks.rest.domain.Volume>() {
             @Override
-            public Object get() {
-               return api.serverApi().createServer(serverRequest);
+            public org.apache.jclouds.profitbricks.rest.domain.Volume call() {
+               try {
+                  return createVolume(dataCenterId, volumeRequest(dataCenterId, name, index, volumes.get(index - 1)).build());
+               } catch (Exception ex) {
+                  logger.warn(ex, ">> failed to provision volume. skipping..");
+                  return null;
+               }
             }
          }));
-         logger.trace(">> provisioning complete for server. returned id='%s'", server.id());
-
-      } catch (Exception ex) {
-         logger.error(ex, ">> failed to provision server. rollbacking..");
-         destroyVolumes(volumeIds, dataCenterId);
-         throw Throwables.propagate(ex);
       }
 
-      waitServerUntilAvailable.apply(ServerRef.create(dataCenterId, server.id()));
-      waitDcUntilAvailable.apply(dataCenterId);
+      final Step<Server> server = graph.add(SERVER_STEP, new Callable<Server>() {
+         @Override
+         public Server call() {
+            final Server.Request.CreatePayload serverRequest = Server.Request.creatingBuilder()
+                    .dataCenterId(dataCenterId)
+                    .name(name)
+                    .bootVolume(Server.BootVolume.create(bootVolume.get().id()))
+                    .cores(cores.intValue())
+                    .ram(ram)
+                    .build();
+
+            logger.trace("<< provisioning server '%s'", serverRequest);
+            Server server = provisionInDataCenter(dataCenterId, new Supplier<Server>() {
+               @Override
+               public Server get() {
+                  return api.serverApi().createServer(serverRequest);
+               }
+            });
+            waitServerUntilAvailable.apply(ServerRef.create(dataCenterId, server.id()));
+            logger.trace(">> provisioning complete for server. returned id='%s'", server.id());
+            return server;
+         }
+      }, bootVolume);
 
       //attach bootVolume to Server
-      org.apache.jclouds.profitbricks.rest.domain.Volume volume = api.serverApi().attachVolume(Server.Request.attachVolumeBuilder()
-              .dataCenterId(dataCenterId)
-              .serverId(server.id())
-              .volumeId(bootVolume.id())
-              .build());
-
-      trackables.waitUntilRequestCompleted(volume);
-      waitServerUntilAvailable.apply(ServerRef.create(dataCenterId, server.id()));
-      waitDcUntilAvailable.apply(dataCenterId);
+      graph.add(ATTACH_STEP + bootVolume.name(), new Callable<org.apache.jclouds.profitbricks.rest.domain.Volume>() {
+         @Override
+         public org.apache.jclouds.profitbricks.rest.domain.Volume call() {
+            return attachVolume(dataCenterId, server.get().id(), bootVolume.get().id());
+         }
+      }, server, bootVolume);
 
       //fetch an existing lan and creat if non was found
-      Lan lan = null;
-
-      List<Lan> lans = api.lanApi().list(dataCenterId);
-      if (lans != null && !lans.isEmpty()) {
-         lan = FluentIterable.from(lans).firstMatch(new Predicate<Lan>() {
-            @Override
-            public boolean apply(Lan input) {
-               input = api.lanApi().get(dataCenterId, input.id(), new DepthOptions().depth(3));
-               return input.properties().isPublic();
+      Step<Lan> lan = graph.add(LAN_STEP, new Callable<Lan>() {
+         @Override
+         public Lan call() {
+            Lan lan = null;
+            List<Lan> lans = api.lanApi().list(dataCenterId);
+            if (lans != null && !lans.isEmpty()) {
+               lan = FluentIterable.from(lans).firstMatch(new Predicate<Lan>() {
+                  @Override
+                  public boolean apply(Lan input) {
+                     input = api.lanApi().get(dataCenterId, input.id(), new DepthOptions().depth(3));
+                     return input.properties().isPublic();
+                  }
+               }).orNull();
             }
-         }).orNull();
-      }
-      if (lan == null) {
-         logger.warn("Could not find an existing lan Creating one....");
-         lan = api.lanApi().create(Lan.Request.creatingBuilder()
-                 .dataCenterId(dataCenterId)
-                 .isPublic(Boolean.TRUE)
-                 .name("lan " + name)
-                 .build());
-         trackables.waitUntilRequestCompleted(lan);
-      }
+            if (lan == null) {
+               logger.warn("Could not find an existing lan Creating one....");
+               lan = provisionInDataCenter(dataCenterId, new Supplier<Lan>() {
+                  @Override
+                  public Lan get() {
+                     return api.lanApi().create(Lan.Request.creatingBuilder()
+                             .dataCenterId(dataCenterId)
+                             .isPublic(Boolean.TRUE)
+                             .name("lan " + name)
+                             .build());
+                  }
+               });
+            }
+            return lan;
+         }
+      });
 
       //add a NIC to the server
-      int lanId = DEFAULT_LAN_ID;
+      int networkLanId = DEFAULT_LAN_ID;
       if (options.getNetworks() != null) {
          try {
             String networkId = Iterables.get(options.getNetworks(), 0);
-            lanId = Integer.valueOf(networkId);
+            networkLanId = Integer.valueOf(networkId);
          } catch (Exception ex) {
             logger.warn("no valid network id found from options. using default id='%d'", DEFAULT_LAN_ID);
          }
       }
+      final int lanId = networkLanId;
 
-      Nic nic = api.nicApi().create(Nic.Request.creatingBuilder()
-              .dataCenterId(dataCenterId)
-              .name("jclouds" + name)
-              .dhcp(Boolean.TRUE)
-              .lan(lanId)
-              .firewallActive(inboundPorts.length > 0)
-              .serverId(server.id()).
-              build());
-
-      trackables.waitUntilRequestCompleted(nic);
-      waitNICUntilAvailable.apply(NicRef.create(dataCenterId, server.id(), nic.id()));
-      waitDcUntilAvailable.apply(dataCenterId);
-      waitServerUntilAvailable.apply(ServerRef.create(dataCenterId, server.id()));
+      final Step<Nic> nic = graph.add(NIC_STEP, new Callable<Nic>() {
+         @Override
+         public Nic call() {
+            return provisionInDataCenter(dataCenterId, new Supplier<Nic>() {
+               @Override
+               public Nic get() {
+                  return api.nicApi().create(Nic.Request.creatingBuilder()
+                          .dataCenterId(dataCenterId)
+                          .name("jclouds" + name)
+                          .dhcp(Boolean.TRUE)
+                          .lan(lanId)
+                          .firewallActive(inboundPorts.length > 0)
+                          .serverId(server.get().id()).
+                          build());
+               }
+            });
+         }
+      }, server, lan);
 
-      Map<Integer, Integer> portsRange = getPortRangesFromList(inboundPorts);
-
-      for (Map.Entry<Integer, Integer> range : portsRange.entrySet()) {
-         FirewallRule rule = api.firewallApi().create(
-                 FirewallRule.Request.creatingBuilder()
-                 .dataCenterId(dataCenterId)
-                 .serverId(server.id())
-                 .nicId(nic.id())
-                 .name(server.properties().name() + " jclouds-firewall")
-                 .protocol(FirewallRule.Protocol.TCP)
-                 .portRangeStart(range.getKey())
-                 .portRangeEnd(range.getValue())
-                 .build()
-         );
-         trackables.waitUntilRequestCompleted(rule);
+      final Step<Nic> nicReady = graph.add(NIC_STEP + READY_STEP, new Callable<Nic>() {
+         @Override
+         public Nic call() {
+            waitNICUntilAvailable.apply(NicRef.create(dataCenterId, server.get().id(), nic.get().id()));
+            return nic.get();
+         }
+      }, server, nic);
 
+      for (final Map.Entry<Integer, Integer> range : getPortRangesFromList(inboundPorts).entrySet()) {
+         graph.add(FIREWALL_STEP + range.getKey(), new Callable<FirewallRule>() {
+            @Override
+            public FirewallRule call() {
+               return provisionInDataCenter(dataCenterId, new Supplier<FirewallRule>() {
+                  @Override
+                  public FirewallRule get() {
+                     return api.firewallApi().create(
+                             FirewallRule.Request.creatingBuilder()
+                             .dataCenterId(dataCenterId)
+                             .serverId(server.get().id())
+                             .nicId(nicReady.get().id())
+                             .name(server.get().properties().name() + " jclouds-firewall")
+                             .protocol(FirewallRule.Protocol.TCP)
+                             .portRangeStart(range.getKey())
+                             .portRangeEnd(range.getValue())
+                             .build()
+                     );
+                  }
+               });
+            }
+         }, server, nicReady);
       }
 
       //connect the rest of volumes to server;delete if fails
-      final int volumeCount = volumeIds.size();
-      for (int j = 1; j < volumeCount; j++) { // skip first; already connected
-         final String volumeId = volumeIds.get(j);
-         try {
-            logger.trace("<< connecting volume '%s' to server '%s'", volumeId, server.id());
-            provisioningManager.provision(jobFactory.create(group, new Supplier<Object>() {
-
-               @Override
-               public Object get() {
-                  return api.serverApi().attachVolume(
-                          Server.Request.attachVolumeBuilder()
-                          .dataCenterId(dataCenterId)
-                          .serverId(server.id())
-                          .volumeId(volumeId)
-                          .build()
-                  );
+      for (final Step<org.apache.jclouds.profitbricks.rest.domain.Volume> volume : extraVolumes) {
+         graph.add(ATTACH_STEP + volume.name(), new Callable<org.apache.jclouds.profitbricks.rest.domain.Volume>() {
+            @Override
+            public org.apache.jclouds.profitbricks.rest.domain.Volume call() {
+               if (volume.get() == null) {
+                  return null;
+               }
+               String volumeId = volume.get().id();
+               try {
+                  logger.trace("<< connecting volume '%s' to server '%s'", volumeId, server.get().id());
+                  org.apache.jclouds.profitbricks.rest.domain.Volume attached = attachVolume(dataCenterId, server.get().id(), volumeId);
+                  logger.trace(">> volume connected.");
+                  return attached;
+               } catch (Exception ex) {
+                  logger.warn(ex, ">> failed to connect volume '%s'. deleting..", volumeId);
+                  destroyVolume(volumeId, dataCenterId);
+                  return null;
                }
-            }));
-
-            logger.trace(">> volume connected.");
-         } catch (Exception ex) {
-            try {
-               // delete unconnected volume
-               logger.warn(ex, ">> failed to connect volume '%s'. deleting..", volumeId);
-               destroyVolume(volumeId, dataCenterId);
-               logger.warn(ex, ">> rolling back server..", server.id());
-               destroyServer(server.id(), dataCenterId);
-               throw ex;
-            } catch (Exception ex1) {
-               logger.error(ex, ">> failed to rollback");
             }
-         }
+         }, server, volume);
       }
-      waitDcUntilAvailable.apply(dataCenterId);
-      waitServerUntilAvailable.apply(ServerRef.create(dataCenterId, server.id()));
 
-      LoginCredentials serverCredentials = LoginCredentials.builder()
-              .user(loginUser)
-              .privateKey(pubKey)
-              .password(password)
-              .build();
+      return server;
+   }
 
-      String serverInDataCenterId = DataCenterAndId.fromDataCenterAndId(dataCenterId, server.id()).slashEncode();
-      ServerInDataCenter serverInDatacenter = getNode(serverInDataCenterId);
+   private org.apache.jclouds.profitbricks.rest.domain.Volume.Request.CreatePayload.Builder volumeRequest(String dataCenterId, String name, int index, Volume volume) {
+      org.apache.jclouds.profitbricks.rest.domain.Volume.Request.CreatePayload.Builder request = org.apache.jclouds.profitbricks.rest.domain.Volume.Request.creatingBuilder();
+      request.dataCenterId(dataCenterId).
+              name(format("%s-disk-%d", name, index)).
+              size(volume.getSize().intValue()).
+              type(VolumeType.HDD);
+      return request;
+   }
 
-      return new NodeAndInitialCredentials<ServerInDataCenter>(serverInDatacenter, serverInDataCenterId, serverCredentials);
+   private org.apache.jclouds.profitbricks.rest.domain.Volume createVolume(String dataCenterId,
+           final org.apache.jclouds.profitbricks.rest.domain.Volume.Request.CreatePayload request) {
+      logger.trace("<< provisioning volume '%s'", request);
+      org.apache.jclouds.profitbricks.rest.domain.Volume volume = provisionInDataCenter(dataCenterId,
+              new Supplier<org.apache.jclouds.profitbricks.rest.domain.Volume>() {
+         @Override
+         public org.apache.jclouds.profitbricks.rest.domain.Volume get() {
+            return api.volumeApi().createVolume(request);
+         }
+      });
+      logger.trace(">> provisioning complete for volume. returned id='%s'", volume.id());
+      return volume;
+   }
+
+   private org.apache.jclouds.profitbricks.rest.domain.Volume attachVolume(final String dataCenterId, final String serverId,
+           final String volumeId) {
+      return provisionInDataCenter(dataCenterId, new Supplier<org.apache.jclouds.profitbricks.rest.domain.Volume>() {
+         @Override
+         public org.apache.jclouds.profitbricks.rest.domain.Volume get() {
+            return api.serverApi().attachVolume(Server.Request.attachVolumeBuilder()
+                    .dataCenterId(dataCenterId)
+                    .serverId(serverId)
+                    .volumeId(volumeId)
+                    .build());
+         }
+      });
+   }
+
+   /**
+    * Runs a request changing the data center in the provisioning job queue of the data center, so it waits for the
+    * data center to be available and for the requests changing it to complete.
+    */
+   @SuppressWarnings("unchecked")
+   private <T> T provisionInDataCenter(String dataCenterId, final Supplier<T> operation) {
+      return (T) provisioningManager.provision(jobFactory.create(dataCenterId, new Supplier<Object>() {
+         @Override
+         public Object get() {
+            return operation.get();
+         }
+      }));
+   }
+
+   private void rollback(ProvisioningGraph graph, Step<Server> server, String dataCenterId) {
+      if (server.succeeded()) {
+         destroyServer(server.get().id(), dataCenterId);
+      }
+      for (Step<?> step : graph.steps()) {
+         if (step.name().startsWith(VOLUME_STEP) && step.succeeded() && step.get() != null) {
+            destroyVolume(((org.apache.jclouds.profitbricks.rest.domain.Volume) step.get()).id(), dataCenterId);
+         }
+      }
    }
 
    @Override
@@ -590,12 +696,6 @@ public class ProfitBricksComputeServiceAdapter implements ComputeServiceAdapter<
       }
    }
 
-   private void destroyVolumes(List<String> volumeIds, String dataCenterId) {
-      for (String volumeId : volumeIds) {
-         destroyVolume(volumeId, dataCenterId);
-      }
-   }
-
    private void destroyVolume(final String volumeId, final String dataCenterId) {
       try {
          logger.trace("<< deleting volume with id=%s", volumeId);
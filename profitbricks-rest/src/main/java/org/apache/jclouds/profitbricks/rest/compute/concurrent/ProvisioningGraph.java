@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jclouds.profitbricks.rest.compute.concurrent;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Runs provisioning steps as soon as the steps they depend on have completed, so steps which don't depend on each
+ * other run concurrently. A step fails without running when one of its dependencies failed.
+ * <p>
+ * Ready steps are handed to the executor, and the thread waiting for the graph in {@link #await()} runs them too: the
+ * graph completes even when the threads of the executor are all busy, for instance waiting for other graphs.
+ * <p>
+ * Records when each step started and completed. The critical path is the chain of steps, each one the last of the
+ * dependencies of the next to complete, which ends with the last step to complete: the steps which determined how
+ * long the whole graph took.
+ */
+public final class ProvisioningGraph {
+
+   public static final class Step<T> {
+      private final String name;
+      private final List<Step<?>> dependencies;
+      private final SettableFuture<T> future = SettableFuture.create();
+      private volatile long startedAt = -1;
+      private volatile long completedAt = -1;
+
+      private Step(String name, List<Step<?>> dependencies) {
+         this.name = name;
+         this.dependencies = dependencies;
+      }
+
+      public String name() {
+         return name;
+      }
+
+      public ListenableFuture<T> future() {
+         return future;
+      }
+
+      /**
+       * @return the result of the step, once all steps completed
+       */
+      public T get() {
+         return Futures.getUnchecked(future);
+      }
+
+      /**
+       * @return whether the step completed successfully
+       */
+      public boolean succeeded() {
+         if (!future.isDone() || future.isCancelled()) {
+            return false;
+         }
+         try {
+            future.get();
+            return true;
+         } catch (Exception e) {
+            return false;
+         }
+      }
+
+      @Override
+      public String toString() {
+         return name;
+      }
+   }
+
+   private static final Runnable WAKE_UP = new Runnable() {
+      @Override
+      public void run() {
+      }
+   };
+
+   private final Executor executor;
+   private final Ticker ticker;
+   private final long createdAt;
+   private final Map<String, Step<?>> steps = Collections.synchronizedMap(new LinkedHashMap<String, Step<?>>());
+   private final BlockingQueue<Runnable> ready = new LinkedBlockingQueue<Runnable>();
+   private final Runnable runReadyStep = new Runnable() {
+      @Override
+      public void run() {
+         Runnable step = ready.poll();
+         if (step != null) {
+            step.run();
+         }
+      }
+   };
+
+   public ProvisioningGraph(Executor executor) {
+      this(executor, Ticker.systemTicker());
+   }
+
+   public ProvisioningGraph(Executor executor, Ticker ticker) {
+      this.executor = checkNotNull(executor, "executor");
+      this.ticker = checkNotNull(ticker, "ticker");
+      this.createdAt = ticker.read();
+   }
+
+   /**
+    * Schedules the operation to run once all the dependencies completed successfully.
+    */
+   public <T> Step<T> add(String name, final Callable<T> operation, Step<?>... dependencies) {
+      checkNotNull(operation, "operation");
+      final Step<T> step = new Step<T>(checkNotNull(name, "name"), ImmutableList.copyOf(dependencies));
+      synchronized (steps) {
+         checkArgument(!steps.containsKey(name), "step %s already added", name);
+         steps.put(name, step);
+      }
+      List<ListenableFuture<?>> dependenciesCompleted = Lists.newArrayListWithCapacity(dependencies.length);
+      for (Step<?> dependency : dependencies) {
+         dependenciesCompleted.add(dependency.future);
+      }
+      Futures.addCallback(Futures.allAsList(dependenciesCompleted), new FutureCallback<List<Object>>() {
+         @Override
+         public void onSuccess(List<Object> result) {
+            schedule(step, operation);
+         }
+
+         @Override
+         public void onFailure(Throwable t) {
+            step.future.setException(t);
+         }
+      }, sameThreadExecutor());
+      return step;
+   }
+
+   private <T> void schedule(final Step<T> step, final Callable<T> operation) {
+      ready.add(new Runnable() {
+         @Override
+         public void run() {
+            step.startedAt = ticker.read();
+            try {
+               T result = operation.call();
+               // record the completion before the steps depending on this one get scheduled
+               step.completedAt = ticker.read();
+               step.future.set(result);
+            } catch (Throwable t) {
+               step.completedAt = ticker.read();
+               step.future.setException(t);
+            }
+         }
+      });
+      try {
+         executor.execute(runReadyStep);
+      } catch (RejectedExecutionException e) {
+         // the thread waiting for the graph runs the step
+      }
+   }
+
+   /**
+    * @return a future which completes once every step either completed or failed, never failing itself
+    */
+   public ListenableFuture<List<Object>> settled() {
+      List<ListenableFuture<?>> futures = Lists.newArrayList();
+      for (Step<?> step : steps()) {
+         futures.add(step.future);
+      }
+      return Futures.successfulAsList(futures);
+   }
+
+   /**
+    * Waits until every step either completed or failed, running the steps which are ready in the calling thread
+    * while the executor hasn't started them.
+    */
+   public void await() {
+      ListenableFuture<List<Object>> settled = settled();
+      settled.addListener(new Runnable() {
+         @Override
+         public void run() {
+            ready.add(WAKE_UP);
+         }
+      }, sameThreadExecutor());
+      try {
+         while (!settled.isDone()) {
+            // the wake up may be taken by the executor, so don't wait for it forever
+            Runnable step = ready.poll(100, TimeUnit.MILLISECONDS);
+            if (step != null) {
+               step.run();
+            }
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw Throwables.propagate(e);
+      }
+   }
+
+   /**
+    * @return the cause of the first failed step, in the order the steps were added, or null if none failed
+    */
+   public Throwable failure() {
+      for (Step<?> step : steps()) {
+         if (step.future.isDone() && !step.succeeded()) {
+            try {
+               step.future.get();
+            } catch (ExecutionException e) {
+               return e.getCause();
+            } catch (Exception e) {
+               return e;
+            }
+         }
+      }
+      return null;
+   }
+
+   public List<Step<?>> steps() {
+      synchronized (steps) {
+         return ImmutableList.copyOf(steps.values());
+      }
+   }
+
+   /**
+    * @return the time the step took, or -1 if it didn't run
+    */
+   public long duration(String name, TimeUnit unit) {
+      Step<?> step = checkNotNull(steps.get(name), "step %s", name);
+      return step.completedAt == -1 ? -1 : unit.convert(step.completedAt - step.startedAt, TimeUnit.NANOSECONDS);
+   }
+
+   /**
+    * @return the time each step which ran took, in the order the steps were added
+    */
+   public Map<String, Long> durations(TimeUnit unit) {
+      Map<String, Long> durations = new LinkedHashMap<String, Long>();
+      for (Step<?> step : steps()) {
+         if (step.completedAt != -1) {
+            durations.put(step.name, unit.convert(step.completedAt - step.startedAt, TimeUnit.NANOSECONDS));
+         }
+      }
+      return durations;
+   }
+
+   /**
+    * @return the time from the creation of the graph to the completion of its last step
+    */
+   public long elapsed(TimeUnit unit) {
+      Step<?> last = lastCompleted(steps());
+      return last == null ? 0 : unit.convert(last.completedAt - createdAt, TimeUnit.NANOSECONDS);
+   }
+
+   /**
+    * @return the names of the steps on the critical path, from the first to the last step to complete
+    */
+   public List<String> criticalPath() {
+      LinkedList<String> path = new LinkedList<String>();
+      Step<?> step = lastCompleted(steps());
+      while (step != null) {
+         path.addFirst(step.name);
+         step = lastCompleted(step.dependencies);
+      }
+      return ImmutableList.copyOf(path);
+   }
+
+   private static Step<?> lastCompleted(Iterable<Step<?>> steps) {
+      Step<?> last = null;
+      for (Step<?> step : steps) {
+         if (step.completedAt != -1 && (last == null || step.completedAt - last.completedAt > 0)) {
+            last = step;
+         }
+      }
+      return last;
+   }
+
+}
@@ -23,8 +23,8 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Resource;
@@ -41,7 +41,7 @@ public final class ProvisioningManager implements Closeable {
    @Resource
    private Logger logger = Logger.NULL;
 
-   private final Map<String, ListeningExecutorService> workers
+   private final ConcurrentMap<String, ListeningExecutorService> workers
            = new ConcurrentHashMap<String, ListeningExecutorService>(1);
 
    private final AtomicBoolean terminated = new AtomicBoolean(false);
@@ -61,15 +61,19 @@ public final class ProvisioningManager implements Closeable {
       return WithSubmissionTrace.wrap(listeningDecorator(Executors.newSingleThreadExecutor()));
    }
 
-   private void newWorkerGroupIfAbsent(String name) {
-      if (!workers.containsKey(name)) {
-         workers.put(name, newExecutorService());
-      }
-   }
-
    private ListeningExecutorService getWorkerGroup(String name) {
-      newWorkerGroupIfAbsent(name);
-      return workers.get(name);
+      ListeningExecutorService worker = workers.get(name);
+      if (worker == null) {
+         // jobs of the same group may be submitted concurrently; only one of them must create its worker
+         ListeningExecutorService created = newExecutorService();
+         worker = workers.putIfAbsent(name, created);
+         if (worker == null) {
+            worker = created;
+         } else {
+            created.shutdown();
+         }
+      }
+      return worker;
    }
 
    @Override
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jclouds.profitbricks.rest.compute;
+
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.jclouds.profitbricks.rest.config.ProfitBricksComputeProperties.POLL_PREDICATE_DATACENTER;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jclouds.profitbricks.rest.compute.concurrent.ProvisioningGraph;
+import org.apache.jclouds.profitbricks.rest.compute.concurrent.ProvisioningJob;
+import org.apache.jclouds.profitbricks.rest.compute.concurrent.ProvisioningManager;
+import org.apache.jclouds.profitbricks.rest.compute.function.ProvisionableToImage;
+import org.apache.jclouds.profitbricks.rest.domain.Provisionable;
+import org.apache.jclouds.profitbricks.rest.domain.Server;
+import org.apache.jclouds.profitbricks.rest.ids.NicRef;
+import org.apache.jclouds.profitbricks.rest.ids.ServerRef;
+import org.apache.jclouds.profitbricks.rest.ids.VolumeRef;
+import org.apache.jclouds.profitbricks.rest.internal.BaseProfitBricksApiMockTest;
+import org.apache.jclouds.profitbricks.rest.util.Trackables;
+import org.jclouds.compute.domain.Hardware;
+import org.jclouds.compute.domain.HardwareBuilder;
+import org.jclouds.compute.domain.Image;
+import org.jclouds.compute.domain.ImageBuilder;
+import org.jclouds.compute.domain.OperatingSystem;
+import org.jclouds.compute.domain.Processor;
+import org.jclouds.compute.domain.Volume;
+import org.jclouds.compute.domain.internal.VolumeImpl;
+import org.jclouds.compute.options.TemplateOptions;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.AbstractModule;
+import com.google.inject.TypeLiteral;
+import com.google.inject.assistedinject.FactoryModuleBuilder;
+import com.google.inject.name.Names;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "ProfitBricksComputeServiceAdapterMockTest", singleThreaded = true)
+public class ProfitBricksComputeServiceAdapterMockTest extends BaseProfitBricksApiMockTest {
+
+   private static final long DELAY = 300;
+   private static final String DATACENTER_ID = "b0ac144e-e294-415f-ba39-6737d5a9d419";
+   private static final String SERVER_ID = "364f0f1c-7384-462b-8f0c-cfc4c3f6e2b2";
+   private static final String VOLUME_ID = "5c4d37ca-d620-4546-8b24-f92e3c608c2c";
+
+   private final AtomicInteger dataCenterChanges = new AtomicInteger();
+   private final AtomicInteger busyResponses = new AtomicInteger();
+   private final AtomicInteger dataCenterWaits = new AtomicInteger();
+   private final AtomicInteger reads = new AtomicInteger();
+   private final AtomicInteger overlappingReads = new AtomicInteger();
+   private final List<String> deleted = Collections.synchronizedList(Lists.<String>newArrayList());
+   private volatile String failingPath;
+
+   private ListeningExecutorService executor;
+   private ProvisioningManager provisioningManager;
+
+   @BeforeMethod
+   public void setUpDataCenter() {
+      dataCenterChanges.set(0);
+      busyResponses.set(0);
+      dataCenterWaits.set(0);
+      reads.set(0);
+      overlappingReads.set(0);
+      deleted.clear();
+      failingPath = null;
+      executor = listeningDecorator(Executors.newCachedThreadPool());
+      provisioningManager = new ProvisioningManager();
+      server.setDispatcher(new DataCenterDispatcher());
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDownDataCenter() throws IOException {
+      provisioningManager.close();
+      executor.shutdownNow();
+   }
+
+   public void testProvisioningCriticalPath() {
+      ProvisioningGraph graph = new ProvisioningGraph(executor);
+      Server created = adapter().provisionServer(graph, "jclouds-node", DATACENTER_ID, hardware(), image(),
+              TemplateOptions.Builder.inboundPorts(22), "password");
+
+      assertEquals(created.id(), SERVER_ID);
+      assertNull(graph.failure());
+      // the requests changing the data center never overlapped, and each one waited for the data center
+      assertEquals(busyResponses.get(), 0);
+      assertEquals(dataCenterWaits.get(), 2 * 7);
+      assertEquals(graph.criticalPath(), ImmutableList.of("volume-1", "server", "nic", "nic-ready", "firewall-22"));
+      // the LAN lookups and the polls ran while requests changing the data center were being processed
+      assertTrue(overlappingReads.get() > 0, "overlapping reads: " + overlappingReads.get());
+      assertEquals(server.getRequestCount(), 9);
+   }
+
+   public void testRollbackWhenNicFails() {
+      failingPath = "/nics";
+      ProvisioningGraph graph = new ProvisioningGraph(executor);
+      try {
+         adapter().provisionServer(graph, "jclouds-node", DATACENTER_ID, hardware(), image(),
+                 TemplateOptions.Builder.inboundPorts(22), "password");
+         fail("provisioning should have failed");
+      } catch (UncheckedExecutionException expected) {
+         assertTrue(expected.getCause() instanceof IllegalArgumentException, "cause: " + expected.getCause());
+      }
+
+      assertEquals(busyResponses.get(), 0);
+      assertEquals(deleted, ImmutableList.of(
+              "/datacenters/" + DATACENTER_ID + "/servers/" + SERVER_ID,
+              "/datacenters/" + DATACENTER_ID + "/volumes/" + VOLUME_ID,
+              "/datacenters/" + DATACENTER_ID + "/volumes/" + VOLUME_ID));
+   }
+
+   /**
+    * Answers the requests changing the data center with a 422 while another one is being processed, like the
+    * ProfitBricks API does while the data center is busy. Every request takes {@link #DELAY}.
+    */
+   private class DataCenterDispatcher extends Dispatcher {
+
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+         String method = request.getMethod();
+         String path = request.getPath();
+         if ("GET".equals(method)) {
+            read();
+            if (path.endsWith("/lans")) {
+               return new MockResponse().setBody(stringFromResource("/lan/list.json"));
+            } else if (path.matches(".*/lans/[^/?]+(\\?.*)?")) {
+               return new MockResponse().setBody(stringFromResource("/lan/get.json"));
+            }
+            return response404();
+         }
+
+         if (dataCenterChanges.incrementAndGet() > 1) {
+            dataCenterChanges.decrementAndGet();
+            busyResponses.incrementAndGet();
+            return new MockResponse().setStatus("HTTP/1.1 422 Unprocessable Entity")
+                    .setBody("{\"messages\": [{\"message\": \"The data center is busy\"}]}");
+         }
+         try {
+            if (reads.get() > 0) {
+               overlappingReads.incrementAndGet();
+            }
+            sleepUninterruptibly(DELAY, MILLISECONDS);
+            if (failingPath != null && path.endsWith(failingPath)) {
+               return new MockResponse().setStatus("HTTP/1.1 422 Unprocessable Entity");
+            } else if ("DELETE".equals(method)) {
+               deleted.add(path);
+               return response204();
+            } else if (path.endsWith("/firewallrules")) {
+               return new MockResponse().setBody(stringFromResource("/firewall/get.json"));
+            } else if (path.endsWith("/nics")) {
+               return new MockResponse().setBody(stringFromResource("/nic/get.json"));
+            } else if (path.matches(".*/servers/[^/]+/volumes")) {
+               return new MockResponse().setBody(stringFromResource("/server/volume.json"));
+            } else if (path.endsWith("/servers")) {
+               return new MockResponse().setBody(stringFromResource("/server/get.json"));
+            } else if (path.endsWith("/volumes")) {
+               return new MockResponse().setBody(stringFromResource("/volume/get.json"));
+            }
+            return response404();
+         } finally {
+            dataCenterChanges.decrementAndGet();
+         }
+      }
+   }
+
+   /**
+    * Takes {@link #DELAY}, like the lookups and the polls, and records whether a request changing the data center was
+    * being processed meanwhile. Both sides check the other once they are counted, so an overlap is never missed.
+    */
+   private void read() {
+      reads.incrementAndGet();
+      try {
+         if (dataCenterChanges.get() > 0) {
+            overlappingReads.incrementAndGet();
+         }
+         sleepUninterruptibly(DELAY, MILLISECONDS);
+      } finally {
+         reads.decrementAndGet();
+      }
+   }
+
+   private ProfitBricksComputeServiceAdapter adapter() {
+      final Predicate<String> waitDataCenter = new Predicate<String>() {
+         @Override
+         public boolean apply(String dataCenterId) {
+            dataCenterWaits.incrementAndGet();
+            return true;
+         }
+      };
+      ProvisioningJob.Factory jobFactory = context.utils().injector().createChildInjector(new AbstractModule() {
+         @Override
+         protected void configure() {
+            bind(new TypeLiteral<Predicate<String>>() {
+            }).annotatedWith(Names.named(POLL_PREDICATE_DATACENTER)).toInstance(waitDataCenter);
+            install(new FactoryModuleBuilder().build(ProvisioningJob.Factory.class));
+         }
+      }).getInstance(ProvisioningJob.Factory.class);
+
+      return new ProfitBricksComputeServiceAdapter(api,
+              waitDataCenter,
+              this.<VolumeRef>polling(),
+              executor,
+              this.<ServerRef>polling(),
+              this.<ServerRef>polling(),
+              this.<ServerRef>polling(),
+              this.<NicRef>polling(),
+              context.utils().injector().getInstance(Trackables.class),
+              jobFactory,
+              provisioningManager,
+              null);
+   }
+
+   private <T> Predicate<T> polling() {
+      return new Predicate<T>() {
+         @Override
+         public boolean apply(T input) {
+            read();
+            return true;
+         }
+      };
+   }
+
+   private static Hardware hardware() {
+      return new HardwareBuilder()
+              .ids("cpu=1,ram=1024,disk=10")
+              .ram(1024)
+              .processor(new Processor(1, 1d))
+              .volumes(ImmutableList.<Volume>of(new VolumeImpl(10f, true, true), new VolumeImpl(20f, false, true)))
+              .build();
+   }
+
+   private static Image image() {
+      return new ImageBuilder()
+              .ids("7cb4b3a3-50c3-11e5-b789-52540066fee9")
+              .status(Image.Status.AVAILABLE)
+              .operatingSystem(OperatingSystem.builder().description("UBUNTU").build())
+              .userMetadata(ImmutableMap.of(ProvisionableToImage.KEY_PROVISIONABLE_TYPE, Provisionable.Type.IMAGE.name()))
+              .build();
+   }
+}
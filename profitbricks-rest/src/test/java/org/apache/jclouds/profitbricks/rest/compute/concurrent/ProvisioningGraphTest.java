@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jclouds.profitbricks.rest.compute.concurrent;
+
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+@Test(groups = "unit", testName = "ProvisioningGraphTest", singleThreaded = true)
+public class ProvisioningGraphTest {
+
+   private static final long DELAY = 200;
+
+   private ListeningExecutorService executor;
+
+   @BeforeMethod
+   public void setUp() {
+      executor = listeningDecorator(Executors.newCachedThreadPool());
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      executor.shutdownNow();
+   }
+
+   public void testIndependentStepsRunConcurrently() {
+      ProvisioningGraph graph = new ProvisioningGraph(executor);
+      ProvisioningGraph.Step<String> volume = graph.add("volume", sleeping("volume", DELAY));
+      ProvisioningGraph.Step<String> lan = graph.add("lan", sleeping("lan", DELAY / 2));
+      ProvisioningGraph.Step<String> server = graph.add("server", sleeping("server", DELAY), volume);
+      ProvisioningGraph.Step<String> nic = graph.add("nic", sleeping("nic", DELAY), server, lan);
+
+      graph.await();
+
+      assertNull(graph.failure());
+      assertEquals(nic.get(), "nic");
+      assertTrue(graph.elapsed(MILLISECONDS) < 4 * DELAY, "elapsed " + graph.elapsed(MILLISECONDS));
+      assertTrue(graph.duration("volume", MILLISECONDS) >= DELAY);
+      assertEquals(ImmutableList.copyOf(graph.durations(MILLISECONDS).keySet()), ImmutableList.of("volume", "lan", "server", "nic"));
+      assertEquals(graph.criticalPath(), ImmutableList.of("volume", "server", "nic"));
+   }
+
+   public void testFailedStepSkipsDependents() {
+      final IllegalStateException cause = new IllegalStateException("volume failed");
+      final AtomicBoolean serverRan = new AtomicBoolean();
+      ProvisioningGraph graph = new ProvisioningGraph(executor);
+      ProvisioningGraph.Step<String> volume = graph.add("volume", new Callable<String>() {
+         @Override
+         public String call() {
+            throw cause;
+         }
+      });
+      ProvisioningGraph.Step<String> lan = graph.add("lan", sleeping("lan", DELAY));
+      ProvisioningGraph.Step<String> server = graph.add("server", new Callable<String>() {
+         @Override
+         public String call() {
+            serverRan.set(true);
+            return "server";
+         }
+      }, volume, lan);
+
+      graph.await();
+
+      assertSame(graph.failure(), cause);
+      assertFalse(volume.succeeded());
+      assertTrue(lan.succeeded());
+      assertFalse(server.succeeded());
+      assertFalse(serverRan.get());
+      assertEquals(graph.duration("server", MILLISECONDS), -1);
+      assertEquals(graph.criticalPath(), ImmutableList.of("lan"));
+   }
+
+   public void testCallerRunsStepsWhenExecutorIsBusy() throws InterruptedException {
+      // the only thread of the executor is taken, as when every user thread waits for a graph
+      ExecutorService busy = Executors.newSingleThreadExecutor();
+      final CountDownLatch release = new CountDownLatch(1);
+      busy.execute(new Runnable() {
+         @Override
+         public void run() {
+            awaitUninterruptibly(release);
+         }
+      });
+      try {
+         ProvisioningGraph graph = new ProvisioningGraph(busy);
+         ProvisioningGraph.Step<Thread> volume = graph.add("volume", currentThread());
+         ProvisioningGraph.Step<Thread> server = graph.add("server", currentThread(), volume);
+
+         graph.await();
+
+         assertNull(graph.failure());
+         assertSame(volume.get(), Thread.currentThread());
+         assertSame(server.get(), Thread.currentThread());
+      } finally {
+         release.countDown();
+         busy.shutdown();
+         busy.awaitTermination(1, TimeUnit.SECONDS);
+      }
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testDuplicateStep() {
+      ProvisioningGraph graph = new ProvisioningGraph(executor);
+      graph.add("volume", sleeping("volume", 0));
+      graph.add("volume", sleeping("volume", 0));
+   }
+
+   private static Callable<Thread> currentThread() {
+      return new Callable<Thread>() {
+         @Override
+         public Thread call() {
+            return Thread.currentThread();
+         }
+      };
+   }
+
+   private static Callable<String> sleeping(final String result, final long delay) {
+      return new Callable<String>() {
+         @Override
+         public String call() {
+            sleepUninterruptibly(delay, MILLISECONDS);
+            return result;
+         }
+      };
+   }
+}
@@ -50,6 +50,7 @@ public class BaseProfitBricksApiMockTest {
    private final Set<Module> modules = ImmutableSet.<Module>of(new ExecutorServiceModule(sameThreadExecutor()));
 
    protected MockWebServer server;
+   protected ApiContext<ProfitBricksApi> context;
    protected ProfitBricksApi api;
 
    // So that we can ignore formatting.
@@ -59,13 +60,13 @@ public class BaseProfitBricksApiMockTest {
    public void start() throws IOException {
       server = new MockWebServer();
       server.play();
-      ApiContext<ProfitBricksApi> ctx = ContextBuilder.newBuilder("profitbricks-rest")
+      context = ContextBuilder.newBuilder("profitbricks-rest")
 	      .credentials("username", "password")
 	      .endpoint(url(""))
 	      .modules(modules)
 	      .overrides(overrides())
 	      .build();
-      api = ctx.getApi();
+      api = context.getApi();
    }
 
    @AfterMethod(alwaysRun = true)
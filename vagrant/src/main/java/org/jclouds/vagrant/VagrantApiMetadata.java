@@ -63,6 +63,18 @@ public class VagrantApiMetadata extends BaseApiMetadata {
       private Properties defaultProperties() {
          Properties defaultProperties = BaseApiMetadata.defaultProperties();
          defaultProperties.setProperty(VagrantConstants.JCLOUDS_VAGRANT_HOME, VagrantConstants.JCLOUDS_VAGRANT_HOME_DEFAULT);
+         defaultProperties.setProperty(VagrantConstants.JCLOUDS_VAGRANT_CONCURRENCY,
+               VagrantConstants.JCLOUDS_VAGRANT_CONCURRENCY_DEFAULT);
+         defaultProperties.setProperty(VagrantConstants.JCLOUDS_VAGRANT_DEFAULT_CONCURRENCY,
+               VagrantConstants.JCLOUDS_VAGRANT_DEFAULT_CONCURRENCY_DEFAULT);
+         defaultProperties.setProperty(VagrantConstants.JCLOUDS_VAGRANT_BOX_CACHE_TTL,
+               VagrantConstants.JCLOUDS_VAGRANT_BOX_CACHE_TTL_DEFAULT);
+         defaultProperties.setProperty(VagrantConstants.JCLOUDS_VAGRANT_STATUS_TTL,
+               VagrantConstants.JCLOUDS_VAGRANT_STATUS_TTL_DEFAULT);
+         defaultProperties.setProperty(VagrantConstants.JCLOUDS_VAGRANT_STATUS_CONCURRENCY,
+               VagrantConstants.JCLOUDS_VAGRANT_STATUS_CONCURRENCY_DEFAULT);
+         defaultProperties.setProperty(VagrantConstants.JCLOUDS_VAGRANT_LINKED_CLONES,
+               VagrantConstants.JCLOUDS_VAGRANT_LINKED_CLONES_DEFAULT);
          defaultProperties.put(ComputeServiceProperties.TEMPLATE, "osFamily=UBUNTU");
          return defaultProperties;
       }
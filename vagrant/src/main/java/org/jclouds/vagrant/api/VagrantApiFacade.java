@@ -17,9 +17,12 @@
 package org.jclouds.vagrant.api;
 
 import java.io.File;
+import java.util.Map;
 
 import org.jclouds.domain.LoginCredentials;
 
+import vagrant.api.CommandIOListener;
+
 public interface VagrantApiFacade {
    interface Factory {
       VagrantApiFacade create(File path);
@@ -27,13 +30,21 @@ public interface VagrantApiFacade {
 
    /**
     * Start the named machine
-    * 
-    * @return the raw output of the configured provisioners
+    *
+    * @param output receives the output of the command, including the configured provisioners, line by line as
+    *        it is produced
     */
-   String up(String machineName, String provider);
+   void up(String machineName, String provider, CommandIOListener output);
    void halt(String machineName);
    void destroy(String machineName);
    LoginCredentials sshConfig(String machineName);
    void haltForced(String name);
    boolean exists();
+
+   /**
+    * Query the state of all the machines of the Vagrantfile in a single call
+    *
+    * @return the Vagrant state, like "running" or "poweroff", by machine name
+    */
+   Map<String, String> status();
 }
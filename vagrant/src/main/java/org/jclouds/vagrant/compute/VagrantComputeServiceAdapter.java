@@ -18,12 +18,10 @@ package org.jclouds.vagrant.compute;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -47,13 +45,16 @@ import org.jclouds.location.suppliers.all.JustProvider;
 import org.jclouds.logging.Logger;
 import org.jclouds.vagrant.api.VagrantApiFacade;
 import org.jclouds.vagrant.domain.VagrantNode;
+import org.jclouds.vagrant.internal.BoxImportCache;
 import org.jclouds.vagrant.internal.MachineConfig;
+import org.jclouds.vagrant.internal.MachineOutputParser;
+import org.jclouds.vagrant.internal.ProvisioningScheduler;
 import org.jclouds.vagrant.internal.VagrantNodeRegistry;
+import org.jclouds.vagrant.internal.VagrantStatusProbe;
 import org.jclouds.vagrant.reference.VagrantConstants;
 import org.jclouds.vagrant.util.VagrantUtils;
 
 import com.google.common.base.Function;
-import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
@@ -61,8 +62,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 
 public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<VagrantNode, Hardware, Image, Location> {
-   private static final Pattern PATTERN_IP_ADDR = Pattern.compile("inet ([0-9\\.]+)/(\\d+)");
-   private static final Pattern PATTERN_IPCONFIG = Pattern.compile("IPv4 Address[ .]+: ([0-9\\.]+)");
+   private static final long CREDENTIALS_TIMEOUT_SECONDS = 30;
 
    @Resource
    protected Logger logger = Logger.NULL;
@@ -72,6 +72,9 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
    private final VagrantNodeRegistry nodeRegistry;
    private final MachineConfig.Factory machineConfigFactory;
    private final VagrantApiFacade.Factory cliFactory;
+   private final ProvisioningScheduler provisioningScheduler;
+   private final BoxImportCache boxImportCache;
+   private final VagrantStatusProbe statusProbe;
    private final Supplier<? extends Map<String, Hardware>> hardwareSupplier;
    private final Supplier<Collection<Image>> imageListSupplier;
    private final Function<String, Image> imageIdToImage;
@@ -82,6 +85,9 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
          VagrantNodeRegistry nodeRegistry,
          MachineConfig.Factory machineConfigFactory,
          VagrantApiFacade.Factory cliFactory,
+         ProvisioningScheduler provisioningScheduler,
+         BoxImportCache boxImportCache,
+         VagrantStatusProbe statusProbe,
          Supplier<? extends Map<String, Hardware>> hardwareSupplier,
          Supplier<Collection<Image>> imageListSupplier,
          Function<String, Image> imageIdToImage) {
@@ -90,6 +96,9 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
       this.nodeRegistry = nodeRegistry;
       this.machineConfigFactory = machineConfigFactory;
       this.cliFactory = cliFactory;
+      this.provisioningScheduler = provisioningScheduler;
+      this.boxImportCache = boxImportCache;
+      this.statusProbe = statusProbe;
       this.hardwareSupplier = hardwareSupplier;
       this.imageListSupplier = imageListSupplier;
       this.imageIdToImage = imageIdToImage;
@@ -99,25 +108,32 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
    @Override
    public NodeAndInitialCredentials<VagrantNode> createNodeWithGroupEncodedIntoName(String group, String name, Template template) {
       String machineName = removeFromStart(name, group);
-      File nodePath = new File(home, group);
+      // Each machine gets its own Vagrantfile and .vagrant folder so machines can be started concurrently
+      File nodePath = new File(new File(home, group), machineName);
+      String id = group + "/" + machineName;
 
-      init(nodePath, machineName, template);
-
-      NodeAndInitialCredentials<VagrantNode> node = startMachine(nodePath, group, machineName,
-            template.getImage(), template.getHardware());
-      nodeRegistry.add(node.getNode());
-      return node;
+      nodeRegistry.beginCreate(id);
+      try {
+         init(nodePath, machineName, template);
+
+         NodeAndInitialCredentials<VagrantNode> node = startMachine(nodePath, group, machineName,
+               template.getImage(), template.getHardware());
+         nodeRegistry.add(node.getNode());
+         return node;
+      } finally {
+         nodeRegistry.endCreate(id);
+      }
    }
 
    private NodeAndInitialCredentials<VagrantNode> startMachine(File path, String group, String name, Image image, Hardware hardware) {
-      String provider = image.getUserMetadata().get(VagrantConstants.USER_META_PROVIDER);
-
+      String id = group + "/" + name;
       VagrantApiFacade vagrant = cliFactory.create(path);
-      String rawOutput = vagrant.up(name, provider);
-      String output = normalizeOutput(name, rawOutput);
+      MachineOutputParser output = new MachineOutputParser(name, new MachineOutputListener(id));
+      boxImportCache.up(vagrant, id, name, image, output);
+      logger.debug("Machine %s had its addresses %d ms after vagrant up started", id,
+            output.readyLatency(TimeUnit.MILLISECONDS));
 
       OsFamily osFamily = image.getOperatingSystem().getFamily();
-      String id = group + "/" + name;
       VagrantNode node = VagrantNode.builder()
             .setPath(path)
             .setId(id)
@@ -125,10 +141,10 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
             .setName(name)
             .setImage(image)
             .setHardware(hardware)
-            .setNetworks(getNetworks(output, getOsInterfacePattern(osFamily)))
-            .setHostname(getHostname(output))
+            .setNetworks(output.networks())
+            .setHostname(output.hostname())
             .build();
-      node.setMachineState(Status.RUNNING);
+      statusProbe.update(node, Status.RUNNING);
 
       LoginCredentials loginCredentials = null;
       if (osFamily != OsFamily.WINDOWS) {
@@ -140,55 +156,6 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
       return new NodeAndInitialCredentials<VagrantNode>(node, node.id(), loginCredentials);
    }
 
-   private String normalizeOutput(String name, String output) {
-      return output
-            .replaceAll("(?m)^([^,]*,){4}", "")
-            .replace("==> " + name + ": ", "")
-            // Vagrant shows some of the \n verbatim in provisioning command results.
-            .replace("\\n", "\n");
-   }
-
-   private Pattern getOsInterfacePattern(OsFamily osFamily) {
-      if (osFamily == OsFamily.WINDOWS) {
-         return PATTERN_IPCONFIG;
-      } else {
-         return PATTERN_IP_ADDR;
-      }
-   }
-
-   private Collection<String> getNetworks(String output, Pattern ifPattern) {
-      String networks = getDelimitedString(
-            output,
-            VagrantConstants.DELIMITER_NETWORKS_START,
-            VagrantConstants.DELIMITER_NETWORKS_END);
-      Matcher m = ifPattern.matcher(networks);
-      Collection<String> ips = new ArrayList<String>();
-      while (m.find()) {
-         String network = m.group(1);
-         ips.add(network);
-      }
-      return ips;
-   }
-
-   private String getHostname(String output) {
-      return getDelimitedString(
-            output,
-            VagrantConstants.DELIMITER_HOSTNAME_START,
-            VagrantConstants.DELIMITER_HOSTNAME_END);
-   }
-
-   private String getDelimitedString(String value, String delimStart, String delimEnd) {
-      int startPos = value.indexOf(delimStart);
-      int endPos = value.indexOf(delimEnd);
-      if (startPos == -1) {
-         throw new IllegalStateException("Delimiter " + delimStart + " not found in output \n" + value);
-      }
-      if (endPos == -1) {
-         throw new IllegalStateException("Delimiter " + delimEnd + " not found in output \n" + value);
-      }
-      return value.substring(startPos + delimStart.length(), endPos).trim();
-   }
-
    private void init(File path, String name, Template template) {
       try {
          writeVagrantfile(path);
@@ -219,12 +186,14 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
             throw new IllegalStateException("Custom volume settings not supported. Volumes required: " + volumes);
          }
       }
-      config.save(ImmutableMap.<String, Object>of(
-            VagrantConstants.CONFIG_BOX, template.getImage().getName(),
-            VagrantConstants.CONFIG_OS_FAMILY, template.getImage().getOperatingSystem().getFamily(),
-            VagrantConstants.CONFIG_HARDWARE_ID, getHardwareId(template),
-            VagrantConstants.CONFIG_MEMORY, Integer.toString(template.getHardware().getRam()),
-            VagrantConstants.CONFIG_CPUS, Integer.toString(countProcessors(template))));
+      config.save(ImmutableMap.<String, Object>builder()
+            .put(VagrantConstants.CONFIG_BOX, template.getImage().getName())
+            .put(VagrantConstants.CONFIG_OS_FAMILY, template.getImage().getOperatingSystem().getFamily())
+            .put(VagrantConstants.CONFIG_HARDWARE_ID, getHardwareId(template))
+            .put(VagrantConstants.CONFIG_MEMORY, Integer.toString(template.getHardware().getRam()))
+            .put(VagrantConstants.CONFIG_CPUS, Integer.toString(countProcessors(template)))
+            .put(VagrantConstants.CONFIG_LINKED_CLONE, boxImportCache.linkedClones())
+            .build());
    }
 
    private String getHardwareId(Template template) {
@@ -269,23 +238,30 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
    @Override
    public VagrantNode getNode(String id) {
       // needed for BaseComputeServiceLiveTest.testAScriptExecutionAfterBootWithBasicTemplate()
-      // waits for the thread updating the credentialStore to execute
+      // waits for the thread updating the credentialStore to complete
       try {
-         Thread.sleep(200);
+         if (!nodeRegistry.awaitCredentials(id, CREDENTIALS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            logger.warn("Timed out waiting for the credentials of node %s to be persisted", id);
+         }
       } catch (InterruptedException e) {
          Thread.currentThread().interrupt();
          throw Throwables.propagate(e);
       }
 
-      return nodeRegistry.get(id);
+      VagrantNode node = nodeRegistry.get(id);
+      if (node != null) {
+         statusProbe.refreshIfStale(node);
+      }
+      return node;
    }
 
    @Override
    public void destroyNode(String id) {
       VagrantNode node = nodeRegistry.get(id);
-      node.setMachineState(Status.TERMINATED);
+      statusProbe.update(node, Status.TERMINATED);
       getMachine(node).destroy(node.name());
       nodeRegistry.onTerminated(node);
+      statusProbe.remove(node);
       deleteMachine(node);
    }
 
@@ -294,11 +270,18 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
       File machinesFolder = new File(nodeFolder, VagrantConstants.MACHINES_CONFIG_SUBFOLDER);
       String filePattern = node.name() + ".";
       logger.debug("Deleting machine %s", node.id());
+      machineConfigFactory.newInstance(node).forget();
       VagrantUtils.deleteFiles(machinesFolder, filePattern);
-      // No more machines in this group, remove everything
+      // No more machines in this folder, remove everything
       if (machinesFolder.list().length == 0) {
-         logger.debug("Machine %s is last in group, deleting Vagrant folder %s", node.id(), nodeFolder.getAbsolutePath());
+         logger.debug("Machine %s is last in its folder, deleting Vagrant folder %s", node.id(), nodeFolder.getAbsolutePath());
          VagrantUtils.deleteFolder(nodeFolder);
+         // Machines created in their own folder leave an empty group folder behind once the last one is gone
+         File groupFolder = nodeFolder.getParentFile();
+         String[] groupContents = groupFolder.list();
+         if (!groupFolder.equals(home) && groupContents != null && groupContents.length == 0) {
+            VagrantUtils.deleteFolder(groupFolder);
+         }
       }
    }
 
@@ -310,8 +293,8 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
       String provider = node.image().getUserMetadata().get(VagrantConstants.USER_META_PROVIDER);
       String name = node.name();
       VagrantApiFacade vagrant = getMachine(node);
-      vagrant.up(name, provider);
-      node.setMachineState(Status.RUNNING);
+      provisioningScheduler.up(vagrant, id, name, provider, new MachineOutputParser(name, new MachineOutputListener(id)));
+      statusProbe.update(node, Status.RUNNING);
    }
 
    private void halt(String id) {
@@ -321,11 +304,11 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
 
       try {
          vagrant.halt(name);
-         node.setMachineState(Status.SUSPENDED);
       } catch (IllegalStateException e) {
          logger.warn(e, "Failed graceful shutdown of machine " + id + ". Will try to halt it forcefully instead.");
          vagrant.haltForced(name);
       }
+      statusProbe.update(node, Status.SUSPENDED);
    }
 
    @Override
@@ -334,30 +317,27 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
       String provider = node.image().getUserMetadata().get(VagrantConstants.USER_META_PROVIDER);
       String name = node.name();
       VagrantApiFacade vagrant = getMachine(node);
-      vagrant.up(name, provider);
-      node.setMachineState(Status.RUNNING);
+      provisioningScheduler.up(vagrant, id, name, provider, new MachineOutputParser(name, new MachineOutputListener(id)));
+      statusProbe.update(node, Status.RUNNING);
    }
 
    @Override
    public void suspendNode(String id) {
       halt(id);
-      VagrantNode node = nodeRegistry.get(id);
-      node.setMachineState(Status.SUSPENDED);
    }
 
    @Override
    public Iterable<VagrantNode> listNodes() {
-      return nodeRegistry.list();
+      Collection<VagrantNode> nodes = nodeRegistry.list();
+      statusProbe.refreshIfStale(nodes);
+      return nodes;
    }
 
    @Override
-   public Iterable<VagrantNode> listNodesByIds(final Iterable<String> ids) {
-      return Iterables.filter(listNodes(), new Predicate<VagrantNode>() {
-         @Override
-         public boolean apply(VagrantNode input) {
-            return Iterables.contains(ids, input.id());
-         }
-      });
+   public Iterable<VagrantNode> listNodesByIds(Iterable<String> ids) {
+      List<VagrantNode> nodes = nodeRegistry.getAll(ids);
+      statusProbe.refreshIfStale(nodes);
+      return nodes;
    }
 
    private VagrantApiFacade getMachine(VagrantNode node) {
@@ -365,6 +345,24 @@ public class VagrantComputeServiceAdapter implements ComputeServiceAdapter<Vagra
       return cliFactory.create(nodePath);
    }
 
+   private class MachineOutputListener extends MachineOutputParser.Listener {
+      private final String id;
+
+      MachineOutputListener(String id) {
+         this.id = id;
+      }
+
+      @Override
+      public void onAddress(String address) {
+         logger.debug("Machine %s has address %s", id, address);
+      }
+
+      @Override
+      public void onError(String message) {
+         logger.warn("Machine %s: %s", id, message);
+      }
+   }
+
    private String removeFromStart(String name, String group) {
       if (name.startsWith(group)) {
          String machineName = name.substring(group.length());
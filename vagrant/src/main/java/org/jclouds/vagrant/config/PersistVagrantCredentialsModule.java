@@ -18,8 +18,11 @@ package org.jclouds.vagrant.config;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
+import javax.inject.Singleton;
+
 import org.jclouds.compute.domain.NodeMetadata;
 import org.jclouds.compute.domain.NodeMetadataBuilder;
 import org.jclouds.compute.internal.PersistNodeCredentials;
@@ -35,7 +38,12 @@ import org.jclouds.vagrant.internal.MachineConfig.Factory;
 import org.jclouds.vagrant.reference.VagrantConstants;
 import org.jclouds.vagrant.util.VagrantUtils;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import com.google.inject.TypeLiteral;
@@ -45,36 +53,99 @@ import com.google.inject.name.Names;
 
 public class PersistVagrantCredentialsModule extends AbstractModule {
 
-   static class RefreshCredentialsForNodeIfRanAdminAccess implements Function<NodeMetadata, NodeMetadata> {
+   /**
+    * Stores the credentials of nodes persisted in parallel in batches. A caller arriving while a batch is written
+    * queues its credentials and waits; the next batch writes everything queued meanwhile, all entries of the
+    * credential store in one {@code putAll} and each machine once with its latest credentials.
+    */
+   @Singleton
+   static class CredentialsWriter {
+      private static class PendingWrite {
+         private final String id;
+         private final LoginCredentials credentials;
+         // Guarded by flushLock
+         private boolean done;
+         private RuntimeException failure;
+
+         PendingWrite(String id, LoginCredentials credentials) {
+            this.id = id;
+            this.credentials = credentials;
+         }
+      }
+
       protected final Map<String, Credentials> credentialStore;
       protected final VagrantNodeRegistry vagrantNodeRegistry;
-      protected final Statement statement;
       protected final Factory machineConfigFactory;
+      private final List<PendingWrite> pending = Lists.newArrayList();
+      private final Object flushLock = new Object();
 
       @Inject
-      RefreshCredentialsForNodeIfRanAdminAccess(
+      CredentialsWriter(
             VagrantNodeRegistry vagrantNodeRegistry,
             Map<String, Credentials> credentialStore,
-            @Nullable @Assisted Statement statement,
             MachineConfig.Factory machineConfigFactory) {
          this.vagrantNodeRegistry = vagrantNodeRegistry;
          this.credentialStore = credentialStore;
-         this.statement = statement;
          this.machineConfigFactory = machineConfigFactory;
       }
 
-      @Override
-      public NodeMetadata apply(NodeMetadata input) {
-         if (statement == null)
-            return input;
-         Credentials credentials = CredentialsFromAdminAccess.INSTANCE.apply(statement);
-         if (credentials != null) {
-            LoginCredentials creds = LoginCredentials.fromCredentials(credentials);
-            input = NodeMetadataBuilder.fromNodeMetadata(input).credentials(creds).build();
-            credentialStore.put("node#" + input.getId(), input.getCredentials());
-            updateMachine(input.getId(), creds);
+      public void store(String id, LoginCredentials credentials) {
+         PendingWrite write = new PendingWrite(id, credentials);
+         synchronized (pending) {
+            pending.add(write);
+         }
+         synchronized (flushLock) {
+            if (!write.done) {
+               flush();
+            }
+            if (write.failure != null) {
+               throw write.failure;
+            }
+         }
+      }
+
+      @VisibleForTesting
+      int pendingWrites() {
+         synchronized (pending) {
+            return pending.size();
+         }
+      }
+
+      private void flush() {
+         List<PendingWrite> batch;
+         synchronized (pending) {
+            batch = ImmutableList.copyOf(pending);
+            pending.clear();
+         }
+         // Later writes of a node replace the earlier ones of the same batch
+         Map<String, PendingWrite> latest = Maps.newLinkedHashMap();
+         for (PendingWrite write : batch) {
+            latest.put(write.id, write);
+         }
+         Map<String, Credentials> entries = Maps.newLinkedHashMap();
+         for (PendingWrite write : latest.values()) {
+            entries.put("node#" + write.id, write.credentials);
+         }
+         RuntimeException storeFailure = null;
+         try {
+            credentialStore.putAll(entries);
+         } catch (RuntimeException e) {
+            storeFailure = e;
+         }
+         for (PendingWrite write : latest.values()) {
+            write.failure = storeFailure;
+            if (storeFailure == null) {
+               try {
+                  updateMachine(write.id, write.credentials);
+               } catch (RuntimeException e) {
+                  write.failure = e;
+               }
+            }
+         }
+         for (PendingWrite write : batch) {
+            write.failure = latest.get(write.id).failure;
+            write.done = true;
          }
-         return input;
       }
 
       protected void updateMachine(String id, LoginCredentials credentials) {
@@ -84,26 +155,72 @@ public class PersistVagrantCredentialsModule extends AbstractModule {
          }
          String provider = node.image().getUserMetadata().get(VagrantConstants.USER_META_PROVIDER);
 
-         MachineConfig machineConfig = machineConfigFactory.newInstance(node);
-         Map<String, Object> config = machineConfig.load();
-
-         config.put(VagrantConstants.CONFIG_USERNAME, credentials.getUser());
-         config.remove(VagrantConstants.CONFIG_PASSWORD);
-         if (credentials.getOptionalPassword().isPresent()) {
-            config.put(VagrantConstants.CONFIG_PASSWORD, credentials.getOptionalPassword().get());
-         }
          if (credentials.getOptionalPrivateKey().isPresent()) {
             // Overwrite existing private key and dont't use config.ssh.private_key_path - doesn't work, is ignored.
             File privateKeyFile = new File(node.path(), ".vagrant/machines/" + node.name() + "/" + provider + "/private_key");
             try {
-               VagrantUtils.write(privateKeyFile, credentials.getOptionalPrivateKey().get());
+               VagrantUtils.writeIfChanged(privateKeyFile, credentials.getOptionalPrivateKey().get());
             } catch (IOException e) {
                throw new IllegalStateException("Failure updating credentials for " + id +
                      ". Can't save private key to " + privateKeyFile.getAbsolutePath(), e);
             }
          }
 
-         machineConfig.save(config);
+         // Only the credential keys change, the rest of the config is written back as is - or not at all if unchanged
+         Map<String, String> values = Maps.newLinkedHashMap();
+         values.put(VagrantConstants.CONFIG_USERNAME, credentials.getUser());
+         if (credentials.getOptionalPassword().isPresent()) {
+            values.put(VagrantConstants.CONFIG_PASSWORD, credentials.getOptionalPassword().get());
+         }
+         machineConfigFactory.newInstance(node).update(values, ImmutableSet.of(VagrantConstants.CONFIG_PASSWORD));
+      }
+   }
+
+   static class RefreshCredentialsForNodeIfRanAdminAccess implements Function<NodeMetadata, NodeMetadata> {
+      protected final VagrantNodeRegistry vagrantNodeRegistry;
+      protected final CredentialsWriter credentialsWriter;
+      protected final Statement statement;
+
+      @Inject
+      RefreshCredentialsForNodeIfRanAdminAccess(
+            VagrantNodeRegistry vagrantNodeRegistry,
+            CredentialsWriter credentialsWriter,
+            @Nullable @Assisted Statement statement) {
+         this.vagrantNodeRegistry = vagrantNodeRegistry;
+         this.credentialsWriter = credentialsWriter;
+         this.statement = statement;
+      }
+
+      @Override
+      public NodeMetadata apply(NodeMetadata input) {
+         vagrantNodeRegistry.onPersistingCredentials(input.getId());
+         try {
+            return persist(input);
+         } finally {
+            vagrantNodeRegistry.onCredentialsPersisted(input.getId());
+         }
+      }
+
+      protected NodeMetadata persist(NodeMetadata input) {
+         NodeMetadata node = withAdminAccessCredentials(input);
+         if (node != input) {
+            storeCredentials(node);
+         }
+         return node;
+      }
+
+      protected NodeMetadata withAdminAccessCredentials(NodeMetadata input) {
+         if (statement == null)
+            return input;
+         Credentials credentials = CredentialsFromAdminAccess.INSTANCE.apply(statement);
+         if (credentials == null)
+            return input;
+         LoginCredentials creds = LoginCredentials.fromCredentials(credentials);
+         return NodeMetadataBuilder.fromNodeMetadata(input).credentials(creds).build();
+      }
+
+      protected void storeCredentials(NodeMetadata node) {
+         credentialsWriter.store(node.getId(), node.getCredentials());
       }
    }
 
@@ -112,20 +229,19 @@ public class PersistVagrantCredentialsModule extends AbstractModule {
       @Inject
       RefreshCredentialsForNode(
             VagrantNodeRegistry vagrantNodeRegistry,
-            Map<String, Credentials> credentialStore,
-            @Assisted @Nullable Statement statement,
-            MachineConfig.Factory machineConfigFactory) {
-         super(vagrantNodeRegistry, credentialStore, statement, machineConfigFactory);
+            CredentialsWriter credentialsWriter,
+            @Assisted @Nullable Statement statement) {
+         super(vagrantNodeRegistry, credentialsWriter, statement);
       }
 
       @Override
-      public NodeMetadata apply(NodeMetadata input) {
-         input = super.apply(input);
-         if (input.getCredentials() != null) {
-            credentialStore.put("node#" + input.getId(), input.getCredentials());
-            updateMachine(input.getId(), input.getCredentials());
+      protected NodeMetadata persist(NodeMetadata input) {
+         // Store the credentials once, whether they come from the admin access statement or the node
+         NodeMetadata node = withAdminAccessCredentials(input);
+         if (node.getCredentials() != null) {
+            storeCredentials(node);
          }
-         return input;
+         return node;
       }
 
    }
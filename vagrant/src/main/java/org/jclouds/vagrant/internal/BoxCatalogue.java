@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.compute.domain.Image;
+import org.jclouds.lifecycle.Closer;
+import org.jclouds.logging.Logger;
+import org.jclouds.util.Closeables2;
+import org.jclouds.vagrant.api.VagrantBoxApiFacade;
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.jclouds.vagrant.util.VagrantUtils;
+
+import com.google.common.base.Function;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Keeps the installed boxes, converted to images and indexed by name, version and provider, so looking up an image
+ * doesn't fork "vagrant box list".
+ * <p>
+ * The catalogue is reloaded when the Vagrant boxes folder changes, as reported by a {@link WatchService} watching the
+ * folder and the folder of each box, and in any case once it is older than
+ * {@link VagrantConstants#JCLOUDS_VAGRANT_BOX_CACHE_TTL}. The TTL covers the changes the watcher can miss: boxes
+ * folder created after the first load, platforms where the watch service polls, or a watch key overflow.
+ */
+@Singleton
+public class BoxCatalogue<B> implements Closeable {
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final Function<Collection<B>, Collection<B>> outdatedBoxesFilter;
+   private final VagrantBoxApiFacade.Factory<B> cliFactory;
+   private final Function<B, Image> boxToImage;
+   private final File boxesFolder;
+   private final long ttlNanos;
+   private final Ticker ticker;
+   private final AtomicBoolean stale = new AtomicBoolean(true);
+
+   private volatile Snapshot snapshot;
+   private volatile long loadedAt;
+   private WatchService watchService;
+   private boolean watchUnavailable;
+   private boolean closed;
+
+   @Inject
+   BoxCatalogue(Function<Collection<B>, Collection<B>> outdatedBoxesFilter,
+         VagrantBoxApiFacade.Factory<B> cliFactory,
+         Function<B, Image> boxToImage,
+         @Named(VagrantConstants.JCLOUDS_VAGRANT_BOX_CACHE_TTL) long ttlMillis,
+         Closer closer) {
+      this(outdatedBoxesFilter, cliFactory, boxToImage,
+            new File(VagrantUtils.getVagrantHome(), VagrantConstants.VAGRANT_BOXES_SUBFOLDER), ttlMillis,
+            Ticker.systemTicker());
+      closer.addToClose(this);
+   }
+
+   public BoxCatalogue(Function<Collection<B>, Collection<B>> outdatedBoxesFilter,
+         VagrantBoxApiFacade.Factory<B> cliFactory,
+         Function<B, Image> boxToImage,
+         File boxesFolder,
+         long ttlMillis,
+         Ticker ticker) {
+      this.outdatedBoxesFilter = outdatedBoxesFilter;
+      this.cliFactory = cliFactory;
+      this.boxToImage = boxToImage;
+      this.boxesFolder = boxesFolder;
+      this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+      this.ticker = ticker;
+   }
+
+   /**
+    * @return the latest version of each box
+    */
+   public Collection<Image> listLatest() {
+      return snapshot().latest.values();
+   }
+
+   /**
+    * @return the latest version of the box, or null if it is not installed
+    */
+   public Image getLatest(String name) {
+      return snapshot().latest.get(name);
+   }
+
+   /**
+    * @return the given version of the box for the provider, or null if it is not installed
+    */
+   public Image getImage(String name, String version, String provider) {
+      return snapshot().byKey.get(key(name, version, provider));
+   }
+
+   /**
+    * Reloads the catalogue on the next lookup.
+    */
+   public void invalidate() {
+      stale.set(true);
+   }
+
+   @Override
+   public synchronized void close() {
+      closed = true;
+      if (watchService != null) {
+         try {
+            watchService.close();
+         } catch (IOException e) {
+            logger.debug(e, "Failed closing the watch service of %s", boxesFolder);
+         }
+         watchService = null;
+      }
+   }
+
+   private Snapshot snapshot() {
+      Snapshot current = snapshot;
+      if (current == null || stale.get() || ticker.read() - loadedAt > ttlNanos) {
+         synchronized (this) {
+            current = snapshot;
+            if (current == null || stale.get() || ticker.read() - loadedAt > ttlNanos) {
+               // Cleared before listing, so changes made while listing trigger another load
+               stale.set(false);
+               watch();
+               current = load();
+               snapshot = current;
+               loadedAt = ticker.read();
+            }
+         }
+      }
+      return current;
+   }
+
+   private Snapshot load() {
+      VagrantBoxApiFacade<B> cli = cliFactory.create();
+      Collection<B> boxes = cli.listBoxes();
+      Map<B, Image> images = Maps.newIdentityHashMap();
+      Map<List<String>, Image> byKey = Maps.newHashMap();
+      for (B box : boxes) {
+         Image image = boxToImage.apply(box);
+         images.put(box, image);
+         // The same version of a box can be installed once per provider
+         byKey.put(key(image.getName(), image.getVersion(),
+               image.getUserMetadata().get(VagrantConstants.USER_META_PROVIDER)), image);
+      }
+      ImmutableMap.Builder<String, Image> latest = ImmutableMap.builder();
+      for (B box : outdatedBoxesFilter.apply(boxes)) {
+         Image image = images.get(box);
+         latest.put(image.getId(), image);
+      }
+      logger.debug("Loaded %d boxes from %s", byKey.size(), boxesFolder);
+      return new Snapshot(latest.build(), ImmutableMap.copyOf(byKey));
+   }
+
+   private static List<String> key(String name, String version, String provider) {
+      return Arrays.asList(name, version, provider);
+   }
+
+   /**
+    * Starts watching the boxes folder once it exists. Without a watcher the catalogue relies on the TTL alone.
+    */
+   private void watch() {
+      if (watchService != null || watchUnavailable || closed || !boxesFolder.isDirectory()) {
+         return;
+      }
+      try {
+         watchService = FileSystems.getDefault().newWatchService();
+         Path boxes = boxesFolder.toPath();
+         register(boxes);
+         File[] boxFolders = boxesFolder.listFiles();
+         if (boxFolders != null) {
+            for (File boxFolder : boxFolders) {
+               if (boxFolder.isDirectory()) {
+                  register(boxFolder.toPath());
+               }
+            }
+         }
+         Thread watcher = new Thread(new Watcher(watchService, boxes), "vagrant-box-watcher");
+         watcher.setDaemon(true);
+         watcher.start();
+      } catch (IOException e) {
+         logger.warn(e, "Can't watch %s for box changes, relying on the cache TTL", boxesFolder);
+         watchUnavailable = true;
+         Closeables2.closeQuietly(watchService);
+         watchService = null;
+      }
+   }
+
+   private void register(Path folder) throws IOException {
+      folder.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+   }
+
+   private class Watcher implements Runnable {
+      private final WatchService watchService;
+      private final Path boxes;
+
+      Watcher(WatchService watchService, Path boxes) {
+         this.watchService = watchService;
+         this.boxes = boxes;
+      }
+
+      @Override
+      public void run() {
+         while (true) {
+            WatchKey key;
+            try {
+               key = watchService.take();
+            } catch (InterruptedException e) {
+               return;
+            } catch (ClosedWatchServiceException e) {
+               return;
+            }
+            Path folder = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+               if (event.kind() == OVERFLOW) {
+                  continue;
+               }
+               Path child = folder.resolve((Path) event.context());
+               // Adding a box creates its folder; watch it too so versions added later are seen
+               if (event.kind() == ENTRY_CREATE && folder.equals(boxes) && child.toFile().isDirectory()) {
+                  try {
+                     child.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                  } catch (IOException e) {
+                     logger.debug(e, "Can't watch box folder %s", child);
+                  } catch (ClosedWatchServiceException e) {
+                     return;
+                  }
+               }
+            }
+            stale.set(true);
+            key.reset();
+         }
+      }
+   }
+
+   private static final class Snapshot {
+      private final ImmutableMap<String, Image> latest;
+      private final ImmutableMap<List<String>, Image> byKey;
+
+      private Snapshot(ImmutableMap<String, Image> latest, ImmutableMap<List<String>, Image> byKey) {
+         this.latest = latest;
+         this.byKey = byKey;
+      }
+   }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.compute.domain.Image;
+import org.jclouds.logging.Logger;
+import org.jclouds.vagrant.api.VagrantApiFacade;
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.jclouds.vagrant.util.VagrantUtils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+
+/**
+ * Makes sure a box is imported at most once per host when machines are created as linked clones.
+ * <p>
+ * The first "vagrant up" of a box imports it as the master VM the machines are cloned from. Machines of a group
+ * started in parallel on a box without a master would each race to import it, so the first machine of a box boots
+ * alone; the others wait for its master and are then cloned in parallel. A box has a warm master once a machine of
+ * it booted, or when VirtualBox's master VM id is found in the box folder, left there by an earlier process.
+ * <p>
+ * The time each machine spent importing the box, or cloning its master VM, is kept by machine id, next to the boot
+ * time kept by the {@link ProvisioningScheduler}.
+ */
+@Singleton
+public class BoxImportCache {
+   private static final String MASTER_ID_FILE = "master_id";
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final ProvisioningScheduler provisioningScheduler;
+   private final File boxesFolder;
+   private final boolean linkedClones;
+   private final Set<String> warm = Sets.newConcurrentHashSet();
+   private final ConcurrentMap<String, Object> importLocks = new ConcurrentHashMap<String, Object>();
+   private final ConcurrentMap<String, Long> importLatencies = new ConcurrentHashMap<String, Long>();
+
+   @Inject
+   BoxImportCache(ProvisioningScheduler provisioningScheduler,
+         @Named(VagrantConstants.JCLOUDS_VAGRANT_LINKED_CLONES) boolean linkedClones) {
+      this(provisioningScheduler, new File(VagrantUtils.getVagrantHome(), VagrantConstants.VAGRANT_BOXES_SUBFOLDER),
+            linkedClones);
+   }
+
+   public BoxImportCache(ProvisioningScheduler provisioningScheduler, File boxesFolder, boolean linkedClones) {
+      this.provisioningScheduler = provisioningScheduler;
+      this.boxesFolder = boxesFolder;
+      this.linkedClones = linkedClones;
+   }
+
+   public boolean linkedClones() {
+      return linkedClones;
+   }
+
+   /**
+    * Starts the machine through the {@link ProvisioningScheduler}, after the master VM of its box is ready.
+    */
+   public void up(VagrantApiFacade vagrant, String machineId, String machineName, Image image,
+         MachineOutputParser output) {
+      String provider = image.getUserMetadata().get(VagrantConstants.USER_META_PROVIDER);
+      if (!linkedClones || isWarm(image)) {
+         scheduleUp(vagrant, machineId, machineName, provider, output);
+         return;
+      }
+      String key = key(image);
+      Object lock = importLocks.get(key);
+      if (lock == null) {
+         Object newLock = new Object();
+         lock = importLocks.putIfAbsent(key, newLock);
+         if (lock == null) {
+            lock = newLock;
+         }
+      }
+      synchronized (lock) {
+         if (!isWarm(image)) {
+            logger.debug("Box %s has no master VM yet, machine %s imports it", key, machineId);
+            scheduleUp(vagrant, machineId, machineName, provider, output);
+            warm.add(key);
+            return;
+         }
+      }
+      scheduleUp(vagrant, machineId, machineName, provider, output);
+   }
+
+   /**
+    * @return whether the master VM of the box is known to be imported on this host
+    */
+   public boolean isWarm(Image image) {
+      String key = key(image);
+      if (warm.contains(key)) {
+         return true;
+      }
+      if (masterIdFile(image).isFile()) {
+         warm.add(key);
+         return true;
+      }
+      return false;
+   }
+
+   /**
+    * @return the time in milliseconds the machine spent importing its box or cloning the master VM, or null if
+    *         neither was reported
+    */
+   public Long importLatency(String machineId) {
+      return importLatencies.get(machineId);
+   }
+
+   public Map<String, Long> importLatencies() {
+      return ImmutableMap.copyOf(importLatencies);
+   }
+
+   private void scheduleUp(VagrantApiFacade vagrant, String machineId, String machineName, String provider,
+         MachineOutputParser output) {
+      provisioningScheduler.up(vagrant, machineId, machineName, provider, output);
+      long importLatency = output.importLatency(TimeUnit.MILLISECONDS);
+      if (importLatency != -1) {
+         importLatencies.put(machineId, importLatency);
+         logger.debug("Machine %s %s its box in %d ms, booted in %s ms", machineId,
+               output.imported() ? "imported" : "cloned", importLatency, provisioningScheduler.bootLatency(machineId));
+      }
+   }
+
+   private File masterIdFile(Image image) {
+      String provider = image.getUserMetadata().get(VagrantConstants.USER_META_PROVIDER);
+      File box = new File(boxesFolder, image.getName().replace("/", VagrantConstants.ESCAPE_SLASH));
+      return new File(new File(new File(box, image.getVersion()), provider), MASTER_ID_FILE);
+   }
+
+   private static String key(Image image) {
+      return image.getName() + " " + image.getVersion() + " "
+            + image.getUserMetadata().get(VagrantConstants.USER_META_PROVIDER);
+   }
+
+}
@@ -19,37 +19,30 @@ package org.jclouds.vagrant.internal;
 import java.util.Collection;
 
 import org.jclouds.compute.domain.Image;
-import org.jclouds.vagrant.api.VagrantBoxApiFacade;
 
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
-import com.google.common.collect.Collections2;
 import com.google.inject.Inject;
 
+/**
+ * Lists and looks up the latest version of the installed boxes from the {@link BoxCatalogue}.
+ */
 public class ImageSupplier<B> implements Supplier<Collection<Image>>, Function<String, Image> {
-   private final Function<Collection<B>, Collection<B>> outdatedBoxesFilter;
-   private final VagrantBoxApiFacade.Factory<B> cliFactory;
-   private final Function<B, Image> boxToImage;
+   private final BoxCatalogue<B> boxCatalogue;
 
    @Inject
-   ImageSupplier(Function<Collection<B>, Collection<B>> outdatedBoxesFilter,
-         VagrantBoxApiFacade.Factory<B> cliFactory,
-         Function<B, Image> boxToImage) {
-      this.outdatedBoxesFilter = outdatedBoxesFilter;
-      this.cliFactory = cliFactory;
-      this.boxToImage = boxToImage;
+   ImageSupplier(BoxCatalogue<B> boxCatalogue) {
+      this.boxCatalogue = boxCatalogue;
    }
 
    @Override
    public Collection<Image> get() {
-      Collection<B> boxes = outdatedBoxesFilter.apply(cliFactory.create().listBoxes());
-      return Collections2.transform(boxes, boxToImage);
+      return boxCatalogue.listLatest();
    }
 
    @Override
    public Image apply(String id) {
-      B box = cliFactory.create().getBox(id);
-      return boxToImage.apply(box);
+      return boxCatalogue.getLatest(id);
    }
 
 }
@@ -16,33 +16,28 @@
  */
 package org.jclouds.vagrant.internal;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.Reader;
-import java.util.LinkedHashMap;
+import java.util.Collection;
 import java.util.Map;
-import java.util.Properties;
 
-import org.jclouds.JcloudsVersion;
-import org.jclouds.util.Closeables2;
-import org.jclouds.vagrant.domain.VagrantNode;
-import org.jclouds.vagrant.reference.VagrantConstants;
+import javax.inject.Inject;
 
-import com.google.common.base.Charsets;
-import com.google.common.base.Joiner;
-import com.google.common.base.Predicates;
-import com.google.common.collect.Maps;
+import org.jclouds.vagrant.domain.VagrantNode;
 
 public class MachineConfig {
    public static class Factory {
+      private final MachineConfigStore store;
+
+      /**
+       * @param store the store shared by all the writers of the machine configs, holding the per-machine locks
+       */
+      @Inject
+      public Factory(MachineConfigStore store) {
+         this.store = store;
+      }
+
       public MachineConfig newInstance(File group, String machineName) {
-         return new MachineConfig(group, machineName);
+         return new MachineConfig(group, machineName, store);
       }
 
       public MachineConfig newInstance(VagrantNode node) {
@@ -50,68 +45,34 @@ public class MachineConfig {
       }
    }
 
-   private File configPath;
+   private final File folder;
+   private final String machineName;
+   private final MachineConfigStore store;
 
-   protected MachineConfig(File group, String machineName) {
-      this.configPath = new File(new File(group, VagrantConstants.MACHINES_CONFIG_SUBFOLDER),
-            machineName + VagrantConstants.MACHINES_CONFIG_EXTENSION);
+   protected MachineConfig(File group, String machineName, MachineConfigStore store) {
+      this.folder = group;
+      this.machineName = machineName;
+      this.store = store;
    }
 
    public Map<String, Object> load() {
-      Map<String, Object> config = new LinkedHashMap<String, Object>();
-      Properties yaml = new Properties();
-      FileInputStream fileIn;
-      try {
-         fileIn = new FileInputStream(configPath);
-      } catch (FileNotFoundException e) {
-         throw new IllegalStateException("Machine config not found: " + configPath.getAbsolutePath(), e);
-      }
-      Reader in = new InputStreamReader(fileIn, Charsets.UTF_8);
-      try {
-         // Poor man's YAML parser. It's controlled content, generated by us - not coming from a user so it's fine. 
-         yaml.load(in);
-      } catch (IOException e) {
-         throw new IllegalStateException("Failed loading machine config " + configPath.getAbsolutePath(), e);
-      } finally {
-         Closeables2.closeQuietly(in);
-      }
-      for (String key : yaml.stringPropertyNames()) {
-         config.put(key, yaml.getProperty(key));
-      }
-      return config;
+      return store.load(folder, machineName);
    }
 
-   // Write the config ad-hoc, imitating yaml which can be read by ruby
-   // Could pull in snakeyaml to be more resilient to edge-cases in values
-   // Alternatively use JSON if jclouds already depends on it in core
    public void save(Map<String, Object> config) {
-      File parent = configPath.getParentFile();
-      if (!parent.exists() && !parent.mkdirs()) {
-         if (!parent.exists()) {
-            throw new IllegalStateException("Failure creating folder " + parent.getAbsolutePath());
-         }
-      }
-
-      Map<String, Object> configWithoutVersion = Maps.filterKeys(config,
-            Predicates.not(Predicates.equalTo(VagrantConstants.CONFIG_JCLOUDS_VERSION)));
-      String version = VagrantConstants.CONFIG_JCLOUDS_VERSION + ": " + JcloudsVersion.get().toString() + "\n";
-      String output = version + Joiner.on("\n").withKeyValueSeparator(": ").join(configWithoutVersion);
+      store.save(folder, machineName, config);
+   }
 
-      FileOutputStream fileOut = null;
-      BufferedWriter out = null;
+   /**
+    * Sets and removes the keys, writing the config only if it changed.
+    *
+    * @return whether the config was written
+    */
+   public boolean update(Map<String, ?> values, Collection<String> removed) {
+      return store.update(folder, machineName, values, removed);
+   }
 
-      try {
-         fileOut = new FileOutputStream(configPath);
-         out = new BufferedWriter(new OutputStreamWriter(fileOut, Charsets.UTF_8));
-         out.write(output);
-      } catch (IOException e) {
-         throw new IllegalStateException("Failed writing to machine config file " + configPath.getAbsolutePath(), e);
-      } finally {
-         if (out != null) {
-            Closeables2.closeQuietly(out);
-         } else if (fileOut != null) {
-            Closeables2.closeQuietly(fileOut);
-         }
-      }
+   public void forget() {
+      store.forget(folder, machineName);
    }
 }
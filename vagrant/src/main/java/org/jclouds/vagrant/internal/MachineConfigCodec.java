@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Reads and writes the machine configs, a flat YAML mapping of keys to scalars which the Vagrantfile loads with
+ * Ruby's YAML parser.
+ * <p>
+ * Values are written as plain scalars when YAML reads them back as the same text, so numbers like the memory and cpus
+ * stay numbers for the Vagrantfile. Any other value, for example one with a ": ", a leading indicator character or a
+ * line break, is written as a double quoted scalar with escapes. Plain, single and double quoted scalars are read, in
+ * the order of the file, so configs written by earlier versions load unchanged.
+ */
+final class MachineConfigCodec {
+   private static final String INDICATORS = "-?:,[]{}#&*!|>'\"%@`";
+
+   private MachineConfigCodec() {
+      throw new AssertionError("Intentionally Unimplemented");
+   }
+
+   static Map<String, Object> parse(String content) {
+      Map<String, Object> config = new LinkedHashMap<String, Object>();
+      for (String line : Splitter.on('\n').split(content)) {
+         String trimmed = line.trim();
+         if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.equals("---")) {
+            continue;
+         }
+         int separator = trimmed.indexOf(':');
+         if (separator <= 0) {
+            throw new IllegalStateException("Failed parsing machine config line: " + line);
+         }
+         String key = trimmed.substring(0, separator).trim();
+         config.put(key, parseScalar(trimmed.substring(separator + 1).trim()));
+      }
+      return ImmutableMap.copyOf(config);
+   }
+
+   static String render(Map<String, ?> config) {
+      StringBuilder content = new StringBuilder();
+      for (Map.Entry<String, ?> entry : config.entrySet()) {
+         if (content.length() > 0) {
+            content.append('\n');
+         }
+         content.append(entry.getKey()).append(": ").append(renderScalar(String.valueOf(entry.getValue())));
+      }
+      return content.toString();
+   }
+
+   private static String parseScalar(String value) {
+      if (value.startsWith("\"")) {
+         return parseDoubleQuoted(value);
+      }
+      if (value.startsWith("'")) {
+         int end = value.lastIndexOf('\'');
+         if (end == 0) {
+            throw new IllegalStateException("Unterminated quoted value in machine config: " + value);
+         }
+         return value.substring(1, end).replace("''", "'");
+      }
+      int comment = value.indexOf(" #");
+      return comment < 0 ? value : value.substring(0, comment).trim();
+   }
+
+   private static String parseDoubleQuoted(String value) {
+      StringBuilder parsed = new StringBuilder();
+      for (int i = 1; i < value.length(); i++) {
+         char c = value.charAt(i);
+         if (c == '"') {
+            return parsed.toString();
+         }
+         if (c != '\\') {
+            parsed.append(c);
+            continue;
+         }
+         if (++i == value.length()) {
+            break;
+         }
+         char escaped = value.charAt(i);
+         switch (escaped) {
+            case 'n':
+               parsed.append('\n');
+               break;
+            case 't':
+               parsed.append('\t');
+               break;
+            case 'r':
+               parsed.append('\r');
+               break;
+            case '0':
+               parsed.append('\0');
+               break;
+            case 'u':
+               if (i + 4 >= value.length()) {
+                  throw new IllegalStateException("Invalid escape in machine config: " + value);
+               }
+               parsed.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+               i += 4;
+               break;
+            default:
+               parsed.append(escaped);
+         }
+      }
+      throw new IllegalStateException("Unterminated quoted value in machine config: " + value);
+   }
+
+   private static String renderScalar(String value) {
+      return isPlain(value) ? value : doubleQuoted(value);
+   }
+
+   private static boolean isPlain(String value) {
+      if (value.isEmpty() || !value.trim().equals(value) || INDICATORS.indexOf(value.charAt(0)) >= 0
+            || value.endsWith(":") || value.contains(": ") || value.contains(" #")) {
+         return false;
+      }
+      for (int i = 0; i < value.length(); i++) {
+         if (Character.isISOControl(value.charAt(i))) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static String doubleQuoted(String value) {
+      StringBuilder quoted = new StringBuilder("\"");
+      for (int i = 0; i < value.length(); i++) {
+         char c = value.charAt(i);
+         switch (c) {
+            case '"':
+               quoted.append("\\\"");
+               break;
+            case '\\':
+               quoted.append("\\\\");
+               break;
+            case '\n':
+               quoted.append("\\n");
+               break;
+            case '\t':
+               quoted.append("\\t");
+               break;
+            case '\r':
+               quoted.append("\\r");
+               break;
+            default:
+               if (Character.isISOControl(c)) {
+                  quoted.append(String.format("\\u%04x", (int) c));
+               } else {
+                  quoted.append(c);
+               }
+         }
+      }
+      return quoted.append('"').toString();
+   }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Singleton;
+
+import org.jclouds.JcloudsVersion;
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.jclouds.vagrant.util.VagrantUtils;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+/**
+ * Reads and writes the machine configs of all machine folders, indexed by folder and machine name.
+ * <p>
+ * Each machine has its own lock, so writers of one machine are serialized while machines of the same group are
+ * written in parallel. Configs are written to a temporary file renamed over the config, the Vagrantfile and the
+ * directory watcher never see a partial config. The last content read or written is kept in memory and used as long
+ * as the file on disk has the same size and modification time; saving the same content again doesn't touch the file.
+ */
+@Singleton
+public class MachineConfigStore {
+
+   private static class Entry {
+      private Map<String, Object> config;
+      private String content;
+      private long lastModified;
+      private long length;
+
+      boolean isCurrent(File file) {
+         return content != null && file.lastModified() == lastModified && file.length() == length;
+      }
+   }
+
+   private final ConcurrentMap<File, ConcurrentMap<String, Entry>> folders =
+         new ConcurrentHashMap<File, ConcurrentMap<String, Entry>>();
+
+   public Map<String, Object> load(File folder, String machineName) {
+      Entry entry = entry(folder, machineName);
+      synchronized (entry) {
+         return new LinkedHashMap<String, Object>(load(entry, configFile(folder, machineName)));
+      }
+   }
+
+   /**
+    * @return whether the config file was written, false if it already had the content
+    */
+   public boolean save(File folder, String machineName, Map<String, Object> config) {
+      Entry entry = entry(folder, machineName);
+      synchronized (entry) {
+         return save(entry, configFile(folder, machineName), config);
+      }
+   }
+
+   /**
+    * Sets and removes the keys in one read-modify-write of the config.
+    *
+    * @return whether the config file was written, false if the changes were already in place
+    */
+   public boolean update(File folder, String machineName, Map<String, ?> values, Collection<String> removed) {
+      Entry entry = entry(folder, machineName);
+      synchronized (entry) {
+         File file = configFile(folder, machineName);
+         Map<String, Object> config = new LinkedHashMap<String, Object>(load(entry, file));
+         config.keySet().removeAll(removed);
+         config.putAll(values);
+         return save(entry, file, config);
+      }
+   }
+
+   /**
+    * Drops the machine from the index, once its config is deleted.
+    */
+   public void forget(File folder, String machineName) {
+      ConcurrentMap<String, Entry> machines = folders.get(folder);
+      if (machines != null) {
+         machines.remove(machineName);
+      }
+   }
+
+   private Map<String, Object> load(Entry entry, File file) {
+      if (!entry.isCurrent(file)) {
+         if (!file.isFile()) {
+            throw new IllegalStateException("Machine config not found: " + file.getAbsolutePath());
+         }
+         String content;
+         long lastModified = file.lastModified();
+         long length = file.length();
+         try {
+            content = Files.toString(file, Charsets.UTF_8);
+         } catch (IOException e) {
+            throw new IllegalStateException("Failed loading machine config " + file.getAbsolutePath(), e);
+         }
+         cache(entry, content, lastModified, length);
+      }
+      return entry.config;
+   }
+
+   private boolean save(Entry entry, File file, Map<String, Object> config) {
+      String content = render(config);
+      if (entry.isCurrent(file) && content.equals(entry.content)) {
+         return false;
+      }
+      File parent = file.getParentFile();
+      if (!parent.exists() && !parent.mkdirs()) {
+         if (!parent.exists()) {
+            throw new IllegalStateException("Failure creating folder " + parent.getAbsolutePath());
+         }
+      }
+      try {
+         VagrantUtils.writeAtomically(file, content);
+      } catch (IOException e) {
+         throw new IllegalStateException("Failed writing to machine config file " + file.getAbsolutePath(), e);
+      }
+      cache(entry, content, file.lastModified(), file.length());
+      return true;
+   }
+
+   private static void cache(Entry entry, String content, long lastModified, long length) {
+      entry.config = MachineConfigCodec.parse(content);
+      entry.content = content;
+      entry.lastModified = lastModified;
+      entry.length = length;
+   }
+
+   private Entry entry(File folder, String machineName) {
+      ConcurrentMap<String, Entry> machines = folders.get(folder);
+      if (machines == null) {
+         ConcurrentMap<String, Entry> newMachines = new ConcurrentHashMap<String, Entry>();
+         machines = folders.putIfAbsent(folder, newMachines);
+         if (machines == null) {
+            machines = newMachines;
+         }
+      }
+      Entry entry = machines.get(machineName);
+      if (entry == null) {
+         Entry newEntry = new Entry();
+         entry = machines.putIfAbsent(machineName, newEntry);
+         if (entry == null) {
+            entry = newEntry;
+         }
+      }
+      return entry;
+   }
+
+   static File configFile(File folder, String machineName) {
+      return new File(new File(folder, VagrantConstants.MACHINES_CONFIG_SUBFOLDER),
+            machineName + VagrantConstants.MACHINES_CONFIG_EXTENSION);
+   }
+
+   private static String render(Map<String, Object> config) {
+      Map<String, Object> withVersion = new LinkedHashMap<String, Object>();
+      withVersion.put(VagrantConstants.CONFIG_JCLOUDS_VERSION, JcloudsVersion.get().toString());
+      withVersion.putAll(Maps.filterKeys(config,
+            Predicates.not(Predicates.equalTo(VagrantConstants.CONFIG_JCLOUDS_VERSION))));
+      return MachineConfigCodec.render(withVersion);
+   }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jclouds.vagrant.reference.VagrantConstants;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import vagrant.api.CommandIOListener;
+
+/**
+ * Parses the output of a single vagrant command as it is produced, one line at a time, without keeping it.
+ * Understands both the machine readable format ({@code timestamp,target,type,data...}) and plain text. Reports
+ * typed events to a {@link Listener}:
+ * <ul>
+ *   <li>machine state changes</li>
+ *   <li>each address listed between the networks delimiters printed by the provisioning script</li>
+ *   <li>the hostname printed between the hostname delimiters</li>
+ *   <li>errors</li>
+ * </ul>
+ * Also times the import of the box, or the clone of its master VM, from the messages of the provider.
+ * Holds the state of one invocation only, create a new parser for each command.
+ */
+public class MachineOutputParser implements CommandIOListener {
+   public abstract static class Listener {
+      public void onState(String state) {
+      }
+
+      public void onAddress(String address) {
+      }
+
+      public void onHostname(String hostname) {
+      }
+
+      public void onError(String message) {
+      }
+   }
+
+   private enum Section {
+      NONE, NETWORKS, HOSTNAME
+   }
+
+   private static final Listener NO_LISTENER = new Listener() {
+   };
+   private static final Pattern PATTERN_IP_ADDR = Pattern.compile("inet ([0-9\\.]+)/(\\d+)");
+   private static final Pattern PATTERN_IPCONFIG = Pattern.compile("IPv4 Address[ .]+: ([0-9\\.]+)");
+   private static final Pattern PATTERN_MACHINE_READABLE = Pattern.compile("^\\d+,[^,]*,[^,]+,.*");
+   private static final Splitter MACHINE_READABLE_SPLITTER = Splitter.on(',').limit(5);
+   private static final Splitter LINE_SPLITTER = Splitter.on('\n');
+   private static final String IMPORT_START = "Importing base box";
+   private static final String CLONE_START = "Cloning VM";
+   private static final String IMPORT_END = "Matching MAC address";
+
+   private final String prefix;
+   private final Listener listener;
+   private final Ticker ticker;
+   private final StringBuilder partialLine = new StringBuilder();
+   private final List<String> networks = Lists.newArrayList();
+   private final List<String> errors = Lists.newArrayList();
+   private final StringBuilder hostnameSection = new StringBuilder();
+   private Section section = Section.NONE;
+   private boolean networksParsed;
+   private String hostname;
+   private String state;
+   private long startedAt = -1;
+   private long readyAt = -1;
+   private long importStartedAt = -1;
+   private long importedAt = -1;
+   private boolean imported;
+
+   public MachineOutputParser(String machineName) {
+      this(machineName, NO_LISTENER);
+   }
+
+   public MachineOutputParser(String machineName, Listener listener) {
+      this(machineName, listener, Ticker.systemTicker());
+   }
+
+   MachineOutputParser(String machineName, Listener listener, Ticker ticker) {
+      this.prefix = "==> " + machineName + ": ";
+      this.listener = listener;
+      this.ticker = ticker;
+   }
+
+   @Override
+   public void onInput(String input) {
+   }
+
+   @Override
+   public synchronized void onOutput(String output) {
+      if (startedAt == -1) {
+         startedAt = ticker.read();
+      }
+      if (output == null) {
+         if (partialLine.length() > 0) {
+            String line = partialLine.toString();
+            partialLine.setLength(0);
+            onLine(line);
+         }
+         return;
+      }
+      int start = 0;
+      int end;
+      while ((end = output.indexOf('\n', start)) != -1) {
+         partialLine.append(output, start, end);
+         String line = partialLine.toString();
+         partialLine.setLength(0);
+         onLine(line);
+         start = end + 1;
+      }
+      partialLine.append(output, start, output.length());
+   }
+
+   /**
+    * @return the addresses listed between the networks delimiters
+    */
+   public synchronized List<String> networks() {
+      if (!networksParsed) {
+         throw new IllegalStateException("Delimiter " + VagrantConstants.DELIMITER_NETWORKS_END
+               + " not found in the output of " + prefix.trim());
+      }
+      return ImmutableList.copyOf(networks);
+   }
+
+   /**
+    * @return the text between the hostname delimiters
+    */
+   public synchronized String hostname() {
+      if (hostname == null) {
+         throw new IllegalStateException("Delimiter " + VagrantConstants.DELIMITER_HOSTNAME_END
+               + " not found in the output of " + prefix.trim());
+      }
+      return hostname;
+   }
+
+   /**
+    * @return the last machine state reported, or null if none was
+    */
+   public synchronized String state() {
+      return state;
+   }
+
+   public synchronized List<String> errors() {
+      return ImmutableList.copyOf(errors);
+   }
+
+   /**
+    * @return the time from the first output until all the addresses of the machine were known, or -1 if they
+    *         weren't listed
+    */
+   public synchronized long readyLatency(TimeUnit unit) {
+      return readyAt == -1 ? -1 : unit.convert(readyAt - startedAt, TimeUnit.NANOSECONDS);
+   }
+
+   private void onLine(String line) {
+      if (line.endsWith("\r")) {
+         line = line.substring(0, line.length() - 1);
+      }
+      if (!PATTERN_MACHINE_READABLE.matcher(line).matches()) {
+         onText(line);
+         return;
+      }
+      List<String> fields = MACHINE_READABLE_SPLITTER.splitToList(line);
+      String type = fields.get(2);
+      String data = fields.get(3);
+      String message = fields.size() > 4 ? unescape(fields.get(4)) : "";
+      if (type.equals("state")) {
+         state = data;
+         listener.onState(data);
+      } else if (type.equals("error-exit")) {
+         onError(message.isEmpty() ? unescape(data) : message);
+      } else if (type.equals("ui")) {
+         for (String text : LINE_SPLITTER.split(message)) {
+            if (data.equals("error")) {
+               onError(stripPrefix(text));
+            } else {
+               onText(text);
+            }
+         }
+      }
+   }
+
+   /**
+    * @return whether the box was imported, as opposed to cloned from its master VM or not copied at all
+    */
+   public synchronized boolean imported() {
+      return imported;
+   }
+
+   /**
+    * @return the time the box import, or the clone of its master VM, took, or -1 if neither was reported
+    */
+   public synchronized long importLatency(TimeUnit unit) {
+      return importedAt == -1 ? -1 : unit.convert(importedAt - importStartedAt, TimeUnit.NANOSECONDS);
+   }
+
+   private void onText(String line) {
+      String text = stripPrefix(line);
+      if (text.contains(IMPORT_START) || text.contains(CLONE_START)) {
+         imported |= text.contains(IMPORT_START);
+         if (importStartedAt == -1) {
+            importStartedAt = ticker.read();
+         }
+      } else if (text.contains(IMPORT_END) && importStartedAt != -1 && importedAt == -1) {
+         importedAt = ticker.read();
+      }
+      if (text.contains(VagrantConstants.DELIMITER_NETWORKS_START)) {
+         section = Section.NETWORKS;
+      } else if (text.contains(VagrantConstants.DELIMITER_NETWORKS_END)) {
+         section = Section.NONE;
+         networksParsed = true;
+         readyAt = ticker.read();
+      } else if (text.contains(VagrantConstants.DELIMITER_HOSTNAME_START)) {
+         section = Section.HOSTNAME;
+         hostnameSection.setLength(0);
+      } else if (text.contains(VagrantConstants.DELIMITER_HOSTNAME_END)) {
+         section = Section.NONE;
+         hostname = hostnameSection.toString().trim();
+         listener.onHostname(hostname);
+      } else if (section == Section.NETWORKS) {
+         onAddresses(PATTERN_IP_ADDR.matcher(text));
+         onAddresses(PATTERN_IPCONFIG.matcher(text));
+      } else if (section == Section.HOSTNAME) {
+         hostnameSection.append(text).append('\n');
+      }
+   }
+
+   private void onAddresses(Matcher m) {
+      while (m.find()) {
+         String address = m.group(1);
+         networks.add(address);
+         listener.onAddress(address);
+      }
+   }
+
+   private void onError(String message) {
+      errors.add(message);
+      listener.onError(message);
+   }
+
+   private String stripPrefix(String text) {
+      return text.startsWith(prefix) ? text.substring(prefix.length()) : text;
+   }
+
+   private static String unescape(String value) {
+      // Vagrant shows some of the \n verbatim in provisioning command results.
+      return value
+            .replace("%!(VAGRANT_COMMA)", ",")
+            .replace("\\r", "")
+            .replace("\\n", "\n");
+   }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.lifecycle.Closer;
+import org.jclouds.logging.Logger;
+import org.jclouds.vagrant.api.VagrantApiFacade;
+import org.jclouds.vagrant.reference.VagrantConstants;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import vagrant.api.CommandIOListener;
+
+/**
+ * Runs "vagrant up" on a bounded executor per Vagrant provider, so creating a group of machines boots them in
+ * parallel without starting more machines at once than the provider copes with. VirtualBox for example gets
+ * unreliable with too many concurrent vboxmanage calls, while libvirt handles many more.
+ * <p>
+ * The limits come from {@link VagrantConstants#JCLOUDS_VAGRANT_CONCURRENCY}, a list of provider=limit pairs;
+ * providers not listed use {@link VagrantConstants#JCLOUDS_VAGRANT_DEFAULT_CONCURRENCY}. Each machine lives in its
+ * own folder, so concurrent runs don't share any ".vagrant" state.
+ * <p>
+ * The time each machine took to boot, not counting the time spent waiting for a free slot, is kept by machine id.
+ */
+@Singleton
+public class ProvisioningScheduler implements Closeable {
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final Map<String, Integer> limits;
+   private final int defaultLimit;
+   private final ConcurrentMap<String, ListeningExecutorService> executors =
+         new ConcurrentHashMap<String, ListeningExecutorService>();
+   private final ConcurrentMap<String, Long> bootLatencies = new ConcurrentHashMap<String, Long>();
+
+   @Inject
+   ProvisioningScheduler(@Named(VagrantConstants.JCLOUDS_VAGRANT_CONCURRENCY) String limits,
+         @Named(VagrantConstants.JCLOUDS_VAGRANT_DEFAULT_CONCURRENCY) int defaultLimit,
+         Closer closer) {
+      this(parseLimits(limits), defaultLimit);
+      closer.addToClose(this);
+   }
+
+   public ProvisioningScheduler(Map<String, Integer> limits, int defaultLimit) {
+      if (defaultLimit < 1) {
+         throw new IllegalArgumentException("Default concurrency must be at least 1, was " + defaultLimit);
+      }
+      this.limits = ImmutableMap.copyOf(limits);
+      this.defaultLimit = defaultLimit;
+   }
+
+   /**
+    * Starts the machine once a slot is free for its provider.
+    *
+    * @param output receives the output of "vagrant up" as it is produced
+    * @return a future completing once the machine is up
+    */
+   public ListenableFuture<Void> submitUp(final VagrantApiFacade vagrant, final String machineId,
+         final String machineName, final String provider, final CommandIOListener output) {
+      final Stopwatch queued = Stopwatch.createStarted();
+      return executor(provider).submit(new Callable<Void>() {
+         @Override
+         public Void call() {
+            long waited = queued.elapsed(TimeUnit.MILLISECONDS);
+            Stopwatch boot = Stopwatch.createStarted();
+            vagrant.up(machineName, provider, output);
+            long latency = boot.elapsed(TimeUnit.MILLISECONDS);
+            bootLatencies.put(machineId, latency);
+            logger.debug("Machine %s booted in %d ms after waiting %d ms for a %s slot", machineId, latency, waited,
+                  provider);
+            return null;
+         }
+      });
+   }
+
+   /**
+    * Starts the machine once a slot is free for its provider, blocking until it is up.
+    *
+    * @param output receives the output of "vagrant up" as it is produced
+    */
+   public void up(VagrantApiFacade vagrant, String machineId, String machineName, String provider,
+         CommandIOListener output) {
+      try {
+         Uninterruptibles.getUninterruptibly(submitUp(vagrant, machineId, machineName, provider, output));
+      } catch (ExecutionException e) {
+         throw Throwables.propagate(e.getCause());
+      }
+   }
+
+   /**
+    * @return the boot time in milliseconds of the last "vagrant up" of the machine, or null if it wasn't started
+    *         by this scheduler
+    */
+   public Long bootLatency(String machineId) {
+      return bootLatencies.get(machineId);
+   }
+
+   public Map<String, Long> bootLatencies() {
+      return ImmutableMap.copyOf(bootLatencies);
+   }
+
+   public int limit(String provider) {
+      Integer limit = provider == null ? null : limits.get(provider);
+      return limit != null ? limit : defaultLimit;
+   }
+
+   @Override
+   public void close() {
+      for (ListeningExecutorService executor : executors.values()) {
+         executor.shutdownNow();
+      }
+   }
+
+   private ListeningExecutorService executor(String provider) {
+      String key = provider == null ? "" : provider;
+      ListeningExecutorService executor = executors.get(key);
+      if (executor == null) {
+         ListeningExecutorService created = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(
+               limit(provider),
+               new ThreadFactoryBuilder()
+                     .setNameFormat("vagrant-up-" + (provider == null ? "default" : provider) + "-%d")
+                     .setDaemon(true)
+                     .build()));
+         executor = executors.putIfAbsent(key, created);
+         if (executor == null) {
+            executor = created;
+         } else {
+            created.shutdown();
+         }
+      }
+      return executor;
+   }
+
+   static Map<String, Integer> parseLimits(String limits) {
+      ImmutableMap.Builder<String, Integer> parsed = ImmutableMap.builder();
+      Map<String, String> pairs = Splitter.on(',').trimResults().omitEmptyStrings()
+            .withKeyValueSeparator(Splitter.on('=').trimResults())
+            .split(limits);
+      for (Map.Entry<String, String> pair : pairs.entrySet()) {
+         int limit = Integer.parseInt(pair.getValue());
+         if (limit < 1) {
+            throw new IllegalArgumentException("Concurrency of provider " + pair.getKey() + " must be at least 1, was "
+                  + limit);
+         }
+         parsed.put(pair.getKey(), limit);
+      }
+      return parsed.build();
+   }
+
+}
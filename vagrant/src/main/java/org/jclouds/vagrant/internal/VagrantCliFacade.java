@@ -18,15 +18,22 @@ package org.jclouds.vagrant.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.Collection;
+import java.util.Map;
 
 import org.jclouds.domain.LoginCredentials;
+import org.jclouds.util.Closeables2;
 import org.jclouds.vagrant.api.VagrantApiFacade;
 import org.jclouds.vagrant.api.VagrantBoxApiFacade;
+import org.jclouds.vagrant.util.VagrantUtils;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
@@ -38,26 +45,32 @@ import vagrant.api.domain.Box;
 import vagrant.api.domain.SshConfig;
 
 public class VagrantCliFacade implements VagrantApiFacade, VagrantBoxApiFacade<Box> {
+   private static final ImmutableList<String> STATUS_COMMAND = ImmutableList.of("vagrant", "status", "--machine-readable");
+
+   private final File path;
    private final VagrantApi vagrant;
    private final VagrantOutputRecorder outputRecorder;
 
    @AssistedInject
    VagrantCliFacade(CommandIOListener wireLogger, @Assisted File path) {
+      this.path = path;
       this.outputRecorder = new VagrantOutputRecorder(wireLogger);
       this.vagrant = Vagrant.forPath(path, outputRecorder);
    }
 
    @AssistedInject
    VagrantCliFacade(CommandIOListener wireLogger) {
-      this.outputRecorder = new VagrantOutputRecorder(wireLogger);
-      this.vagrant = Vagrant.forPath(new File("."), outputRecorder);
+      this(wireLogger, new File("."));
    }
 
    @Override
-   public String up(String machineName, String provider) {
-      outputRecorder.record();
-      vagrant.up(machineName, provider);
-      return outputRecorder.stopRecording();
+   public void up(String machineName, String provider, CommandIOListener output) {
+      outputRecorder.record(output);
+      try {
+         vagrant.up(machineName, provider);
+      } finally {
+         outputRecorder.stopRecording();
+      }
    }
 
    @Override
@@ -110,4 +123,32 @@ public class VagrantCliFacade implements VagrantApiFacade, VagrantBoxApiFacade<B
       return vagrant.exists();
    }
 
+   /**
+    * Runs "vagrant status" directly rather than through the bindings, which don't expose it. It only reads state, so
+    * it doesn't need to be serialized with the other commands, and it isn't wire logged so its output doesn't
+    * interleave with the output of a command running at the same time.
+    */
+   @Override
+   public Map<String, String> status() {
+      String output;
+      try {
+         Process process = new ProcessBuilder(STATUS_COMMAND).directory(path).redirectErrorStream(true).start();
+         InputStreamReader in = new InputStreamReader(process.getInputStream(), Charsets.UTF_8);
+         try {
+            output = CharStreams.toString(in);
+         } finally {
+            Closeables2.closeQuietly(in);
+         }
+         if (process.waitFor() != 0) {
+            throw new IllegalStateException("vagrant status failed in " + path.getAbsolutePath() + ":\n" + output);
+         }
+      } catch (IOException e) {
+         throw new IllegalStateException("Failed running vagrant status in " + path.getAbsolutePath(), e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted running vagrant status in " + path.getAbsolutePath(), e);
+      }
+      return VagrantUtils.parseMachineStates(output);
+   }
+
 }
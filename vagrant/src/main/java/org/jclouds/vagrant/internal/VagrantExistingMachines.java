@@ -18,12 +18,15 @@ package org.jclouds.vagrant.internal;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.jclouds.Constants;
 import org.jclouds.compute.domain.Hardware;
 import org.jclouds.compute.domain.HardwareBuilder;
 import org.jclouds.compute.domain.Image;
@@ -39,6 +42,9 @@ import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 
 public class VagrantExistingMachines implements Supplier<Collection<VagrantNode>> {
    @Resource
@@ -48,45 +54,89 @@ public class VagrantExistingMachines implements Supplier<Collection<VagrantNode>
    private final MachineConfig.Factory machineConfigFactory;
    private final Supplier<Collection<Image>> imageLister;
    private final Supplier<? extends Map<String, Hardware>> hardwareSupplier;
+   private final ListeningExecutorService executor;
 
    @Inject
    VagrantExistingMachines(@Named(VagrantConstants.JCLOUDS_VAGRANT_HOME) String home,
          MachineConfig.Factory machineConfigFactory,
          Supplier<Collection<Image>> imageLister,
-         Supplier<? extends Map<String, Hardware>> hardwareSupplier) {
+         Supplier<? extends Map<String, Hardware>> hardwareSupplier,
+         @Named(Constants.PROPERTY_USER_THREADS) ListeningExecutorService executor) {
       this.home = new File(home);
       this.machineConfigFactory = machineConfigFactory;
       this.imageLister = imageLister;
       this.hardwareSupplier = hardwareSupplier;
+      this.executor = executor;
    }
 
+   /**
+    * Loads all the machines, parsing their config files in parallel.
+    */
    @Override
    public Collection<VagrantNode> get() {
       File[] groups = home.listFiles();
       if (groups == null) return ImmutableList.of();
-      Map<String, Image> images = getImages();
-      Collection<VagrantNode> nodes = Lists.newArrayList();
-      for (File group : groups) {
-         File[] machines = new File(group, VagrantConstants.MACHINES_CONFIG_SUBFOLDER).listFiles();
-         if (machines == null) continue;
-         for (File machine : machines) {
-            if (machine.getName().endsWith(VagrantConstants.MACHINES_CONFIG_EXTENSION)) {
-               try {
-                  VagrantNode node = createMachine(group, machine, images);
-                  if (node != null) {
-                     nodes.add(node);
-                  }
-               } catch (RuntimeException e) {
-                  // Skip image, something is broken about it.
-                  // Most probable cause is that another process just deleted it.
-                  logger.debug("Failed loading machine " + machine.getAbsolutePath() + ". Skipping.", e);
+      final Map<String, Image> images = getImages();
+      List<ListenableFuture<VagrantNode>> loads = Lists.newArrayList();
+      for (final File group : groups) {
+         // Machines created before each machine got its own folder share the group folder
+         List<File> folders = Lists.newArrayList(group);
+         File[] machineFolders = group.listFiles();
+         if (machineFolders != null) {
+            for (File machineFolder : machineFolders) {
+               if (machineFolder.isDirectory()) {
+                  folders.add(machineFolder);
+               }
+            }
+         }
+         for (final File folder : folders) {
+            File[] machines = new File(folder, VagrantConstants.MACHINES_CONFIG_SUBFOLDER).listFiles();
+            if (machines == null) continue;
+            for (final File machine : machines) {
+               if (machine.isFile() && machine.getName().endsWith(VagrantConstants.MACHINES_CONFIG_EXTENSION)) {
+                  loads.add(executor.submit(new Callable<VagrantNode>() {
+                     @Override
+                     public VagrantNode call() {
+                        return loadQuietly(group, folder, machine, images);
+                     }
+                  }));
                }
             }
          }
       }
+      Collection<VagrantNode> nodes = Lists.newArrayList();
+      for (VagrantNode node : Futures.getUnchecked(Futures.allAsList(loads))) {
+         if (node != null) {
+            nodes.add(node);
+         }
+      }
       return nodes;
    }
 
+   /**
+    * Loads a single machine from its config file.
+    *
+    * @param group the group folder
+    * @param folder the folder holding the Vagrantfile of the machine; the group folder for older machines
+    * @return the machine, or null if its config can't be read or its image is no longer available
+    */
+   public VagrantNode load(File group, File folder, String machineName) {
+      File machine = new File(new File(folder, VagrantConstants.MACHINES_CONFIG_SUBFOLDER),
+            machineName + VagrantConstants.MACHINES_CONFIG_EXTENSION);
+      return loadQuietly(group, folder, machine, getImages());
+   }
+
+   private VagrantNode loadQuietly(File group, File folder, File machine, Map<String, Image> images) {
+      try {
+         return createMachine(group, folder, machine, images);
+      } catch (RuntimeException e) {
+         // Skip image, something is broken about it.
+         // Most probable cause is that another process just deleted it.
+         logger.debug("Failed loading machine " + machine.getAbsolutePath() + ". Skipping.", e);
+         return null;
+      }
+   }
+
    private Map<String, Image> getImages() {
       Collection<Image> images = imageLister.get();
       Map<String, Image> imageMap = Maps.newHashMap();
@@ -99,10 +149,10 @@ public class VagrantExistingMachines implements Supplier<Collection<VagrantNode>
    // Build minimum viable VagrantNode. Just enough to allow users to halt the machine.
    // If this is found to be inadequate need to keep the missing information in the config
    // file as we can't always fetch it at this point (machine is halted or Windows).
-   private VagrantNode createMachine(File group, File machine, Map<String, Image> images) {
+   private VagrantNode createMachine(File group, File folder, File machine, Map<String, Image> images) {
       String machineName = machine.getName().replace(VagrantConstants.MACHINES_CONFIG_EXTENSION, "");
       String id = group.getName() + "/" + machineName;
-      Map<String, Object> config = machineConfigFactory.newInstance(group, machineName).load();
+      Map<String, Object> config = machineConfigFactory.newInstance(folder, machineName).load();
       String imageName = (String) config.get(VagrantConstants.CONFIG_BOX);
       Image image = images.get(imageName);
       if (image == null) {
@@ -117,7 +167,7 @@ public class VagrantExistingMachines implements Supplier<Collection<VagrantNode>
       // Ubuntu for example will change passwords between image versions so we might need to fix
       // the image version used in future, so it doesn't change and we know which one is used.
       VagrantNode node = VagrantNode.builder()
-            .setPath(group)
+            .setPath(folder)
             .setId(id)
             .setGroup(group.getName())
             .setName(machineName)
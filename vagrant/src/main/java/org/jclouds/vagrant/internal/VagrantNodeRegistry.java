@@ -17,13 +17,22 @@
 package org.jclouds.vagrant.internal;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import org.jclouds.vagrant.domain.VagrantNode;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -75,15 +84,16 @@ import com.google.inject.Singleton;
  * from previous runs. That's a local "service" and no concurrent modifications of the machines
  * is expected. There could be parallel processes running but still each one would
  * manage its own machines. That's even strongly discouraged that since virtualbox (vboxmanage) has
- * problems when it's executed in parallel. Currently the vagrant bindings explicitly serialise
- * execs of vagrant.
+ * problems when it's executed in parallel. The vagrant bindings don't serialise execs of vagrant,
+ * each machine folder gets its own process; how many machines boot at once is capped per provider
+ * by {@link ProvisioningScheduler} instead.
  * <p>
  * 3. Machine status can reliably be inferred. The key here is that the vagrant commands are
  * synchronous. If "vagrant up" completes successfully then the status is RUNNING. If it fails
  * an exception propagates and signals an error. This makes it possible to save on expensive
- * state polling. It gets more obvious when several machines are spun up in parallel. Since
- * vagrant commands are executed sequentially a vagrant up would block other vagrant status
- * commands for quite a while.
+ * state polling. It gets more obvious when several machines are spun up in parallel. Every
+ * vagrant status started while the machines boot competes with the vagrant up processes for
+ * the hypervisor, slowing all of them down.
  * Possible improvements: time out the status value, refreshing it after some period on request
  * <p>
  * The registry allows us to really streamline machine creation. All it takes is a single
@@ -93,13 +103,17 @@ import com.google.inject.Singleton;
  * <p>
  * Expiring (and refreshing) machine list while running might not be wanted - would result in
  * parallel execution of vagrant command against another's process machines. Virtualbox (vboxmanage)
- * fails indeterministically when executed in parallel. Expiring the status would be a nice
- * improvement.
+ * fails indeterministically when executed in parallel. Instead the {@link VagrantNodeSynchronizer}
+ * watches the machine config files and updates the registry incrementally as other processes add
+ * or remove machines, parsing only the changed files. Machine states are resolved in the background
+ * with a single read-only "vagrant status" per Vagrantfile folder, the first time they are read, never
+ * blocking {@link #list()}.
+ * Machines being created by this process are left alone until {@link #endCreate(String)}.
  */
 @Singleton
 public class VagrantNodeRegistry {
 
-   private static class ConcurrentWrapperSupplier implements Supplier<Map<String, VagrantNode>> {
+   private class ConcurrentWrapperSupplier implements Supplier<ConcurrentMap<String, VagrantNode>> {
       private Supplier<Collection<VagrantNode>> existingMachines;
 
       public ConcurrentWrapperSupplier(Supplier<Collection<VagrantNode>> existingMachines) {
@@ -107,8 +121,13 @@ public class VagrantNodeRegistry {
       }
 
       @Override
-      public Map<String, VagrantNode> get() {
-         Map<String, VagrantNode> nodes = new ConcurrentHashMap<String, VagrantNode>();
+      public ConcurrentMap<String, VagrantNode> get() {
+         if (synchronizer != null) {
+            // Watch before scanning so no change made while scanning is missed
+            synchronizer.start(VagrantNodeRegistry.this);
+         }
+         ConcurrentMap<String, VagrantNode> nodes = new ConcurrentHashMap<String, VagrantNode>();
+         // States are probed once read, not all at once here
          for (VagrantNode node : existingMachines.get()) {
             nodes.put(node.id(), node);
          }
@@ -117,10 +136,22 @@ public class VagrantNodeRegistry {
 
    }
 
-   private final Supplier<Map<String, VagrantNode>> nodes;
+   private final Supplier<ConcurrentMap<String, VagrantNode>> nodes;
+   private final VagrantNodeSynchronizer synchronizer;
+   private final Set<String> creating = Sets.newConcurrentHashSet();
+   // Number of credential persists in flight per machine, guarded by the map itself
+   private final Map<String, Integer> pendingCredentials = Maps.newHashMap();
+
+   /**
+    * A registry of the given machines, not kept in line with the machines on disk.
+    */
+   public VagrantNodeRegistry(Supplier<Collection<VagrantNode>> existingMachines) {
+      this(existingMachines, null);
+   }
 
    @Inject
-   VagrantNodeRegistry(Supplier<Collection<VagrantNode>> existingMachines) {
+   VagrantNodeRegistry(Supplier<Collection<VagrantNode>> existingMachines, VagrantNodeSynchronizer synchronizer) {
+      this.synchronizer = synchronizer;
       this.nodes = Suppliers.memoize(new ConcurrentWrapperSupplier(existingMachines));
    }
 
@@ -128,6 +159,21 @@ public class VagrantNodeRegistry {
       return nodes().get(id);
    }
 
+   /**
+    * Looks up the machines with the given ids, skipping the unknown ones.
+    */
+   public List<VagrantNode> getAll(Iterable<String> ids) {
+      ConcurrentMap<String, VagrantNode> nodes = nodes();
+      List<VagrantNode> found = Lists.newArrayList();
+      for (String id : ImmutableSet.copyOf(ids)) {
+         VagrantNode node = nodes.get(id);
+         if (node != null) {
+            found.add(node);
+         }
+      }
+      return found;
+   }
+
    public void add(VagrantNode node) {
       nodes().put(node.id(), node);
    }
@@ -138,9 +184,106 @@ public class VagrantNodeRegistry {
 
    public void onTerminated(VagrantNode node) {
       nodes().remove(node.id());
+      synchronized (pendingCredentials) {
+         if (pendingCredentials.remove(node.id()) != null) {
+            pendingCredentials.notifyAll();
+         }
+      }
+   }
+
+   /**
+    * Marks the credentials of the machine as being persisted by
+    * {@link org.jclouds.compute.internal.PersistNodeCredentials}, on another thread than the ones
+    * reading the machine. Each call must be followed by one {@link #onCredentialsPersisted(String)}.
+    */
+   public void onPersistingCredentials(String id) {
+      synchronized (pendingCredentials) {
+         Integer persisting = pendingCredentials.get(id);
+         pendingCredentials.put(id, persisting == null ? 1 : persisting + 1);
+      }
+   }
+
+   public void onCredentialsPersisted(String id) {
+      synchronized (pendingCredentials) {
+         Integer persisting = pendingCredentials.get(id);
+         if (persisting == null) {
+            return;
+         }
+         if (persisting > 1) {
+            pendingCredentials.put(id, persisting - 1);
+         } else {
+            pendingCredentials.remove(id);
+            pendingCredentials.notifyAll();
+         }
+      }
+   }
+
+   /**
+    * Waits until no persist of the credentials of the machine is in flight, including persists
+    * that overlap. Stops waiting for them when the timeout elapses.
+    *
+    * @return false if the timeout elapsed
+    */
+   public boolean awaitCredentials(String id, long timeout, TimeUnit unit) throws InterruptedException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      synchronized (pendingCredentials) {
+         while (pendingCredentials.containsKey(id)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+               return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(pendingCredentials, remaining);
+         }
+         return true;
+      }
+   }
+
+   /**
+    * Marks the machine as being created by this process. Changes to its config file are ignored
+    * until {@link #endCreate(String)}.
+    */
+   public void beginCreate(String id) {
+      creating.add(id);
+   }
+
+   public void endCreate(String id) {
+      creating.remove(id);
+   }
+
+   boolean isCreating(String id) {
+      return creating.contains(id);
+   }
+
+   /**
+    * Merges a machine loaded from its (new or changed) config file. Known machines keep their
+    * networks, hostname and state unless the image, hardware or path changed.
+    *
+    * @return true if the registry changed
+    */
+   boolean onMachineChanged(VagrantNode loaded) {
+      if (isCreating(loaded.id())) {
+         return false;
+      }
+      ConcurrentMap<String, VagrantNode> nodes = nodes();
+      VagrantNode existing = nodes.putIfAbsent(loaded.id(), loaded);
+      if (existing == null) {
+         return true;
+      }
+      if (Objects.equal(existing.image(), loaded.image())
+            && Objects.equal(existing.hardware(), loaded.hardware())
+            && Objects.equal(existing.path(), loaded.path())) {
+         return false;
+      }
+      return nodes.replace(loaded.id(), existing, loaded);
+   }
+
+   void onMachineRemoved(String id) {
+      if (!isCreating(id)) {
+         nodes().remove(id);
+      }
    }
 
-   private Map<String, VagrantNode> nodes() {
+   private ConcurrentMap<String, VagrantNode> nodes() {
       return nodes.get();
    }
 
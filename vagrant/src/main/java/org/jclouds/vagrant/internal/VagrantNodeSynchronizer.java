@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.lifecycle.Closer;
+import org.jclouds.logging.Logger;
+import org.jclouds.util.Closeables2;
+import org.jclouds.vagrant.domain.VagrantNode;
+import org.jclouds.vagrant.reference.VagrantConstants;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Keeps a {@link VagrantNodeRegistry} in line with the machines on disk and their actual state, without blocking
+ * the registry readers:
+ * <ul>
+ *   <li>a {@link WatchService} on the vagrant home, the group folders, the machine folders and their machines
+ *   folders reports machine config files being added, changed or removed by any process; only the changed config
+ *   files are parsed again</li>
+ *   <li>the state of the machines added by other processes is probed asynchronously by the
+ *   {@link VagrantStatusProbe}; the machines loaded on start or after an overflow are probed once read</li>
+ * </ul>
+ * When the watch service overflows all the machines are loaded again.
+ */
+@Singleton
+public class VagrantNodeSynchronizer implements Closeable {
+   private static final int MACHINES_FOLDER_DEPTH = 3;
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final File home;
+   private final VagrantExistingMachines machineLoader;
+   private final VagrantStatusProbe statusProbe;
+
+   private volatile VagrantNodeRegistry registry;
+   private WatchService watchService;
+   private boolean closed;
+
+   @Inject
+   VagrantNodeSynchronizer(@Named(VagrantConstants.JCLOUDS_VAGRANT_HOME) String home,
+         VagrantExistingMachines machineLoader,
+         VagrantStatusProbe statusProbe,
+         Closer closer) {
+      this(new File(home), machineLoader, statusProbe);
+      closer.addToClose(this);
+   }
+
+   public VagrantNodeSynchronizer(File home, VagrantExistingMachines machineLoader, VagrantStatusProbe statusProbe) {
+      this.home = home;
+      this.machineLoader = machineLoader;
+      this.statusProbe = statusProbe;
+   }
+
+   /**
+    * Starts watching for machine changes on behalf of the registry. Called before the registry loads the existing
+    * machines, so no change made while loading is missed.
+    */
+   synchronized void start(VagrantNodeRegistry registry) {
+      if (this.registry != null) {
+         return;
+      }
+      this.registry = registry;
+      if (closed) {
+         return;
+      }
+      home.mkdirs();
+      try {
+         watchService = FileSystems.getDefault().newWatchService();
+         registerTree(home.toPath(), 0);
+         Thread watcher = new Thread(new Watcher(watchService), "vagrant-machine-watcher");
+         watcher.setDaemon(true);
+         watcher.start();
+      } catch (IOException e) {
+         logger.warn(e, "Can't watch %s for machine changes, machines managed by other processes won't be seen", home);
+         Closeables2.closeQuietly(watchService);
+         watchService = null;
+      }
+   }
+
+   private void probe(File folder) {
+      List<VagrantNode> nodes = Lists.newArrayList();
+      for (VagrantNode node : registry.list()) {
+         if (node.path().equals(folder)) {
+            nodes.add(node);
+         }
+      }
+      statusProbe.probe(folder, nodes);
+   }
+
+   @Override
+   public synchronized void close() {
+      closed = true;
+      Closeables2.closeQuietly(watchService);
+      watchService = null;
+   }
+
+   private void registerTree(Path folder, int depth) throws IOException {
+      folder.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+      if (depth >= MACHINES_FOLDER_DEPTH) {
+         return;
+      }
+      File[] children = folder.toFile().listFiles();
+      if (children == null) {
+         return;
+      }
+      for (File child : children) {
+         if (child.isDirectory() && !child.getName().startsWith(".")) {
+            registerTree(child.toPath(), depth + 1);
+         }
+      }
+   }
+
+   private void onCreated(Path path) {
+      int depth = home.toPath().relativize(path).getNameCount();
+      File file = path.toFile();
+      if (file.isDirectory()) {
+         if (depth > MACHINES_FOLDER_DEPTH || file.getName().startsWith(".")) {
+            return;
+         }
+         try {
+            registerTree(path, depth);
+         } catch (IOException e) {
+            logger.debug(e, "Can't watch %s", path);
+         } catch (ClosedWatchServiceException e) {
+            return;
+         }
+         // Files created before the folder was watched have no event of their own
+         reloadFolder(file);
+      } else {
+         onChanged(path);
+      }
+   }
+
+   private void reloadFolder(File folder) {
+      File[] children = folder.listFiles();
+      if (children == null) {
+         return;
+      }
+      for (File child : children) {
+         if (child.isDirectory()) {
+            reloadFolder(child);
+         } else {
+            onChanged(child.toPath());
+         }
+      }
+   }
+
+   private void onChanged(Path path) {
+      MachineFile machine = MachineFile.of(home, path);
+      if (machine == null) {
+         return;
+      }
+      VagrantNode node = machineLoader.load(machine.group, machine.folder, machine.name);
+      if (node != null && registry.onMachineChanged(node)) {
+         probe(machine.folder);
+      }
+   }
+
+   private void onDeleted(Path path) {
+      MachineFile machine = MachineFile.of(home, path);
+      if (machine != null) {
+         registry.onMachineRemoved(machine.group.getName() + "/" + machine.name);
+      }
+   }
+
+   private void resync() {
+      Collection<VagrantNode> nodes = machineLoader.get();
+      Set<String> ids = Sets.newHashSet();
+      for (VagrantNode node : nodes) {
+         ids.add(node.id());
+         registry.onMachineChanged(node);
+      }
+      for (VagrantNode node : registry.list()) {
+         if (!ids.contains(node.id())) {
+            registry.onMachineRemoved(node.id());
+         }
+      }
+      // Like the machines loaded on start, their states are probed once read
+   }
+
+   private class Watcher implements Runnable {
+      private final WatchService watchService;
+
+      Watcher(WatchService watchService) {
+         this.watchService = watchService;
+      }
+
+      @Override
+      public void run() {
+         while (true) {
+            WatchKey key;
+            try {
+               key = watchService.take();
+            } catch (InterruptedException e) {
+               return;
+            } catch (ClosedWatchServiceException e) {
+               return;
+            }
+            Path folder = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+               try {
+                  if (event.kind() == OVERFLOW) {
+                     resync();
+                     continue;
+                  }
+                  Path path = folder.resolve((Path) event.context());
+                  if (event.kind() == ENTRY_CREATE) {
+                     onCreated(path);
+                  } else if (event.kind() == ENTRY_MODIFY) {
+                     onChanged(path);
+                  } else if (event.kind() == ENTRY_DELETE) {
+                     onDeleted(path);
+                  }
+               } catch (RuntimeException e) {
+                  logger.warn(e, "Failed handling change %s of %s", event.kind(), event.context());
+               }
+            }
+            key.reset();
+         }
+      }
+   }
+
+   /**
+    * A machine config file, either {@code <group>/machines/<name>.yaml} for machines sharing the group folder or
+    * {@code <group>/<machine>/machines/<name>.yaml} for machines in their own folder.
+    */
+   private static final class MachineFile {
+      private final File group;
+      private final File folder;
+      private final String name;
+
+      private MachineFile(File group, File folder, String name) {
+         this.group = group;
+         this.folder = folder;
+         this.name = name;
+      }
+
+      static MachineFile of(File home, Path path) {
+         String fileName = path.getFileName().toString();
+         Path parent = path.getParent();
+         if (!fileName.endsWith(VagrantConstants.MACHINES_CONFIG_EXTENSION) || parent == null
+               || !parent.getFileName().toString().equals(VagrantConstants.MACHINES_CONFIG_SUBFOLDER)) {
+            return null;
+         }
+         Path relative = home.toPath().relativize(path);
+         String name = fileName.substring(0, fileName.length() - VagrantConstants.MACHINES_CONFIG_EXTENSION.length());
+         File group = new File(home, relative.getName(0).toString());
+         if (relative.getNameCount() == 3) {
+            return new MachineFile(group, group, name);
+         } else if (relative.getNameCount() == 4) {
+            return new MachineFile(group, new File(group, relative.getName(1).toString()), name);
+         }
+         return null;
+      }
+   }
+
+}
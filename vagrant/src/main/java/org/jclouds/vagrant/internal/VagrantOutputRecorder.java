@@ -18,42 +18,71 @@ package org.jclouds.vagrant.internal;
 
 import vagrant.api.CommandIOListener;
 
+/**
+ * Passes the output of the commands run while recording to the listener of the command, and to the next
+ * listener (the wire logger), whole lines at a time. Nothing is buffered beyond the current line.
+ */
 public class VagrantOutputRecorder implements CommandIOListener {
 
    private CommandIOListener next;
-   private StringBuilder output = new StringBuilder();
-   private boolean isRecording;
+   private CommandIOListener target;
+   private StringBuilder partialLine = new StringBuilder();
 
    public VagrantOutputRecorder(CommandIOListener next) {
       this.next = next;
    }
 
    @Override
-   public void onInput(String input) {
-      if (isRecording) {
+   public synchronized void onInput(String input) {
+      if (target != null) {
          next.onInput(input);
+         target.onInput(input);
       }
    }
 
    @Override
-   public void onOutput(String output) {
-      if (isRecording) {
-         next.onOutput(output);
-         if (output != null) {
-            this.output.append(output);
-         }
+   public synchronized void onOutput(String output) {
+      if (target == null) {
+         return;
+      }
+      if (output == null) {
+         flush();
+         target.onOutput(null);
+         return;
+      }
+      int start = 0;
+      int end;
+      while ((end = output.indexOf('\n', start)) != -1) {
+         partialLine.append(output, start, end + 1);
+         onLine();
+         start = end + 1;
       }
+      partialLine.append(output, start, output.length());
+   }
+
+   public synchronized void record(CommandIOListener target) {
+      this.target = target;
    }
 
-   public void record() {
-      isRecording = true;
+   public synchronized void stopRecording() {
+      if (target != null) {
+         flush();
+         target = null;
+      }
+   }
+
+   private void flush() {
+      if (partialLine.length() > 0) {
+         partialLine.append('\n');
+         onLine();
+      }
    }
 
-   public String stopRecording() {
-      isRecording = false;
-      String out = output.toString();
-      output.setLength(0);
-      return out;
+   private void onLine() {
+      String line = partialLine.toString();
+      partialLine.setLength(0);
+      next.onOutput(line);
+      target.onOutput(line);
    }
 
 }
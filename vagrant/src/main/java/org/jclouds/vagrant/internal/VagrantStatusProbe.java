@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.compute.domain.NodeMetadata.Status;
+import org.jclouds.lifecycle.Closer;
+import org.jclouds.logging.Logger;
+import org.jclouds.vagrant.api.VagrantApiFacade;
+import org.jclouds.vagrant.domain.VagrantNode;
+import org.jclouds.vagrant.reference.VagrantConstants;
+
+import com.google.common.base.Function;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Resolves the actual state of the machines with "vagrant status", in the background.
+ * <ul>
+ *   <li>a single "vagrant status" per Vagrantfile folder covers all its machines. Probes asked for a folder
+ *   already being probed join the running one instead of forking another vagrant process.</li>
+ *   <li>machines created by jclouds each have their own folder, so probing many machines runs many "vagrant status".
+ *   At most {@link VagrantConstants#JCLOUDS_VAGRANT_STATUS_CONCURRENCY} of them run at once, the rest are queued;
+ *   like "vagrant up", they would make the hypervisor CLI unreliable if all run in parallel.</li>
+ *   <li>the state of a machine is considered current for {@link VagrantConstants#JCLOUDS_VAGRANT_STATUS_TTL}
+ *   after it was last probed or changed by this process; {@link #refreshIfStale(VagrantNode)} probes only after
+ *   that and never blocks the caller</li>
+ *   <li>{@link #update(VagrantNode, Status)} records the state reached by a vagrant command completing
+ *   successfully. Probes started before the update don't overwrite it, even when they complete at the same time.</li>
+ * </ul>
+ */
+@Singleton
+public class VagrantStatusProbe {
+   private static final Map<String, Status> STATES = ImmutableMap.<String, Status>builder()
+         .put("running", Status.RUNNING)
+         .put("poweroff", Status.SUSPENDED)
+         .put("aborted", Status.SUSPENDED)
+         .put("saved", Status.SUSPENDED)
+         .put("paused", Status.SUSPENDED)
+         .put("shutoff", Status.SUSPENDED)
+         .put("stopped", Status.SUSPENDED)
+         .put("frozen", Status.SUSPENDED)
+         .put("not_created", Status.TERMINATED)
+         .build();
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final VagrantApiFacade.Factory cliFactory;
+   private final ListeningExecutorService executor;
+   private final long ttlNanos;
+   private final Ticker ticker;
+   private final ConcurrentMap<File, Flight> flights = new ConcurrentHashMap<File, Flight>();
+   private final ConcurrentMap<String, Long> knownAt = new ConcurrentHashMap<String, Long>();
+   // Makes checking and setting the state of a machine one step, for probes and updates alike
+   private final Striped<Lock> locks = Striped.lock(64);
+
+   @Inject
+   VagrantStatusProbe(VagrantApiFacade.Factory cliFactory,
+         @Named(VagrantConstants.JCLOUDS_VAGRANT_STATUS_CONCURRENCY) int concurrency,
+         @Named(VagrantConstants.JCLOUDS_VAGRANT_STATUS_TTL) long ttlMillis,
+         Closer closer) {
+      this(cliFactory, newExecutor(concurrency), ttlMillis, Ticker.systemTicker());
+      closer.addToClose(new Closeable() {
+         @Override
+         public void close() {
+            executor.shutdownNow();
+         }
+      });
+   }
+
+   public VagrantStatusProbe(VagrantApiFacade.Factory cliFactory, ListeningExecutorService executor, long ttlMillis,
+         Ticker ticker) {
+      this.cliFactory = cliFactory;
+      this.executor = executor;
+      this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+      this.ticker = ticker;
+   }
+
+   /**
+    * Probes the state of the given machines, one "vagrant status" per folder.
+    *
+    * @return a future completing once the state of all the machines has been updated
+    */
+   public ListenableFuture<List<Void>> probe(Collection<VagrantNode> nodes) {
+      ListMultimap<File, VagrantNode> byFolder = ArrayListMultimap.create();
+      for (VagrantNode node : nodes) {
+         byFolder.put(node.path(), node);
+      }
+      List<ListenableFuture<Void>> folderProbes = Lists.newArrayList();
+      for (Map.Entry<File, Collection<VagrantNode>> folder : byFolder.asMap().entrySet()) {
+         folderProbes.add(probe(folder.getKey(), folder.getValue()));
+      }
+      return Futures.successfulAsList(folderProbes);
+   }
+
+   /**
+    * Probes the state of the given machines of the folder, or joins the probe of the folder already running.
+    *
+    * @return a future completing once the state of the machines has been updated
+    */
+   public ListenableFuture<Void> probe(File folder, final Collection<VagrantNode> nodes) {
+      final Flight flight = flight(folder);
+      return Futures.transform(flight.states, new Function<Map<String, String>, Void>() {
+         @Override
+         public Void apply(Map<String, String> states) {
+            for (VagrantNode node : nodes) {
+               String state = states.get(node.name());
+               if (state == null) {
+                  continue;
+               }
+               Lock lock = locks.get(node.id());
+               lock.lock();
+               try {
+                  if (isOlderThan(node, flight.startedAt)) {
+                     node.setMachineState(toStatus(state));
+                     knownAt.put(node.id(), flight.startedAt);
+                  }
+               } finally {
+                  lock.unlock();
+               }
+            }
+            return null;
+         }
+      }, MoreExecutors.directExecutor());
+   }
+
+   /**
+    * Probes the state of the machine in the background if it's older than the TTL. Returns immediately.
+    */
+   public void refreshIfStale(VagrantNode node) {
+      refreshIfStale(Collections.singletonList(node));
+   }
+
+   /**
+    * Probes the state of the machines older than the TTL in the background, one "vagrant status" per folder.
+    * Returns immediately.
+    */
+   public void refreshIfStale(Collection<VagrantNode> nodes) {
+      long staleBefore = ticker.read() - ttlNanos;
+      List<VagrantNode> stale = Lists.newArrayList();
+      for (VagrantNode node : nodes) {
+         if (isOlderThan(node, staleBefore)) {
+            stale.add(node);
+         }
+      }
+      if (!stale.isEmpty()) {
+         probe(stale);
+      }
+   }
+
+   /**
+    * Records the state of a machine, as left by a vagrant command that just completed.
+    */
+   public void update(VagrantNode node, Status status) {
+      Lock lock = locks.get(node.id());
+      lock.lock();
+      try {
+         node.setMachineState(status);
+         knownAt.put(node.id(), ticker.read());
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Forgets a machine which no longer exists.
+    */
+   public void remove(VagrantNode node) {
+      knownAt.remove(node.id());
+   }
+
+   /**
+    * @return the executor running at most the given number of probes at once, queuing the others
+    */
+   static ListeningExecutorService newExecutor(int concurrency) {
+      if (concurrency < 1) {
+         throw new IllegalArgumentException("Status concurrency must be at least 1, was " + concurrency);
+      }
+      return MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(concurrency,
+            new ThreadFactoryBuilder().setNameFormat("vagrant-status-%d").setDaemon(true).build()));
+   }
+
+   static Status toStatus(String vagrantState) {
+      Status status = STATES.get(vagrantState);
+      return status != null ? status : Status.UNRECOGNIZED;
+   }
+
+   private boolean isOlderThan(VagrantNode node, long time) {
+      Long known = knownAt.get(node.id());
+      return known == null || known - time < 0;
+   }
+
+   private Flight flight(final File folder) {
+      Flight running = flights.get(folder);
+      if (running != null) {
+         return running;
+      }
+      final ListenableFutureTask<Map<String, String>> task = ListenableFutureTask.create(
+            new Callable<Map<String, String>>() {
+               @Override
+               public Map<String, String> call() {
+                  return cliFactory.create(folder).status();
+               }
+            });
+      final Flight flight = new Flight(ticker.read(), task);
+      running = flights.putIfAbsent(folder, flight);
+      if (running != null) {
+         return running;
+      }
+      Futures.addCallback(task, new FutureCallback<Map<String, String>>() {
+         @Override
+         public void onSuccess(Map<String, String> states) {
+            flights.remove(folder, flight);
+         }
+
+         @Override
+         public void onFailure(Throwable t) {
+            flights.remove(folder, flight);
+            logger.debug(t, "Failed probing the state of the machines in %s", folder);
+         }
+      }, MoreExecutors.directExecutor());
+      try {
+         executor.execute(task);
+      } catch (RuntimeException e) {
+         flights.remove(folder, flight);
+         throw e;
+      }
+      return flight;
+   }
+
+   private static final class Flight {
+      private final long startedAt;
+      private final ListenableFuture<Map<String, String>> states;
+
+      Flight(long startedAt, ListenableFuture<Map<String, String>> states) {
+         this.startedAt = startedAt;
+         this.states = states;
+      }
+   }
+
+}
@@ -28,7 +28,7 @@ import vagrant.api.CommandIOListener;
 public class VagrantWireLogger implements CommandIOListener {
    private HttpWire wire;
 
-   // Vagrant commands are sequential (non-concurrent)
+   // VagrantOutputRecorder passes whole lines only, so concurrent commands never leave a partial line here
    private String lastPartialLine = "";
 
    @Inject
@@ -28,9 +28,28 @@ public final class VagrantConstants {
    public static final String DEFAULT_PASSWORD = "vagrant";
    public static final String USER_META_PROVIDER = "provider";
 
+   // Comma separated provider=limit pairs, the maximum number of machines of a provider started at once
+   public static final String JCLOUDS_VAGRANT_CONCURRENCY = "vagrant.concurrency";
+   public static final String JCLOUDS_VAGRANT_CONCURRENCY_DEFAULT = "virtualbox=4,libvirt=8";
+   // Maximum number of machines started at once for providers not listed in vagrant.concurrency
+   public static final String JCLOUDS_VAGRANT_DEFAULT_CONCURRENCY = "vagrant.default-concurrency";
+   public static final String JCLOUDS_VAGRANT_DEFAULT_CONCURRENCY_DEFAULT = "2";
+
    public static final String ENV_VAGRANT_HOME = "VAGRANT_HOME";
    public static final String ENV_VAGRANT_HOME_DEFAULT = new File(System.getProperty("user.home"), ".vagrant.d").getAbsolutePath();
    public static final String VAGRANT_BOXES_SUBFOLDER = "boxes";
+   // Milliseconds the box catalogue is kept at most, even if no change was seen in the boxes folder
+   public static final String JCLOUDS_VAGRANT_BOX_CACHE_TTL = "vagrant.box-cache-ttl";
+   public static final String JCLOUDS_VAGRANT_BOX_CACHE_TTL_DEFAULT = "300000";
+   // Milliseconds the known state of a machine is used before "vagrant status" is asked again
+   public static final String JCLOUDS_VAGRANT_STATUS_TTL = "vagrant.status-ttl";
+   public static final String JCLOUDS_VAGRANT_STATUS_TTL_DEFAULT = "5000";
+   // Maximum number of "vagrant status" run at once, each machine folder needs its own
+   public static final String JCLOUDS_VAGRANT_STATUS_CONCURRENCY = "vagrant.status-concurrency";
+   public static final String JCLOUDS_VAGRANT_STATUS_CONCURRENCY_DEFAULT = "2";
+   // Whether VirtualBox machines are created as linked clones of a master VM imported once per box
+   public static final String JCLOUDS_VAGRANT_LINKED_CLONES = "vagrant.linked-clones";
+   public static final String JCLOUDS_VAGRANT_LINKED_CLONES_DEFAULT = "true";
 
    public static final String ESCAPE_SLASH = "-VAGRANTSLASH-";
 
@@ -63,4 +82,5 @@ public final class VagrantConstants {
    public static final String CONFIG_CPUS = "cpus";
    public static final String CONFIG_USERNAME = "username";
    public static final String CONFIG_PASSWORD = "password";
+   public static final String CONFIG_LINKED_CLONE = "linkedClone";
 }
@@ -22,13 +22,33 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import org.jclouds.util.Closeables2;
+import org.jclouds.vagrant.reference.VagrantConstants;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.io.ByteStreams;
 
 public class VagrantUtils {
+   public static File getVagrantHome() {
+      Optional<String> home = Optional.fromNullable(System.getenv(VagrantConstants.ENV_VAGRANT_HOME));
+      return new File(home.or(VagrantConstants.ENV_VAGRANT_HOME_DEFAULT));
+   }
+
    public static void deleteFolder(File path) {
       if (path.isDirectory()) {
          for (File sub : path.listFiles()) {
@@ -54,6 +74,62 @@ public class VagrantUtils {
       }
    }
 
+   /**
+    * Writes the file through a temporary file in the same folder renamed over it, so readers see either the old or
+    * the new content, never a partial write. The file keeps the permissions it had; a new file gets the default
+    * permissions of the process, like a file written in place.
+    */
+   public static void writeAtomically(File file, String value) throws IOException {
+      Path target = file.toPath();
+      // Not Files.createTempFile, its files are readable by the owner only and the rename would carry that over
+      Path temp = target.resolveSibling("." + file.getName() + "." + UUID.randomUUID() + ".tmp");
+      try {
+         Files.write(temp, value.getBytes(Charsets.UTF_8), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+         if (Files.exists(target) && Files.getFileAttributeView(target, PosixFileAttributeView.class) != null) {
+            Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+         }
+         try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+         } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+         }
+      } finally {
+         Files.deleteIfExists(temp);
+      }
+   }
+
+   /**
+    * Writes the file atomically unless it already has the content.
+    *
+    * @return whether the file was written
+    */
+   public static boolean writeIfChanged(File file, String value) throws IOException {
+      byte[] bytes = value.getBytes(Charsets.UTF_8);
+      if (file.isFile() && file.length() == bytes.length
+            && Arrays.equals(Files.readAllBytes(file.toPath()), bytes)) {
+         return false;
+      }
+      writeAtomically(file, value);
+      return true;
+   }
+
+   /**
+    * Parses the output of "vagrant status --machine-readable", whose lines look like
+    * {@code 1482768916,machine-name,state,running}.
+    *
+    * @return the state by machine name
+    */
+   public static Map<String, String> parseMachineStates(String output) {
+      Map<String, String> states = Maps.newLinkedHashMap();
+      for (String line : Splitter.on('\n').trimResults().omitEmptyStrings().split(output)) {
+         List<String> fields = Splitter.on(',').splitToList(line);
+         if (fields.size() >= 4 && fields.get(2).equals("state") && !fields.get(1).isEmpty()) {
+            states.put(fields.get(1), fields.get(3));
+         }
+      }
+      return ImmutableMap.copyOf(states);
+   }
+
    public static void deleteFiles(File path, String filePattern) {
       for (File f : path.listFiles()) {
          if (f.getName().startsWith(filePattern)) {
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.benchmark;
+
+import static org.jclouds.compute.predicates.NodePredicates.inGroup;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.ContextBuilder;
+import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.ComputeServiceContext;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.domain.OsFamily;
+import org.jclouds.compute.domain.Template;
+import org.jclouds.vagrant.internal.FakeVagrant;
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.jclouds.vagrant.util.VagrantUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Runs the compute service against the fake "vagrant" executable, with no hypervisor, measuring createNodesInGroup,
+ * listNodes, getImage and destroyNodesMatching for groups of 1 to 100 machines. Every command goes through the real
+ * CLI bindings, output parsing and machine configs on disk; only "vagrant" itself is faked, with configurable startup
+ * and boot times.
+ * <p>
+ * The benchmark profile puts the script folder on the PATH and VAGRANT_HOME in the build folder.
+ */
+@Test(singleThreaded = true)
+public class VagrantComputeServiceBenchmark {
+   private static final Logger logger = LoggerFactory.getLogger(VagrantComputeServiceBenchmark.class);
+
+   private static final String BIN = System.getProperty("jclouds.vagrant.benchmark.bin");
+   private static final String SIZES = System.getProperty("jclouds.vagrant.benchmark.sizes", "1,10,100");
+   private static final String CONCURRENCY = System.getProperty("jclouds.vagrant.benchmark.concurrency",
+         "virtualbox=16");
+   private static final long STARTUP_MILLIS = Long.getLong("jclouds.vagrant.benchmark.startup-millis", 100);
+   private static final long BOOT_MILLIS = Long.getLong("jclouds.vagrant.benchmark.boot-millis", 500);
+   private static final int LOOKUPS = Integer.getInteger("jclouds.vagrant.benchmark.lookups", 1000);
+   private static final String BOX = "ubuntu/xenial64";
+
+   private FakeVagrant vagrant;
+   private File box;
+   private File home;
+   private ComputeServiceContext context;
+   private ComputeService compute;
+
+   @BeforeClass
+   public void setUp() throws Exception {
+      String path = System.getenv("PATH");
+      String vagrantHome = System.getenv(VagrantConstants.ENV_VAGRANT_HOME);
+      if (BIN == null || path == null || !path.contains(BIN) || vagrantHome == null) {
+         throw new SkipException("The fake vagrant executable is not on the PATH, run with -Pbenchmark");
+      }
+      vagrant = new FakeVagrant(new File(BIN))
+            .startupMillis(STARTUP_MILLIS)
+            .bootMillis(BOOT_MILLIS);
+
+      box = new File(new File(vagrantHome, VagrantConstants.VAGRANT_BOXES_SUBFOLDER),
+            BOX.replace("/", VagrantConstants.ESCAPE_SLASH));
+      File provider = new File(new File(box, "20170101.0.0"), "virtualbox");
+      assertTrue(provider.isDirectory() || provider.mkdirs());
+      Files.write("Vagrant.configure(2) do |config|\nend\n", new File(provider, VagrantConstants.VAGRANTFILE),
+            Charsets.UTF_8);
+
+      home = Files.createTempDir();
+      Properties overrides = new Properties();
+      overrides.setProperty(VagrantConstants.JCLOUDS_VAGRANT_HOME, home.getAbsolutePath());
+      overrides.setProperty(VagrantConstants.JCLOUDS_VAGRANT_CONCURRENCY, CONCURRENCY);
+      context = ContextBuilder.newBuilder("vagrant")
+            .overrides(overrides)
+            .buildView(ComputeServiceContext.class);
+      compute = context.getComputeService();
+   }
+
+   @AfterClass(alwaysRun = true)
+   public void tearDown() {
+      if (context != null) {
+         context.close();
+         VagrantUtils.deleteFolder(home);
+      }
+      if (vagrant != null) {
+         vagrant.close();
+         VagrantUtils.deleteFolder(box);
+      }
+   }
+
+   public void testProvisioningCycle() throws Exception {
+      for (int size : sizes()) {
+         String label = size + " machines";
+         String group = "benchmark-" + size;
+         Template template = compute.templateBuilder().osFamily(OsFamily.UBUNTU).build();
+         // Measure the provider, not jclouds polling for the node state and SSH
+         template.getOptions().blockUntilRunning(false);
+
+         Stopwatch stopwatch = Stopwatch.createStarted();
+         Set<? extends NodeMetadata> nodes = compute.createNodesInGroup(group, size, template);
+         stopwatch.stop();
+         assertEquals(nodes.size(), size);
+         report("createNodesInGroup", label, size, stopwatch);
+
+         stopwatch = Stopwatch.createStarted();
+         for (int i = 0; i < LOOKUPS; i++) {
+            assertTrue(compute.listNodes().size() >= size);
+         }
+         stopwatch.stop();
+         report("listNodes", label, LOOKUPS, stopwatch);
+
+         String imageId = template.getImage().getId();
+         stopwatch = Stopwatch.createStarted();
+         for (int i = 0; i < LOOKUPS; i++) {
+            assertNotNull(compute.getImage(imageId));
+         }
+         stopwatch.stop();
+         report("getImage", label, LOOKUPS, stopwatch);
+
+         stopwatch = Stopwatch.createStarted();
+         Set<? extends NodeMetadata> destroyed = compute.destroyNodesMatching(inGroup(group));
+         stopwatch.stop();
+         assertEquals(destroyed.size(), size);
+         report("destroyNodesMatching", label, size, stopwatch);
+      }
+   }
+
+   private static void report(String operation, String label, long operations, Stopwatch stopwatch) {
+      double seconds = stopwatch.elapsed(TimeUnit.NANOSECONDS) / 1e9;
+      logger.info(String.format(Locale.ENGLISH, "%-40s %12.1f op/s %10d ms", operation + " " + label,
+            operations / seconds, stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+   }
+
+   private static List<Integer> sizes() {
+      List<Integer> sizes = Lists.newArrayList();
+      for (String size : Splitter.on(',').trimResults().omitEmptyStrings().split(SIZES)) {
+         sizes.add(Integer.valueOf(size));
+      }
+      return sizes;
+   }
+
+}
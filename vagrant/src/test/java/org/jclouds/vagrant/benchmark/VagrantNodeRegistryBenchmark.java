@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.benchmark;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.compute.domain.Hardware;
+import org.jclouds.compute.domain.HardwareBuilder;
+import org.jclouds.compute.domain.Image;
+import org.jclouds.compute.domain.ImageBuilder;
+import org.jclouds.compute.domain.OperatingSystem;
+import org.jclouds.compute.domain.OsFamily;
+import org.jclouds.compute.domain.Processor;
+import org.jclouds.vagrant.domain.VagrantNode;
+import org.jclouds.vagrant.internal.VagrantNodeRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+/**
+ * Looks up 200 of 1,000 registered machines by id, filtering the whole list against the requested ids the way
+ * listNodesByIds used to, and with the hash lookups of {@link VagrantNodeRegistry#getAll(Iterable)}.
+ */
+@Test(singleThreaded = true)
+public class VagrantNodeRegistryBenchmark {
+   private static final Logger logger = LoggerFactory.getLogger(VagrantNodeRegistryBenchmark.class);
+
+   private static final int MACHINES = Integer.getInteger("jclouds.vagrant.benchmark.machines", 1000);
+   private static final int REQUESTED = Integer.getInteger("jclouds.vagrant.benchmark.requested", 200);
+   private static final int ITERATIONS = Integer.getInteger("jclouds.vagrant.benchmark.iterations", 2000);
+   private static final int WARMUP_ITERATIONS = ITERATIONS / 4;
+
+   private VagrantNodeRegistry registry;
+   private List<String> ids;
+
+   @BeforeClass
+   public void setUp() {
+      final List<VagrantNode> nodes = Lists.newArrayList();
+      OperatingSystem os = new OperatingSystem(OsFamily.UBUNTU, "Ubuntu", "16.04", "x64", "Ubuntu 16.04", true);
+      Image image = new ImageBuilder()
+            .ids("ubuntu/xenial64")
+            .operatingSystem(os)
+            .status(Image.Status.AVAILABLE)
+            .build();
+      Hardware hardware = new HardwareBuilder().ids("small").ram(1024).processor(new Processor(1.0, 1)).build();
+      for (int i = 0; i < MACHINES; i++) {
+         nodes.add(VagrantNode.builder()
+               .setPath(new File("/benchmark/group/machine" + i))
+               .setId("group/machine" + i)
+               .setGroup("group")
+               .setName("machine" + i)
+               .setImage(image)
+               .setHardware(hardware)
+               .setNetworks(ImmutableList.of("172.28.128." + (i % 250)))
+               .setHostname("machine" + i)
+               .build());
+      }
+      registry = new VagrantNodeRegistry(new Supplier<Collection<VagrantNode>>() {
+         @Override
+         public Collection<VagrantNode> get() {
+            return nodes;
+         }
+      });
+
+      Random random = new Random(0);
+      ids = Lists.newArrayList();
+      for (int i = 0; i < REQUESTED; i++) {
+         ids.add("group/machine" + random.nextInt(MACHINES));
+      }
+   }
+
+   public void testFilterList() {
+      run("filter list", new Lookup() {
+         @Override
+         public int lookup() {
+            return Iterables.size(Iterables.filter(registry.list(), new Predicate<VagrantNode>() {
+               @Override
+               public boolean apply(VagrantNode input) {
+                  return Iterables.contains(ids, input.id());
+               }
+            }));
+         }
+      });
+   }
+
+   public void testGetAll() {
+      run("getAll", new Lookup() {
+         @Override
+         public int lookup() {
+            return registry.getAll(ids).size();
+         }
+      });
+   }
+
+   private void run(String label, Lookup lookup) {
+      int expected = registry.getAll(ids).size();
+      for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+         lookup.lookup();
+      }
+      int found = 0;
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      for (int i = 0; i < ITERATIONS; i++) {
+         found += lookup.lookup();
+      }
+      stopwatch.stop();
+      assertEquals(found, expected * ITERATIONS);
+      double seconds = stopwatch.elapsed(TimeUnit.NANOSECONDS) / 1e9;
+      String measurement = label + " " + REQUESTED + " of " + MACHINES;
+      logger.info(String.format(Locale.ENGLISH, "%-40s %12.1f op/s %10d ms", measurement, ITERATIONS / seconds,
+            stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+   }
+
+   private interface Lookup {
+      int lookup();
+   }
+
+}
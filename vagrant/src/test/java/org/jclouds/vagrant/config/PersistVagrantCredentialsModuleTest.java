@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.config;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.domain.Credentials;
+import org.jclouds.domain.LoginCredentials;
+import org.jclouds.vagrant.config.PersistVagrantCredentialsModule.CredentialsWriter;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+@Test(groups = "unit", testName = "PersistVagrantCredentialsModuleTest", singleThreaded = true)
+public class PersistVagrantCredentialsModuleTest {
+
+   private static class RecordingWriter extends CredentialsWriter {
+      private final List<String> updates = Collections.synchronizedList(Lists.<String>newArrayList());
+      private final CountDownLatch flushing = new CountDownLatch(1);
+      private final CountDownLatch release = new CountDownLatch(1);
+
+      RecordingWriter(Map<String, Credentials> credentialStore) {
+         super(null, credentialStore, null);
+      }
+
+      @Override
+      protected void updateMachine(String id, LoginCredentials credentials) {
+         updates.add(id + ":" + credentials.getUser());
+         if (id.startsWith("broken")) {
+            throw new IllegalStateException("Can't update " + id);
+         }
+         if (id.equals("first")) {
+            flushing.countDown();
+            try {
+               release.await();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new IllegalStateException(e);
+            }
+         }
+      }
+   }
+
+   public void testBatchesWritesQueuedDuringFlush() throws Exception {
+      Map<String, Credentials> credentialStore = new ConcurrentHashMap<String, Credentials>();
+      final RecordingWriter writer = new RecordingWriter(credentialStore);
+      ExecutorService executor = Executors.newCachedThreadPool();
+      try {
+         Future<?> first = executor.submit(store(writer, "first"));
+         writer.flushing.await();
+         List<Future<?>> queued = Lists.newArrayList();
+         for (String id : ImmutableList.of("n1", "n2", "n1")) {
+            queued.add(executor.submit(store(writer, id)));
+         }
+         while (writer.pendingWrites() < 3) {
+            Thread.sleep(10);
+         }
+         writer.release.countDown();
+         first.get(10, TimeUnit.SECONDS);
+         for (Future<?> future : queued) {
+            future.get(10, TimeUnit.SECONDS);
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+      assertEquals(writer.updates, ImmutableList.of("first:vagrant", "n1:vagrant", "n2:vagrant"));
+      assertEquals(credentialStore.keySet(), ImmutableSet.of("node#first", "node#n1", "node#n2"));
+   }
+
+   @Test(expectedExceptions = IllegalStateException.class)
+   public void testPropagatesFailureToItsCaller() {
+      RecordingWriter writer = new RecordingWriter(new ConcurrentHashMap<String, Credentials>());
+      writer.store("broken", credentials());
+   }
+
+   private static Runnable store(final CredentialsWriter writer, final String id) {
+      return new Runnable() {
+         @Override
+         public void run() {
+            writer.store(id, credentials());
+         }
+      };
+   }
+
+   private static LoginCredentials credentials() {
+      return LoginCredentials.builder().user("vagrant").password("vagrant").build();
+   }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.compute.domain.Image;
+import org.jclouds.compute.domain.ImageBuilder;
+import org.jclouds.compute.domain.OperatingSystem;
+import org.jclouds.compute.domain.OsFamily;
+import org.jclouds.vagrant.api.VagrantBoxApiFacade;
+import org.jclouds.vagrant.functions.OutdatedBoxesFilter;
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.jclouds.vagrant.util.VagrantUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import vagrant.api.domain.Box;
+
+@Test(groups = "unit", testName = "BoxCatalogueTest", singleThreaded = true)
+public class BoxCatalogueTest {
+   private static final long TTL_MILLIS = 60000;
+
+   private final AtomicInteger listings = new AtomicInteger();
+   private final AtomicLong now = new AtomicLong();
+   private final List<Box> boxes = Lists.newCopyOnWriteArrayList();
+   private File boxesFolder;
+   private BoxCatalogue<Box> catalogue;
+
+   @BeforeMethod
+   public void setUp() {
+      listings.set(0);
+      boxes.clear();
+      boxes.add(new Box("ubuntu/xenial64", "20170101.0.0", "virtualbox"));
+      boxes.add(new Box("ubuntu/xenial64", "20171010.0.0", "virtualbox"));
+      boxes.add(new Box("centos/7", "1708.01", "virtualbox"));
+      boxesFolder = Files.createTempDir();
+      catalogue = new BoxCatalogue<Box>(new OutdatedBoxesFilter(), new CountingBoxApi(), new SimpleBoxToImage(),
+            boxesFolder, TTL_MILLIS, new Ticker() {
+               @Override
+               public long read() {
+                  return now.get();
+               }
+            });
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      catalogue.close();
+      VagrantUtils.deleteFolder(boxesFolder);
+   }
+
+   public void testLookupsDoNotListAgain() {
+      assertEquals(catalogue.listLatest().size(), 2);
+      assertEquals(catalogue.getLatest("ubuntu/xenial64").getVersion(), "20171010.0.0");
+      assertEquals(catalogue.getImage("ubuntu/xenial64", "20170101.0.0", "virtualbox").getVersion(), "20170101.0.0");
+      assertEquals(catalogue.getLatest("centos/7").getName(), "centos/7");
+      assertNull(catalogue.getLatest("debian/jessie64"));
+      assertNull(catalogue.getImage("centos/7", "1611.01", "virtualbox"));
+      assertEquals(listings.get(), 1);
+   }
+
+   public void testKeepsEachProviderOfABox() {
+      boxes.add(new Box("centos/7", "1708.01", "libvirt"));
+      Image virtualbox = catalogue.getImage("centos/7", "1708.01", "virtualbox");
+      Image libvirt = catalogue.getImage("centos/7", "1708.01", "libvirt");
+      assertEquals(virtualbox.getUserMetadata().get(VagrantConstants.USER_META_PROVIDER), "virtualbox");
+      assertEquals(libvirt.getUserMetadata().get(VagrantConstants.USER_META_PROVIDER), "libvirt");
+      assertNull(catalogue.getImage("centos/7", "1708.01", "vmware_desktop"));
+      assertEquals(listings.get(), 1);
+   }
+
+   public void testReloadsAfterTtl() {
+      catalogue.listLatest();
+      boxes.add(new Box("debian/jessie64", "8.9.0", "virtualbox"));
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS / 2));
+      assertNull(catalogue.getLatest("debian/jessie64"));
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS));
+      assertEquals(catalogue.getLatest("debian/jessie64").getVersion(), "8.9.0");
+      assertEquals(listings.get(), 2);
+   }
+
+   public void testReloadsAfterInvalidate() {
+      catalogue.listLatest();
+      boxes.add(new Box("centos/7", "1710.01", "virtualbox"));
+      catalogue.invalidate();
+      assertEquals(catalogue.getLatest("centos/7").getVersion(), "1710.01");
+      assertEquals(listings.get(), 2);
+   }
+
+   public void testReloadsWhenBoxesFolderChanges() {
+      catalogue.listLatest();
+      boxes.add(new Box("debian/jessie64", "8.9.0", "virtualbox"));
+      new File(boxesFolder, "debian-VAGRANTSLASH-jessie64").mkdirs();
+
+      // Some platforms poll for changes every few seconds
+      long deadline = System.currentTimeMillis() + 30000;
+      while (catalogue.getLatest("debian/jessie64") == null && System.currentTimeMillis() < deadline) {
+         Uninterruptibles.sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+      }
+      assertEquals(catalogue.getLatest("debian/jessie64").getVersion(), "8.9.0");
+      assertTrue(listings.get() >= 2, "listings: " + listings.get());
+   }
+
+   public void testWatchesNewVersionsOfExistingBoxes() {
+      File box = new File(boxesFolder, "centos-VAGRANTSLASH-7");
+      box.mkdirs();
+      catalogue.listLatest();
+      boxes.add(new Box("centos/7", "1710.01", "virtualbox"));
+      new File(box, "1710.01").mkdirs();
+
+      long deadline = System.currentTimeMillis() + 30000;
+      while (!catalogue.getLatest("centos/7").getVersion().equals("1710.01")
+            && System.currentTimeMillis() < deadline) {
+         Uninterruptibles.sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+      }
+      assertEquals(catalogue.getLatest("centos/7").getVersion(), "1710.01");
+   }
+
+   private class CountingBoxApi implements VagrantBoxApiFacade.Factory<Box>, VagrantBoxApiFacade<Box> {
+      @Override
+      public VagrantBoxApiFacade<Box> create() {
+         return this;
+      }
+
+      @Override
+      public Collection<Box> listBoxes() {
+         listings.incrementAndGet();
+         return ImmutableList.copyOf(boxes);
+      }
+
+      @Override
+      public Box getBox(final String boxName) {
+         throw new UnsupportedOperationException("The catalogue looks boxes up in its index");
+      }
+   }
+
+   private static class SimpleBoxToImage implements Function<Box, Image> {
+      @Override
+      public Image apply(Box input) {
+         return new ImageBuilder()
+               .ids(input.getName())
+               .name(input.getName())
+               .version(input.getVersion())
+               .operatingSystem(new OperatingSystem(OsFamily.UNRECOGNIZED, input.getName(), input.getVersion(), null,
+                     input.getName(), true))
+               .status(Image.Status.AVAILABLE)
+               .userMetadata(ImmutableMap.of(VagrantConstants.USER_META_PROVIDER, input.getProvider()))
+               .build();
+      }
+   }
+
+}
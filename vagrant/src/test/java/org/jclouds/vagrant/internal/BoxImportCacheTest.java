@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jclouds.compute.domain.Image;
+import org.jclouds.compute.domain.ImageBuilder;
+import org.jclouds.compute.domain.OperatingSystem;
+import org.jclouds.compute.domain.OsFamily;
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.jclouds.vagrant.util.VagrantUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+@Test(groups = "unit", testName = "BoxImportCacheTest", singleThreaded = true)
+public class BoxImportCacheTest {
+   private static final long BOOT_MILLIS = 50;
+   private static final long IMPORT_MILLIS = 300;
+   private static final String PROVIDER = "virtualbox";
+
+   private final MachineConfig.Factory machineConfigs = new MachineConfig.Factory(new MachineConfigStore());
+   private File home;
+   private File boxes;
+   private FakeVagrant vagrant;
+   private ProvisioningScheduler scheduler;
+
+   @BeforeMethod
+   public void setUp() throws Exception {
+      home = Files.createTempDir();
+      boxes = new File(home, VagrantConstants.VAGRANT_BOXES_SUBFOLDER);
+      vagrant = new FakeVagrant(BOOT_MILLIS, IMPORT_MILLIS, boxes);
+      scheduler = new ProvisioningScheduler(ImmutableMap.of(PROVIDER, 6), 1);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      scheduler.close();
+      vagrant.close();
+      VagrantUtils.deleteFolder(home);
+   }
+
+   public void testImportsBoxOncePerHost() throws Exception {
+      BoxImportCache cache = new BoxImportCache(scheduler, boxes, true);
+      Image xenial = addBox("ubuntu/xenial64", "20170101.0.0");
+      Image centos = addBox("centos/7", "1703.01");
+      assertFalse(cache.isWarm(xenial));
+
+      upAll(cache, xenial, "x", 6);
+      assertEquals(vagrant.imports(), 1);
+      assertTrue(cache.isWarm(xenial));
+      assertFalse(cache.isWarm(centos));
+
+      upAll(cache, centos, "c", 3);
+      upAll(cache, xenial, "y", 2);
+      assertEquals(vagrant.imports(), 2);
+      assertEquals(vagrant.ups(), 11);
+   }
+
+   public void testFindsMasterOfEarlierProcess() throws Exception {
+      Image xenial = addBox("ubuntu/xenial64", "20170101.0.0");
+      upAll(new BoxImportCache(scheduler, boxes, true), xenial, "x", 1);
+
+      BoxImportCache cache = new BoxImportCache(scheduler, boxes, true);
+      assertTrue(cache.isWarm(xenial));
+      upAll(cache, xenial, "y", 3);
+      assertEquals(vagrant.imports(), 1);
+   }
+
+   public void testRecordsImportLatency() throws Exception {
+      BoxImportCache cache = new BoxImportCache(scheduler, boxes, true);
+      Image xenial = addBox("ubuntu/xenial64", "20170101.0.0");
+      upAll(cache, xenial, "x", 2);
+
+      assertNotNull(cache.importLatency("group/x0"));
+      assertNotNull(cache.importLatency("group/x1"));
+      long imported = Math.max(cache.importLatency("group/x0"), cache.importLatency("group/x1"));
+      long cloned = Math.min(cache.importLatency("group/x0"), cache.importLatency("group/x1"));
+      assertTrue(imported >= IMPORT_MILLIS, cache.importLatencies().toString());
+      assertTrue(cloned < IMPORT_MILLIS, cache.importLatencies().toString());
+      assertNull(cache.importLatency("group/other"));
+      assertNotNull(scheduler.bootLatency("group/x0"));
+   }
+
+   public void testFullClonesBootWithoutWaiting() throws Exception {
+      BoxImportCache cache = new BoxImportCache(scheduler, boxes, false);
+      Image xenial = addBox("ubuntu/xenial64", "20170101.0.0");
+      upAll(cache, xenial, "x", 3);
+      assertEquals(vagrant.maxConcurrentUps(), 3);
+   }
+
+   private void upAll(final BoxImportCache cache, final Image image, String prefix, int count) throws Exception {
+      ExecutorService executor = Executors.newFixedThreadPool(count);
+      try {
+         List<Future<Void>> ups = Lists.newArrayList();
+         for (int i = 0; i < count; i++) {
+            final String name = prefix + i;
+            final File folder = new File(home, name);
+            machineConfigs.newInstance(folder, name).save(ImmutableMap.<String, Object>of(
+                  VagrantConstants.CONFIG_BOX, image.getName()));
+            ups.add(executor.submit(new Callable<Void>() {
+               @Override
+               public Void call() {
+                  cache.up(vagrant.create(folder), "group/" + name, name, image, new MachineOutputParser(name));
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> up : ups) {
+            up.get();
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   private Image addBox(String name, String version) {
+      File folder = new File(new File(new File(boxes, name.replace("/", VagrantConstants.ESCAPE_SLASH)), version),
+            PROVIDER);
+      assertTrue(folder.mkdirs());
+      return new ImageBuilder()
+            .ids(name)
+            .name(name)
+            .version(version)
+            .operatingSystem(new OperatingSystem(OsFamily.UBUNTU, name, version, null, name, true))
+            .userMetadata(ImmutableMap.of(VagrantConstants.USER_META_PROVIDER, PROVIDER))
+            .status(Image.Status.AVAILABLE)
+            .build();
+   }
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.jclouds.domain.LoginCredentials;
+import org.jclouds.util.Closeables2;
+import org.jclouds.vagrant.api.VagrantApiFacade;
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.jclouds.vagrant.util.VagrantUtils;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+
+import vagrant.api.CommandIOListener;
+
+/**
+ * Puts the fake "vagrant" script from {@code fake-vagrant.sh} on the PATH of the commands it runs. "vagrant up"
+ * sleeps for the configured boot time and prints, line by line, the network and hostname sections the real
+ * provisioners print; machines matching the failure pattern, "broken" by default, fail to boot. "vagrant status"
+ * reports the machines with a config in the folder as running, unless a {@code .fake-state-<machine>} file in the
+ * folder holds another state; halt and destroy write that file. "vagrant ssh-config" and "vagrant box list" list the
+ * machine key and the boxes under VAGRANT_HOME like the real CLI. The script logs the start and end of every
+ * command next to itself, so the commands and how many run at the same time are counted whichever process ran
+ * them.
+ * <p>
+ * Given a boxes folder, "vagrant up" also imports the box of the machine, as read from its config, unless the box
+ * version folder already has a VirtualBox style {@code master_id}, in which case it clones it. Counts the imports.
+ * <p>
+ * The settings are written next to the script, so processes started by others, with the folder on their PATH, see
+ * them too.
+ */
+public class FakeVagrant implements VagrantApiFacade.Factory, Closeable {
+   private static final String SCRIPT = "vagrant";
+   private static final String CONF = "fake-vagrant.conf";
+   private static final String LOG = "fake-vagrant.log";
+
+   private final File bin;
+   private final Map<String, String> settings = Maps.newLinkedHashMap();
+   private File boxes;
+
+   public FakeVagrant(long bootMillis) throws IOException {
+      this(Files.createTempDir());
+      bootMillis(bootMillis);
+   }
+
+   public FakeVagrant(long bootMillis, long importMillis, File boxes) throws IOException {
+      this(bootMillis);
+      importMillis(importMillis, boxes);
+   }
+
+   /**
+    * Installs the script in the folder, to be put on the PATH of processes not started by this class.
+    */
+   public FakeVagrant(File bin) throws IOException {
+      this.bin = bin;
+      if (!bin.isDirectory() && !bin.mkdirs()) {
+         throw new IOException("Can't create " + bin.getAbsolutePath());
+      }
+      File script = new File(bin, SCRIPT);
+      Resources.asByteSource(Resources.getResource("fake-vagrant.sh")).copyTo(Files.asByteSink(script));
+      if (!script.setExecutable(true)) {
+         throw new IOException("Can't make " + script.getAbsolutePath() + " executable");
+      }
+      writeSettings();
+   }
+
+   /**
+    * Time each command takes to start, which for the real CLI is mostly loading Ruby and the plugins.
+    */
+   public FakeVagrant startupMillis(long millis) throws IOException {
+      return set("FAKE_VAGRANT_STARTUP_SECONDS", toSeconds(millis));
+   }
+
+   public FakeVagrant bootMillis(long millis) throws IOException {
+      return set("FAKE_VAGRANT_BOOT_SECONDS", toSeconds(millis));
+   }
+
+   public FakeVagrant importMillis(long millis, File boxes) throws IOException {
+      this.boxes = boxes;
+      set("FAKE_VAGRANT_BOXES", boxes.getAbsolutePath());
+      return set("FAKE_VAGRANT_IMPORT_SECONDS", toSeconds(millis));
+   }
+
+   /**
+    * @param machines shell pattern of the machine names which fail to boot
+    */
+   public FakeVagrant failing(String machines) throws IOException {
+      return set("FAKE_VAGRANT_FAIL", machines);
+   }
+
+   @Override
+   public VagrantApiFacade create(File path) {
+      return new FakeVagrantCli(path);
+   }
+
+   public int maxConcurrentUps() throws IOException {
+      return maxConcurrent("up");
+   }
+
+   public int ups() throws IOException {
+      return count("up");
+   }
+
+   public int maxConcurrentStatusCalls() throws IOException {
+      return maxConcurrent("status");
+   }
+
+   public int statusCalls() throws IOException {
+      return count("status");
+   }
+
+   public int imports() throws IOException {
+      File imports = boxes == null ? null : new File(boxes, "imports");
+      return imports != null && imports.exists() ? Files.readLines(imports, Charsets.UTF_8).size() : 0;
+   }
+
+   @Override
+   public void close() {
+      VagrantUtils.deleteFolder(bin);
+   }
+
+   private synchronized FakeVagrant set(String key, String value) throws IOException {
+      settings.put(key, value);
+      writeSettings();
+      return this;
+   }
+
+   private synchronized void writeSettings() throws IOException {
+      StringBuilder conf = new StringBuilder();
+      for (Map.Entry<String, String> setting : settings.entrySet()) {
+         conf.append(setting.getKey()).append("='").append(setting.getValue()).append("'\n");
+      }
+      VagrantUtils.writeAtomically(new File(bin, CONF), conf.toString());
+   }
+
+   private int maxConcurrent(String command) throws IOException {
+      int running = 0;
+      int max = 0;
+      for (String line : log()) {
+         if (line.startsWith(command + "-start ")) {
+            max = Math.max(max, ++running);
+         } else if (line.startsWith(command + "-end ")) {
+            running--;
+         }
+      }
+      return max;
+   }
+
+   private int count(String command) throws IOException {
+      int count = 0;
+      for (String line : log()) {
+         if (line.startsWith(command + "-start ")) {
+            count++;
+         }
+      }
+      return count;
+   }
+
+   private List<String> log() throws IOException {
+      File log = new File(bin, LOG);
+      return log.exists() ? Files.readLines(log, Charsets.UTF_8) : ImmutableList.<String>of();
+   }
+
+   private static String toSeconds(long millis) {
+      return String.format(Locale.ENGLISH, "%.3f", millis / 1000.0);
+   }
+
+   private String exec(File path, List<String> args) {
+      final StringBuilder output = new StringBuilder();
+      exec(path, args, new CommandIOListener() {
+         @Override
+         public void onInput(String input) {
+         }
+
+         @Override
+         public void onOutput(String line) {
+            if (line != null) {
+               output.append(line);
+            }
+         }
+      });
+      return output.toString();
+   }
+
+   private void exec(File path, List<String> args, CommandIOListener listener) {
+      ImmutableList<String> command = ImmutableList.<String>builder()
+            .add("/bin/sh", "-c", "vagrant \"$@\"", "vagrant")
+            .addAll(args)
+            .build();
+      ProcessBuilder builder = new ProcessBuilder(command).directory(path).redirectErrorStream(true);
+      builder.environment().put("PATH", bin.getAbsolutePath() + File.pathSeparator + System.getenv("PATH"));
+      try {
+         Process process = builder.start();
+         BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), Charsets.UTF_8));
+         String lastLine = null;
+         try {
+            String line;
+            while ((line = out.readLine()) != null) {
+               listener.onOutput(line + "\n");
+               lastLine = line;
+            }
+            listener.onOutput(null);
+         } finally {
+            Closeables2.closeQuietly(out);
+         }
+         if (process.waitFor() != 0) {
+            throw new IllegalStateException("vagrant " + args + " failed: " + lastLine);
+         }
+      } catch (IOException e) {
+         throw new IllegalStateException(e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException(e);
+      }
+   }
+
+   private class FakeVagrantCli implements VagrantApiFacade {
+      private final File path;
+
+      FakeVagrantCli(File path) {
+         this.path = path;
+      }
+
+      @Override
+      public void up(String machineName, String provider, CommandIOListener output) {
+         exec(path, ImmutableList.of("up", machineName, "--provider", provider), output);
+      }
+
+      @Override
+      public void halt(String machineName) {
+         exec(path, ImmutableList.of("halt", machineName));
+      }
+
+      @Override
+      public void destroy(String machineName) {
+         exec(path, ImmutableList.of("destroy", machineName, "--force"));
+      }
+
+      @Override
+      public LoginCredentials sshConfig(String machineName) {
+         return LoginCredentials.builder()
+               .user(VagrantConstants.DEFAULT_USERNAME)
+               .password(VagrantConstants.DEFAULT_PASSWORD)
+               .build();
+      }
+
+      @Override
+      public void haltForced(String name) {
+         exec(path, ImmutableList.of("halt", name, "--force"));
+      }
+
+      @Override
+      public boolean exists() {
+         return true;
+      }
+
+      @Override
+      public Map<String, String> status() {
+         return VagrantUtils.parseMachineStates(exec(path, ImmutableList.of("status", "--machine-readable")));
+      }
+   }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+@Test(groups = "unit", testName = "MachineConfigCodecTest")
+public class MachineConfigCodecTest {
+
+   public void testPlainValuesStayPlain() {
+      Map<String, Object> config = ImmutableMap.<String, Object>of(
+            "box", "ubuntu/xenial64",
+            "memory", "1024",
+            "linked_clone", true,
+            "password", "p@ss=w\\rd");
+      assertEquals(MachineConfigCodec.render(config),
+            "box: ubuntu/xenial64\nmemory: 1024\nlinked_clone: true\npassword: p@ss=w\\rd");
+   }
+
+   public void testQuotesValuesYamlWouldChange() {
+      Map<String, Object> config = ImmutableMap.<String, Object>of(
+            "a", "key: value",
+            "b", "#not a comment",
+            "c", " padded ",
+            "d", "line\nbreak \"quoted\" back\\slash",
+            "e", "");
+      String rendered = MachineConfigCodec.render(config);
+      assertEquals(rendered, "a: \"key: value\"\nb: \"#not a comment\"\nc: \" padded \"\n"
+            + "d: \"line\\nbreak \\\"quoted\\\" back\\\\slash\"\ne: \"\"");
+      assertEquals(MachineConfigCodec.parse(rendered), config);
+   }
+
+   public void testParsesConfigsOfEarlierVersions() {
+      Map<String, Object> config = MachineConfigCodec.parse("jclouds_version: 2.0.0\nbox: centos/7\n"
+            + "hardwareId: automatic\ncpus: 2\n");
+      assertEquals(ImmutableList.copyOf(config.keySet()),
+            ImmutableList.of("jclouds_version", "box", "hardwareId", "cpus"));
+      assertEquals(config.get("box"), "centos/7");
+      assertEquals(config.get("cpus"), "2");
+   }
+
+   public void testParsesSingleQuotedAndCommentedValues() {
+      assertEquals(MachineConfigCodec.parse("---\n# comment\na: 'it''s'\nb: plain # comment\n"),
+            ImmutableMap.of("a", "it's", "b", "plain"));
+   }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.jclouds.vagrant.util.VagrantUtils;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+@Test(groups = "unit", testName = "MachineConfigStoreTest", singleThreaded = true)
+public class MachineConfigStoreTest {
+   private static final Map<String, Object> CONFIG = ImmutableMap.<String, Object>of(
+         VagrantConstants.CONFIG_BOX, "jclouds/vagrant",
+         VagrantConstants.CONFIG_USERNAME, "vagrant");
+
+   private File folder;
+   private MachineConfigStore store;
+
+   @BeforeMethod
+   public void setUp() {
+      folder = Files.createTempDir();
+      store = new MachineConfigStore();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      VagrantUtils.deleteFolder(folder);
+   }
+
+   public void testSkipsUnchangedContent() {
+      assertTrue(store.save(folder, "m", CONFIG));
+      assertFalse(store.save(folder, "m", CONFIG));
+      assertFalse(store.update(folder, "m", ImmutableMap.of(VagrantConstants.CONFIG_USERNAME, "vagrant"),
+            ImmutableSet.<String>of()));
+      assertTrue(store.update(folder, "m", ImmutableMap.of(VagrantConstants.CONFIG_PASSWORD, "secret"),
+            ImmutableSet.<String>of()));
+      assertEquals(store.load(folder, "m").get(VagrantConstants.CONFIG_PASSWORD), "secret");
+   }
+
+   public void testLeavesNoTemporaryFiles() {
+      store.save(folder, "m", CONFIG);
+      store.update(folder, "m", ImmutableMap.<String, Object>of(), ImmutableSet.of(VagrantConstants.CONFIG_USERNAME));
+      assertEquals(ImmutableList.copyOf(new File(folder, VagrantConstants.MACHINES_CONFIG_SUBFOLDER).list()),
+            ImmutableList.of("m" + VagrantConstants.MACHINES_CONFIG_EXTENSION));
+      assertFalse(store.load(folder, "m").containsKey(VagrantConstants.CONFIG_USERNAME));
+   }
+
+   public void testKeepsFilePermissions() throws Exception {
+      File config = MachineConfigStore.configFile(folder, "m");
+      if (java.nio.file.Files.getFileAttributeView(folder.toPath(), PosixFileAttributeView.class) == null) {
+         throw new SkipException("POSIX file permissions not supported");
+      }
+      File inPlace = new File(folder, "in-place");
+      assertTrue(inPlace.createNewFile());
+      store.save(folder, "m", CONFIG);
+      assertEquals(java.nio.file.Files.getPosixFilePermissions(config.toPath()),
+            java.nio.file.Files.getPosixFilePermissions(inPlace.toPath()));
+
+      Set<PosixFilePermission> groupReadable = PosixFilePermissions.fromString("rw-r-----");
+      java.nio.file.Files.setPosixFilePermissions(config.toPath(), groupReadable);
+      assertTrue(store.update(folder, "m", ImmutableMap.of(VagrantConstants.CONFIG_PASSWORD, "secret"),
+            ImmutableSet.<String>of()));
+      assertEquals(java.nio.file.Files.getPosixFilePermissions(config.toPath()), groupReadable);
+   }
+
+   public void testReloadsChangesOfOtherProcesses() throws Exception {
+      store.save(folder, "m", CONFIG);
+      File config = MachineConfigStore.configFile(folder, "m");
+      Files.append("\ncpus: 2", config, Charsets.UTF_8);
+
+      assertEquals(store.load(folder, "m").get(VagrantConstants.CONFIG_CPUS), "2");
+      assertTrue(store.save(folder, "m", CONFIG));
+      assertFalse(store.load(folder, "m").containsKey(VagrantConstants.CONFIG_CPUS));
+   }
+
+   public void testConcurrentUpdatesOfMachineAreSerialized() throws Exception {
+      store.save(folder, "m", CONFIG);
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try {
+         List<Future<Boolean>> updates = Lists.newArrayList();
+         for (int i = 0; i < 32; i++) {
+            final String key = "key" + i;
+            updates.add(executor.submit(new Callable<Boolean>() {
+               @Override
+               public Boolean call() {
+                  return store.update(folder, "m", ImmutableMap.of(key, "value"), ImmutableSet.<String>of());
+               }
+            }));
+         }
+         for (Future<Boolean> update : updates) {
+            assertTrue(update.get());
+         }
+      } finally {
+         executor.shutdown();
+      }
+
+      Map<String, Object> config = new MachineConfigStore().load(folder, "m");
+      for (int i = 0; i < 32; i++) {
+         assertEquals(config.get("key" + i), "value");
+      }
+   }
+
+}
@@ -91,7 +91,7 @@ public class MachineConfigTest {
 
    private MachineConfig getMachineConfig(File configFile) {
       String machineName = configFile.getName().replaceAll(VagrantConstants.MACHINES_CONFIG_EXTENSION, "");
-      return new MachineConfig.Factory().newInstance(configFile.getParentFile().getParentFile(), machineName);
+      return new MachineConfig.Factory(new MachineConfigStore()).newInstance(configFile.getParentFile().getParentFile(), machineName);
    }
 
    private File getConifgFile(File machineFolder) {
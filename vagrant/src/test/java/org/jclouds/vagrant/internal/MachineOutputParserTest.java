@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+@Test(groups = "unit", testName = "MachineOutputParserTest")
+public class MachineOutputParserTest {
+   private static final String UI = "1482768916,m1,ui,info,==> m1: ";
+   private static final String OUTPUT = Joiner.on('\n').join(
+         "1482768916,m1,metadata,provider,virtualbox",
+         "1482768916,,ui,info,Bringing machine 'm1' up with 'virtualbox' provider...",
+         "1482768916,m1,state,poweroff",
+         UI + VagrantConstants.DELIMITER_NETWORKS_START,
+         UI + "1: lo: <LOOPBACK%!(VAGRANT_COMMA)UP> mtu 65536\\n    inet 127.0.0.1/8 scope host lo",
+         UI + "    inet 172.28.128.3/24 brd 172.28.128.255 scope global eth1",
+         UI + VagrantConstants.DELIMITER_NETWORKS_END,
+         UI + VagrantConstants.DELIMITER_HOSTNAME_START,
+         UI + "m1-host",
+         UI + VagrantConstants.DELIMITER_HOSTNAME_END,
+         "1482768916,m1,state,running",
+         "");
+
+   public void testParsesMachineReadableOutput() {
+      RecordingListener events = new RecordingListener();
+      MachineOutputParser parser = new MachineOutputParser("m1", events);
+      parser.onOutput(OUTPUT);
+      parser.onOutput(null);
+
+      assertEquals(parser.networks(), ImmutableList.of("127.0.0.1", "172.28.128.3"));
+      assertEquals(parser.hostname(), "m1-host");
+      assertEquals(parser.state(), "running");
+      assertEquals(events.events, ImmutableList.of("state poweroff", "address 127.0.0.1", "address 172.28.128.3",
+            "hostname m1-host", "state running"));
+   }
+
+   public void testParsesOutputSplitAnywhere() {
+      for (int chunk = 1; chunk < 50; chunk += 7) {
+         MachineOutputParser parser = new MachineOutputParser("m1");
+         for (int i = 0; i < OUTPUT.length(); i += chunk) {
+            parser.onOutput(OUTPUT.substring(i, Math.min(OUTPUT.length(), i + chunk)));
+         }
+         parser.onOutput(null);
+         assertEquals(parser.networks(), ImmutableList.of("127.0.0.1", "172.28.128.3"));
+         assertEquals(parser.hostname(), "m1-host");
+      }
+   }
+
+   public void testParsesPlainWindowsOutput() {
+      MachineOutputParser parser = new MachineOutputParser("win");
+      parser.onOutput("==> win: " + VagrantConstants.DELIMITER_NETWORKS_START + "\r\n");
+      parser.onOutput("==> win:    IPv4 Address. . . . . . . . . . . : 10.0.2.15\r\n");
+      parser.onOutput("==> win: " + VagrantConstants.DELIMITER_NETWORKS_END + "\r\n");
+      parser.onOutput("==> win: " + VagrantConstants.DELIMITER_HOSTNAME_START + "\r\n");
+      parser.onOutput("==> win: WIN-HOST\r\n");
+      parser.onOutput("==> win: " + VagrantConstants.DELIMITER_HOSTNAME_END);
+      parser.onOutput(null);
+
+      assertEquals(parser.networks(), ImmutableList.of("10.0.2.15"));
+      assertEquals(parser.hostname(), "WIN-HOST");
+   }
+
+   public void testReportsErrors() {
+      RecordingListener events = new RecordingListener();
+      MachineOutputParser parser = new MachineOutputParser("m1", events);
+      parser.onOutput("1482768916,m1,ui,error,==> m1: VBoxManage failed\n");
+      parser.onOutput("1482768916,,error-exit,Vagrant::Errors::VBoxManageError,There was an error%!(VAGRANT_COMMA) sorry\n");
+
+      assertEquals(parser.errors(), ImmutableList.of("VBoxManage failed", "There was an error, sorry"));
+      assertEquals(events.events, ImmutableList.of("error VBoxManage failed", "error There was an error, sorry"));
+   }
+
+   @Test(expectedExceptions = IllegalStateException.class)
+   public void testMissingNetworks() {
+      MachineOutputParser parser = new MachineOutputParser("m1");
+      parser.onOutput("1482768916,m1,state,running\n");
+      parser.networks();
+   }
+
+   public void testReadyLatency() {
+      final AtomicLong now = new AtomicLong();
+      MachineOutputParser parser = new MachineOutputParser("m1", new RecordingListener(), new Ticker() {
+         @Override
+         public long read() {
+            return now.get();
+         }
+      });
+      parser.onOutput(UI + "Booting\n");
+      assertEquals(parser.readyLatency(TimeUnit.MILLISECONDS), -1);
+      now.set(TimeUnit.SECONDS.toNanos(3));
+      parser.onOutput(UI + VagrantConstants.DELIMITER_NETWORKS_START + "\n");
+      parser.onOutput(UI + VagrantConstants.DELIMITER_NETWORKS_END + "\n");
+      now.set(TimeUnit.SECONDS.toNanos(5));
+      parser.onOutput(null);
+      assertEquals(parser.readyLatency(TimeUnit.MILLISECONDS), 3000);
+   }
+
+   private static class RecordingListener extends MachineOutputParser.Listener {
+      private final List<String> events = Lists.newArrayList();
+
+      @Override
+      public void onState(String state) {
+         events.add("state " + state);
+      }
+
+      @Override
+      public void onAddress(String address) {
+         events.add("address " + address);
+      }
+
+      @Override
+      public void onHostname(String hostname) {
+         events.add("hostname " + hostname);
+      }
+
+      @Override
+      public void onError(String message) {
+         events.add("error " + message);
+      }
+   }
+}
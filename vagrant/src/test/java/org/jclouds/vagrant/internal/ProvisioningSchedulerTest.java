@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.jclouds.vagrant.util.VagrantUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+@Test(groups = "unit", testName = "ProvisioningSchedulerTest", singleThreaded = true)
+public class ProvisioningSchedulerTest {
+   private static final long BOOT_MILLIS = 300;
+
+   private File home;
+   private FakeVagrant vagrant;
+
+   @BeforeMethod
+   public void setUp() throws Exception {
+      home = Files.createTempDir();
+      vagrant = new FakeVagrant(BOOT_MILLIS);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      vagrant.close();
+      VagrantUtils.deleteFolder(home);
+   }
+
+   public void testParseLimits() {
+      assertEquals(ProvisioningScheduler.parseLimits(VagrantConstants.JCLOUDS_VAGRANT_CONCURRENCY_DEFAULT),
+            ImmutableMap.of("virtualbox", 4, "libvirt", 8));
+      assertEquals(ProvisioningScheduler.parseLimits(" virtualbox = 1 , "), ImmutableMap.of("virtualbox", 1));
+      assertEquals(ProvisioningScheduler.parseLimits(""), ImmutableMap.of());
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testRejectsZeroLimit() {
+      ProvisioningScheduler.parseLimits("virtualbox=0");
+   }
+
+   public void testBootsInParallelUpToProviderLimit() throws Exception {
+      ProvisioningScheduler scheduler = new ProvisioningScheduler(ImmutableMap.of("virtualbox", 3), 1);
+      try {
+         List<ListenableFuture<Void>> ups = Lists.newArrayList();
+         List<MachineOutputParser> outputs = Lists.newArrayList();
+         for (int i = 0; i < 9; i++) {
+            MachineOutputParser output = new MachineOutputParser("m" + i);
+            outputs.add(output);
+            ups.add(scheduler.submitUp(vagrant.create(machineFolder("m" + i)), "group/m" + i, "m" + i, "virtualbox",
+                  output));
+         }
+         Futures.allAsList(ups).get();
+         for (int i = 0; i < 9; i++) {
+            assertEquals(outputs.get(i).networks(), ImmutableList.of("127.0.0.1", "10.0.2.15"));
+            assertEquals(outputs.get(i).hostname(), "m" + i);
+         }
+      } finally {
+         scheduler.close();
+      }
+      assertEquals(vagrant.ups(), 9);
+      assertEquals(vagrant.maxConcurrentUps(), 3);
+   }
+
+   public void testProvidersHaveSeparateLimits() throws Exception {
+      ProvisioningScheduler scheduler = new ProvisioningScheduler(ImmutableMap.of("virtualbox", 1, "libvirt", 1), 1);
+      try {
+         List<ListenableFuture<Void>> ups = Lists.newArrayList();
+         for (int i = 0; i < 2; i++) {
+            ups.add(scheduler.submitUp(vagrant.create(machineFolder("vb" + i)), "group/vb" + i, "vb" + i, "virtualbox",
+                  new MachineOutputParser("vb" + i)));
+            ups.add(scheduler.submitUp(vagrant.create(machineFolder("lv" + i)), "group/lv" + i, "lv" + i, "libvirt",
+                  new MachineOutputParser("lv" + i)));
+         }
+         Futures.allAsList(ups).get();
+      } finally {
+         scheduler.close();
+      }
+      assertEquals(vagrant.maxConcurrentUps(), 2);
+   }
+
+   public void testMeasuresBootLatency() {
+      ProvisioningScheduler scheduler = new ProvisioningScheduler(ImmutableMap.<String, Integer>of(), 2);
+      try {
+         scheduler.up(vagrant.create(machineFolder("m")), "group/m", "m", "docker", new MachineOutputParser("m"));
+         Map<String, Long> latencies = scheduler.bootLatencies();
+         assertEquals(latencies.keySet(), ImmutableMap.of("group/m", 0).keySet());
+         assertNotNull(scheduler.bootLatency("group/m"));
+         assertTrue(scheduler.bootLatency("group/m") >= BOOT_MILLIS, latencies.toString());
+         assertNull(scheduler.bootLatency("group/other"));
+      } finally {
+         scheduler.close();
+      }
+   }
+
+   @Test(expectedExceptions = IllegalStateException.class)
+   public void testPropagatesBootFailure() {
+      ProvisioningScheduler scheduler = new ProvisioningScheduler(ImmutableMap.<String, Integer>of(), 2);
+      try {
+         scheduler.up(vagrant.create(machineFolder("broken")), "group/broken", "broken", "virtualbox",
+               new MachineOutputParser("broken"));
+      } finally {
+         scheduler.close();
+      }
+   }
+
+   private File machineFolder(String name) {
+      File folder = new File(home, name);
+      folder.mkdirs();
+      return folder;
+   }
+
+}
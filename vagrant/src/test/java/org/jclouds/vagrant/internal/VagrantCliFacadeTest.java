@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.util.List;
+
+import org.jclouds.vagrant.util.VagrantUtils;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import vagrant.api.CommandIOListener;
+
+/**
+ * Runs the fake vagrant script through the CLI bindings. The surefire configuration puts the script folder on the
+ * PATH of the test JVM, so the bindings find it like they would find the real executable.
+ */
+@Test(groups = "unit", testName = "VagrantCliFacadeTest", singleThreaded = true)
+public class VagrantCliFacadeTest {
+   private static final String BIN = System.getProperty("jclouds.vagrant.test.bin");
+   private static final long BOOT_MILLIS = 300;
+
+   private static final CommandIOListener NO_WIRE_LOG = new CommandIOListener() {
+      @Override
+      public void onInput(String input) {
+      }
+
+      @Override
+      public void onOutput(String output) {
+      }
+   };
+
+   private File home;
+   private FakeVagrant vagrant;
+
+   @BeforeMethod
+   public void setUp() throws Exception {
+      String path = System.getenv("PATH");
+      if (BIN == null || path == null || !path.contains(BIN)) {
+         throw new SkipException("The fake vagrant executable is not on the PATH");
+      }
+      home = Files.createTempDir();
+      vagrant = new FakeVagrant(new File(BIN)).bootMillis(BOOT_MILLIS);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      if (vagrant != null) {
+         vagrant.close();
+         VagrantUtils.deleteFolder(home);
+      }
+   }
+
+   public void testUpOutputReachesListener() throws Exception {
+      MachineOutputParser output = new MachineOutputParser("m");
+      new VagrantCliFacade(NO_WIRE_LOG, machineFolder("m")).up("m", "virtualbox", output);
+      assertEquals(output.networks(), ImmutableList.of("127.0.0.1", "10.0.2.15"));
+      assertEquals(output.hostname(), "m");
+      assertEquals(vagrant.ups(), 1);
+   }
+
+   public void testBindingsRunUpsInParallelUpToProviderLimit() throws Exception {
+      ProvisioningScheduler scheduler = new ProvisioningScheduler(ImmutableMap.of("virtualbox", 3), 1);
+      try {
+         List<ListenableFuture<Void>> ups = Lists.newArrayList();
+         for (int i = 0; i < 6; i++) {
+            ups.add(scheduler.submitUp(new VagrantCliFacade(NO_WIRE_LOG, machineFolder("m" + i)), "group/m" + i,
+                  "m" + i, "virtualbox", new MachineOutputParser("m" + i)));
+         }
+         Futures.allAsList(ups).get();
+      } finally {
+         scheduler.close();
+      }
+      assertEquals(vagrant.ups(), 6);
+      assertEquals(vagrant.maxConcurrentUps(), 3);
+   }
+
+   private File machineFolder(String name) {
+      File folder = new File(home, name);
+      folder.mkdirs();
+      return folder;
+   }
+
+}
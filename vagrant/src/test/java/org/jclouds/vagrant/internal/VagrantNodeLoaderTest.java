@@ -39,6 +39,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class VagrantNodeLoaderTest {
     @Test
@@ -61,13 +62,28 @@ public class VagrantNodeLoaderTest {
         doTest(hardwareConfig, expectedHardware);
     }
 
+    @Test
+    public void testMachineInOwnFolder() throws Exception {
+        ImmutableMap<String, Object> hardwareConfig = ImmutableMap.<String, Object>of(
+                VagrantConstants.CONFIG_HARDWARE_ID, "small");
+        Hardware expectedHardware = new HardwareBuilder().ids("small").ram(1024).processor(new Processor(1.0, 1)).build();
+
+        doTest(hardwareConfig, expectedHardware, true);
+    }
+
     protected void doTest(ImmutableMap<String, Object> hardwareConfig, Hardware expectedHardware) throws IOException {
+        doTest(hardwareConfig, expectedHardware, false);
+    }
+
+    protected void doTest(ImmutableMap<String, Object> hardwareConfig, Hardware expectedHardware, boolean ownFolder)
+            throws IOException {
         String groupName = "groupId";
         String machineName = "machineId";
 
         File home = Files.createTempDir();
         File group = new File(home, groupName);
-        File machines = new File(group, VagrantConstants.MACHINES_CONFIG_SUBFOLDER);
+        File machineFolder = ownFolder ? new File(group, machineName) : group;
+        File machines = new File(machineFolder, VagrantConstants.MACHINES_CONFIG_SUBFOLDER);
         machines.mkdirs();
         File machine = new File(machines, machineName + VagrantConstants.MACHINES_CONFIG_EXTENSION);
         Files.write("dummy", machine, Charsets.UTF_8);
@@ -79,7 +95,7 @@ public class VagrantNodeLoaderTest {
                 .putAll(hardwareConfig)
                 .build());
         MachineConfig.Factory factory = EasyMock.createMock(MachineConfig.Factory.class);
-        EasyMock.expect(factory.newInstance(group, machineName)).andReturn(config);
+        EasyMock.expect(factory.newInstance(machineFolder, machineName)).andReturn(config);
 
         Image image = EasyMock.createMock(Image.class);
         EasyMock.expect(image.getId()).andReturn(imageId);
@@ -95,12 +111,13 @@ public class VagrantNodeLoaderTest {
 
         EasyMock.replay(config, factory, imageSupplier, image, hardwareSupplier);
 
-        VagrantExistingMachines nodeLoader = new VagrantExistingMachines(home.getAbsolutePath(), factory, imageSupplier, hardwareSupplier);
+        VagrantExistingMachines nodeLoader = new VagrantExistingMachines(home.getAbsolutePath(), factory, imageSupplier, hardwareSupplier,
+                MoreExecutors.newDirectExecutorService());
         Collection<VagrantNode> nodes = nodeLoader.get();
 
         VagrantNode actualNode = Iterables.getOnlyElement(nodes);
         VagrantNode expectedNode = VagrantNode.builder()
-                .setPath(group)
+                .setPath(machineFolder)
                 .setId(group.getName() + "/" + machineName)
                 .setGroup(group.getName())
                 .setName(machineName)
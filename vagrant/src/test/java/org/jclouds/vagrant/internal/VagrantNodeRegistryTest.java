@@ -17,9 +17,13 @@
 package org.jclouds.vagrant.internal;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.easymock.EasyMock;
 import org.jclouds.compute.domain.Hardware;
@@ -69,4 +73,62 @@ public class VagrantNodeRegistryTest {
       registry.onTerminated(node);
       assertNull(registry.get(node.id()));
    }
+
+   @Test
+   public void testGetAll() {
+      VagrantExistingMachines loader = EasyMock.createMock(VagrantExistingMachines.class);
+      EasyMock.expect(loader.get()).andReturn(ImmutableList.<VagrantNode>of());
+      EasyMock.replay(loader);
+
+      VagrantNodeRegistry registry = new VagrantNodeRegistry(loader);
+      OperatingSystem os = new OperatingSystem(OsFamily.UNRECOGNIZED, "Jclouds OS", "10", "x64", "Jclouds Test Image", true);
+      Image image = new ImageBuilder()
+            .ids("jclouds/box")
+            .operatingSystem(os)
+            .status(Image.Status.AVAILABLE)
+            .build();
+      Hardware hardware = new HardwareBuilder().ids("mini").ram(100).processor(new Processor(1.0, 1)).build();
+      for (int i = 0; i < 5; i++) {
+         registry.add(VagrantNode.builder()
+               .setPath(new File("/path/to/machine" + i))
+               .setId("vagrant/node" + i)
+               .setGroup("vagrant")
+               .setName("node" + i)
+               .setImage(image)
+               .setNetworks(ImmutableList.<String>of())
+               .setHardware(hardware)
+               .setHostname("vagrant-node" + i)
+               .build());
+      }
+
+      List<VagrantNode> nodes = registry.getAll(ImmutableList.of("vagrant/node3", "vagrant/missing", "vagrant/node1",
+            "vagrant/node3"));
+      assertEquals(nodes, ImmutableList.of(registry.get("vagrant/node3"), registry.get("vagrant/node1")));
+      assertEquals(registry.getAll(ImmutableList.<String>of()), ImmutableList.of());
+   }
+
+   @Test
+   public void testAwaitsOverlappingCredentialPersists() throws Exception {
+      VagrantExistingMachines loader = EasyMock.createMock(VagrantExistingMachines.class);
+      EasyMock.replay(loader);
+
+      final VagrantNodeRegistry registry = new VagrantNodeRegistry(loader);
+      assertTrue(registry.awaitCredentials("vagrant/node", 0, TimeUnit.MILLISECONDS));
+
+      registry.onPersistingCredentials("vagrant/node");
+      registry.onPersistingCredentials("vagrant/node");
+      registry.onCredentialsPersisted("vagrant/node");
+      assertFalse(registry.awaitCredentials("vagrant/node", 50, TimeUnit.MILLISECONDS));
+
+      Thread second = new Thread() {
+         @Override
+         public void run() {
+            registry.onCredentialsPersisted("vagrant/node");
+         }
+      };
+      second.start();
+      assertTrue(registry.awaitCredentials("vagrant/node", 10, TimeUnit.SECONDS));
+      second.join();
+      assertTrue(registry.awaitCredentials("vagrant/node", 0, TimeUnit.MILLISECONDS));
+   }
 }
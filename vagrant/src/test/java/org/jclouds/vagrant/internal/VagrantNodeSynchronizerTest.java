@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import org.jclouds.compute.domain.Hardware;
+import org.jclouds.compute.domain.HardwareBuilder;
+import org.jclouds.compute.domain.Image;
+import org.jclouds.compute.domain.ImageBuilder;
+import org.jclouds.compute.domain.NodeMetadata.Status;
+import org.jclouds.compute.domain.OperatingSystem;
+import org.jclouds.compute.domain.OsFamily;
+import org.jclouds.compute.domain.Processor;
+import org.jclouds.vagrant.domain.VagrantNode;
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.jclouds.vagrant.util.VagrantUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+@Test(groups = "unit", testName = "VagrantNodeSynchronizerTest", singleThreaded = true)
+public class VagrantNodeSynchronizerTest {
+   private static final long TIMEOUT_MILLIS = 10000;
+
+   private File home;
+   private FakeVagrant vagrant;
+   private ListeningExecutorService executor;
+   private VagrantStatusProbe statusProbe;
+   private VagrantNodeSynchronizer synchronizer;
+   private VagrantNodeRegistry registry;
+
+   @BeforeMethod
+   public void setUp() throws IOException {
+      home = Files.createTempDir();
+      vagrant = new FakeVagrant(0);
+      executor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+
+      OperatingSystem os = new OperatingSystem(OsFamily.UNRECOGNIZED, "Jclouds OS", "10", "x64", "Jclouds Test Image", true);
+      Image image = new ImageBuilder()
+            .ids("centos/7")
+            .operatingSystem(os)
+            .status(Image.Status.AVAILABLE)
+            .build();
+      Supplier<Collection<Image>> images = Suppliers.<Collection<Image>>ofInstance(ImmutableList.of(image));
+      Supplier<Map<String, Hardware>> hardware = Suppliers.<Map<String, Hardware>>ofInstance(ImmutableMap.of(
+            "small", new HardwareBuilder().ids("small").ram(1024).processor(new Processor(1.0, 1)).build()));
+      VagrantExistingMachines loader = new VagrantExistingMachines(home.getAbsolutePath(),
+            new MachineConfig.Factory(new MachineConfigStore()), images, hardware, executor);
+      statusProbe = new VagrantStatusProbe(vagrant, executor, 0, Ticker.systemTicker());
+      synchronizer = new VagrantNodeSynchronizer(home, loader, statusProbe);
+      registry = new VagrantNodeRegistry(loader, synchronizer);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      synchronizer.close();
+      executor.shutdownNow();
+      vagrant.close();
+      VagrantUtils.deleteFolder(home);
+   }
+
+   public void testExistingMachineStateProbedOnceRead() throws Exception {
+      File folder = writeMachine("existing");
+      Files.write("poweroff", new File(folder, ".fake-state-existing"), Charsets.UTF_8);
+
+      assertNotNull(registry.get("group/existing"));
+      assertEquals(vagrant.statusCalls(), 0);
+
+      statusProbe.refreshIfStale(registry.list());
+      awaitState("group/existing", Status.SUSPENDED);
+      assertEquals(vagrant.statusCalls(), 1);
+   }
+
+   public void testMachineAddedAndRemovedByAnotherProcess() throws Exception {
+      assertTrue(registry.list().isEmpty());
+
+      File folder = writeMachine("other");
+      awaitState("group/other", Status.RUNNING);
+
+      File config = new File(new File(folder, VagrantConstants.MACHINES_CONFIG_SUBFOLDER),
+            "other" + VagrantConstants.MACHINES_CONFIG_EXTENSION);
+      assertTrue(config.delete());
+      long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+      while (registry.get("group/other") != null && System.currentTimeMillis() < deadline) {
+         Thread.sleep(50);
+      }
+      assertNull(registry.get("group/other"));
+   }
+
+   public void testMachineBeingCreatedIgnored() throws Exception {
+      assertTrue(registry.list().isEmpty());
+      registry.beginCreate("group/created");
+
+      writeMachine("created");
+      // A machine written after it is seen as the mark for the watcher having caught up
+      writeMachine("marker");
+      awaitState("group/marker", Status.RUNNING);
+      assertNull(registry.get("group/created"));
+
+      registry.endCreate("group/created");
+   }
+
+   public void testOneProbePerFolder() throws Exception {
+      File folder = writeMachine("first");
+      writeMachine("second");
+
+      assertEquals(registry.list().size(), 2);
+      statusProbe.refreshIfStale(registry.list());
+      awaitState("group/first", Status.RUNNING);
+      awaitState("group/second", Status.RUNNING);
+      assertEquals(vagrant.statusCalls(), 2);
+      assertEquals(registry.get("group/first").path(), folder);
+   }
+
+   private File writeMachine(String name) throws IOException {
+      File folder = new File(new File(home, "group"), name);
+      File machines = new File(folder, VagrantConstants.MACHINES_CONFIG_SUBFOLDER);
+      File staging = new File(folder, name + ".tmp");
+      machines.mkdirs();
+      Files.write(VagrantConstants.CONFIG_BOX + ": centos/7\n" + VagrantConstants.CONFIG_HARDWARE_ID + ": small\n",
+            staging, Charsets.UTF_8);
+      // Move in place so the watcher never sees a partially written config
+      Files.move(staging, new File(machines, name + VagrantConstants.MACHINES_CONFIG_EXTENSION));
+      return folder;
+   }
+
+   private void awaitState(String id, Status expected) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+      while (System.currentTimeMillis() < deadline) {
+         VagrantNode node = registry.get(id);
+         if (node != null && node.machineState() == expected) {
+            return;
+         }
+         Thread.sleep(50);
+      }
+      VagrantNode node = registry.get(id);
+      assertNotNull(node, id + " not registered");
+      assertEquals(node.machineState(), expected);
+   }
+
+}
@@ -18,8 +18,13 @@ package org.jclouds.vagrant.internal;
 
 import static org.testng.Assert.assertEquals;
 
+import java.util.List;
+
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
 import vagrant.api.CommandIOListener;
 
 public class VagrantOutputRecorderTest {
@@ -41,18 +46,44 @@ public class VagrantOutputRecorderTest {
 
    @Test
    public void testOutputRecorder() {
+      LineCollector lines = new LineCollector();
       VagrantOutputRecorder outputRecorder = new VagrantOutputRecorder(nopIOListener);
-      outputRecorder.record();
-      assertEquals(outputRecorder.stopRecording(), "");
-      outputRecorder.record();
+      outputRecorder.onOutput(OUT1);
+      outputRecorder.record(lines);
       outputRecorder.onInput("vagrant up");
-      assertEquals(outputRecorder.stopRecording(), "");
-      outputRecorder.record();
       outputRecorder.onOutput(OUT1);
       outputRecorder.onOutput(OUT2);
       outputRecorder.onOutput(OUT3 + OUT4);
-      assertEquals(outputRecorder.stopRecording(), OUT1 + OUT2 + OUT3 + OUT4);
+      assertEquals(lines.lines, ImmutableList.of(OUT1, OUT2 + OUT3));
+      outputRecorder.stopRecording();
+      assertEquals(lines.lines, ImmutableList.of(OUT1, OUT2 + OUT3, OUT4 + "\n"));
       outputRecorder.onOutput(OUT1);
-      assertEquals(outputRecorder.stopRecording(), "");
+      assertEquals(lines.lines.size(), 3);
+   }
+
+   @Test
+   public void testOutputRecorderPassesWholeLinesToWireLogger() {
+      LineCollector wire = new LineCollector();
+      VagrantOutputRecorder outputRecorder = new VagrantOutputRecorder(wire);
+      outputRecorder.record(nopIOListener);
+      outputRecorder.onOutput(OUT1 + OUT2);
+      outputRecorder.onOutput(OUT3 + OUT4);
+      outputRecorder.onOutput(null);
+      assertEquals(wire.lines, ImmutableList.of(OUT1, OUT2 + OUT3, OUT4 + "\n"));
+   }
+
+   private static class LineCollector implements CommandIOListener {
+      private final List<String> lines = Lists.newArrayList();
+
+      @Override
+      public void onInput(String input) {
+      }
+
+      @Override
+      public void onOutput(String output) {
+         if (output != null) {
+            lines.add(output);
+         }
+      }
    }
 }
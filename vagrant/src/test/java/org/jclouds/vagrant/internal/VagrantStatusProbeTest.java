@@ -0,0 +1,298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.vagrant.internal;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jclouds.compute.domain.HardwareBuilder;
+import org.jclouds.compute.domain.Image;
+import org.jclouds.compute.domain.ImageBuilder;
+import org.jclouds.compute.domain.NodeMetadata.Status;
+import org.jclouds.compute.domain.OperatingSystem;
+import org.jclouds.compute.domain.OsFamily;
+import org.jclouds.compute.domain.Processor;
+import org.jclouds.vagrant.domain.VagrantNode;
+import org.jclouds.vagrant.reference.VagrantConstants;
+import org.jclouds.vagrant.util.VagrantUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+@Test(groups = "unit", testName = "VagrantStatusProbeTest", singleThreaded = true)
+public class VagrantStatusProbeTest {
+   private static final long TTL_MILLIS = 5000;
+
+   private final AtomicLong now = new AtomicLong();
+   private File folder;
+   private FakeVagrant vagrant;
+   private ListeningExecutorService executor;
+   private VagrantStatusProbe statusProbe;
+   private VagrantNode node;
+
+   @BeforeMethod
+   public void setUp() throws IOException {
+      folder = Files.createTempDir();
+      File machines = new File(folder, VagrantConstants.MACHINES_CONFIG_SUBFOLDER);
+      machines.mkdirs();
+      Files.write("box: centos/7\n", new File(machines, "machine" + VagrantConstants.MACHINES_CONFIG_EXTENSION),
+            Charsets.UTF_8);
+      vagrant = new FakeVagrant(0);
+      // A single thread, so a task blocking it holds back the probes
+      executor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+      statusProbe = new VagrantStatusProbe(vagrant, executor, TTL_MILLIS, new Ticker() {
+         @Override
+         public long read() {
+            return now.get();
+         }
+      });
+
+      OperatingSystem os = new OperatingSystem(OsFamily.UNRECOGNIZED, "Jclouds OS", "10", "x64", "Jclouds Test Image", true);
+      node = VagrantNode.builder()
+            .setPath(folder)
+            .setId("group/machine")
+            .setGroup("group")
+            .setName("machine")
+            .setImage(new ImageBuilder().ids("centos/7").operatingSystem(os).status(Image.Status.AVAILABLE).build())
+            .setHardware(new HardwareBuilder().ids("small").ram(1024).processor(new Processor(1.0, 1)).build())
+            .setNetworks(ImmutableList.<String>of())
+            .setHostname("unknown")
+            .build();
+      node.setMachineState(Status.UNRECOGNIZED);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      executor.shutdownNow();
+      vagrant.close();
+      VagrantUtils.deleteFolder(folder);
+   }
+
+   public void testConcurrentProbesShareOneStatus() throws Exception {
+      CountDownLatch release = block();
+      List<ListenableFuture<Void>> probes = Lists.newArrayList();
+      for (int i = 0; i < 5; i++) {
+         probes.add(statusProbe.probe(folder, ImmutableList.of(node)));
+      }
+      release.countDown();
+      Futures.allAsList(probes).get(10, TimeUnit.SECONDS);
+
+      assertEquals(vagrant.statusCalls(), 1);
+      assertEquals(node.machineState(), Status.RUNNING);
+   }
+
+   public void testRefreshOnlyWhenStale() throws Exception {
+      Files.write("poweroff", new File(folder, ".fake-state-machine"), Charsets.UTF_8);
+      statusProbe.refreshIfStale(node);
+      awaitProbes();
+      assertEquals(vagrant.statusCalls(), 1);
+      assertEquals(node.machineState(), Status.SUSPENDED);
+
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS) - 1);
+      statusProbe.refreshIfStale(node);
+      awaitProbes();
+      assertEquals(vagrant.statusCalls(), 1);
+
+      now.addAndGet(2);
+      statusProbe.refreshIfStale(node);
+      awaitProbes();
+      assertEquals(vagrant.statusCalls(), 2);
+   }
+
+   public void testUpdateNotOverwrittenByOlderProbe() throws Exception {
+      CountDownLatch release = block();
+      ListenableFuture<Void> probe = statusProbe.probe(folder, ImmutableList.of(node));
+      now.incrementAndGet();
+      statusProbe.update(node, Status.SUSPENDED);
+      release.countDown();
+      probe.get(10, TimeUnit.SECONDS);
+
+      assertEquals(vagrant.statusCalls(), 1);
+      assertEquals(node.machineState(), Status.SUSPENDED);
+   }
+
+   public void testUpdateNotOverwrittenByProbeCompletingMeanwhile() throws Exception {
+      final CountDownLatch updating = new CountDownLatch(1);
+      final CountDownLatch releaseUpdate = new CountDownLatch(1);
+      final AtomicReference<Thread> updater = new AtomicReference<Thread>();
+      final VagrantStatusProbe probe = new VagrantStatusProbe(vagrant, executor, TTL_MILLIS, new Ticker() {
+         @Override
+         public long read() {
+            if (Thread.currentThread() == updater.get()) {
+               // Hold the update after it set the state, before it records when
+               updating.countDown();
+               Uninterruptibles.awaitUninterruptibly(releaseUpdate);
+            }
+            return now.get();
+         }
+      });
+      CountDownLatch release = block();
+      ListenableFuture<Void> probed = probe.probe(folder, ImmutableList.of(node));
+      now.incrementAndGet();
+      Thread update = new Thread() {
+         @Override
+         public void run() {
+            probe.update(node, Status.SUSPENDED);
+         }
+      };
+      updater.set(update);
+      update.start();
+      updating.await(10, TimeUnit.SECONDS);
+
+      release.countDown();
+      // Gives the probe the time to complete while the update is held
+      Thread.sleep(500);
+      releaseUpdate.countDown();
+      update.join(10000);
+      probed.get(10, TimeUnit.SECONDS);
+
+      assertEquals(vagrant.statusCalls(), 1);
+      assertEquals(node.machineState(), Status.SUSPENDED);
+   }
+
+   public void testUpdateSkipsRefresh() throws Exception {
+      statusProbe.update(node, Status.RUNNING);
+      statusProbe.refreshIfStale(node);
+      awaitProbes();
+      assertEquals(vagrant.statusCalls(), 0);
+   }
+
+   public void testRefreshesOnlyStaleNodesInOneBatch() throws Exception {
+      Files.write("box: centos/7\n", new File(new File(folder, VagrantConstants.MACHINES_CONFIG_SUBFOLDER),
+            "other" + VagrantConstants.MACHINES_CONFIG_EXTENSION), Charsets.UTF_8);
+      VagrantNode other = VagrantNode.builder()
+            .setPath(folder)
+            .setId("group/other")
+            .setGroup("group")
+            .setName("other")
+            .setImage(node.image())
+            .setHardware(node.hardware())
+            .setNetworks(ImmutableList.<String>of())
+            .setHostname("unknown")
+            .build();
+      VagrantNode third = VagrantNode.builder()
+            .setPath(folder)
+            .setId("group/third")
+            .setGroup("group")
+            .setName("third")
+            .setImage(node.image())
+            .setHardware(node.hardware())
+            .setNetworks(ImmutableList.<String>of())
+            .setHostname("unknown")
+            .build();
+      statusProbe.update(other, Status.SUSPENDED);
+      now.incrementAndGet();
+
+      statusProbe.refreshIfStale(ImmutableList.of(node, other, third));
+      awaitProbes();
+
+      assertEquals(vagrant.statusCalls(), 1);
+      assertEquals(node.machineState(), Status.RUNNING);
+      assertEquals(other.machineState(), Status.SUSPENDED);
+   }
+
+   public void testBoundsProbesOfMachinesInTheirOwnFolders() throws Exception {
+      vagrant.startupMillis(200);
+      ListeningExecutorService bounded = VagrantStatusProbe.newExecutor(2);
+      File home = Files.createTempDir();
+      try {
+         VagrantStatusProbe boundedProbe = new VagrantStatusProbe(vagrant, bounded, TTL_MILLIS, Ticker.systemTicker());
+         List<VagrantNode> nodes = Lists.newArrayList();
+         for (int i = 0; i < 6; i++) {
+            File machineFolder = new File(home, "machine" + i);
+            File machines = new File(machineFolder, VagrantConstants.MACHINES_CONFIG_SUBFOLDER);
+            machines.mkdirs();
+            Files.write("box: centos/7\n",
+                  new File(machines, "machine" + i + VagrantConstants.MACHINES_CONFIG_EXTENSION), Charsets.UTF_8);
+            nodes.add(VagrantNode.builder()
+                  .setPath(machineFolder)
+                  .setId("group/machine" + i)
+                  .setGroup("group")
+                  .setName("machine" + i)
+                  .setImage(node.image())
+                  .setHardware(node.hardware())
+                  .setNetworks(ImmutableList.<String>of())
+                  .setHostname("unknown")
+                  .build());
+         }
+         ListenableFuture<List<Void>> first = boundedProbe.probe(nodes);
+         ListenableFuture<List<Void>> second = boundedProbe.probe(nodes);
+         Futures.allAsList(first, second).get(10, TimeUnit.SECONDS);
+
+         for (VagrantNode probed : nodes) {
+            assertEquals(probed.machineState(), Status.RUNNING);
+         }
+      } finally {
+         bounded.shutdownNow();
+         VagrantUtils.deleteFolder(home);
+      }
+      assertEquals(vagrant.statusCalls(), 6);
+      assertEquals(vagrant.maxConcurrentStatusCalls(), 2);
+   }
+
+   public void testToStatus() {
+      assertEquals(VagrantStatusProbe.toStatus("running"), Status.RUNNING);
+      assertEquals(VagrantStatusProbe.toStatus("poweroff"), Status.SUSPENDED);
+      assertEquals(VagrantStatusProbe.toStatus("saved"), Status.SUSPENDED);
+      assertEquals(VagrantStatusProbe.toStatus("not_created"), Status.TERMINATED);
+      assertEquals(VagrantStatusProbe.toStatus("gurumeditation"), Status.UNRECOGNIZED);
+   }
+
+   private CountDownLatch block() {
+      final CountDownLatch release = new CountDownLatch(1);
+      executor.execute(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               release.await();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         }
+      });
+      return release;
+   }
+
+   private void awaitProbes() throws Exception {
+      // The executor runs the tasks in order
+      executor.submit(new Runnable() {
+         @Override
+         public void run() {
+         }
+      }).get(10, TimeUnit.SECONDS);
+   }
+
+}
@@ -0,0 +1,131 @@
+#!/bin/sh
+# Licensed to the Apache Software Foundation (ASF) under one or more
+# contributor license agreements.  See the NOTICE file distributed with
+# this work for additional information regarding copyright ownership.
+# The ASF licenses this file to You under the Apache License, Version 2.0
+# (the "License"); you may not use this file except in compliance with
+# the License.  You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+# Fake "vagrant" executable for tests and benchmarks, see FakeVagrant. Prints what the real CLI prints for the
+# commands the provider runs, without a hypervisor. Settings come from fake-vagrant.conf next to the script.
+
+FAKE_VAGRANT_STARTUP_SECONDS=0
+FAKE_VAGRANT_BOOT_SECONDS=0
+FAKE_VAGRANT_IMPORT_SECONDS=0
+FAKE_VAGRANT_FAIL=broken
+FAKE_VAGRANT_BOXES=
+conf="$(dirname "$0")/fake-vagrant.conf"
+[ -f "$conf" ] && . "$conf"
+# One line per start and end of every command, appended by every process running the script
+log="$(dirname "$0")/fake-vagrant.log"
+
+command=$1
+[ $# -gt 0 ] && shift
+machine=
+provider=virtualbox
+while [ $# -gt 0 ]; do
+  case "$1" in
+    --provider) provider=$2; shift ;;
+    --provider=*) provider=${1#--provider=} ;;
+    -*) ;;
+    *) [ -z "$machine" ] && machine=$1 ;;
+  esac
+  shift
+done
+
+echo "$command-start $machine" >> "$log"
+trap 'echo "$command-end $machine" >> "$log"' EXIT
+
+# Loading the Ruby runtime alone takes a while
+sleep "$FAKE_VAGRANT_STARTUP_SECONDS"
+
+case "$command" in
+  up)
+    case "$machine" in
+      $FAKE_VAGRANT_FAIL)
+        echo "The machine $machine failed to boot" >&2
+        exit 1
+        ;;
+    esac
+    echo "1482768916,$machine,metadata,provider,$provider"
+    if [ -n "$FAKE_VAGRANT_BOXES" ]; then
+      box=$(sed -n 's/^box: //p' "machines/$machine.yaml" | sed 's#/#-VAGRANTSLASH-#g')
+      box_folder=$(ls -d "$FAKE_VAGRANT_BOXES/$box"/*/"$provider" | head -n 1)
+      if [ -f "$box_folder/master_id" ]; then
+        echo "==> $machine: Cloning VM..."
+      else
+        echo "==> $machine: Importing base box '$box'..."
+        sleep "$FAKE_VAGRANT_IMPORT_SECONDS"
+        echo "$machine" >> "$FAKE_VAGRANT_BOXES/imports"
+        echo "$machine" > "$box_folder/master_id"
+      fi
+      echo "==> $machine: Matching MAC address for NAT networking..."
+    fi
+    sleep "$FAKE_VAGRANT_BOOT_SECONDS"
+    rm -f ".fake-state-$machine"
+    echo "==> $machine: ================= Networks start ================="
+    echo "==> $machine: inet 127.0.0.1/8 scope host lo"
+    echo "==> $machine: inet 10.0.2.15/24 brd 10.0.2.255 scope global eth0"
+    echo "==> $machine: ================= Networks end ==================="
+    echo "==> $machine: ================= Hostname start =========================="
+    echo "==> $machine: $machine"
+    echo "==> $machine: ================= Hostname end ============================"
+    echo "1482768916,$machine,state,running"
+    ;;
+  halt)
+    echo "==> $machine: Attempting graceful shutdown of VM..."
+    echo poweroff > ".fake-state-$machine"
+    ;;
+  destroy)
+    echo "==> $machine: Destroying VM and associated drives..."
+    echo not_created > ".fake-state-$machine"
+    rm -rf ".vagrant/machines/$machine"
+    ;;
+  ssh-config)
+    key="$PWD/.vagrant/machines/$machine/$provider/private_key"
+    mkdir -p "$(dirname "$key")"
+    [ -f "$key" ] || echo "fake private key" > "$key"
+    echo "Host $machine"
+    echo "  HostName 127.0.0.1"
+    echo "  User vagrant"
+    echo "  Port 2222"
+    echo "  UserKnownHostsFile /dev/null"
+    echo "  StrictHostKeyChecking no"
+    echo "  PasswordAuthentication no"
+    echo "  IdentityFile $key"
+    echo "  IdentitiesOnly yes"
+    echo "  LogLevel FATAL"
+    ;;
+  status)
+    for config in machines/*.yaml; do
+      [ -f "$config" ] || continue
+      name=$(basename "$config" .yaml)
+      state=running
+      [ -f ".fake-state-$name" ] && state=$(cat ".fake-state-$name")
+      echo "1482768916,$name,provider-name,$provider"
+      echo "1482768916,$name,state,$state"
+    done
+    ;;
+  box)
+    for provider_folder in "${VAGRANT_HOME:-$HOME/.vagrant.d}"/boxes/*/*/*; do
+      [ -d "$provider_folder" ] || continue
+      version_folder=$(dirname "$provider_folder")
+      name=$(basename "$(dirname "$version_folder")" | sed 's#-VAGRANTSLASH-#/#g')
+      echo "1482768916,,box-name,$name"
+      echo "1482768916,,box-provider,$(basename "$provider_folder")"
+      echo "1482768916,,box-version,$(basename "$version_folder")"
+    done
+    ;;
+  *)
+    echo "Unknown command $command" >&2
+    exit 1
+    ;;
+esac